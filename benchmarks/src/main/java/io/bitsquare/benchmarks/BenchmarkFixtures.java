@@ -0,0 +1,108 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.benchmarks;
+
+import io.bitsquare.common.crypto.*;
+import io.bitsquare.crypto.SealedAndSignedMessage;
+import io.bitsquare.locale.Country;
+import io.bitsquare.locale.Region;
+import io.bitsquare.p2p.Message;
+import io.bitsquare.p2p.NodeAddress;
+import io.bitsquare.p2p.storage.data.DataAndSeqNr;
+import io.bitsquare.p2p.storage.data.ExpirablePayload;
+import io.bitsquare.p2p.storage.data.ProtectedData;
+import io.bitsquare.payment.PaymentMethod;
+import io.bitsquare.trade.offer.Offer;
+import io.bitsquare.trade.protocol.trade.messages.DepositTxPublishedMessage;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+
+import java.security.KeyPair;
+import java.security.Security;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Realistic data objects shared by all benchmark suites.
+ * Sizes follow what we see on the network: an offer with 2 arbitrators and a SEPA country list,
+ * a signed ProtectedData wrapping that offer and a sealed trade message carrying a deposit tx.
+ */
+public class BenchmarkFixtures {
+    // Size of a typical 2 input deposit tx
+    public static final int DEPOSIT_TX_SIZE = 420;
+
+    static {
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    public final KeyPair signatureKeyPair;
+    public final KeyPair encryptionKeyPair;
+    public final PubKeyRing pubKeyRing;
+    public final Offer offer;
+    public final ProtectedData protectedData;
+    public final Message message;
+    public final SealedAndSignedMessage sealedAndSignedMessage;
+
+    public BenchmarkFixtures() {
+        try {
+            signatureKeyPair = Sig.generateKeyPair();
+            encryptionKeyPair = Encryption.generateKeyPair();
+            pubKeyRing = new PubKeyRing(signatureKeyPair.getPublic(), encryptionKeyPair.getPublic());
+            offer = createOffer(pubKeyRing);
+            protectedData = createProtectedData(offer, signatureKeyPair, 0);
+            message = createMessage();
+            sealedAndSignedMessage = new SealedAndSignedMessage(
+                    Encryption.encryptHybridWithSignature(message, signatureKeyPair, encryptionKeyPair.getPublic()),
+                    Hash.getHash("ab"));
+        } catch (CryptoException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static Offer createOffer(PubKeyRing pubKeyRing) {
+        Offer offer = new Offer(UUID.randomUUID().toString(),
+                new NodeAddress("lmvdenjkyvx2ovga.onion", 8001),
+                pubKeyRing,
+                Offer.Direction.BUY,
+                2500000,
+                100000000,
+                10000000,
+                PaymentMethod.SEPA_ID,
+                "EUR",
+                new Country("DE", "Germany", new Region("EU", "Europe")),
+                UUID.randomUUID().toString(),
+                Arrays.asList(new NodeAddress("eo5ay2lyzrfvx2nr.onion", 8002), new NodeAddress("si3uu56adkyqkldl.onion", 8003)),
+                Arrays.asList("AT", "BE", "DE", "ES", "FI", "FR", "IE", "IT", "LU", "NL", "PT"));
+        offer.setOfferFeePaymentTxID("4d1e6c6ad1a4f2b7a3e5c36b5d1b0e1f4a8f0e6e0a9c2b7f3f5d8c1e2a4b6c8d");
+        return offer;
+    }
+
+    public static ProtectedData createProtectedData(ExpirablePayload payload, KeyPair keyPair, int sequenceNumber)
+            throws CryptoException {
+        byte[] hashOfDataAndSeqNr = Hash.getHash(new DataAndSeqNr(payload, sequenceNumber));
+        byte[] signature = Sig.sign(keyPair.getPrivate(), hashOfDataAndSeqNr);
+        return new ProtectedData(payload, payload.getTTL(), keyPair.getPublic(), sequenceNumber, signature);
+    }
+
+    public static Message createMessage() {
+        byte[] depositTx = new byte[DEPOSIT_TX_SIZE];
+        new Random(1).nextBytes(depositTx);
+        return new DepositTxPublishedMessage(UUID.randomUUID().toString(), depositTx,
+                new NodeAddress("si3uu56adkyqkldl.onion", 8003));
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.benchmarks;
+
+import io.bitsquare.common.ByteArrayUtils;
+import io.bitsquare.common.crypto.Hash;
+import io.bitsquare.common.util.Utilities;
+import io.bitsquare.p2p.Utils;
+import io.bitsquare.p2p.storage.messages.AddDataMessage;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Simulates the serialisation work of a node relaying a burst of offer broadcasts from several connection threads.
+ * Run with the GC profiler to get the allocation rate: java -jar benchmarks.jar BroadcastLoadBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Threads(4)
+@Fork(1)
+public class BroadcastLoadBenchmark {
+    private AddDataMessage message;
+
+    @Setup
+    public void setup() {
+        message = new AddDataMessage(new BenchmarkFixtures().protectedData);
+    }
+
+    // Per received message: size check at InputHandler, hash of payload, compressed write to each peer
+    @Benchmark
+    public int relayAddDataMessage() {
+        int size = ByteArrayUtils.objectToByteArray(message).length;
+        size += Hash.getHash(message.data.expirablePayload).length;
+        size += Utilities.serialize(message).length;
+        size += Utils.compress(message).length;
+        return size;
+    }
+}
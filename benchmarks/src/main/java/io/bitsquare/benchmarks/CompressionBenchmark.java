@@ -0,0 +1,54 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.benchmarks;
+
+import io.bitsquare.p2p.Utils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CompressionBenchmark {
+    @Param({"Offer", "ProtectedData", "SealedAndSignedMessage"})
+    public String fixture;
+
+    private Serializable object;
+    private byte[] compressed;
+
+    @Setup
+    public void setup() {
+        object = SerializationBenchmark.getFixture(new BenchmarkFixtures(), fixture);
+        compressed = Utils.compress(object);
+    }
+
+    @Benchmark
+    public byte[] compress() {
+        return Utils.compress(object);
+    }
+
+    @Benchmark
+    public Serializable decompress() {
+        return Utils.decompress(compressed);
+    }
+}
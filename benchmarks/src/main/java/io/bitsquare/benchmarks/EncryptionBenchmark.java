@@ -0,0 +1,53 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.benchmarks;
+
+import io.bitsquare.common.crypto.CryptoException;
+import io.bitsquare.common.crypto.DecryptedPayloadWithPubKey;
+import io.bitsquare.common.crypto.Encryption;
+import io.bitsquare.common.crypto.SealedAndSigned;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EncryptionBenchmark {
+    private BenchmarkFixtures fixtures;
+
+    @Setup
+    public void setup() {
+        fixtures = new BenchmarkFixtures();
+    }
+
+    @Benchmark
+    public SealedAndSigned encryptHybridWithSignature() throws CryptoException {
+        return Encryption.encryptHybridWithSignature(fixtures.message, fixtures.signatureKeyPair,
+                fixtures.encryptionKeyPair.getPublic());
+    }
+
+    @Benchmark
+    public DecryptedPayloadWithPubKey decryptHybridWithSignature() throws CryptoException {
+        return Encryption.decryptHybridWithSignature(fixtures.sealedAndSignedMessage.sealedAndSigned,
+                fixtures.encryptionKeyPair.getPrivate());
+    }
+}
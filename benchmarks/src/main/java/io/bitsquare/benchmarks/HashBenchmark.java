@@ -0,0 +1,58 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.benchmarks;
+
+import io.bitsquare.common.crypto.Hash;
+import io.bitsquare.common.util.Utilities;
+import io.bitsquare.p2p.storage.data.DataAndSeqNr;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class HashBenchmark {
+    private BenchmarkFixtures fixtures;
+    private byte[] offerAsBytes;
+
+    @Setup
+    public void setup() {
+        fixtures = new BenchmarkFixtures();
+        offerAsBytes = Utilities.serialize(fixtures.offer);
+    }
+
+    @Benchmark
+    public byte[] hashBytes() {
+        return Hash.getHash(offerAsBytes);
+    }
+
+    @Benchmark
+    public byte[] hashOffer() {
+        return Hash.getHash(fixtures.offer);
+    }
+
+    // That is what P2PDataStorage does for every add/remove when checking the signature
+    @Benchmark
+    public byte[] hashDataAndSeqNr() {
+        return Hash.getHash(new DataAndSeqNr(fixtures.offer, fixtures.protectedData.sequenceNumber));
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.bitsquare.benchmarks;
+
+import io.bitsquare.common.ByteArrayUtils;
+import io.bitsquare.common.crypto.CryptoException;
+import io.bitsquare.common.crypto.Sig;
+import io.bitsquare.p2p.Message;
+import io.bitsquare.p2p.NodeAddress;
+import io.bitsquare.p2p.network.serialization.MessageSerializer;
+import io.bitsquare.p2p.peers.ReportedPeer;
+import io.bitsquare.p2p.peers.messages.data.DataResponse;
+import io.bitsquare.p2p.peers.messages.peers.GetPeersResponse;
+import io.bitsquare.p2p.storage.data.ExpirableMailboxPayload;
+import io.bitsquare.p2p.storage.data.ProtectedData;
+import io.bitsquare.p2p.storage.data.ProtectedMailboxData;
+import io.bitsquare.p2p.storage.messages.AddDataMessage;
+import io.bitsquare.p2p.storage.messages.RemoveMailboxDataMessage;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.security.KeyPair;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the codecs of the MessageRegistry with plain Java serialisation.
+ * The wire size of both formats is printed at setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MessageSerializerBenchmark {
+    private static final int NUM_PEERS = 30;
+    private static final int NUM_OFFERS = 20;
+
+    @Param({"AddDataMessage", "RemoveMailboxDataMessage", "GetPeersResponse", "DataResponse", "SealedAndSignedMessage"})
+    public String messageType;
+
+    private Message message;
+    private byte[] javaSerialized;
+    private byte[] codecSerialized;
+
+    @Setup
+    public void setup() throws Exception {
+        message = createMessage(new BenchmarkFixtures(), messageType);
+        javaSerialized = ByteArrayUtils.objectToByteArray(message);
+        codecSerialized = MessageSerializer.serialize(message);
+        System.out.println("\n" + messageType + " wire size: java=" + javaSerialized.length + " bytes, codec=" +
+                codecSerialized.length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] javaEncode() {
+        return ByteArrayUtils.objectToByteArray(message);
+    }
+
+    @Benchmark
+    public Object javaDecode() {
+        return ByteArrayUtils.byteArrayToObject(javaSerialized);
+    }
+
+    @Benchmark
+    public byte[] codecEncode() throws IOException {
+        return MessageSerializer.serialize(message);
+    }
+
+    @Benchmark
+    public Message codecDecode() throws IOException, ClassNotFoundException {
+        return MessageSerializer.deserialize(codecSerialized);
+    }
+
+    static Message createMessage(BenchmarkFixtures fixtures, String name) throws CryptoException {
+        switch (name) {
+            case "AddDataMessage":
+                return new AddDataMessage(fixtures.protectedData);
+            case "RemoveMailboxDataMessage":
+                KeyPair receiverKeyPair = Sig.generateKeyPair();
+                ExpirableMailboxPayload payload = new ExpirableMailboxPayload(fixtures.sealedAndSignedMessage,
+                        fixtures.signatureKeyPair.getPublic(), receiverKeyPair.getPublic());
+                return new RemoveMailboxDataMessage(new ProtectedMailboxData(payload, payload.getTTL(),
+                        receiverKeyPair.getPublic(), 1, new byte[46], receiverKeyPair.getPublic()));
+            case "GetPeersResponse":
+                HashSet<ReportedPeer> reportedPeers = new HashSet<>();
+                for (int i = 0; i < NUM_PEERS; i++) {
+                    reportedPeers.add(new ReportedPeer(new NodeAddress("peer" + i + "xyzabcdefgh.onion", 8000 + i), new Date()));
+                }
+                return new GetPeersResponse(reportedPeers);
+            case "DataResponse":
+                HashSet<ProtectedData> set = new HashSet<>();
+                for (int i = 0; i < NUM_OFFERS; i++) {
+                    set.add(BenchmarkFixtures.createProtectedData(BenchmarkFixtures.createOffer(fixtures.pubKeyRing),
+                            fixtures.signatureKeyPair, 0));
+                }
+                return new DataResponse(set);
+            case "SealedAndSignedMessage":
+                return fixtures.sealedAndSignedMessage;
+            default:
+                throw new IllegalArgumentException("Unknown message type " + name);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.bitsquare.benchmarks;
+
+import io.bitsquare.common.crypto.CryptoException;
+import io.bitsquare.common.crypto.Hash;
+import io.bitsquare.common.crypto.Sig;
+import io.bitsquare.p2p.network.serialization.MessageSerializer;
+import io.bitsquare.p2p.storage.data.DataAndSeqNr;
+import io.bitsquare.p2p.storage.data.PayloadEncoding;
+import io.bitsquare.p2p.storage.data.ProtectedData;
+import io.bitsquare.p2p.storage.messages.AddDataMessage;
+import io.bitsquare.p2p.storage.messages.RefreshTTLMessage;
+import io.bitsquare.trade.offer.Offer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the republish of the open offers of a market with full AddDataMessages and with RefreshTTLMessages.
+ * The bytes per hour on one peer connection for NUM_OFFERS offers are printed at setup, the benchmarks measure the
+ * encoding of one republish round.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class OfferRefreshBenchmark {
+    private static final int NUM_OFFERS = 1000;
+    // Same as OpenOfferManager
+    private static final long REPUBLISH_PERIOD = (long) (Offer.TTL * 0.8);
+    private static final int FULL_REPUBLISH_INTERVAL = 4;
+
+    private final List<AddDataMessage> addDataMessages = new ArrayList<>();
+    private final List<RefreshTTLMessage> refreshTTLMessages = new ArrayList<>();
+
+    @Setup
+    public void setup() throws CryptoException, IOException {
+        BenchmarkFixtures fixtures = new BenchmarkFixtures();
+        for (int i = 0; i < NUM_OFFERS; i++) {
+            Offer offer = BenchmarkFixtures.createOffer(fixtures.pubKeyRing);
+            ProtectedData protectedData = BenchmarkFixtures.createProtectedData(offer, fixtures.signatureKeyPair, 1);
+            addDataMessages.add(new AddDataMessage(protectedData));
+            byte[] signature = Sig.sign(fixtures.signatureKeyPair.getPrivate(), Hash.getHash(new DataAndSeqNr(offer, 2)));
+            refreshTTLMessages.add(new RefreshTTLMessage(PayloadEncoding.getHash(offer), 2, signature));
+        }
+
+        long addRoundBytes = encodeAddDataMessages();
+        long refreshRoundBytes = encodeRefreshTTLMessages();
+        double roundsPerHour = TimeUnit.HOURS.toMillis(1) / (double) REPUBLISH_PERIOD;
+        long bytesPerHourBefore = (long) (roundsPerHour * addRoundBytes);
+        long bytesPerHourAfter = (long) (roundsPerHour / FULL_REPUBLISH_INTERVAL * addRoundBytes +
+                roundsPerHour * (FULL_REPUBLISH_INTERVAL - 1) / FULL_REPUBLISH_INTERVAL * refreshRoundBytes);
+        System.out.println("\n" + NUM_OFFERS + " offers, " + roundsPerHour + " republish rounds per hour" +
+                "\nAddDataMessage round: " + addRoundBytes + " bytes, RefreshTTLMessage round: " + refreshRoundBytes + " bytes" +
+                "\nBytes per hour per connection: full republish=" + bytesPerHourBefore +
+                ", refresh with full republish every " + FULL_REPUBLISH_INTERVAL + " rounds=" + bytesPerHourAfter);
+    }
+
+    @Benchmark
+    public long encodeAddDataMessages() throws IOException {
+        long bytes = 0;
+        for (AddDataMessage message : addDataMessages) {
+            bytes += MessageSerializer.serialize(message).length;
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    public long encodeRefreshTTLMessages() throws IOException {
+        long bytes = 0;
+        for (RefreshTTLMessage message : refreshTTLMessages) {
+            bytes += MessageSerializer.serialize(message).length;
+        }
+        return bytes;
+    }
+}
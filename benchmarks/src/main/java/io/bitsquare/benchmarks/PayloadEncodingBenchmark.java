@@ -0,0 +1,73 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.benchmarks;
+
+import io.bitsquare.common.crypto.CanonicalEncoder;
+import io.bitsquare.common.util.Utilities;
+import io.bitsquare.p2p.storage.data.PayloadEncoding;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the canonical payload encoding with Java serialisation for a typical offer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PayloadEncodingBenchmark {
+    private BenchmarkFixtures fixtures;
+
+    @Setup
+    public void setup() {
+        fixtures = new BenchmarkFixtures();
+    }
+
+    @Benchmark
+    public byte[] encodeOfferJavaSerialization() {
+        return Utilities.serialize(fixtures.offer);
+    }
+
+    @Benchmark
+    public byte[] encodeOfferCanonical() {
+        return CanonicalEncoder.encode(fixtures.offer);
+    }
+
+    @Benchmark
+    public byte[] hashOfferLegacy() {
+        return PayloadEncoding.getHash(fixtures.offer, PayloadEncoding.LEGACY);
+    }
+
+    @Benchmark
+    public byte[] hashOfferCanonical() {
+        return PayloadEncoding.getHash(fixtures.offer, PayloadEncoding.CANONICAL);
+    }
+
+    @Benchmark
+    public byte[] hashOfDataAndSeqNrLegacy() {
+        return PayloadEncoding.getHashOfDataAndSeqNr(fixtures.offer, 1, PayloadEncoding.LEGACY);
+    }
+
+    @Benchmark
+    public byte[] hashOfDataAndSeqNrCanonical() {
+        return PayloadEncoding.getHashOfDataAndSeqNr(fixtures.offer, 1, PayloadEncoding.CANONICAL);
+    }
+}
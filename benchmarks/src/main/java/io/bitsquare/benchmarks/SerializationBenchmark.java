@@ -0,0 +1,78 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.benchmarks;
+
+import io.bitsquare.common.ByteArrayUtils;
+import io.bitsquare.common.util.Utilities;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SerializationBenchmark {
+    @Param({"Offer", "ProtectedData", "SealedAndSignedMessage"})
+    public String fixture;
+
+    private Serializable object;
+    private byte[] objectAsBytes;
+
+    @Setup
+    public void setup() {
+        object = getFixture(new BenchmarkFixtures(), fixture);
+        objectAsBytes = Utilities.serialize(object);
+    }
+
+    @Benchmark
+    public byte[] serialize() {
+        return Utilities.serialize(object);
+    }
+
+    @Benchmark
+    public Serializable deserialize() {
+        return Utilities.deserialize(objectAsBytes);
+    }
+
+    @Benchmark
+    public byte[] objectToByteArray() {
+        return ByteArrayUtils.objectToByteArray(object);
+    }
+
+    @Benchmark
+    public Object byteArrayToObject() {
+        return ByteArrayUtils.byteArrayToObject(objectAsBytes);
+    }
+
+    static Serializable getFixture(BenchmarkFixtures fixtures, String name) {
+        switch (name) {
+            case "Offer":
+                return fixtures.offer;
+            case "ProtectedData":
+                return fixtures.protectedData;
+            case "SealedAndSignedMessage":
+                return fixtures.sealedAndSignedMessage;
+            default:
+                throw new IllegalArgumentException("Unknown fixture " + name);
+        }
+    }
+}
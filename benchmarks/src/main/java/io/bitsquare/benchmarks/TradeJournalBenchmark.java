@@ -0,0 +1,115 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.bitsquare.benchmarks;
+
+import com.google.common.io.Files;
+import io.bitsquare.storage.FileManager;
+import io.bitsquare.storage.JournalFile;
+import io.bitsquare.trade.BuyerAsOffererTrade;
+import io.bitsquare.trade.Trade;
+import org.bouncycastle.util.encoders.Hex;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of persisting one trade step with N pending trades: full snapshot of the list (what Storage did for each
+ * task of the trade protocol) versus appending the changed trade to the journal.
+ * Both write to disk with fsync. The bytes written per step are printed at setup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TradeJournalBenchmark {
+    // Typical size of the contract json of a SEPA trade
+    private static final int CONTRACT_SIZE = 3000;
+    private static final long MAX_JOURNAL_SIZE = 1024 * 1024;
+
+    @Param({"1", "5", "20"})
+    public int numTrades;
+
+    private File dir;
+    private ArrayList<Trade> trades;
+    private Trade changedTrade;
+    private FileManager<ArrayList<Trade>> fileManager;
+    private JournalFile journal;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkFixtures fixtures = new BenchmarkFixtures();
+        trades = new ArrayList<>();
+        for (int i = 0; i < numTrades; i++) {
+            trades.add(createTrade(fixtures));
+        }
+        changedTrade = trades.get(0);
+
+        dir = Files.createTempDir();
+        File snapshotFile = new File(dir, "PendingTrades");
+        fileManager = new FileManager<>(dir, snapshotFile, 0);
+        journal = new JournalFile(new File(dir, "PendingTrades.journal"), snapshotFile);
+
+        fileManager.saveNow(trades);
+        long snapshotBytes = snapshotFile.length();
+        long journalBytes = journal.append(Collections.singletonMap(changedTrade.getId(), changedTrade));
+        System.out.println("\n" + numTrades + " trades: snapshot=" + snapshotBytes + " bytes, journal record=" +
+                journalBytes + " bytes per trade step");
+    }
+
+    @TearDown
+    public void tearDown() {
+        fileManager.shutDown();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Benchmark
+    public void fullSnapshot() {
+        fileManager.saveNow(trades);
+    }
+
+    @Benchmark
+    public long journalAppend() throws IOException {
+        // the compaction of FileManager would do that
+        if (journal.length() > MAX_JOURNAL_SIZE)
+            journal.reset();
+        return journal.append(Collections.singletonMap(changedTrade.getId(), changedTrade));
+    }
+
+    private static Trade createTrade(BenchmarkFixtures fixtures) {
+        Trade trade = new BuyerAsOffererTrade(BenchmarkFixtures.createOffer(fixtures.pubKeyRing), null);
+        byte[] contract = new byte[CONTRACT_SIZE / 2];
+        new Random().nextBytes(contract);
+        String contractAsHex = Hex.toHexString(contract);
+        trade.setContractAsJson(contractAsHex);
+        trade.setOffererContractSignature(contractAsHex.substring(0, 140));
+        trade.setTakerContractSignature(contractAsHex.substring(140, 280));
+        return trade;
+    }
+}
@@ -9,6 +9,8 @@ public class ProgramArguments {
     public static final String TOR_DIR = "torDir";
     public static final String USE_LOCALHOST = "useLocalhost";
     public static final String DEV_TEST = "devTest";
+    public static final String STATISTICS_DUMP_FILE = "statisticsDumpFile";
+    public static final String STATISTICS_DUMP_INTERVAL = "statisticsDumpInterval";
 
 
     public static final String NAME_KEY = "node.name";
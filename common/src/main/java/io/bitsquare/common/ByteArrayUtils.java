@@ -17,6 +17,7 @@
 
 package io.bitsquare.common;
 
+import io.bitsquare.common.util.SerializationBuffers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -53,13 +54,16 @@ public class ByteArrayUtils {
     }
 
     public static byte[] objectToByteArray(Object object) {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        Class<?> type = object != null ? object.getClass() : null;
+        SerializationBuffers.PooledByteArrayOutputStream bos = SerializationBuffers.getOutputStream(type);
         ObjectOutput out = null;
         byte[] result = null;
         try {
             out = new ObjectOutputStream(bos);
             out.writeObject(object);
+            out.flush();
             result = bos.toByteArray();
+            SerializationBuffers.setSizeHint(type, result.length);
         } catch (IOException e) {
             e.printStackTrace();
         } finally {
@@ -70,11 +74,7 @@ public class ByteArrayUtils {
             } catch (IOException ex) {
                 // ignore close exception
             }
-            try {
-                bos.close();
-            } catch (IOException ex) {
-                // ignore close exception
-            }
+            bos.release();
         }
         return result;
     }
@@ -0,0 +1,29 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.common.crypto;
+
+/**
+ * Implemented by objects which get hashed or signed and need a deterministic binary representation.
+ * Unlike Java serialisation the encoding does not contain class descriptors and only covers the fields
+ * written by the implementation, so adding transient or local fields does not change the hash.
+ * <p>
+ * Implementations must write all fields relevant for equality in a fixed order and must never change that order.
+ */
+public interface CanonicalEncodable {
+    void encode(CanonicalEncoder encoder);
+}
@@ -0,0 +1,136 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.common.crypto;
+
+import com.google.common.base.Charsets;
+
+import javax.annotation.Nullable;
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes a compact and deterministic binary encoding used as input for hashes and signatures.
+ * Numbers are written big-endian with fixed length, byte arrays, strings and lists are prefixed with their
+ * length (-1 for null). Strings are UTF-8 encoded and public keys are written in their X.509 encoded form.
+ */
+public final class CanonicalEncoder {
+    private static final int NULL_LENGTH = -1;
+
+    private byte[] buffer;
+    private int position;
+
+    public CanonicalEncoder() {
+        this(256);
+    }
+
+    public CanonicalEncoder(int initialCapacity) {
+        buffer = new byte[initialCapacity];
+    }
+
+    public static byte[] encode(CanonicalEncodable encodable) {
+        CanonicalEncoder encoder = new CanonicalEncoder();
+        encodable.encode(encoder);
+        return encoder.toByteArray();
+    }
+
+    public CanonicalEncoder writeByte(int value) {
+        ensureCapacity(1);
+        buffer[position++] = (byte) value;
+        return this;
+    }
+
+    public CanonicalEncoder writeBoolean(boolean value) {
+        return writeByte(value ? 1 : 0);
+    }
+
+    public CanonicalEncoder writeInt(int value) {
+        ensureCapacity(4);
+        buffer[position++] = (byte) (value >>> 24);
+        buffer[position++] = (byte) (value >>> 16);
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) value;
+        return this;
+    }
+
+    public CanonicalEncoder writeLong(long value) {
+        writeInt((int) (value >>> 32));
+        return writeInt((int) value);
+    }
+
+    public CanonicalEncoder writeBytes(@Nullable byte[] value) {
+        if (value == null)
+            return writeInt(NULL_LENGTH);
+
+        writeInt(value.length);
+        ensureCapacity(value.length);
+        System.arraycopy(value, 0, buffer, position, value.length);
+        position += value.length;
+        return this;
+    }
+
+    public CanonicalEncoder writeString(@Nullable String value) {
+        return writeBytes(value != null ? value.getBytes(Charsets.UTF_8) : null);
+    }
+
+    public CanonicalEncoder writeStringList(@Nullable List<String> value) {
+        if (value == null)
+            return writeInt(NULL_LENGTH);
+
+        writeInt(value.size());
+        for (String element : value)
+            writeString(element);
+        return this;
+    }
+
+    public CanonicalEncoder writePublicKey(@Nullable PublicKey value) {
+        return writeBytes(value != null ? value.getEncoded() : null);
+    }
+
+    public CanonicalEncoder write(@Nullable CanonicalEncodable value) {
+        if (value == null)
+            return writeBoolean(false);
+
+        writeBoolean(true);
+        value.encode(this);
+        return this;
+    }
+
+    public CanonicalEncoder writeList(@Nullable List<? extends CanonicalEncodable> value) {
+        if (value == null)
+            return writeInt(NULL_LENGTH);
+
+        writeInt(value.size());
+        for (CanonicalEncodable element : value)
+            write(element);
+        return this;
+    }
+
+    public int size() {
+        return position;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    private void ensureCapacity(int length) {
+        if (position + length > buffer.length)
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, position + length));
+    }
+}
@@ -35,7 +35,7 @@ import java.security.spec.X509EncodedKeySpec;
  * Same as KeyRing but with public keys only.
  * Used to send public keys over the wire to other peer.
  */
-public class PubKeyRing implements Serializable {
+public class PubKeyRing implements Serializable, CanonicalEncodable {
     // That object is sent over the wire, so we need to take care of version compatibility.
     private static final long serialVersionUID = Version.NETWORK_PROTOCOL_VERSION;
 
@@ -68,6 +68,12 @@ public class PubKeyRing implements Serializable {
         }
     }
 
+    @Override
+    public void encode(CanonicalEncoder encoder) {
+        encoder.writeBytes(signaturePubKeyBytes)
+                .writeBytes(encryptionPubKeyBytes);
+    }
+
     public PublicKey getSignaturePubKey() {
         return signaturePubKey;
     }
@@ -23,7 +23,7 @@ import java.io.Serializable;
 import java.security.PublicKey;
 import java.util.Arrays;
 
-public final class SealedAndSigned implements Serializable {
+public final class SealedAndSigned implements Serializable, CanonicalEncodable {
     // That object is sent over the wire, so we need to take care of version compatibility.
     private static final long serialVersionUID = Version.NETWORK_PROTOCOL_VERSION;
 
@@ -39,6 +39,14 @@ public final class SealedAndSigned implements Serializable {
         this.sigPublicKey = sigPublicKey;
     }
 
+    @Override
+    public void encode(CanonicalEncoder encoder) {
+        encoder.writeBytes(encryptedSecretKey)
+                .writeBytes(encryptedPayloadWithHmac)
+                .writeBytes(signature)
+                .writePublicKey(sigPublicKey);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -53,7 +53,7 @@ public abstract class Task<T extends Model> {
     }
 
     protected void complete() {
-        taskHandler.handleComplete();
+        taskHandler.handleComplete(this);
     }
 
     protected void failed(String message) {
@@ -68,7 +68,12 @@ public abstract class Task<T extends Model> {
     }
 
     protected void failed() {
-        taskHandler.handleErrorMessage(errorMessage);
+        taskHandler.handleErrorMessage(this, errorMessage);
+    }
+
+    // Called by the task runner on the UserThread when the failure gets reported, before its error handler is called.
+    // Parallel tasks call failed() on a worker thread, so changes of the model at a failure are done here.
+    protected void onFailed(String errorMessage) {
     }
 
 }
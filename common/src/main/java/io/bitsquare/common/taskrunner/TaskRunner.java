@@ -17,27 +17,63 @@
 
 package io.bitsquare.common.taskrunner;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.bitsquare.common.UserThread;
 import io.bitsquare.common.handlers.ErrorMessageHandler;
 import io.bitsquare.common.handlers.ResultHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TaskRunner<T extends Model> {
     private static final Logger log = LoggerFactory.getLogger(TaskRunner.class);
 
-    private final Queue<Class<? extends Task>> tasks = new LinkedBlockingQueue<>();
+    // Constructor handles are looked up once per task class instead of using reflection for each task execution
+    private static final Map<Class<? extends Task>, MethodHandle> constructorsByTask = new ConcurrentHashMap<>();
+    private static final MethodType FACTORY_TYPE = MethodType.methodType(Task.class, TaskRunner.class, Model.class);
+
+    // Runs the tasks of parallel groups. Threads are created on demand and are daemon threads.
+    private static final ExecutorService workerPool = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()),
+            new ThreadFactoryBuilder().setNameFormat("TaskRunner-%d").setDaemon(true).build());
+
+    // A step is a single task or a group of tasks which run in parallel on the worker pool
+    private static class Step {
+        private final List<Class<? extends Task>> tasks;
+        private final boolean parallel;
+
+        private Step(List<Class<? extends Task>> tasks, boolean parallel) {
+            this.tasks = tasks;
+            this.parallel = parallel;
+        }
+    }
+
+    private final Queue<Step> steps = new LinkedBlockingQueue<>();
     private final T sharedModel;
     private final Class<T> sharedModelClass;
     private final ResultHandler resultHandler;
     private final ErrorMessageHandler errorMessageHandler;
-    private boolean failed = false;
-    private boolean isCanceled;
+    private volatile boolean failed = false;
+    private volatile boolean isCanceled;
 
     private Class<? extends Task> currentTask;
+    private long currentTaskStartTime;
+    // Start times of the running tasks of the current parallel group
+    private final Map<Task, Long> parallelTasks = new ConcurrentHashMap<>();
+    private final AtomicInteger numPendingParallelTasks = new AtomicInteger();
+    // Statistics are tagged with the class of the shared model as it identifies the protocol
+    private final String protocolName;
 
 
     public TaskRunner(T sharedModel, ResultHandler resultHandler, ErrorMessageHandler errorMessageHandler) {
@@ -49,10 +85,22 @@ public class TaskRunner<T extends Model> {
         this.resultHandler = resultHandler;
         this.errorMessageHandler = errorMessageHandler;
         this.sharedModelClass = sharedModelClass;
+        this.protocolName = sharedModel.getClass().getSimpleName();
     }
 
     public final void addTasks(Class<? extends Task<T>>... items) {
-        tasks.addAll(Arrays.asList(items));
+        Arrays.asList(items).stream()
+                .forEach(task -> steps.add(new Step(Collections.singletonList(task), false)));
+    }
+
+    /**
+     * Adds a group of tasks which are executed concurrently on a worker thread. The next step starts after all tasks
+     * of the group have completed. Completion and failures are handled on the UserThread, the first failure of the
+     * group fails the task runner as a failed sequential task does. Only that task gets Task.onFailed called.
+     * The tasks must not depend on each other and must not modify the shared model, as they run on different threads.
+     */
+    public final void addParallelTasks(Class<? extends Task<T>>... items) {
+        steps.add(new Step(Arrays.asList(items), true));
     }
 
     public void run() {
@@ -61,18 +109,57 @@ public class TaskRunner<T extends Model> {
 
     private void next() {
         if (!failed && !isCanceled) {
-            if (tasks.size() > 0) {
+            Step step = steps.poll();
+            if (step != null) {
+                if (step.parallel)
+                    runParallel(step.tasks);
+                else
+                    runSequential(step.tasks.get(0));
+            } else {
+                resultHandler.handleResult();
+            }
+        }
+    }
+
+    private void runSequential(Class<? extends Task> taskClass) {
+        try {
+            currentTask = taskClass;
+            if (log.isTraceEnabled())
+                log.trace("Run task: " + currentTask.getSimpleName());
+            currentTaskStartTime = System.currentTimeMillis();
+            createTask(currentTask).run();
+        } catch (Throwable throwable) {
+            throwable.printStackTrace();
+            handleErrorMessage("Error at taskRunner: " + throwable.getMessage());
+        }
+    }
+
+    private void runParallel(List<Class<? extends Task>> taskClasses) {
+        currentTask = taskClasses.get(0);
+        List<Task> tasks = new ArrayList<>();
+        try {
+            for (Class<? extends Task> taskClass : taskClasses) {
+                tasks.add(createTask(taskClass));
+            }
+        } catch (Throwable throwable) {
+            throwable.printStackTrace();
+            handleErrorMessage("Error at taskRunner: " + throwable.getMessage());
+            return;
+        }
+
+        numPendingParallelTasks.set(tasks.size());
+        for (Task task : tasks) {
+            if (log.isTraceEnabled())
+                log.trace("Run parallel task: " + task.getClass().getSimpleName());
+            parallelTasks.put(task, System.currentTimeMillis());
+            workerPool.execute(() -> {
                 try {
-                    currentTask = tasks.poll();
-                    log.trace("Run task: " + currentTask.getSimpleName());
-                    currentTask.getDeclaredConstructor(TaskRunner.class, sharedModelClass).newInstance(this, sharedModel).run();
+                    task.run();
                 } catch (Throwable throwable) {
                     throwable.printStackTrace();
-                    handleErrorMessage("Error at taskRunner: " + throwable.getMessage());
+                    handleErrorMessage(task, "Error at taskRunner: " + throwable.getMessage());
                 }
-            } else {
-                resultHandler.handleResult();
-            }
+            });
         }
     }
 
@@ -80,16 +167,78 @@ public class TaskRunner<T extends Model> {
         isCanceled = true;
     }
 
-    void handleComplete() {
-        log.trace("Task completed: " + currentTask.getSimpleName());
+    void handleComplete(Task task) {
+        if (parallelTasks.containsKey(task))
+            UserThread.execute(() -> onParallelTaskComplete(task));
+        else
+            handleComplete();
+    }
+
+    void handleErrorMessage(Task task, String errorMessage) {
+        if (parallelTasks.containsKey(task))
+            UserThread.execute(() -> onParallelTaskFailed(task, errorMessage));
+        else {
+            task.onFailed(errorMessage);
+            handleErrorMessage(errorMessage);
+        }
+    }
+
+    private void handleComplete() {
+        if (log.isTraceEnabled())
+            log.trace("Task completed: " + currentTask.getSimpleName());
+        TaskStatistics.recordCompleted(protocolName, currentTask, System.currentTimeMillis() - currentTaskStartTime);
         sharedModel.persist();
         next();
     }
 
-    void handleErrorMessage(String errorMessage) {
+    private void handleErrorMessage(String errorMessage) {
         log.error("Task failed: " + currentTask.getSimpleName());
         log.error("errorMessage: " + errorMessage);
+        TaskStatistics.recordFailed(protocolName, currentTask);
         failed = true;
         errorMessageHandler.handleErrorMessage(errorMessage);
     }
+
+    private void onParallelTaskComplete(Task task) {
+        Long startTime = parallelTasks.remove(task);
+        if (startTime == null)
+            return;
+
+        if (log.isTraceEnabled())
+            log.trace("Parallel task completed: " + task.getClass().getSimpleName());
+        TaskStatistics.recordCompleted(protocolName, task.getClass(), System.currentTimeMillis() - startTime);
+        if (!failed && !isCanceled) {
+            sharedModel.persist();
+            if (numPendingParallelTasks.decrementAndGet() == 0)
+                next();
+        }
+    }
+
+    private void onParallelTaskFailed(Task task, String errorMessage) {
+        if (parallelTasks.remove(task) == null)
+            return;
+
+        TaskStatistics.recordFailed(protocolName, task.getClass());
+        // Only the first failure of a group is reported, the results of the other tasks are ignored
+        synchronized (this) {
+            if (failed)
+                return;
+            failed = true;
+        }
+        log.error("Parallel task failed: " + task.getClass().getSimpleName());
+        log.error("errorMessage: " + errorMessage);
+        task.onFailed(errorMessage);
+        errorMessageHandler.handleErrorMessage(errorMessage);
+    }
+
+    private Task createTask(Class<? extends Task> taskClass) throws Throwable {
+        MethodHandle constructor = constructorsByTask.get(taskClass);
+        if (constructor == null) {
+            constructor = MethodHandles.publicLookup()
+                    .findConstructor(taskClass, MethodType.methodType(void.class, TaskRunner.class, sharedModelClass))
+                    .asType(FACTORY_TYPE);
+            constructorsByTask.put(taskClass, constructor);
+        }
+        return (Task) constructor.invokeExact(this, (Model) sharedModel);
+    }
 }
@@ -0,0 +1,198 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.common.taskrunner;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Latency histograms of all executed tasks, tagged by the protocol (the class of the shared model) and the task.
+ * The latency of a task is the time from its start until it completes, so it includes the time the task waits for
+ * the network or the wallet. The report shows which task dominates the time of a protocol.
+ */
+public class TaskStatistics {
+    private static final Logger log = LoggerFactory.getLogger(TaskStatistics.class);
+
+    // Upper bounds of the latency buckets in ms, the last bucket takes all higher values
+    private static final long[] BUCKET_BOUNDS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10_000,
+            30_000, 60_000, Long.MAX_VALUE};
+
+    private static final Map<String, TaskStats> statsByKey = new ConcurrentHashMap<>();
+
+    public static class TaskStats {
+        private final String protocol;
+        private final String task;
+        private final long[] buckets = new long[BUCKET_BOUNDS.length];
+        private long count;
+        private long numFailures;
+        private long totalTime;
+        private long maxTime;
+
+        private TaskStats(String protocol, String task) {
+            this.protocol = protocol;
+            this.task = task;
+        }
+
+        private TaskStats(TaskStats other) {
+            synchronized (other) {
+                this.protocol = other.protocol;
+                this.task = other.task;
+                System.arraycopy(other.buckets, 0, this.buckets, 0, buckets.length);
+                this.count = other.count;
+                this.numFailures = other.numFailures;
+                this.totalTime = other.totalTime;
+                this.maxTime = other.maxTime;
+            }
+        }
+
+        private synchronized void add(long time) {
+            int index = 0;
+            while (time > BUCKET_BOUNDS[index])
+                index++;
+            buckets[index]++;
+            count++;
+            totalTime += time;
+            maxTime = Math.max(maxTime, time);
+        }
+
+        private synchronized void addFailure() {
+            numFailures++;
+        }
+
+        public String getProtocol() {
+            return protocol;
+        }
+
+        public String getTask() {
+            return task;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getNumFailures() {
+            return numFailures;
+        }
+
+        public long getTotalTime() {
+            return totalTime;
+        }
+
+        public long getAverageTime() {
+            return count > 0 ? totalTime / count : 0;
+        }
+
+        public long getMaxTime() {
+            return maxTime;
+        }
+
+        /**
+         * @return The upper bound of the bucket containing the percentile, limited by the max. time.
+         */
+        public long getPercentile(double percentile) {
+            long rank = (long) Math.ceil(percentile / 100 * count);
+            long sum = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                sum += buckets[i];
+                if (sum >= rank && sum > 0)
+                    return Math.min(BUCKET_BOUNDS[i], maxTime);
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return task +
+                    ": count=" + count +
+                    ", total=" + totalTime + "ms" +
+                    ", avg=" + getAverageTime() + "ms" +
+                    ", p50=" + getPercentile(50) + "ms" +
+                    ", p95=" + getPercentile(95) + "ms" +
+                    ", max=" + maxTime + "ms" +
+                    ", failures=" + numFailures;
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @return Copy of the stats of all tasks, the task with the highest total time first.
+     */
+    public static List<TaskStats> getStats() {
+        return statsByKey.values().stream()
+                .map(TaskStats::new)
+                .sorted(Comparator.comparing(TaskStats::getTotalTime).reversed())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return Report grouped by protocol with the share of each task of the total time of its protocol.
+     */
+    public static String getReport() {
+        Map<String, List<TaskStats>> statsByProtocol = getStats().stream()
+                .collect(Collectors.groupingBy(TaskStats::getProtocol, TreeMap::new, Collectors.toList()));
+        StringBuilder sb = new StringBuilder("Task statistics:");
+        statsByProtocol.forEach((protocol, list) -> {
+            long protocolTime = list.stream().mapToLong(TaskStats::getTotalTime).sum();
+            sb.append("\n").append(protocol).append(" (total ").append(protocolTime).append("ms)");
+            list.stream().forEach(stats -> sb.append("\n    ")
+                    .append(String.format("%5.1f%% ", protocolTime > 0 ? 100d * stats.getTotalTime() / protocolTime : 0d))
+                    .append(stats));
+        });
+        return sb.toString();
+    }
+
+    public static void logReport() {
+        log.info(getReport());
+    }
+
+    public static void clear() {
+        statsByKey.clear();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Package scope
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    static void recordCompleted(String protocol, Class<? extends Task> task, long time) {
+        getTaskStats(protocol, task).add(time);
+    }
+
+    static void recordFailed(String protocol, Class<? extends Task> task) {
+        getTaskStats(protocol, task).addFailure();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static TaskStats getTaskStats(String protocol, Class<? extends Task> task) {
+        return statsByKey.computeIfAbsent(protocol + "." + task.getName(),
+                key -> new TaskStats(protocol, task.getSimpleName()));
+    }
+}
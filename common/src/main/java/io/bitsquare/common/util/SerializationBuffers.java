@@ -0,0 +1,159 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.common.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Thread confined buffers for serialisation and compression.
+ * Each thread keeps one output stream, one scratch array and one Deflater/Inflater which get reused for every call,
+ * so hashing and sending messages do not allocate and grow new buffers each time.
+ * <p>
+ * The last seen serialized size per class is kept as size hint, so the output stream is sized up front and does not
+ * need to grow by repeated array copies.
+ * <p>
+ * Buffers are not reentrant. If a buffer is already in use on the current thread (e.g. serialize called from inside a
+ * writeObject method) a fresh one is returned instead.
+ */
+public class SerializationBuffers {
+    private static final Logger log = LoggerFactory.getLogger(SerializationBuffers.class);
+
+    public static final int SCRATCH_BUFFER_SIZE = 8192;
+    // We don't keep larger buffers to not hold memory after serialising a big object (e.g. a DataResponse)
+    private static final int MAX_RETAINED_SIZE = 1024 * 1024;
+    private static final int DEFAULT_SIZE = 1024;
+
+    private static final Map<Class<?>, Integer> sizeHints = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<PooledByteArrayOutputStream> outputStreams =
+            ThreadLocal.withInitial(() -> new PooledByteArrayOutputStream(DEFAULT_SIZE, true));
+    private static final ThreadLocal<byte[]> scratchBuffers = ThreadLocal.withInitial(() -> new byte[SCRATCH_BUFFER_SIZE]);
+    private static final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(() -> {
+        Deflater deflater = new Deflater();
+        deflater.setLevel(Deflater.BEST_SPEED);
+        return deflater;
+    });
+    private static final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(Inflater::new);
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Size hints
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public static int getSizeHint(Class<?> type) {
+        Integer sizeHint = type != null ? sizeHints.get(type) : null;
+        return sizeHint != null ? sizeHint : DEFAULT_SIZE;
+    }
+
+    public static void setSizeHint(Class<?> type, int size) {
+        if (type != null)
+            sizeHints.put(type, size);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Buffers
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @param type Class of the object to be written. Used for the size hint.
+     * @return A reset output stream. Must be released with {@link PooledByteArrayOutputStream#release()} after use.
+     */
+    public static PooledByteArrayOutputStream getOutputStream(Class<?> type) {
+        return getOutputStream(getSizeHint(type));
+    }
+
+    public static PooledByteArrayOutputStream getOutputStream(int expectedSize) {
+        PooledByteArrayOutputStream outputStream = outputStreams.get();
+        if (outputStream.inUse) {
+            log.trace("Pooled output stream is already in use. We create a new one.");
+            return new PooledByteArrayOutputStream(expectedSize, false);
+        }
+
+        outputStream.inUse = true;
+        outputStream.reset();
+        outputStream.ensureCapacity(expectedSize);
+        return outputStream;
+    }
+
+    /**
+     * @return A scratch array of SCRATCH_BUFFER_SIZE. Only use it within the same method and don't pass it to other code
+     * which might use the scratch buffer as well.
+     */
+    public static byte[] getScratchBuffer() {
+        return scratchBuffers.get();
+    }
+
+    /**
+     * @return A reset Deflater using BEST_SPEED. Don't call end() on it.
+     */
+    public static Deflater getDeflater() {
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        return deflater;
+    }
+
+    /**
+     * @return A reset Inflater. Don't call end() on it.
+     */
+    public static Inflater getInflater() {
+        Inflater inflater = inflaters.get();
+        inflater.reset();
+        return inflater;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // PooledByteArrayOutputStream
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public static class PooledByteArrayOutputStream extends ByteArrayOutputStream {
+        private final boolean pooled;
+        private boolean inUse;
+
+        private PooledByteArrayOutputStream(int size, boolean pooled) {
+            super(size);
+            this.pooled = pooled;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity > buf.length)
+                buf = Arrays.copyOf(buf, capacity);
+        }
+
+        /**
+         * Returns the stream to the pool. The content must not be accessed anymore after that call.
+         */
+        public void release() {
+            if (pooled) {
+                if (buf.length > MAX_RETAINED_SIZE)
+                    buf = new byte[DEFAULT_SIZE];
+                reset();
+                inUse = false;
+            }
+        }
+    }
+}
@@ -259,14 +259,16 @@ public class Utilities {
     }
 
     public static byte[] serialize(Serializable object) {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        Class<?> type = object != null ? object.getClass() : null;
+        SerializationBuffers.PooledByteArrayOutputStream bos = SerializationBuffers.getOutputStream(type);
         ObjectOutput out = null;
         byte[] result = null;
         try {
             out = new ObjectOutputStream(bos);
             out.writeObject(object);
             out.flush();
-            result = bos.toByteArray().clone();
+            result = bos.toByteArray();
+            SerializationBuffers.setSizeHint(type, result.length);
         } catch (IOException e) {
             e.printStackTrace();
         } finally {
@@ -276,10 +278,7 @@ public class Utilities {
                 }
             } catch (IOException ignore) {
             }
-            try {
-                bos.close();
-            } catch (IOException ignore) {
-            }
+            bos.release();
         }
         return result;
     }
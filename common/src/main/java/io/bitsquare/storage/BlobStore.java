@@ -0,0 +1,246 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.storage;
+
+import io.bitsquare.common.crypto.Hash;
+import org.bouncycastle.util.encoders.Hex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Stores binary data (e.g. attachments) content addressed in a directory. The file name is the hex encoded sha256 hash
+ * of the content, so the same data is stored only once and a blob is never changed after it has been written.
+ * Objects persisted with Storage keep only the hash and load the data on demand.
+ * Blobs added with putLater are written on the persistence thread and served from memory until then.
+ * <p>
+ * Unreferenced blobs are not deleted right away but moved to a quarantine directory. They are restored if they get
+ * referenced again (e.g. after the referencing object has been restored from an older backup) and deleted only after
+ * a grace period.
+ */
+public class BlobStore {
+    private static final Logger log = LoggerFactory.getLogger(BlobStore.class);
+
+    private static final String QUARANTINE_DIR_NAME = "quarantine";
+
+    private final File dir;
+    private final File quarantineDir;
+    // Blobs queued up with putLater which are not written yet, by hex encoded hash
+    private final Map<String, byte[]> pendingBlobs = new ConcurrentHashMap<>();
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public BlobStore(File dir) {
+        this.dir = dir;
+        this.quarantineDir = new File(dir, QUARANTINE_DIR_NAME);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Writes the data if it is not stored already. Returns after the data has been synced to disk.
+     *
+     * @return The hash to be used for get.
+     */
+    public synchronized byte[] put(byte[] data) throws IOException {
+        byte[] hash = Hash.getHash(data);
+        File file = getFile(hash);
+        if (file.exists() || restoreFromQuarantine(hash))
+            return hash;
+
+        if (!dir.exists() && !dir.mkdirs())
+            throw new IOException("Could not create blob dir " + dir);
+
+        File tempFile = File.createTempFile("temp", null, dir);
+        try {
+            try (FileOutputStream fileOutputStream = new FileOutputStream(tempFile)) {
+                fileOutputStream.write(data);
+                fileOutputStream.flush();
+                fileOutputStream.getFD().sync();
+            }
+            if (!tempFile.renameTo(file))
+                throw new IOException("Failed to rename " + tempFile + " to " + file);
+            log.trace("Stored blob {} with {} bytes", file.getName(), data.length);
+        } finally {
+            if (tempFile.exists() && !tempFile.delete())
+                log.error("Cannot delete temp file " + tempFile);
+        }
+        return hash;
+    }
+
+    /**
+     * Queues up the write on the persistence thread. The blob is written before saves queued up afterwards, so an
+     * object referencing the hash is not persisted before the blob.
+     *
+     * @return The hash to be used for get.
+     */
+    public byte[] putLater(byte[] data) {
+        byte[] hash = Hash.getHash(data);
+        String key = Hex.toHexString(hash);
+        if (getFile(hash).exists() || pendingBlobs.putIfAbsent(key, data) != null)
+            return hash;
+
+        PersistenceScheduler.schedule(() -> {
+            try {
+                put(data);
+            } catch (IOException e) {
+                e.printStackTrace();
+                log.error("Error at writing blob " + key + ": " + e.getMessage());
+            } finally {
+                pendingBlobs.remove(key);
+            }
+            return null;
+        }, 0);
+        return hash;
+    }
+
+    /**
+     * @return The data or null if there is no blob for that hash or if the blob is corrupted.
+     */
+    @Nullable
+    public byte[] get(byte[] hash) {
+        byte[] pendingData = pendingBlobs.get(Hex.toHexString(hash));
+        if (pendingData != null)
+            return pendingData;
+
+        File file = getFile(hash);
+        if (!file.exists() && !restoreFromQuarantine(hash)) {
+            log.warn("Blob {} not found", file.getName());
+            return null;
+        }
+
+        try {
+            byte[] data = Files.readAllBytes(file.toPath());
+            if (!Arrays.equals(hash, Hash.getHash(data))) {
+                log.error("Blob {} is corrupted", file.getName());
+                return null;
+            }
+            return data;
+        } catch (IOException e) {
+            e.printStackTrace();
+            log.error("Error at reading blob " + file.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Blobs in quarantine are contained as well, they get restored at get
+    public boolean contains(byte[] hash) {
+        return pendingBlobs.containsKey(Hex.toHexString(hash)) || getFile(hash).exists()
+                || new File(quarantineDir, getFile(hash).getName()).exists();
+    }
+
+    /**
+     * Moves all blobs which are not in the given set to the quarantine directory and restores quarantined blobs which
+     * are in the set. Blobs which have been in quarantine longer than the grace period are deleted.
+     *
+     * @param referencedHashes  Hashes of all blobs still in use
+     * @param gracePeriodMillis Time a blob is kept in quarantine
+     * @return Number of blobs moved to quarantine
+     */
+    public synchronized int quarantineUnreferenced(Set<byte[]> referencedHashes, long gracePeriodMillis) {
+        Set<String> referencedFileNames = referencedHashes.stream().map(Hex::toHexString).collect(Collectors.toSet());
+
+        File[] quarantinedFiles = quarantineDir.listFiles();
+        if (quarantinedFiles != null) {
+            long now = System.currentTimeMillis();
+            for (File file : quarantinedFiles) {
+                if (referencedFileNames.contains(file.getName())) {
+                    restore(file);
+                } else if (now - file.lastModified() > gracePeriodMillis) {
+                    if (file.delete())
+                        log.info("Deleted blob {} after the grace period", file.getName());
+                    else
+                        log.warn("Could not delete quarantined blob " + file);
+                }
+            }
+        }
+
+        File[] files = dir.listFiles();
+        if (files == null)
+            return 0;
+
+        int quarantined = 0;
+        for (File file : files) {
+            if (file.isDirectory())
+                continue;
+
+            if (file.getName().startsWith("temp")) {
+                // Left over from an interrupted put
+                if (!file.delete())
+                    log.warn("Could not delete temp file " + file);
+            } else if (!referencedFileNames.contains(file.getName()) && !pendingBlobs.containsKey(file.getName())) {
+                if (!quarantineDir.exists() && !quarantineDir.mkdirs()) {
+                    log.error("Could not create quarantine dir " + quarantineDir);
+                    return quarantined;
+                }
+                File quarantinedFile = new File(quarantineDir, file.getName());
+                // The grace period starts when the blob gets quarantined
+                if (file.renameTo(quarantinedFile) && quarantinedFile.setLastModified(System.currentTimeMillis()))
+                    quarantined++;
+                else
+                    log.warn("Could not move unreferenced blob " + file + " to quarantine");
+            }
+        }
+        if (quarantined > 0)
+            log.info("Moved {} unreferenced blobs from {} to quarantine", quarantined, dir);
+        return quarantined;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private File getFile(byte[] hash) {
+        checkArgument(hash.length == 32, "Hash must be a sha256 hash");
+        return new File(dir, Hex.toHexString(hash));
+    }
+
+    private synchronized boolean restoreFromQuarantine(byte[] hash) {
+        File quarantinedFile = new File(quarantineDir, getFile(hash).getName());
+        return quarantinedFile.exists() && restore(quarantinedFile);
+    }
+
+    private boolean restore(File quarantinedFile) {
+        if (quarantinedFile.renameTo(new File(dir, quarantinedFile.getName()))) {
+            log.info("Restored blob {} from quarantine", quarantinedFile.getName());
+            return true;
+        } else {
+            log.warn("Could not restore blob " + quarantinedFile + " from quarantine");
+            return false;
+        }
+    }
+}
@@ -35,19 +35,19 @@
 package io.bitsquare.storage;
 
 
-import com.google.common.io.Files;
 import io.bitsquare.common.UserThread;
-import io.bitsquare.common.util.Utilities;
 import org.bitcoinj.core.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.*;
+import java.nio.file.Files;
 import java.nio.file.Paths;
-import java.util.Random;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ScheduledThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -56,17 +56,30 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * It can be useful to delay writing of a file to disk on slow devices.
  * By coalescing writes and doing serialization
  * and disk IO on a background thread performance can be improved.
+ * The writes of all instances are executed by the shared PersistenceScheduler.
  */
 public class FileManager<T> {
     private static final Logger log = LoggerFactory.getLogger(FileManager.class);
 
+    // We write a full snapshot and reset the journal if it gets larger than the last snapshot or that minimum size
+    private static final long MIN_JOURNAL_COMPACTION_SIZE = 256 * 1024;
+    // Backups after read are deferred to not slow down the startup
+    private static final long BACKUP_DELAY = 10_000;
+
     private final File dir;
     private final File storageFile;
-    private final ScheduledThreadPoolExecutor executor;
     private final AtomicBoolean savePending;
     private final long delay;
     private final Callable<Void> saveFileTask;
-    private T serializable;
+    private final Callable<Void> appendJournalTask;
+    private final AtomicBoolean appendPending;
+    // Latest not yet written change per entry key, Java serialized on the calling thread. Null values are removed entries.
+    private final Map<String, byte[]> pendingJournalEntries = new LinkedHashMap<>();
+    // Latest snapshot, set by the thread queuing up a save and read by the persistence thread
+    private volatile T serializable;
+    @Nullable
+    private JournalFile journal;
+    private long lastSnapshotSize;
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -77,15 +90,12 @@ public class FileManager<T> {
         this.dir = dir;
         this.storageFile = storageFile;
 
-        executor = Utilities.getScheduledThreadPoolExecutor("FileManager", 1, 10, 5);
-
-        // File must only be accessed from the auto-save executor from now on, to avoid simultaneous access.
+        // File must only be accessed from the persistence scheduler from now on, to avoid simultaneous access.
         savePending = new AtomicBoolean();
         this.delay = delay;
 
         saveFileTask = () -> {
-            Thread.currentThread().setName("Save-file-task-" + new Random().nextInt(10000));
-            // Runs in an auto save thread.
+            // Runs in the persistence scheduler thread.
             if (!savePending.getAndSet(false)) {
                 // Some other scheduled request already beat us to it.
                 return null;
@@ -94,16 +104,16 @@ public class FileManager<T> {
             return null;
         };
 
-        Runtime.getRuntime().addShutdownHook(new Thread() {
-            @Override
-            public void run() {
-                try {
-                    FileManager.this.shutDown();
-                } catch (Exception e) {
-                    throw new RuntimeException(e);
-                }
-            }
-        });
+        appendPending = new AtomicBoolean();
+        appendJournalTask = () -> {
+            if (!appendPending.getAndSet(false))
+                return null;
+
+            appendToJournal(drainPendingJournalEntries());
+            return null;
+        };
+
+        PersistenceScheduler.register(this);
     }
 
 
@@ -130,14 +140,52 @@ public class FileManager<T> {
 
         if (savePending.getAndSet(true))
             return;   // Already pending.
-        executor.schedule(saveFileTask, delayInMilli, TimeUnit.MILLISECONDS);
+        PersistenceScheduler.schedule(saveFileTask, delayInMilli);
+    }
+
+    /**
+     * Changes are appended to the journal with appendLater instead of writing the whole object.
+     * A full save resets the journal.
+     *
+     * @param journal      The journal file. Records have to be replayed already.
+     * @param serializable The object used for compaction.
+     */
+    public synchronized void setJournal(JournalFile journal, T serializable) {
+        this.journal = journal;
+        this.serializable = serializable;
+        lastSnapshotSize = storageFile.length();
+    }
+
+    /**
+     * Queues up an entry change for the journal. Changes of the same key get coalesced until the next write.
+     *
+     * @param key             Key of the entry
+     * @param serializedEntry The Java serialized changed entry or null if the entry was removed
+     * @param serializable    Snapshot of the whole object used if the journal gets compacted
+     */
+    public void appendLater(String key, @Nullable byte[] serializedEntry, T serializable) {
+        this.serializable = serializable;
+        synchronized (pendingJournalEntries) {
+            // remove first so the entry moves to the end and keeps the order of changes
+            pendingJournalEntries.remove(key);
+            pendingJournalEntries.put(key, serializedEntry);
+        }
+
+        if (appendPending.getAndSet(true))
+            return;   // Already pending.
+        PersistenceScheduler.schedule(appendJournalTask, delay);
     }
 
-    public synchronized T read(File file) {
+    /**
+     * @throws StorageFormat.CorruptedFileException If the file is truncated or its checksum does not match
+     */
+    public synchronized T read(File file) throws StorageFormat.CorruptedFileException {
         log.debug("read" + file);
-        try (final FileInputStream fileInputStream = new FileInputStream(file);
-             final ObjectInputStream objectInputStream = new ObjectInputStream(fileInputStream)) {
-            return (T) objectInputStream.readObject();
+        try {
+            return (T) StorageFormat.read(file);
+        } catch (StorageFormat.CorruptedFileException e) {
+            log.error("File " + file + " is corrupted: " + e.getMessage());
+            throw e;
         } catch (Throwable t) {
             log.error("Exception at read: " + t.getMessage());
             return null;
@@ -151,27 +199,27 @@ public class FileManager<T> {
         if (!result)
             log.warn("Could not delete file: " + file.toString());
 
-        File backupDir = new File(Paths.get(dir.getAbsolutePath(), "backup").toString());
-        if (backupDir.exists()) {
-            File backupFile = new File(Paths.get(dir.getAbsolutePath(), "backup", fileName).toString());
-            if (backupFile.exists()) {
-                result = backupFile.delete();
-                if (!result)
-                    log.warn("Could not delete backupFile: " + file.toString());
-            }
-        }
+        getRotatingBackup(fileName).removeAll();
     }
 
 
     /**
-     * Shut down auto-saving.
+     * Writes pending changes now. The scheduler itself is shut down by PersistenceScheduler at application shutdown.
      */
     public void shutDown() {
-        executor.shutdown();
-        try {
-            executor.awaitTermination(5, TimeUnit.SECONDS);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
+        flush();
+    }
+
+    /**
+     * Writes pending changes on the current thread. A pending full save makes pending journal entries obsolete.
+     */
+    void flush() {
+        if (savePending.getAndSet(false)) {
+            appendPending.set(false);
+            drainPendingJournalEntries();
+            saveNowInternal(serializable);
+        } else if (appendPending.getAndSet(false)) {
+            appendToJournal(drainPendingJournalEntries());
         }
     }
 
@@ -181,49 +229,152 @@ public class FileManager<T> {
             if (!corruptedBackupDir.mkdir())
                 log.warn("make dir failed");
 
-        File corruptedFile = new File(Paths.get(dir.getAbsolutePath(), "corrupted", fileName).toString());
+        // We keep all corrupted files, so we add the time
+        File corruptedFile = new File(Paths.get(dir.getAbsolutePath(), "corrupted",
+                fileName + "." + System.currentTimeMillis()).toString());
         renameTempFileToFile(storageFile, corruptedFile);
     }
 
+    /**
+     * Adds a backup to the rotating backups of that file if the content has changed since the latest backup.
+     */
     public synchronized void backupFile(String fileName) throws IOException {
-        File backupDir = new File(Paths.get(dir.getAbsolutePath(), "backup").toString());
-        if (!backupDir.exists())
-            if (!backupDir.mkdir())
-                log.warn("make dir failed");
+        long now = System.currentTimeMillis();
+        RotatingBackup.Result result = getRotatingBackup(fileName).backup(storageFile);
+        log.trace("Backup of {}: {} in {}msec", storageFile, result, System.currentTimeMillis() - now);
+        StorageLoader.recordBackup(storageFile, result + " in " + (System.currentTimeMillis() - now) + "ms");
+    }
 
-        File backupFile = new File(Paths.get(dir.getAbsolutePath(), "backup", fileName).toString());
-        Files.copy(storageFile, backupFile);
+    /**
+     * @return The latest backup which matches its checksum or null if there is none.
+     */
+    @Nullable
+    public File getLatestValidBackup(String fileName) {
+        return getRotatingBackup(fileName).getLatestValidBackup();
+    }
+
+    /**
+     * Replaces the storage file with the latest valid backup and reads it. The corrupted file has to be moved away
+     * before.
+     *
+     * @return The object read from the backup or null if there is no valid backup or it could not be read.
+     */
+    @Nullable
+    public synchronized T restoreFromBackup(String fileName) {
+        File backup = getLatestValidBackup(fileName);
+        if (backup == null)
+            return null;
+
+        try {
+            File tempFile = File.createTempFile("temp", null, dir);
+            Files.copy(backup.toPath(), tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            renameTempFileToFile(tempFile, storageFile);
+            T persistedObject = read(storageFile);
+            if (persistedObject != null)
+                log.warn("Restored {} from backup {}", storageFile, backup.getName());
+            return persistedObject;
+        } catch (IOException e) {
+            e.printStackTrace();
+            log.error("Restoring " + storageFile + " from backup " + backup + " failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Backs up the file as it is now on the persistence thread after a delay. The backup is skipped if the file gets
+     * changed in the meantime.
+     */
+    public void backupFileLater(String fileName) {
+        long length = storageFile.length();
+        long lastModified = storageFile.lastModified();
+        PersistenceScheduler.schedule(() -> {
+            backupFileIfUnchanged(fileName, length, lastModified);
+            return null;
+        }, BACKUP_DELAY);
     }
 
     ///////////////////////////////////////////////////////////////////////////////////////////
     // Private
     ///////////////////////////////////////////////////////////////////////////////////////////
 
+    synchronized void backupFileIfUnchanged(String fileName, long length, long lastModified) {
+        if (storageFile.length() != length || storageFile.lastModified() != lastModified) {
+            log.trace("{} has been written since it was read. We skip the backup.", storageFile);
+            StorageLoader.recordBackup(storageFile, "skipped (file changed)");
+            return;
+        }
+
+        try {
+            backupFile(fileName);
+        } catch (IOException e) {
+            e.printStackTrace();
+            log.error("Backup of " + storageFile + " failed: " + e.getMessage());
+        }
+    }
+
+    private RotatingBackup getRotatingBackup(String fileName) {
+        return new RotatingBackup(new File(Paths.get(dir.getAbsolutePath(), "backup").toString()), fileName);
+    }
+
+    private Map<String, byte[]> drainPendingJournalEntries() {
+        synchronized (pendingJournalEntries) {
+            Map<String, byte[]> entries = new LinkedHashMap<>(pendingJournalEntries);
+            pendingJournalEntries.clear();
+            return entries;
+        }
+    }
+
     private void saveNowInternal(T serializable) {
         long now = System.currentTimeMillis();
         saveToFile(serializable, dir, storageFile);
         UserThread.execute(() -> log.trace("Save {} completed in {}msec", storageFile, System.currentTimeMillis() - now));
     }
 
+    private synchronized void appendToJournal(Map<String, byte[]> entries) {
+        if (journal == null) {
+            log.warn("appendToJournal called but no journal set. We save the whole file. storageFile=" + storageFile);
+            saveToFile(serializable, dir, storageFile);
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        try {
+            long bytes = journal.append(entries);
+            PersistenceScheduler.recordWrite(journal.getFile(), bytes, System.currentTimeMillis() - now);
+            log.trace("Appended {} entries ({} bytes) to journal of {} in {}msec",
+                    entries.size(), bytes, storageFile, System.currentTimeMillis() - now);
+        } catch (Throwable t) {
+            t.printStackTrace();
+            log.error("Error at appendToJournal: " + t.getMessage() + ". We save the whole file instead.");
+            saveToFile(serializable, dir, storageFile);
+            return;
+        }
+
+        if (journal.length() > Math.max(MIN_JOURNAL_COMPACTION_SIZE, lastSnapshotSize)) {
+            log.debug("Journal of {} has {} bytes. We compact it.", storageFile, journal.length());
+            saveToFile(serializable, dir, storageFile);
+        }
+    }
+
     private synchronized void saveToFile(T serializable, File dir, File storageFile) {
         File tempFile = null;
         FileOutputStream fileOutputStream = null;
-        ObjectOutputStream objectOutputStream = null;
+        long ts = System.currentTimeMillis();
         try {
             if (!dir.exists())
                 if (!dir.mkdir())
                     log.warn("make dir failed");
 
+            // The serializable is a snapshot handed over by Storage, so it is not mutated while we encode it
+            byte[] data = StorageFormat.encode((Serializable) serializable);
+
             tempFile = File.createTempFile("temp", null, dir);
 
             // Don't use auto closeable resources in try() as we would need too many try/catch clauses (for tempFile)
             // and we need to close it
             // manually before replacing file with temp file
             fileOutputStream = new FileOutputStream(tempFile);
-            objectOutputStream = new ObjectOutputStream(fileOutputStream);
-
-            // TODO ConcurrentModificationException happens sometimes at that line
-            objectOutputStream.writeObject(serializable);
+            fileOutputStream.write(data);
             // Attempt to force the bits to hit the disk. In reality the OS or hard disk itself may still decide
             // to not write through to physical media for at least a few seconds, but this is the best we can do.
             fileOutputStream.flush();
@@ -232,13 +383,20 @@ public class FileManager<T> {
             // Close resources before replacing file with temp file because otherwise it causes problems on windows
             // when rename temp file
             fileOutputStream.close();
-            objectOutputStream.close();
 
             renameTempFileToFile(tempFile, storageFile);
+            lastSnapshotSize = storageFile.length();
+            PersistenceScheduler.recordWrite(storageFile, lastSnapshotSize, System.currentTimeMillis() - ts);
+            log.trace("Saved {} bytes to {}", lastSnapshotSize, storageFile);
+
+            // All journaled changes are part of the snapshot now
+            if (journal != null)
+                journal.reset();
         } catch (Throwable t) {
             log.debug("storageFile " + storageFile.toString());
             t.printStackTrace();
             log.error("Error at saveToFile: " + t.getMessage());
+            PersistenceScheduler.recordFailure(storageFile);
         } finally {
             if (tempFile != null && tempFile.exists()) {
                 log.warn("Temp file still exists after failed save. storageFile=" + storageFile);
@@ -247,8 +405,6 @@ public class FileManager<T> {
             }
 
             try {
-                if (objectOutputStream != null)
-                    objectOutputStream.close();
                 if (fileOutputStream != null)
                     fileOutputStream.close();
             } catch (IOException e) {
@@ -0,0 +1,254 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.storage;
+
+import io.bitsquare.common.util.SerializationBuffers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append only file of entry changes (put or remove of a keyed entry) of a persisted object.
+ * Instead of writing the whole object after each change of one of its entries we append just the changed entry.
+ * At startup the records are replayed on top of the last full snapshot.
+ * <p>
+ * Each record is written as: length (int), type (byte), key (UTF), Java serialized entry (for PUT only), CRC32 (int).
+ * The entries are handed over already serialized, so the journal never touches the live objects.
+ * A record which was only partly written at a crash fails the length or checksum check. Replay stops there and the
+ * file gets truncated to the last valid record. A valid record which cannot be deserialized (e.g. a class has changed)
+ * or applied is skipped, the records after it are still replayed.
+ * <p>
+ * The header holds length, modification date and file key of the snapshot the journal was started on. If we crash
+ * after a new snapshot was written but before the journal got reset, the journal does not match the snapshot anymore
+ * and gets dropped, otherwise older entry states would overwrite the newer ones of the snapshot.
+ */
+public class JournalFile {
+    private static final Logger log = LoggerFactory.getLogger(JournalFile.class);
+
+    private static final int MAGIC = 0x424a524e;
+    private static final int VERSION = 1;
+
+    public static final byte PUT = 1;
+    public static final byte REMOVE = 2;
+
+    private final File file;
+    private final File snapshotFile;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public JournalFile(File file, File snapshotFile) {
+        this.file = file;
+        this.snapshotFile = snapshotFile;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Appends the entries in one write and syncs the file.
+     *
+     * @param entries Java serialized changed entries by key. A null value is written as REMOVE record.
+     * @return Number of bytes written.
+     */
+    public synchronized long append(Map<String, byte[]> entries) throws IOException {
+        SerializationBuffers.PooledByteArrayOutputStream bos = SerializationBuffers.getOutputStream(JournalFile.class);
+        try {
+            DataOutputStream out = new DataOutputStream(bos);
+            boolean append = file.length() > 0;
+            if (!append)
+                writeHeader(out);
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                writeRecord(out, entry.getKey(), entry.getValue());
+            }
+            out.flush();
+
+            try (FileOutputStream fileOutputStream = new FileOutputStream(file, append)) {
+                bos.writeTo(fileOutputStream);
+                fileOutputStream.flush();
+                fileOutputStream.getFD().sync();
+            }
+            return bos.size();
+        } finally {
+            bos.release();
+        }
+    }
+
+    /**
+     * Reads all valid records in order. Stops at the first corrupted record and truncates the file there.
+     * Records which fail to decode or to apply are logged and skipped.
+     *
+     * @param handler Gets called with key and entry. Entry is null for REMOVE records.
+     * @return Number of replayed records.
+     */
+    public synchronized int replay(BiConsumer<String, Serializable> handler) {
+        if (!file.exists())
+            return 0;
+
+        int numRecords = 0;
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            long fileLength = file.length();
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                throw new StreamCorruptedException("Invalid journal header");
+            long baseLength = in.readLong();
+            long baseLastModified = in.readLong();
+            String baseFileKey = in.readUTF();
+            if (baseLength != getSnapshotLength() || baseLastModified != snapshotFile.lastModified()
+                    || !baseFileKey.equals(getSnapshotFileKey())) {
+                log.info("Journal {} was started on an older snapshot. We drop it.", file);
+                in.close();
+                reset();
+                return 0;
+            }
+            validLength = 4 + 4 + 8 + 8 + 2 + baseFileKey.getBytes(StandardCharsets.UTF_8).length;
+
+            while (validLength < fileLength) {
+                int length = in.readInt();
+                if (length <= 0 || length > fileLength - validLength - 8)
+                    throw new EOFException("Invalid record length " + length);
+
+                byte[] record = new byte[length];
+                in.readFully(record);
+                CRC32 crc32 = new CRC32();
+                crc32.update(record);
+                if ((int) crc32.getValue() != in.readInt())
+                    throw new StreamCorruptedException("Checksum mismatch");
+
+                validLength += 4 + length + 4;
+                try {
+                    readRecord(record, handler);
+                    numRecords++;
+                } catch (Throwable t) {
+                    t.printStackTrace();
+                    log.error("Could not replay a record of journal {}. We skip it. {}", file, t.getMessage());
+                }
+            }
+        } catch (Throwable t) {
+            log.warn("Journal {} is corrupted after {} records ({}). We truncate it at {} bytes.",
+                    file, numRecords, t.getMessage(), validLength);
+            truncate(validLength);
+        }
+        return numRecords;
+    }
+
+    /**
+     * Removes all records. Called after a full snapshot has been written.
+     */
+    public synchronized void reset() {
+        if (file.exists() && !file.delete())
+            log.warn("Could not delete journal " + file);
+    }
+
+    public synchronized long length() {
+        return file.length();
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void writeHeader(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(getSnapshotLength());
+        out.writeLong(snapshotFile.lastModified());
+        out.writeUTF(getSnapshotFileKey());
+    }
+
+    private long getSnapshotLength() {
+        return snapshotFile.exists() ? snapshotFile.length() : -1;
+    }
+
+    // The inode on unix. A new snapshot is renamed from a temp file so it gets a new one.
+    private String getSnapshotFileKey() {
+        try {
+            Object fileKey = Files.readAttributes(snapshotFile.toPath(), BasicFileAttributes.class).fileKey();
+            return fileKey != null ? fileKey.toString() : "";
+        } catch (IOException e) {
+            return "";
+        }
+    }
+
+    private void writeRecord(DataOutputStream out, String key, @Nullable byte[] serializedEntry) throws IOException {
+        ByteArrayOutputStream recordStream = new ByteArrayOutputStream(
+                (serializedEntry != null ? serializedEntry.length : 0) + key.length() + 16);
+        DataOutputStream record = new DataOutputStream(recordStream);
+        record.writeByte(serializedEntry != null ? PUT : REMOVE);
+        record.writeUTF(key);
+        if (serializedEntry != null)
+            record.write(serializedEntry);
+        record.flush();
+
+        byte[] bytes = recordStream.toByteArray();
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.writeInt((int) crc32.getValue());
+    }
+
+    private void readRecord(byte[] record, BiConsumer<String, Serializable> handler) throws IOException, ClassNotFoundException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        byte type = in.readByte();
+        String key = in.readUTF();
+        switch (type) {
+            case PUT:
+                try (ObjectInputStream objectInputStream = new ObjectInputStream(in)) {
+                    handler.accept(key, (Serializable) objectInputStream.readObject());
+                }
+                break;
+            case REMOVE:
+                handler.accept(key, null);
+                break;
+            default:
+                throw new StreamCorruptedException("Unknown record type " + type);
+        }
+    }
+
+    private void truncate(long length) {
+        if (length == 0) {
+            reset();
+            return;
+        }
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(length);
+        } catch (IOException e) {
+            e.printStackTrace();
+            log.error("Could not truncate journal " + file + ". We delete it. " + e.getMessage());
+            reset();
+        }
+    }
+}
@@ -0,0 +1,247 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.storage;
+
+import io.bitsquare.common.util.Utilities;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Write-behind scheduler shared by all FileManager instances.
+ * All writes run on one thread, so fsyncs of different files never compete for the disk and happen in the order
+ * they got due. Saves of the same file are coalesced by the FileManager until the write is executed.
+ * At shutdown all pending writes are flushed at once instead of waiting for their delay.
+ */
+public class PersistenceScheduler {
+    private static final Logger log = LoggerFactory.getLogger(PersistenceScheduler.class);
+
+    private static final long SHUTDOWN_TIMEOUT_SEC = 10;
+
+    private static final ScheduledThreadPoolExecutor executor =
+            Utilities.getScheduledThreadPoolExecutor("PersistenceScheduler", 1, 1, 5);
+    // Weak keys as we don't want to keep FileManagers of discarded Storage objects alive
+    private static final Set<FileManager<?>> fileManagers = Collections.newSetFromMap(new WeakHashMap<>());
+    private static final Map<String, FileStats> statsByFileName = new ConcurrentHashMap<>();
+    private static volatile boolean shutDownStarted;
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(PersistenceScheduler::shutDown, "PersistenceScheduler.ShutDownHook"));
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Stats
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public static class FileStats {
+        private final String fileName;
+        private long numWrites;
+        private long totalBytes;
+        private long lastBytes;
+        private long totalLatency;
+        private long maxLatency;
+        private long numFailures;
+
+        private FileStats(String fileName) {
+            this.fileName = fileName;
+        }
+
+        private FileStats(FileStats other) {
+            synchronized (other) {
+                this.fileName = other.fileName;
+                this.numWrites = other.numWrites;
+                this.totalBytes = other.totalBytes;
+                this.lastBytes = other.lastBytes;
+                this.totalLatency = other.totalLatency;
+                this.maxLatency = other.maxLatency;
+                this.numFailures = other.numFailures;
+            }
+        }
+
+        private synchronized void add(long bytes, long latency) {
+            numWrites++;
+            totalBytes += bytes;
+            lastBytes = bytes;
+            totalLatency += latency;
+            maxLatency = Math.max(maxLatency, latency);
+        }
+
+        private synchronized void addFailure() {
+            numFailures++;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public long getNumWrites() {
+            return numWrites;
+        }
+
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        public long getLastBytes() {
+            return lastBytes;
+        }
+
+        public long getAverageLatency() {
+            return numWrites > 0 ? totalLatency / numWrites : 0;
+        }
+
+        public long getMaxLatency() {
+            return maxLatency;
+        }
+
+        public long getNumFailures() {
+            return numFailures;
+        }
+
+        @Override
+        public String toString() {
+            return "FileStats{" +
+                    "fileName='" + fileName + '\'' +
+                    ", numWrites=" + numWrites +
+                    ", totalBytes=" + totalBytes +
+                    ", lastBytes=" + lastBytes +
+                    ", averageLatency=" + getAverageLatency() + "ms" +
+                    ", maxLatency=" + maxLatency + "ms" +
+                    ", numFailures=" + numFailures +
+                    '}';
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @return Number of scheduled writes which are not executed yet.
+     */
+    public static int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return Copy of the write statistics by file name. Journal writes are listed with the journal file name.
+     */
+    public static Map<String, FileStats> getStats() {
+        Map<String, FileStats> result = new TreeMap<>();
+        statsByFileName.values().stream().forEach(stats -> result.put(stats.getFileName(), new FileStats(stats)));
+        return result;
+    }
+
+    public static void logStats() {
+        log.info("Persistence stats: queueDepth={}\n{}", getQueueDepth(), getStats().values().stream()
+                .map(FileStats::toString)
+                .reduce((a, b) -> a + "\n" + b)
+                .orElse(""));
+    }
+
+    /**
+     * Writes all pending changes of all FileManagers now. Blocks until the writes are done.
+     */
+    public static void flushAll() {
+        if (executor.isShutdown()) {
+            flushAllInternal();
+            return;
+        }
+
+        try {
+            executor.submit(PersistenceScheduler::flushAllInternal).get(SHUTDOWN_TIMEOUT_SEC, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            e.printStackTrace();
+            log.error("Error at flushAll: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Flushes all pending writes and stops the scheduler. Called by the shutdown hook.
+     */
+    public static void shutDown() {
+        if (shutDownStarted)
+            return;
+
+        shutDownStarted = true;
+        long ts = System.currentTimeMillis();
+        flushAll();
+        // Delayed tasks are not executed after shutdown but their changes got written by flushAll already.
+        executor.shutdown();
+        try {
+            executor.awaitTermination(SHUTDOWN_TIMEOUT_SEC, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("PersistenceScheduler shut down completed in {}msec", System.currentTimeMillis() - ts);
+        logStats();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Package scope
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    static void register(FileManager<?> fileManager) {
+        synchronized (fileManagers) {
+            fileManagers.add(fileManager);
+        }
+    }
+
+    static void schedule(Callable<Void> task, long delayInMilli) {
+        if (shutDownStarted) {
+            // Changes after the shut down started are written on the caller thread
+            try {
+                task.call();
+            } catch (Exception e) {
+                e.printStackTrace();
+                log.error("Error at executing task after shutdown: " + e.getMessage());
+            }
+        } else {
+            executor.schedule(task, delayInMilli, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    static void recordWrite(File file, long bytes, long latency) {
+        statsByFileName.computeIfAbsent(file.getName(), FileStats::new).add(bytes, latency);
+    }
+
+    static void recordFailure(File file) {
+        statsByFileName.computeIfAbsent(file.getName(), FileStats::new).addFailure();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static void flushAllInternal() {
+        List<FileManager<?>> list;
+        synchronized (fileManagers) {
+            list = new ArrayList<>(fileManagers);
+        }
+        list.stream().forEach(FileManager::flush);
+    }
+}
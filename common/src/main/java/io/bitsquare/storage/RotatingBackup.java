@@ -0,0 +1,205 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.storage;
+
+import org.bouncycastle.util.encoders.Hex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps a history of backups of one file in the backup dir. A backup is named fileName.timestamp.sha256 and only
+ * written if the content has changed since the latest backup. As FileManager replaces files by renaming a new file
+ * we can use a hard link instead of a copy where the file system supports it.
+ * Backups are retained by count and age, the latest backup is always kept.
+ * Not thread safe, FileManager synchronizes the access.
+ */
+class RotatingBackup {
+    private static final Logger log = LoggerFactory.getLogger(RotatingBackup.class);
+
+    static final int MAX_BACKUPS = 10;
+    static final long MAX_AGE = TimeUnit.DAYS.toMillis(30);
+
+    private static final Pattern SUFFIX_PATTERN = Pattern.compile("\\.(\\d+)\\.([0-9a-f]{64})");
+
+    enum Result {
+        UNCHANGED,
+        LINKED,
+        COPIED
+    }
+
+    private final File backupDir;
+    private final String fileName;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    RotatingBackup(File backupDir, String fileName) {
+        this.backupDir = backupDir;
+        this.fileName = fileName;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    Result backup(File file) throws IOException {
+        String hash = getHashAsHex(file);
+        List<File> backups = getBackups();
+        if (!backups.isEmpty() && getHash(backups.get(0)).equals(hash))
+            return Result.UNCHANGED;
+
+        if (!backupDir.exists() && !backupDir.mkdirs())
+            throw new IOException("Could not create backup dir " + backupDir);
+
+        // The timestamp orders the backups, so it must be later than the one of the latest backup
+        long timestamp = System.currentTimeMillis();
+        if (!backups.isEmpty())
+            timestamp = Math.max(timestamp, getTimestamp(backups.get(0)) + 1);
+        File backupFile = new File(backupDir, fileName + "." + timestamp + "." + hash);
+        Result result;
+        try {
+            Files.createLink(backupFile.toPath(), file.toPath());
+            result = Result.LINKED;
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            log.trace("Hard link not supported for {}, we copy the file. {}", backupFile, e.getMessage());
+            Files.copy(file.toPath(), backupFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            result = Result.COPIED;
+        }
+
+        // The single backup file of old versions is replaced by the rotating backups
+        File legacyBackupFile = new File(backupDir, fileName);
+        if (legacyBackupFile.isFile() && !legacyBackupFile.delete())
+            log.warn("Could not delete old backup file " + legacyBackupFile);
+
+        prune();
+        return result;
+    }
+
+    /**
+     * @return All backups, the latest first.
+     */
+    List<File> getBackups() {
+        File[] files = backupDir.listFiles(file -> file.isFile() && file.getName().startsWith(fileName) &&
+                SUFFIX_PATTERN.matcher(file.getName().substring(fileName.length())).matches());
+        if (files == null)
+            return Collections.emptyList();
+
+        return Arrays.stream(files)
+                .sorted(Comparator.comparing(RotatingBackup::getTimestamp).reversed())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return The latest backup whose content matches its checksum or null if there is none.
+     */
+    @Nullable
+    File getLatestValidBackup() {
+        for (File backup : getBackups()) {
+            try {
+                if (getHashAsHex(backup).equals(getHash(backup)))
+                    return backup;
+                else
+                    log.warn("Backup {} is corrupted", backup);
+            } catch (IOException e) {
+                log.warn("Could not read backup {}: {}", backup, e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    void removeAll() {
+        getBackups().stream().forEach(this::delete);
+        File legacyBackupFile = new File(backupDir, fileName);
+        if (legacyBackupFile.isFile())
+            delete(legacyBackupFile);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void prune() {
+        List<File> backups = getBackups();
+        long now = System.currentTimeMillis();
+        for (int i = 1; i < backups.size(); i++) {
+            File backup = backups.get(i);
+            if (i >= MAX_BACKUPS || now - getTimestamp(backup) > MAX_AGE)
+                delete(backup);
+        }
+    }
+
+    private void delete(File file) {
+        if (!file.delete())
+            log.warn("Could not delete backup " + file);
+    }
+
+    private static long getTimestamp(File backup) {
+        return Long.parseLong(getSuffixMatcher(backup).group(1));
+    }
+
+    private static String getHash(File backup) {
+        return getSuffixMatcher(backup).group(2);
+    }
+
+    private static Matcher getSuffixMatcher(File backup) {
+        String name = backup.getName();
+        // timestamp and hash are the last 2 parts, the file name itself might contain dots
+        int hashSeparator = name.lastIndexOf('.');
+        int timestampSeparator = name.lastIndexOf('.', hashSeparator - 1);
+        Matcher matcher = SUFFIX_PATTERN.matcher(name.substring(timestampSeparator));
+        if (!matcher.matches())
+            throw new IllegalArgumentException("Not a backup file: " + name);
+        return matcher;
+    }
+
+    private static String getHashAsHex(File file) throws IOException {
+        try (InputStream inputStream = new FileInputStream(file)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            return Hex.toHexString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -18,15 +18,17 @@
 package io.bitsquare.storage;
 
 import com.google.common.base.Throwables;
+import io.bitsquare.common.util.SerializationBuffers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Named;
-import java.io.File;
-import java.io.IOException;
-import java.io.Serializable;
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -37,15 +39,27 @@ import static com.google.common.base.Preconditions.checkNotNull;
  * Alternative frameworks for serialisation like Kyro or mapDB have shown problems with version migration, so we stuck with plain Java
  * serialisation.
  * <p>
+ * The serialized object is written in a compressed and checksummed container (see StorageFormat), so a corrupted file
+ * is detected before we deserialize it.
+ * <p>
  * For every data object we write a separate file to minimize the risk of corrupted files in case of inconsistency from newer versions.
  * In case of a corrupted file we backup the old file to a separate directory, so if it holds critical data it might be helpful for recovery.
+ * We then restore the latest backup which matches its checksum. Only if there is none the corruption handler is called.
  * <p>
  * We also backup at first read the file, so we have a valid file form the latest version in case a write operation corrupted the file.
+ * The backup is done later on the persistence thread and skipped if the backup is already up to date.
  * <p>
- * The read operation is triggered just at object creation (startup) and is at the moment not executed on a background thread to avoid asynchronous behaviour.
- * As the data are small and it is just one read access the performance penalty is small and might be even worse to create and setup a thread for it.
+ * The read operation is triggered just at object creation (startup). To not read all files one after another on the
+ * UI thread the StorageLoader reads them in parallel before the objects get created and we take the preloaded object.
  * <p>
  * The write operation used a background thread and supports a delayed write to avoid too many repeated write operations.
+ * To not race with the thread mutating the object we hand over a snapshot when queuing up a save. Lists, sets and maps
+ * are copied structurally (see Snapshotable), nested collections need to be replaced instead of mutated (copy-on-write).
+ * <p>
+ * Objects consisting of keyed entries (e.g. the list of pending trades) can use a journal. A change of an entry is then
+ * appended to a journal file instead of writing the whole object. See JournalFile.
+ * A changed entry is serialized on the calling thread, only the bytes are handed over to the persistence thread.
+ * Objects with mutable entries can serialize the whole object on the calling thread as well (see SerializedSnapshot).
  */
 public class Storage<T extends Serializable> {
     private static final Logger log = LoggerFactory.getLogger(Storage.class);
@@ -61,11 +75,32 @@ public class Storage<T extends Serializable> {
         void onFileCorrupted(String fileName);
     }
 
+    public interface JournalHandler {
+        // Changes of entries which are not contained are saved with the whole object.
+        boolean containsEntry(String key);
+
+        // Called at init for every journal record on top of the persisted object. Entry is null if it was removed.
+        void applyEntry(String key, @Nullable Serializable entry);
+    }
+
+    public interface Snapshotable<T extends Serializable> {
+        // Called on the thread owning the object. The returned copy must not be mutated afterwards.
+        T getSnapshot();
+    }
+
+    public interface SerializedSnapshot {
+        // Java serialized form of the object taken by getSnapshot. It is written as it is. Null if it is no snapshot.
+        @Nullable
+        byte[] getSerialized();
+    }
+
     private final File dir;
     private FileManager<T> fileManager;
     private File storageFile;
     private T serializable;
     private String fileName;
+    @Nullable
+    private JournalHandler journalHandler;
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -101,10 +136,53 @@ public class Storage<T extends Serializable> {
         return getPersisted();
     }
 
+    /**
+     * Replays the journal and uses it for all further entry changes. Must be called after initAndGetPersisted.
+     */
+    public void initJournal(JournalHandler journalHandler) {
+        checkNotNull(serializable, "serializable = null. Call initAndGetPersisted with the serializable before initJournal.");
+        long now = System.currentTimeMillis();
+        JournalFile journal = new JournalFile(new File(dir, fileName + ".journal"), storageFile);
+        int numRecords = journal.replay(journalHandler::applyEntry);
+        log.trace("Replay of {} journal records of {} completed in {}msec", numRecords, fileName, System.currentTimeMillis() - now);
+
+        fileManager.setJournal(journal, getSnapshot(serializable));
+        this.journalHandler = journalHandler;
+
+        // We write the recovered state as new snapshot which resets the journal
+        if (numRecords > 0)
+            queueUpForSave();
+    }
+
     public void queueUpForSave() {
         queueUpForSave(serializable);
     }
 
+    // Appends the entry to the journal if we use one, otherwise saves the whole object.
+    public void queueUpEntryForSave(String key, Serializable entry) {
+        byte[] serializedEntry;
+        try {
+            serializedEntry = serializeEntry(entry);
+        } catch (IOException e) {
+            e.printStackTrace();
+            log.error("Could not serialize entry " + key + " of " + fileName + ". We save the whole object. " + e.getMessage());
+            queueUpForSave();
+            return;
+        }
+
+        if (journalHandler != null && journalHandler.containsEntry(key))
+            fileManager.appendLater(key, serializedEntry, getSnapshot(serializable));
+        else
+            queueUpForSave();
+    }
+
+    public void queueUpEntryForRemoval(String key) {
+        if (journalHandler != null)
+            fileManager.appendLater(key, null, getSnapshot(serializable));
+        else
+            queueUpForSave();
+    }
+
     public void queueUpForSave(long delayInMilli) {
         queueUpForSave(serializable, delayInMilli);
     }
@@ -115,7 +193,7 @@ public class Storage<T extends Serializable> {
             log.trace("save " + fileName);
             checkNotNull(storageFile, "storageFile = null. Call setupFileStorage before using read/write.");
 
-            fileManager.saveLater(serializable);
+            fileManager.saveLater(getSnapshot(serializable));
         } else {
             log.trace("queueUpForSave called but no serializable set");
         }
@@ -126,7 +204,7 @@ public class Storage<T extends Serializable> {
             log.trace("save " + fileName);
             checkNotNull(storageFile, "storageFile = null. Call setupFileStorage before using read/write.");
 
-            fileManager.saveLater(serializable, delayInMilli);
+            fileManager.saveLater(getSnapshot(serializable), delayInMilli);
         } else {
             log.trace("queueUpForSave called but no serializable set");
         }
@@ -137,30 +215,64 @@ public class Storage<T extends Serializable> {
         fileManager.removeFile(fileName);
     }
 
+    /**
+     * Java serialization of an entry as it is written to the journal.
+     */
+    public static byte[] serializeEntry(Serializable entry) throws IOException {
+        SerializationBuffers.PooledByteArrayOutputStream bos = SerializationBuffers.getOutputStream(entry.getClass());
+        try {
+            try (ObjectOutputStream out = new ObjectOutputStream(bos)) {
+                out.writeObject(entry);
+            }
+            byte[] result = bos.toByteArray();
+            SerializationBuffers.setSizeHint(entry.getClass(), result.length);
+            return result;
+        } finally {
+            bos.release();
+        }
+    }
+
 
     ///////////////////////////////////////////////////////////////////////////////////////////
     // Private
     ///////////////////////////////////////////////////////////////////////////////////////////
 
-    // We do the file read on the UI thread to avoid problems from multi threading. 
-    // Data are small and read is done only at startup, so it is no performance issue.
+    // Plain collections are copied, other objects have to implement Snapshotable or use copy-on-write for mutable fields
+    @SuppressWarnings("unchecked")
+    private T getSnapshot(T serializable) {
+        if (serializable instanceof Snapshotable)
+            return ((Snapshotable<T>) serializable).getSnapshot();
+        else if (serializable.getClass() == ArrayList.class)
+            return (T) new ArrayList<>((ArrayList<?>) serializable);
+        else if (serializable.getClass() == HashMap.class)
+            return (T) new HashMap<>((HashMap<?, ?>) serializable);
+        else if (serializable.getClass() == HashSet.class)
+            return (T) new HashSet<>((HashSet<?>) serializable);
+        else
+            return serializable;
+    }
+
+    // We use the object preloaded by the StorageLoader or do the file read on the calling thread.
     @Nullable
     private T getPersisted() {
         if (storageFile.exists()) {
             long now = System.currentTimeMillis();
             try {
-                T persistedObject = fileManager.read(storageFile);
+                T persistedObject = (T) StorageLoader.takePreloaded(storageFile);
+                if (persistedObject == null) {
+                    persistedObject = fileManager.read(storageFile);
+                    StorageLoader.recordRead(storageFile, System.currentTimeMillis() - now);
+                }
                 log.trace("Read {} completed in {}msec", storageFile, System.currentTimeMillis() - now);
 
                 // If we did not get any exception we can be sure the data are consistent so we make a backup 
-                now = System.currentTimeMillis();
-                fileManager.backupFile(fileName);
-                log.trace("Backup {} completed in {}msec", storageFile, System.currentTimeMillis() - now);
+                if (persistedObject != null)
+                    fileManager.backupFileLater(fileName);
 
                 return persistedObject;
-            } catch (ClassCastException | IOException e) {
+            } catch (ClassCastException | StorageFormat.CorruptedFileException e) {
                 e.printStackTrace();
-                log.error("Version of persisted class has changed. We cannot read the persisted data anymore. We make a backup and remove the inconsistent " +
+                log.error("Persisted data are corrupted or the version of the persisted class has changed. We cannot read the persisted data anymore. We make a backup and remove the inconsistent " +
                         "file.");
                 try {
                     // In case the persisted data have been critical (keys) we keep a backup which might be used for recovery
@@ -170,6 +282,13 @@ public class Storage<T extends Serializable> {
                     log.error(e1.getMessage());
                     // We swallow Exception if backup fails
                 }
+
+                // The latest rotating backup which matches its checksum replaces the corrupted file
+                if (!storageFile.exists()) {
+                    T restoredObject = fileManager.restoreFromBackup(fileName);
+                    if (restoredObject != null)
+                        return restoredObject;
+                }
                 databaseCorruptionHandler.onFileCorrupted(storageFile.getName());
             } catch (Throwable throwable) {
                 throwable.printStackTrace();
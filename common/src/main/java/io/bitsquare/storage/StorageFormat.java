@@ -0,0 +1,199 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.storage;
+
+import io.bitsquare.common.util.SerializationBuffers;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * File format of the persisted objects. The Java serialized object is wrapped in a container with a header:
+ * magic (int), version (byte), flags (byte), length of the serialized object (int), length of the body (int) and a
+ * CRC32 (int) over the header fields and the body. If the FLAG_DEFLATE is set the body is compressed.
+ * <p>
+ * A torn or otherwise corrupted file is detected by the length and checksum before we deserialize it.
+ * Files written by old versions contain the plain Java serialized object and are still readable.
+ */
+public class StorageFormat {
+    static final int MAGIC = 0x42535146;
+    static final byte VERSION = 1;
+    static final byte FLAG_DEFLATE = 1;
+    static final int HEADER_SIZE = 18;
+
+    // Small objects are not worth compressing
+    private static final int MIN_COMPRESSION_SIZE = 1024;
+    private static final int JAVA_SERIALIZATION_MAGIC = 0xACED;
+
+    public static class CorruptedFileException extends IOException {
+        public CorruptedFileException(String message) {
+            super(message);
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public static byte[] encode(Serializable object) throws IOException {
+        byte[] serialized = null;
+        if (object instanceof Storage.SerializedSnapshot)
+            serialized = ((Storage.SerializedSnapshot) object).getSerialized();
+        if (serialized == null)
+            serialized = serialize(object);
+        byte flags = 0;
+        byte[] body = serialized;
+        if (serialized.length >= MIN_COMPRESSION_SIZE) {
+            byte[] compressed = compress(serialized);
+            if (compressed.length < serialized.length) {
+                flags |= FLAG_DEFLATE;
+                body = compressed;
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + body.length);
+        buffer.putInt(MAGIC)
+                .put(VERSION)
+                .put(flags)
+                .putInt(serialized.length)
+                .putInt(body.length)
+                .putInt(0)
+                .put(body);
+        byte[] result = buffer.array();
+        buffer.putInt(HEADER_SIZE - 4, getChecksum(result, body.length));
+        return result;
+    }
+
+    /**
+     * @throws CorruptedFileException If the data are truncated or the checksum does not match.
+     */
+    public static Object decode(byte[] data) throws IOException, ClassNotFoundException {
+        if (isLegacyFormat(data))
+            return deserialize(data, 0, data.length);
+
+        if (data.length < HEADER_SIZE)
+            throw new CorruptedFileException("Data are too short for the header. length=" + data.length);
+
+        ByteBuffer buffer = ByteBuffer.wrap(data);
+        if (buffer.getInt() != MAGIC)
+            throw new CorruptedFileException("Unknown file format");
+        byte version = buffer.get();
+        if (version != VERSION)
+            throw new CorruptedFileException("Unsupported version " + version);
+        byte flags = buffer.get();
+        int length = buffer.getInt();
+        int bodyLength = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length < 0 || bodyLength < 0 || HEADER_SIZE + bodyLength != data.length)
+            throw new CorruptedFileException("Body length " + bodyLength + " does not match data length " + data.length);
+        if (getChecksum(data, bodyLength) != checksum)
+            throw new CorruptedFileException("Checksum does not match");
+
+        if ((flags & FLAG_DEFLATE) != 0) {
+            byte[] serialized = decompress(data, HEADER_SIZE, bodyLength, length);
+            return deserialize(serialized, 0, serialized.length);
+        } else {
+            return deserialize(data, HEADER_SIZE, bodyLength);
+        }
+    }
+
+    public static Object read(File file) throws IOException, ClassNotFoundException {
+        return decode(Files.readAllBytes(file.toPath()));
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static boolean isLegacyFormat(byte[] data) {
+        return data.length >= 2 && ((data[0] & 0xff) << 8 | (data[1] & 0xff)) == JAVA_SERIALIZATION_MAGIC;
+    }
+
+    // Covers the header fields after the magic and the body
+    private static int getChecksum(byte[] data, int bodyLength) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(data, 4, HEADER_SIZE - 8);
+        crc32.update(data, HEADER_SIZE, bodyLength);
+        return (int) crc32.getValue();
+    }
+
+    private static byte[] serialize(Serializable object) throws IOException {
+        SerializationBuffers.PooledByteArrayOutputStream bos = SerializationBuffers.getOutputStream(object.getClass());
+        try {
+            try (ObjectOutputStream out = new ObjectOutputStream(bos)) {
+                out.writeObject(object);
+            }
+            byte[] result = bos.toByteArray();
+            SerializationBuffers.setSizeHint(object.getClass(), result.length);
+            return result;
+        } finally {
+            bos.release();
+        }
+    }
+
+    private static Object deserialize(byte[] data, int offset, int length) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data, offset, length))) {
+            return in.readObject();
+        }
+    }
+
+    private static byte[] compress(byte[] data) {
+        Deflater deflater = SerializationBuffers.getDeflater();
+        deflater.setInput(data);
+        deflater.finish();
+        SerializationBuffers.PooledByteArrayOutputStream bos = SerializationBuffers.getOutputStream(data.length / 2);
+        byte[] buf = SerializationBuffers.getScratchBuffer();
+        try {
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buf);
+                bos.write(buf, 0, count);
+            }
+            return bos.toByteArray();
+        } finally {
+            bos.release();
+        }
+    }
+
+    private static byte[] decompress(byte[] data, int offset, int length, int uncompressedLength)
+            throws CorruptedFileException {
+        Inflater inflater = SerializationBuffers.getInflater();
+        inflater.setInput(data, offset, length);
+        byte[] result = new byte[uncompressedLength];
+        try {
+            int position = 0;
+            while (!inflater.finished() && position < uncompressedLength) {
+                int count = inflater.inflate(result, position, uncompressedLength - position);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new CorruptedFileException("Compressed body is truncated");
+                position += count;
+            }
+            if (position != uncompressedLength || !inflater.finished())
+                throw new CorruptedFileException("Uncompressed length does not match");
+            return result;
+        } catch (DataFormatException e) {
+            throw new CorruptedFileException("Invalid compressed body: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.storage;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * Reads the persisted files of a storage dir in parallel on background threads at startup.
+ * Storage takes the preloaded object instead of reading the file on the UI thread. If a file was not preloaded,
+ * could not be read or has changed in the meantime Storage reads it as before.
+ * <p>
+ * Collects the read, wait and backup times per file for the startup report.
+ */
+public class StorageLoader {
+    private static final Logger log = LoggerFactory.getLogger(StorageLoader.class);
+
+    private static final int MAX_THREADS = 4;
+
+    private static final Map<File, PreloadedFile> preloadedFiles = new ConcurrentHashMap<>();
+    private static final Map<String, FileTiming> timingsByFileName = new ConcurrentHashMap<>();
+    private static volatile long preloadStartTime;
+
+    private static class PreloadedFile {
+        private final long length;
+        private final long lastModified;
+        private final Future<Object> future;
+
+        private PreloadedFile(long length, long lastModified, Future<Object> future) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.future = future;
+        }
+    }
+
+    public static class FileTiming {
+        private final String fileName;
+        private long bytes;
+        private long readTime;
+        private long waitTime;
+        private boolean preloaded;
+        private String backup = "none";
+
+        private FileTiming(String fileName) {
+            this.fileName = fileName;
+        }
+
+        private synchronized void setRead(long bytes, long readTime, boolean preloaded) {
+            this.bytes = bytes;
+            this.readTime = readTime;
+            this.preloaded = preloaded;
+        }
+
+        private synchronized void setWaitTime(long waitTime) {
+            this.waitTime = waitTime;
+        }
+
+        private synchronized void setBackup(String backup) {
+            this.backup = backup;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public synchronized long getBytes() {
+            return bytes;
+        }
+
+        public synchronized long getReadTime() {
+            return readTime;
+        }
+
+        public synchronized long getWaitTime() {
+            return waitTime;
+        }
+
+        public synchronized boolean isPreloaded() {
+            return preloaded;
+        }
+
+        public synchronized String getBackup() {
+            return backup;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "FileTiming{" +
+                    "fileName='" + fileName + '\'' +
+                    ", bytes=" + bytes +
+                    ", readTime=" + readTime + "ms" +
+                    ", waitTime=" + waitTime + "ms" +
+                    ", preloaded=" + preloaded +
+                    ", backup=" + backup +
+                    '}';
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Starts reading all persisted files of that dir on background threads. Call it before the objects using
+     * Storage are created.
+     */
+    public static void preload(File dir) {
+        File[] files = dir.listFiles(file -> file.isFile() &&
+                !file.getName().endsWith(".journal") &&
+                !file.getName().startsWith("temp"));
+        if (files == null || files.length == 0)
+            return;
+
+        preloadStartTime = System.currentTimeMillis();
+        ThreadFactory threadFactory = new ThreadFactoryBuilder()
+                .setNameFormat("StorageLoader-%d")
+                .setDaemon(true)
+                .build();
+        int numThreads = Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads, threadFactory);
+        for (File file : files) {
+            long length = file.length();
+            long lastModified = file.lastModified();
+            Future<Object> future = executor.submit(() -> read(file, length));
+            preloadedFiles.put(file.getAbsoluteFile(), new PreloadedFile(length, lastModified, future));
+        }
+        // Threads terminate after all files are read
+        executor.shutdown();
+        log.info("Preloading {} files from {} with {} threads", files.length, dir, numThreads);
+    }
+
+    public static List<FileTiming> getTimings() {
+        return timingsByFileName.values().stream()
+                .sorted(Comparator.comparing(FileTiming::getReadTime).reversed())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Logs the startup report with the timings of all files read so far.
+     */
+    public static void logReport() {
+        List<FileTiming> timings = getTimings();
+        long totalReadTime = timings.stream().mapToLong(FileTiming::getReadTime).sum();
+        long totalWaitTime = timings.stream().mapToLong(FileTiming::getWaitTime).sum();
+        long totalBytes = timings.stream().mapToLong(FileTiming::getBytes).sum();
+        String notClaimed = preloadedFiles.keySet().stream().map(File::getName).collect(Collectors.joining(", "));
+        log.info("Storage startup report: {} files, {} bytes, read time {}ms, blocking wait time {}ms, " +
+                        "time since preload start {}ms, preloaded but not used yet: [{}]\n{}",
+                timings.size(), totalBytes, totalReadTime, totalWaitTime,
+                preloadStartTime > 0 ? System.currentTimeMillis() - preloadStartTime : 0,
+                notClaimed,
+                timings.stream().map(FileTiming::toString).collect(Collectors.joining("\n")));
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Package scope
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Returns the preloaded object and waits if it is still being read. A preloaded object is only returned once.
+     *
+     * @return The object or null if the file was not preloaded, could not be read or has changed since.
+     */
+    @Nullable
+    static Object takePreloaded(File file) {
+        PreloadedFile preloadedFile = preloadedFiles.remove(file.getAbsoluteFile());
+        if (preloadedFile == null)
+            return null;
+
+        long now = System.currentTimeMillis();
+        try {
+            Object object = preloadedFile.future.get();
+            getTiming(file).setWaitTime(System.currentTimeMillis() - now);
+            if (file.length() != preloadedFile.length || file.lastModified() != preloadedFile.lastModified) {
+                log.warn("File {} has changed since it was preloaded. We read it again.", file);
+                return null;
+            }
+            return object;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            // Storage reads the file again and handles the error
+            log.warn("Preloading {} failed: {}", file, e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
+            return null;
+        }
+    }
+
+    static void recordRead(File file, long readTime) {
+        getTiming(file).setRead(file.length(), readTime, false);
+    }
+
+    static void recordBackup(File file, String backup) {
+        getTiming(file).setBackup(backup);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static Object read(File file, long length) throws Exception {
+        long now = System.currentTimeMillis();
+        Object object = StorageFormat.read(file);
+        getTiming(file).setRead(length, System.currentTimeMillis() - now, true);
+        return object;
+    }
+
+    private static FileTiming getTiming(File file) {
+        return timingsByFileName.computeIfAbsent(file.getName(), FileTiming::new);
+    }
+}
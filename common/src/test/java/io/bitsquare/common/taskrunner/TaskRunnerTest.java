@@ -0,0 +1,222 @@
+package io.bitsquare.common.taskrunner;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import io.bitsquare.common.UserThread;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TaskRunnerTest {
+    private TestModel model;
+    private boolean completed;
+    private String errorMessage;
+
+    @Before
+    public void setup() {
+        TaskStatistics.clear();
+        model = new TestModel();
+        completed = false;
+        errorMessage = null;
+    }
+
+    @After
+    public void tearDown() {
+        UserThread.setExecutor(MoreExecutors.directExecutor());
+    }
+
+    @Test
+    public void testTasksRunInOrder() {
+        TaskRunner<TestModel> taskRunner = new TaskRunner<>(model, () -> completed = true, message -> errorMessage = message);
+        taskRunner.addTasks(FirstTask.class, SecondTask.class, FirstTask.class);
+        taskRunner.run();
+
+        assertTrue(completed);
+        assertNull(errorMessage);
+        assertEquals(3, model.persisted);
+        assertEquals("FirstTask,SecondTask,FirstTask", String.join(",", model.executed));
+
+        TaskStatistics.TaskStats stats = getStats("FirstTask").get();
+        assertEquals("TestModel", stats.getProtocol());
+        assertEquals(2, stats.getCount());
+        assertEquals(0, stats.getNumFailures());
+        assertTrue(TaskStatistics.getReport().contains("SecondTask: count=1"));
+    }
+
+    @Test
+    public void testFailedTaskStopsRunner() {
+        TaskRunner<TestModel> taskRunner = new TaskRunner<>(model, () -> completed = true, message -> errorMessage = message);
+        taskRunner.addTasks(FirstTask.class, FailingTask.class, SecondTask.class);
+        taskRunner.run();
+
+        assertFalse(completed);
+        assertTrue(errorMessage.contains("FailingTask"));
+        assertEquals("FirstTask,FailingTask", String.join(",", model.executed));
+        assertEquals(1, getStats("FailingTask").get().getNumFailures());
+        assertFalse(getStats("SecondTask").isPresent());
+    }
+
+    @Test
+    public void testParallelTasks() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        TaskRunner<TestModel> taskRunner = new TaskRunner<>(model, latch::countDown, message -> {
+            errorMessage = message;
+            latch.countDown();
+        });
+        taskRunner.addTasks(FirstTask.class);
+        taskRunner.addParallelTasks(BlockingTask.class, BlockingTask.class);
+        taskRunner.addTasks(SecondTask.class);
+        taskRunner.run();
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertNull(errorMessage);
+        // Both tasks of the group have been running at the same time on worker threads
+        assertEquals(2, model.maxConcurrentTasks.get());
+        assertEquals("FirstTask,BlockingTask,BlockingTask,SecondTask", String.join(",", model.executed));
+        assertEquals(2, getStats("BlockingTask").get().getCount());
+    }
+
+    @Test
+    public void testFailedParallelTaskStopsRunner() throws InterruptedException {
+        AtomicInteger numErrors = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(1);
+        TaskRunner<TestModel> taskRunner = new TaskRunner<>(model, () -> completed = true, message -> {
+            numErrors.incrementAndGet();
+            latch.countDown();
+        });
+        taskRunner.addParallelTasks(FailingTask.class, FailingTask.class, FirstTask.class);
+        taskRunner.addTasks(SecondTask.class);
+        taskRunner.run();
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        assertFalse(completed);
+        assertEquals(1, numErrors.get());
+        assertFalse(model.executed.contains("SecondTask"));
+    }
+
+    @Test
+    public void testParallelTaskFailureIsHandledOnUserThread() throws InterruptedException {
+        ExecutorService userThread = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "UserThread"));
+        UserThread.setExecutor(userThread);
+        CountDownLatch latch = new CountDownLatch(1);
+        List<String> errorHandlerThreads = Collections.synchronizedList(new ArrayList<>());
+        TaskRunner<TestModel> taskRunner = new TaskRunner<>(model, () -> completed = true, message -> {
+            errorHandlerThreads.add(Thread.currentThread().getName());
+            latch.countDown();
+        });
+        taskRunner.addParallelTasks(FailingTask.class, FailingTask.class);
+        userThread.execute(taskRunner::run);
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+        userThread.shutdown();
+        assertEquals(Collections.singletonList("UserThread"), errorHandlerThreads);
+        // Only the reported failure is applied to the model
+        assertEquals(Collections.singletonList("UserThread"), model.failureThreads);
+    }
+
+    @Test
+    public void testSequentialTaskFailureIsAppliedToModel() {
+        TaskRunner<TestModel> taskRunner = new TaskRunner<>(model, () -> completed = true, message -> errorMessage = message);
+        taskRunner.addTasks(FailingTask.class);
+        taskRunner.run();
+
+        assertEquals(1, model.failureThreads.size());
+        assertTrue(errorMessage.contains("Test failure"));
+    }
+
+    private static Optional<TaskStatistics.TaskStats> getStats(String task) {
+        return TaskStatistics.getStats().stream().filter(stats -> stats.getTask().equals(task)).findFirst();
+    }
+
+    public static class TestModel implements Model {
+        private final List<String> executed = Collections.synchronizedList(new ArrayList<>());
+        private final List<String> failureThreads = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicInteger concurrentTasks = new AtomicInteger();
+        private final AtomicInteger maxConcurrentTasks = new AtomicInteger();
+        private final CountDownLatch allBlockingTasksStarted = new CountDownLatch(2);
+        private volatile int persisted;
+
+        @Override
+        public void persist() {
+            persisted++;
+        }
+
+        @Override
+        public void onComplete() {
+        }
+    }
+
+    public static class FirstTask extends Task<TestModel> {
+        public FirstTask(TaskRunner taskHandler, TestModel model) {
+            super(taskHandler, model);
+        }
+
+        @Override
+        protected void run() {
+            model.executed.add(getClass().getSimpleName());
+            complete();
+        }
+    }
+
+    public static class SecondTask extends FirstTask {
+        public SecondTask(TaskRunner taskHandler, TestModel model) {
+            super(taskHandler, model);
+        }
+    }
+
+    public static class FailingTask extends Task<TestModel> {
+        public FailingTask(TaskRunner taskHandler, TestModel model) {
+            super(taskHandler, model);
+        }
+
+        @Override
+        protected void run() {
+            model.executed.add(getClass().getSimpleName());
+            failed("Test failure");
+        }
+
+        @Override
+        protected void onFailed(String errorMessage) {
+            model.failureThreads.add(Thread.currentThread().getName());
+        }
+    }
+
+    public static class BlockingTask extends Task<TestModel> {
+        public BlockingTask(TaskRunner taskHandler, TestModel model) {
+            super(taskHandler, model);
+        }
+
+        @Override
+        protected void run() {
+            int concurrent = model.concurrentTasks.incrementAndGet();
+            model.maxConcurrentTasks.accumulateAndGet(concurrent, Math::max);
+            model.allBlockingTasksStarted.countDown();
+            try {
+                // Completes only if the other task of the group runs at the same time
+                if (!model.allBlockingTasksStarted.await(5, TimeUnit.SECONDS)) {
+                    failed("Tasks did not run in parallel");
+                    return;
+                }
+            } catch (InterruptedException e) {
+                failed(e);
+                return;
+            }
+            model.executed.add(getClass().getSimpleName());
+            model.concurrentTasks.decrementAndGet();
+            complete();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package io.bitsquare.storage;
+
+import com.google.common.io.Files;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.util.encoders.Hex;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.Security;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class BlobStoreTest {
+    private File dir;
+    private BlobStore blobStore;
+
+    @Before
+    public void setup() {
+        Security.addProvider(new BouncyCastleProvider());
+        dir = Files.createTempDir();
+        blobStore = new BlobStore(new File(dir, "blobs"));
+    }
+
+    @After
+    public void tearDown() {
+        File[] quarantinedFiles = new File(dir, "blobs/quarantine").listFiles();
+        if (quarantinedFiles != null)
+            Arrays.stream(quarantinedFiles).forEach(File::delete);
+        new File(dir, "blobs/quarantine").delete();
+        File[] files = new File(dir, "blobs").listFiles();
+        if (files != null)
+            Arrays.stream(files).forEach(File::delete);
+        new File(dir, "blobs").delete();
+        dir.delete();
+    }
+
+    @Test
+    public void testPutAndGet() throws IOException {
+        byte[] data = "screenshot".getBytes();
+        byte[] hash = blobStore.put(data);
+        // same content is stored only once
+        assertArrayEquals(hash, blobStore.put(data.clone()));
+        assertEquals(1, new File(dir, "blobs").listFiles().length);
+
+        assertArrayEquals(data, blobStore.get(hash));
+        assertNull(blobStore.get(new byte[32]));
+    }
+
+    @Test
+    public void testPutLater() throws IOException {
+        byte[] data = "screenshot".getBytes();
+        byte[] hash = blobStore.putLater(data);
+        assertArrayEquals(hash, blobStore.put(data));
+        // served from memory until it is written
+        byte[] data2 = "screenshot2".getBytes();
+        assertArrayEquals(data2, blobStore.get(blobStore.putLater(data2)));
+
+        PersistenceScheduler.flushAll();
+        assertEquals(2, new File(dir, "blobs").listFiles().length);
+        assertArrayEquals(data, blobStore.get(hash));
+    }
+
+    @Test
+    public void testCorruptedBlob() throws IOException {
+        byte[] hash = blobStore.put("screenshot".getBytes());
+        Files.write("manipulated".getBytes(), new File(new File(dir, "blobs"), Hex.toHexString(hash)));
+        assertNull(blobStore.get(hash));
+    }
+
+    @Test
+    public void testQuarantineUnreferenced() throws IOException {
+        byte[] hash1 = blobStore.put("screenshot1".getBytes());
+        byte[] hash2 = blobStore.put("screenshot2".getBytes());
+        long gracePeriod = TimeUnit.DAYS.toMillis(30);
+
+        assertEquals(1, blobStore.quarantineUnreferenced(Collections.singleton(hash1), gracePeriod));
+        assertFalse(new File(new File(dir, "blobs"), Hex.toHexString(hash2)).exists());
+        assertTrue(blobStore.contains(hash2));
+
+        // Referenced again, e.g. after the disputes got restored from a backup
+        assertEquals(0, blobStore.quarantineUnreferenced(new HashSet<>(Arrays.asList(hash1, hash2)), gracePeriod));
+        assertTrue(new File(new File(dir, "blobs"), Hex.toHexString(hash2)).exists());
+
+        // A get restores the blob as well
+        blobStore.quarantineUnreferenced(Collections.singleton(hash1), gracePeriod);
+        assertArrayEquals("screenshot2".getBytes(), blobStore.get(hash2));
+        assertTrue(new File(new File(dir, "blobs"), Hex.toHexString(hash2)).exists());
+    }
+
+    @Test
+    public void testDeleteAfterGracePeriod() throws IOException {
+        byte[] hash1 = blobStore.put("screenshot1".getBytes());
+        byte[] hash2 = blobStore.put("screenshot2".getBytes());
+
+        blobStore.quarantineUnreferenced(Collections.singleton(hash1), 0);
+        assertTrue(new File(dir, "blobs/quarantine/" + Hex.toHexString(hash2))
+                .setLastModified(System.currentTimeMillis() - 1000));
+        blobStore.quarantineUnreferenced(Collections.singleton(hash1), 0);
+
+        assertTrue(blobStore.contains(hash1));
+        assertFalse(blobStore.contains(hash2));
+        assertNull(blobStore.get(hash2));
+    }
+}
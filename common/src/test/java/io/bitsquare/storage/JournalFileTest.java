@@ -0,0 +1,117 @@
+package io.bitsquare.storage;
+
+import com.google.common.io.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class JournalFileTest {
+    private File dir;
+    private File snapshotFile;
+    private File file;
+
+    @Before
+    public void setup() throws IOException {
+        dir = Files.createTempDir();
+        snapshotFile = new File(dir, "PendingTrades");
+        Files.write(new byte[]{1, 2, 3}, snapshotFile);
+        file = new File(dir, "PendingTrades.journal");
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+        snapshotFile.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void testReplayInOrder() throws IOException {
+        JournalFile journal = new JournalFile(file, snapshotFile);
+        journal.append(entries("a", "a1", "b", "b1"));
+        journal.append(entries("a", "a2", "b", null));
+
+        Map<String, Serializable> state = replay(new JournalFile(file, snapshotFile));
+        assertEquals(1, state.size());
+        assertEquals("a2", state.get("a"));
+    }
+
+    @Test
+    public void testTruncatedRecordIsDropped() throws IOException {
+        JournalFile journal = new JournalFile(file, snapshotFile);
+        journal.append(entries("a", "a1"));
+        long validLength = file.length();
+        journal.append(entries("b", "b1"));
+
+        // simulate a crash in the middle of the last write
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(file.length() - 3);
+        }
+
+        Map<String, Serializable> state = replay(new JournalFile(file, snapshotFile));
+        assertEquals(1, state.size());
+        assertEquals("a1", state.get("a"));
+        assertEquals(validLength, file.length());
+    }
+
+    @Test
+    public void testFailedRecordIsSkipped() throws IOException {
+        JournalFile journal = new JournalFile(file, snapshotFile);
+        journal.append(entries("a", "a1", "b", "b1", "c", "c1"));
+        long length = file.length();
+
+        Map<String, Serializable> state = new LinkedHashMap<>();
+        int numRecords = new JournalFile(file, snapshotFile).replay((key, entry) -> {
+            if (key.equals("b"))
+                throw new IllegalStateException("Cannot apply entry");
+            state.put(key, entry);
+        });
+        assertEquals(2, numRecords);
+        assertEquals(2, state.size());
+        assertEquals("c1", state.get("c"));
+        // The journal is not truncated
+        assertEquals(length, file.length());
+    }
+
+    @Test
+    public void testJournalOfOlderSnapshotIsDropped() throws IOException {
+        JournalFile journal = new JournalFile(file, snapshotFile);
+        journal.append(entries("a", "a1"));
+
+        // simulate a crash after a new snapshot was written but before the journal was reset
+        Files.write(new byte[]{1, 2, 3, 4}, snapshotFile);
+
+        assertEquals(0, replay(new JournalFile(file, snapshotFile)).size());
+        assertFalse(file.exists());
+    }
+
+    private Map<String, Serializable> replay(JournalFile journal) {
+        Map<String, Serializable> state = new LinkedHashMap<>();
+        journal.replay((key, entry) -> {
+            if (entry != null)
+                state.put(key, entry);
+            else
+                state.remove(key);
+        });
+        return state;
+    }
+
+    private static Map<String, byte[]> entries(String... keysAndValues) throws IOException {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            String value = keysAndValues[i + 1];
+            entries.put(keysAndValues[i], value != null ? Storage.serializeEntry(value) : null);
+        }
+        return entries;
+    }
+}
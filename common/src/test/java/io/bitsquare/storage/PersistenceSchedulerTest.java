@@ -0,0 +1,56 @@
+package io.bitsquare.storage;
+
+import com.google.common.io.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class PersistenceSchedulerTest {
+    private File dir;
+
+    @Before
+    public void setup() {
+        dir = Files.createTempDir();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null)
+            Arrays.stream(files).forEach(File::delete);
+        dir.delete();
+    }
+
+    @Test
+    public void testFlushAllWritesPendingSaves() throws IOException {
+        File fileA = new File(dir, "SchedulerTestA");
+        File fileB = new File(dir, "SchedulerTestB");
+        FileManager<ArrayList<String>> fileManagerA = new FileManager<>(dir, fileA, 60_000);
+        FileManager<ArrayList<String>> fileManagerB = new FileManager<>(dir, fileB, 60_000);
+
+        ArrayList<String> list = new ArrayList<>(Arrays.asList("a", "b"));
+        // coalesced into one write per file
+        fileManagerA.saveLater(list);
+        fileManagerA.saveLater(list);
+        fileManagerB.saveLater(list);
+        assertFalse(fileA.exists());
+        assertFalse(fileB.exists());
+        assertTrue(PersistenceScheduler.getQueueDepth() >= 2);
+
+        PersistenceScheduler.flushAll();
+        assertTrue(fileA.exists());
+        assertTrue(fileB.exists());
+        assertEquals(list, fileManagerA.read(fileA));
+
+        PersistenceScheduler.FileStats stats = PersistenceScheduler.getStats().get("SchedulerTestA");
+        assertEquals(1, stats.getNumWrites());
+        assertEquals(fileA.length(), stats.getLastBytes());
+    }
+}
@@ -0,0 +1,102 @@
+package io.bitsquare.storage;
+
+import com.google.common.io.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RotatingBackupTest {
+    private File dir;
+    private File backupDir;
+    private File file;
+    private RotatingBackup rotatingBackup;
+
+    @Before
+    public void setup() {
+        dir = Files.createTempDir();
+        backupDir = new File(dir, "backup");
+        file = new File(dir, "Preferences");
+        rotatingBackup = new RotatingBackup(backupDir, "Preferences");
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = backupDir.listFiles();
+        if (files != null)
+            Arrays.stream(files).forEach(File::delete);
+        backupDir.delete();
+        file.delete();
+        dir.delete();
+    }
+
+    @Test
+    public void testBackupOnlyIfChanged() throws IOException {
+        write("version 1");
+        assertNotEquals(RotatingBackup.Result.UNCHANGED, rotatingBackup.backup(file));
+        assertEquals(RotatingBackup.Result.UNCHANGED, rotatingBackup.backup(file));
+        assertEquals(1, rotatingBackup.getBackups().size());
+
+        write("version 2");
+        assertNotEquals(RotatingBackup.Result.UNCHANGED, rotatingBackup.backup(file));
+        List<File> backups = rotatingBackup.getBackups();
+        assertEquals(2, backups.size());
+        // the backup is not affected by replacing the file
+        assertEquals("version 2", new String(java.nio.file.Files.readAllBytes(backups.get(0).toPath())));
+        assertEquals("version 1", new String(java.nio.file.Files.readAllBytes(backups.get(1).toPath())));
+    }
+
+    @Test
+    public void testRetainedByCount() throws IOException {
+        for (int i = 0; i < RotatingBackup.MAX_BACKUPS + 3; i++) {
+            write("version " + i);
+            rotatingBackup.backup(file);
+        }
+        List<File> backups = rotatingBackup.getBackups();
+        assertEquals(RotatingBackup.MAX_BACKUPS, backups.size());
+        assertEquals("version " + (RotatingBackup.MAX_BACKUPS + 2), new String(java.nio.file.Files.readAllBytes(backups.get(0).toPath())));
+    }
+
+    @Test
+    public void testRetainedByAge() throws IOException {
+        write("old");
+        File oldBackup = new File(backupDir, "Preferences." + (System.currentTimeMillis() - RotatingBackup.MAX_AGE - 1000) +
+                "." + "0000000000000000000000000000000000000000000000000000000000000000");
+        backupDir.mkdirs();
+        Files.write("old".getBytes(), oldBackup);
+
+        write("new");
+        rotatingBackup.backup(file);
+        assertFalse(oldBackup.exists());
+        assertEquals(1, rotatingBackup.getBackups().size());
+    }
+
+    @Test
+    public void testLatestValidBackup() throws IOException {
+        write("version 1");
+        rotatingBackup.backup(file);
+        File validBackup = rotatingBackup.getBackups().get(0);
+
+        write("version 2");
+        rotatingBackup.backup(file);
+        File corruptedBackup = rotatingBackup.getBackups().get(0);
+        // break the hard link before we corrupt the backup
+        corruptedBackup.delete();
+        Files.write("corrupted".getBytes(), corruptedBackup);
+
+        assertEquals(validBackup, rotatingBackup.getLatestValidBackup());
+    }
+
+    // Like FileManager we replace the file by renaming a new file
+    private void write(String content) throws IOException {
+        File tempFile = File.createTempFile("temp", null, dir);
+        Files.write(content.getBytes(), tempFile);
+        assertTrue(tempFile.renameTo(file));
+    }
+}
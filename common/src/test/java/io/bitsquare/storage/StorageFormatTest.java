@@ -0,0 +1,63 @@
+package io.bitsquare.storage;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class StorageFormatTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        ArrayList<String> small = new ArrayList<>(Arrays.asList("a", "b"));
+        byte[] encoded = StorageFormat.encode(small);
+        assertEquals(0, encoded[5] & StorageFormat.FLAG_DEFLATE);
+        assertEquals(small, StorageFormat.decode(encoded));
+
+        ArrayList<String> large = createLargeList();
+        encoded = StorageFormat.encode(large);
+        assertEquals(StorageFormat.FLAG_DEFLATE, encoded[5] & StorageFormat.FLAG_DEFLATE);
+        assertTrue(encoded.length < serialize(large).length / 2);
+        assertEquals(large, StorageFormat.decode(encoded));
+    }
+
+    @Test
+    public void testReadLegacyFormat() throws Exception {
+        ArrayList<String> list = createLargeList();
+        assertEquals(list, StorageFormat.decode(serialize(list)));
+    }
+
+    @Test(expected = StorageFormat.CorruptedFileException.class)
+    public void testTornWrite() throws Exception {
+        byte[] encoded = StorageFormat.encode(createLargeList());
+        StorageFormat.decode(Arrays.copyOf(encoded, encoded.length - 10));
+    }
+
+    @Test(expected = StorageFormat.CorruptedFileException.class)
+    public void testChecksum() throws Exception {
+        byte[] encoded = StorageFormat.encode(createLargeList());
+        encoded[encoded.length / 2] ^= 1;
+        StorageFormat.decode(encoded);
+    }
+
+    private static ArrayList<String> createLargeList() {
+        ArrayList<String> list = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            list.add("trade " + i + " with a contract which is quite repetitive");
+        }
+        return list;
+    }
+
+    private static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bos)) {
+            out.writeObject(object);
+        }
+        return bos.toByteArray();
+    }
+}
@@ -0,0 +1,82 @@
+package io.bitsquare.storage;
+
+import com.google.common.io.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class StorageLoaderTest {
+    private File dir;
+
+    @Before
+    public void setup() {
+        dir = Files.createTempDir();
+    }
+
+    @After
+    public void tearDown() {
+        File backupDir = new File(dir, "backup");
+        File[] files = backupDir.listFiles();
+        if (files != null)
+            Arrays.stream(files).forEach(File::delete);
+        backupDir.delete();
+        files = dir.listFiles();
+        if (files != null)
+            Arrays.stream(files).forEach(File::delete);
+        dir.delete();
+    }
+
+    @Test
+    public void testPreload() {
+        for (int i = 0; i < 5; i++) {
+            save("LoaderTest" + i, new ArrayList<>(Arrays.asList("a", String.valueOf(i))));
+        }
+
+        StorageLoader.preload(dir);
+        // changed after the preload started, so it has to be read again
+        save("LoaderTest4", new ArrayList<>(Arrays.asList("changed", "file")));
+
+        for (int i = 0; i < 4; i++) {
+            ArrayList<String> persisted = new Storage<ArrayList<String>>(dir).initAndGetPersisted("LoaderTest" + i);
+            assertEquals(Arrays.asList("a", String.valueOf(i)), persisted);
+        }
+        assertEquals(Arrays.asList("changed", "file"), new Storage<ArrayList<String>>(dir).initAndGetPersisted("LoaderTest4"));
+
+        assertTrue(StorageLoader.getTimings().stream()
+                .filter(e -> e.getFileName().equals("LoaderTest0"))
+                .findAny().get().isPreloaded());
+    }
+
+    @Test
+    public void testBackupSkippedIfUnchanged() {
+        File file = new File(dir, "BackupTest");
+        FileManager<ArrayList<String>> fileManager = save("BackupTest", new ArrayList<>(Arrays.asList("a", "b")));
+
+        fileManager.backupFileIfUnchanged("BackupTest", file.length(), file.lastModified());
+        assertNotNull(fileManager.getLatestValidBackup("BackupTest"));
+        assertTrue(getBackup("BackupTest").startsWith("LINKED") || getBackup("BackupTest").startsWith("COPIED"));
+
+        fileManager.backupFileIfUnchanged("BackupTest", file.length(), file.lastModified());
+        assertTrue(getBackup("BackupTest").startsWith("UNCHANGED"));
+
+        // the file has changed since the read, so we don't back it up
+        fileManager.backupFileIfUnchanged("BackupTest", file.length() + 1, file.lastModified());
+        assertEquals("skipped (file changed)", getBackup("BackupTest"));
+    }
+
+    private String getBackup(String fileName) {
+        return StorageLoader.getTimings().stream().filter(e -> e.getFileName().equals(fileName)).findAny().get().getBackup();
+    }
+
+    private FileManager<ArrayList<String>> save(String fileName, ArrayList<String> list) {
+        FileManager<ArrayList<String>> fileManager = new FileManager<>(dir, new File(dir, fileName), 0);
+        fileManager.saveNow(list);
+        return fileManager;
+    }
+}
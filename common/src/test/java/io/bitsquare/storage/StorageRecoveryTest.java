@@ -0,0 +1,67 @@
+package io.bitsquare.storage;
+
+import com.google.common.io.Files;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StorageRecoveryTest {
+    private File dir;
+    private List<String> corruptedFiles;
+
+    @Before
+    public void setup() {
+        dir = Files.createTempDir();
+        corruptedFiles = new ArrayList<>();
+        Storage.setDatabaseCorruptionHandler(corruptedFiles::add);
+    }
+
+    @After
+    public void tearDown() {
+        deleteAll(dir);
+    }
+
+    @Test
+    public void testRestoreFromBackup() throws Exception {
+        ArrayList<String> list = new ArrayList<>(Arrays.asList("a", "b"));
+        File file = new File(dir, "RecoveryTestList");
+        Files.write(StorageFormat.encode(list), file);
+        new FileManager<ArrayList<String>>(dir, file, 0).backupFile("RecoveryTestList");
+
+        // Files are replaced and not written in place, so the hard linked backup keeps the old content
+        file.delete();
+        Files.write("corrupted".getBytes(), file);
+        ArrayList<String> persisted = new Storage<ArrayList<String>>(dir).initAndGetPersisted(new ArrayList<>(), "RecoveryTestList");
+
+        assertEquals(list, persisted);
+        assertTrue(corruptedFiles.isEmpty());
+        assertEquals(list, StorageFormat.read(file));
+        // The corrupted file is kept
+        assertEquals(1, new File(dir, "corrupted").listFiles().length);
+    }
+
+    @Test
+    public void testNoValidBackup() throws IOException {
+        File file = new File(dir, "RecoveryTestList");
+        Files.write("corrupted".getBytes(), file);
+
+        assertNull(new Storage<ArrayList<String>>(dir).initAndGetPersisted(new ArrayList<>(), "RecoveryTestList"));
+        assertEquals(Arrays.asList("RecoveryTestList"), corruptedFiles);
+        assertFalse(file.exists());
+    }
+
+    private void deleteAll(File file) {
+        File[] files = file.listFiles();
+        if (files != null)
+            Arrays.stream(files).forEach(this::deleteAll);
+        file.delete();
+    }
+}
@@ -18,11 +18,13 @@
 package io.bitsquare.alert;
 
 import io.bitsquare.app.Version;
+import io.bitsquare.common.crypto.CanonicalEncodable;
+import io.bitsquare.common.crypto.CanonicalEncoder;
 import io.bitsquare.p2p.storage.data.PubKeyProtectedExpirablePayload;
 
 import java.security.PublicKey;
 
-public final class Alert implements PubKeyProtectedExpirablePayload {
+public final class Alert implements PubKeyProtectedExpirablePayload, CanonicalEncodable {
     // That object is sent over the wire, so we need to take care of version compatibility.
     private static final long serialVersionUID = Version.NETWORK_PROTOCOL_VERSION;
 
@@ -55,6 +57,13 @@ public final class Alert implements PubKeyProtectedExpirablePayload {
         return storagePublicKey;
     }
 
+    @Override
+    public void encode(CanonicalEncoder encoder) {
+        encoder.writeString(message)
+                .writeString(signatureAsBase64)
+                .writePublicKey(storagePublicKey);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
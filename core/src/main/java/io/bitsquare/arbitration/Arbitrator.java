@@ -18,6 +18,8 @@
 package io.bitsquare.arbitration;
 
 import io.bitsquare.app.Version;
+import io.bitsquare.common.crypto.CanonicalEncodable;
+import io.bitsquare.common.crypto.CanonicalEncoder;
 import io.bitsquare.common.crypto.PubKeyRing;
 import io.bitsquare.p2p.NodeAddress;
 import io.bitsquare.p2p.storage.data.PubKeyProtectedExpirablePayload;
@@ -27,7 +29,7 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
-public final class Arbitrator implements PubKeyProtectedExpirablePayload {
+public final class Arbitrator implements PubKeyProtectedExpirablePayload, CanonicalEncodable {
     // That object is sent over the wire, so we need to take care of version compatibility.
     private static final long serialVersionUID = Version.NETWORK_PROTOCOL_VERSION;
 
@@ -108,6 +110,18 @@ public final class Arbitrator implements PubKeyProtectedExpirablePayload {
         return registrationPubKey;
     }
 
+    @Override
+    public void encode(CanonicalEncoder encoder) {
+        encoder.writeBytes(btcPubKey)
+                .write(pubKeyRing)
+                .write(arbitratorNodeAddress)
+                .writeStringList(languageCodes)
+                .writeString(btcAddress)
+                .writeLong(registrationDate)
+                .writeString(registrationSignature)
+                .writeBytes(registrationPubKey);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -69,7 +69,8 @@ public class Dispute implements Serializable {
     private final PubKeyRing arbitratorPubKeyRing;
     private final boolean isSupportTicket;
 
-    private final List<DisputeMailMessage> disputeMailMessages = new ArrayList<>();
+    // Replaced instead of mutated, so a background save never iterates a list we are changing
+    private List<DisputeMailMessage> disputeMailMessages = new ArrayList<>();
 
     private boolean isClosed;
     private DisputeResult disputeResult;
@@ -136,7 +137,9 @@ public class Dispute implements Serializable {
 
     public void addDisputeMessage(DisputeMailMessage disputeMailMessage) {
         if (!disputeMailMessages.contains(disputeMailMessage)) {
-            disputeMailMessages.add(disputeMailMessage);
+            List<DisputeMailMessage> newDisputeMailMessages = new ArrayList<>(disputeMailMessages);
+            newDisputeMailMessages.add(disputeMailMessage);
+            disputeMailMessages = newDisputeMailMessages;
             disputeMailMessagesAsObservableList.add(disputeMailMessage);
             storage.queueUpForSave();
         } else {
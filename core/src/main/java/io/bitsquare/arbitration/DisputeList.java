@@ -30,7 +30,7 @@ import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 
-public class DisputeList<DisputeCase> extends ArrayList<DisputeCase> implements Serializable {
+public class DisputeList<DisputeCase> extends ArrayList<DisputeCase> implements Serializable, Storage.Snapshotable<DisputeList<DisputeCase>> {
     // That object is saved to disc. We need to take care of changes to not break deserialization.
     private static final long serialVersionUID = Version.LOCAL_DB_VERSION;
 
@@ -38,6 +38,8 @@ public class DisputeList<DisputeCase> extends ArrayList<DisputeCase> implements
 
     final transient private Storage<DisputeList<DisputeCase>> storage;
     transient private ObservableList<DisputeCase> observableList;
+    // False if there was no persisted list or it could not be read
+    transient private boolean persistedLoaded;
 
     public DisputeList(Storage<DisputeList<DisputeCase>> storage) {
         this.storage = storage;
@@ -45,10 +47,16 @@ public class DisputeList<DisputeCase> extends ArrayList<DisputeCase> implements
         DisputeList persisted = storage.initAndGetPersisted(this);
         if (persisted != null) {
             this.addAll(persisted);
+            persistedLoaded = true;
         }
         observableList = FXCollections.observableArrayList(this);
     }
 
+    private DisputeList(DisputeList<DisputeCase> disputeList) {
+        super(disputeList);
+        this.storage = null;
+    }
+
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
         try {
             in.defaultReadObject();
@@ -77,6 +85,15 @@ public class DisputeList<DisputeCase> extends ArrayList<DisputeCase> implements
         return result;
     }
 
+    @Override
+    public DisputeList<DisputeCase> getSnapshot() {
+        return new DisputeList<>(this);
+    }
+
+    public boolean isPersistedLoaded() {
+        return persistedLoaded;
+    }
+
     private ObservableList<DisputeCase> getObservableList() {
         if (observableList == null)
             observableList = FXCollections.observableArrayList(this);
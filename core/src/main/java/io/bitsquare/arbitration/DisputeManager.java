@@ -32,6 +32,7 @@ import io.bitsquare.p2p.NodeAddress;
 import io.bitsquare.p2p.P2PService;
 import io.bitsquare.p2p.messaging.DecryptedMsgWithPubKey;
 import io.bitsquare.p2p.messaging.SendMailboxMessageListener;
+import io.bitsquare.storage.BlobStore;
 import io.bitsquare.storage.Storage;
 import io.bitsquare.trade.Contract;
 import io.bitsquare.trade.Trade;
@@ -46,17 +47,20 @@ import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import javax.inject.Named;
 import java.io.File;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class DisputeManager {
     private static final Logger log = LoggerFactory.getLogger(DisputeManager.class);
 
+    // Attachments which are not referenced anymore are kept that long in quarantine before they get deleted
+    private static final long ATTACHMENT_GRACE_PERIOD = TimeUnit.DAYS.toMillis(30);
+
     private final TradeWalletService tradeWalletService;
     private final WalletService walletService;
     private final TradeManager tradeManager;
@@ -65,6 +69,8 @@ public class DisputeManager {
     private final KeyRing keyRing;
     private final Storage<DisputeList<Dispute>> disputeStorage;
     private final DisputeList<Dispute> disputes;
+    // The data of attachments are stored once in the blob store and not with every save of the disputes
+    private final BlobStore attachmentStore;
     transient private final ObservableList<Dispute> disputesObservableList;
     private final String disputeInfo;
     private final FirstPeerAuthenticatedListener firstPeerAuthenticatedListener;
@@ -96,6 +102,9 @@ public class DisputeManager {
         disputesObservableList = FXCollections.observableArrayList(disputes);
         disputes.stream().forEach(e -> e.setStorage(getDisputeStorage()));
 
+        attachmentStore = new BlobStore(new File(storageDir, "attachments"));
+        initAttachmentStore();
+
         disputeInfo = "Please note the basic rules for the dispute process:\n" +
                 "1. You need to respond to the arbitrators requests in between 2 days.\n" +
                 "2. The maximum period for the dispute is 14 days.\n" +
@@ -305,11 +314,16 @@ public class DisputeManager {
                         @Override
                         public void onArrived() {
                             disputeMailMessage.setArrived(true);
+                            // The message is sent, so we don't need the data inline anymore
+                            if (moveAttachmentsToStore(disputeMailMessage))
+                                disputeStorage.queueUpForSave();
                         }
 
                         @Override
                         public void onStoredInMailbox() {
                             disputeMailMessage.setStoredInMailbox(true);
+                            if (moveAttachmentsToStore(disputeMailMessage))
+                                disputeStorage.queueUpForSave();
                         }
 
                         @Override
@@ -436,10 +450,12 @@ public class DisputeManager {
         Optional<Dispute> disputeOptional = findDispute(disputeMailMessage.getTradeId(), disputeMailMessage.getTraderId());
         if (disputeOptional.isPresent()) {
             Dispute dispute = disputeOptional.get();
-            if (!dispute.getDisputeMailMessagesAsObservableList().contains(disputeMailMessage))
+            if (!dispute.getDisputeMailMessagesAsObservableList().contains(disputeMailMessage)) {
+                moveAttachmentsToStore(disputeMailMessage);
                 dispute.addDisputeMessage(disputeMailMessage);
-            else
+            } else {
                 log.warn("We got a dispute mail msg what we have already stored. TradeId = " + disputeMailMessage.getTradeId());
+            }
         } else {
             log.warn("We got a dispute mail msg but we don't have a matching dispute. TradeId = " + disputeMailMessage.getTradeId());
         }
@@ -454,10 +470,12 @@ public class DisputeManager {
                 Dispute dispute = disputeOptional.get();
 
                 DisputeMailMessage disputeMailMessage = disputeResult.getResultMailMessage();
-                if (!dispute.getDisputeMailMessagesAsObservableList().contains(disputeMailMessage))
+                if (!dispute.getDisputeMailMessagesAsObservableList().contains(disputeMailMessage)) {
+                    moveAttachmentsToStore(disputeMailMessage);
                     dispute.addDisputeMessage(disputeMailMessage);
-                else
+                } else {
                     log.warn("We got a dispute mail msg what we have already stored. TradeId = " + disputeMailMessage.getTradeId());
+                }
 
                 dispute.setIsClosed(true);
                 if (tradeManager.getTradeById(dispute.getTradeId()).isPresent())
@@ -557,6 +575,15 @@ public class DisputeManager {
         return disputeStorage;
     }
 
+    // Loads the data from the attachment store if the attachment is only a reference
+    @Nullable
+    public byte[] getAttachmentBytes(DisputeMailMessage.Attachment attachment) {
+        if (attachment.isReference())
+            return attachmentStore.get(attachment.getHash());
+        else
+            return attachment.getBytes();
+    }
+
     public ObservableList<Dispute> getDisputesAsObservableList() {
         return disputesObservableList;
     }
@@ -590,4 +617,38 @@ public class DisputeManager {
         return disputes.stream().filter(e -> e.getTradeId().equals(tradeId)).collect(Collectors.toList());
     }
 
+    // Moves attachments of old versions to the store and quarantines data not referenced by any dispute anymore.
+    // If the disputes could not be loaded we cannot tell which data is still referenced, so we keep everything.
+    private void initAttachmentStore() {
+        long now = System.currentTimeMillis();
+        boolean changed = false;
+        Set<byte[]> referencedHashes = new HashSet<>();
+        for (Dispute dispute : disputes) {
+            for (DisputeMailMessage disputeMailMessage : dispute.getDisputeMailMessagesAsObservableList()) {
+                changed |= moveAttachmentsToStore(disputeMailMessage);
+                disputeMailMessage.getAttachments().stream().forEach(e -> referencedHashes.add(e.getHash()));
+            }
+        }
+        if (changed)
+            disputeStorage.queueUpForSave();
+
+        if (disputes.isPersistedLoaded() && !disputes.isEmpty())
+            attachmentStore.quarantineUnreferenced(referencedHashes, ATTACHMENT_GRACE_PERIOD);
+        log.trace("initAttachmentStore completed in {}msec", System.currentTimeMillis() - now);
+    }
+
+    // Returns true if an attachment got replaced by its reference. The data is written on the persistence thread
+    // before the disputes get saved with the reference.
+    private boolean moveAttachmentsToStore(DisputeMailMessage disputeMailMessage) {
+        boolean changed = false;
+        for (DisputeMailMessage.Attachment attachment : new ArrayList<>(disputeMailMessage.getAttachments())) {
+            if (!attachment.isReference()) {
+                attachmentStore.putLater(attachment.getBytes());
+                disputeMailMessage.replaceAttachment(attachment, attachment.toReference());
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
 }
@@ -18,12 +18,14 @@
 package io.bitsquare.arbitration.messages;
 
 import io.bitsquare.app.Version;
+import io.bitsquare.common.crypto.Hash;
 import io.bitsquare.p2p.NodeAddress;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.SimpleBooleanProperty;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.Serializable;
@@ -84,6 +86,14 @@ public final class DisputeMailMessage extends DisputeMessage {
         this.attachments.addAll(attachments);
     }
 
+    // Used to replace an attachment by its reference after the data got stored in a blob store.
+    // We use set to not cause a ConcurrentModificationException if the message gets serialized at the same time.
+    public void replaceAttachment(Attachment attachment, Attachment replacement) {
+        int index = attachments.indexOf(attachment);
+        if (index != -1)
+            attachments.set(index, replacement);
+    }
+
     public void setArrived(boolean arrived) {
         this.arrived = arrived;
         this.arrivedProperty.set(arrived);
@@ -191,22 +201,52 @@ public final class DisputeMailMessage extends DisputeMessage {
         private static final long serialVersionUID = Version.NETWORK_PROTOCOL_VERSION;
         private static final Logger log = LoggerFactory.getLogger(Attachment.class);
 
+        // Null if the data are stored in a blob store. The attachment is then only a reference by hash.
+        @Nullable
         private final byte[] bytes;
         private final String fileName;
+        // Sha256 hash of the bytes. Is null for attachments from old versions.
+        @Nullable
+        private final byte[] hash;
 
         public Attachment(String fileName, byte[] bytes) {
+            this(fileName, bytes, Hash.getHash(bytes));
+        }
+
+        private Attachment(String fileName, @Nullable byte[] bytes, @Nullable byte[] hash) {
             this.fileName = fileName;
             this.bytes = bytes;
+            this.hash = hash;
+        }
+
+        /**
+         * @return A copy without the data which references the data by its hash.
+         */
+        public Attachment toReference() {
+            return new Attachment(fileName, null, getHash());
+        }
+
+        public boolean isReference() {
+            return bytes == null;
         }
 
+        /**
+         * @return The data or null if it is a reference. Use DisputeManager.getAttachmentBytes to load them.
+         */
+        @Nullable
         public byte[] getBytes() {
             return bytes;
         }
 
+        public byte[] getHash() {
+            return hash != null ? hash : Hash.getHash(bytes);
+        }
+
         public String getFileName() {
             return fileName;
         }
 
+        // An attachment is equal to its reference
         @Override
         public boolean equals(Object o) {
             if (this == o) return true;
@@ -214,14 +254,14 @@ public final class DisputeMailMessage extends DisputeMessage {
 
             Attachment that = (Attachment) o;
 
-            if (!Arrays.equals(bytes, that.bytes)) return false;
+            if (!Arrays.equals(getHash(), that.getHash())) return false;
             return !(fileName != null ? !fileName.equals(that.fileName) : that.fileName != null);
 
         }
 
         @Override
         public int hashCode() {
-            int result = bytes != null ? Arrays.hashCode(bytes) : 0;
+            int result = Arrays.hashCode(getHash());
             result = 31 * result + (fileName != null ? fileName.hashCode() : 0);
             return result;
         }
@@ -230,7 +270,7 @@ public final class DisputeMailMessage extends DisputeMessage {
         public String toString() {
             return "Attachment{" +
                     "description=" + fileName +
-                    ", data=" + Arrays.toString(bytes) +
+                    ", size=" + (bytes != null ? bytes.length : "reference") +
                     '}';
         }
     }
@@ -0,0 +1,147 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.bitsquare.btc;
+
+import org.bitcoinj.core.*;
+import org.bitcoinj.script.Script;
+
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * Balance per address of the outputs the wallet can spend, like WalletService summed it up from
+ * Wallet.calculateAllSpendCandidates for each call.
+ * The index is filled once from the spend candidates and then updated from the transactions of the wallet events,
+ * so only the addresses used in a transaction are summed up again. If outputs became spendable again without a
+ * transaction spending them (dead transactions, reorganisations) it needs to be reset.
+ */
+class AddressBalances {
+    private final NetworkParameters params;
+    private final Map<Address, Map<TransactionOutPoint, TransactionOutput>> outputsByAddress = new HashMap<>();
+    private final Map<Address, Coin> balanceByAddress = new HashMap<>();
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    AddressBalances(NetworkParameters params) {
+        this.params = params;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Replaces the index with the given outputs.
+     *
+     * @return The addresses whose balance has changed.
+     */
+    synchronized Set<Address> reset(List<TransactionOutput> spendCandidates) {
+        Set<Address> addresses = new HashSet<>(outputsByAddress.keySet());
+        outputsByAddress.clear();
+        for (TransactionOutput output : spendCandidates) {
+            Address address = getAddress(output);
+            if (address != null)
+                putOutput(address, output);
+        }
+        addresses.addAll(outputsByAddress.keySet());
+        return updateBalances(addresses);
+    }
+
+    /**
+     * Adds the spendable outputs of the transaction and removes the outputs spent by its inputs.
+     *
+     * @return The addresses whose balance has changed.
+     */
+    synchronized Set<Address> update(Transaction tx, TransactionBag wallet) {
+        Set<Address> addresses = new HashSet<>();
+        for (TransactionInput input : tx.getInputs()) {
+            TransactionOutput connectedOutput = input.getConnectedOutput();
+            if (connectedOutput != null) {
+                Address address = getAddress(connectedOutput);
+                if (address != null && outputsByAddress.containsKey(address))
+                    addresses.add(address);
+            }
+        }
+
+        boolean dead = tx.getConfidence().getConfidenceType() == TransactionConfidence.ConfidenceType.DEAD;
+        for (TransactionOutput output : tx.getOutputs()) {
+            Address address = getAddress(output);
+            if (address != null && output.isMine(wallet)) {
+                if (!dead && tx.isMature() && output.isAvailableForSpending())
+                    putOutput(address, output);
+                else
+                    removeOutput(address, output);
+                addresses.add(address);
+            }
+        }
+        return updateBalances(addresses);
+    }
+
+    synchronized Coin getBalance(Address address) {
+        return balanceByAddress.getOrDefault(address, Coin.ZERO);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Nullable
+    private Address getAddress(TransactionOutput output) {
+        Script scriptPubKey = output.getScriptPubKey();
+        if (scriptPubKey.isSentToAddress() || scriptPubKey.isPayToScriptHash())
+            return scriptPubKey.getToAddress(params);
+        else
+            return null;
+    }
+
+    private void putOutput(Address address, TransactionOutput output) {
+        outputsByAddress.computeIfAbsent(address, key -> new HashMap<>()).put(output.getOutPointFor(), output);
+    }
+
+    private void removeOutput(Address address, TransactionOutput output) {
+        Map<TransactionOutPoint, TransactionOutput> outputs = outputsByAddress.get(address);
+        if (outputs != null)
+            outputs.remove(output.getOutPointFor());
+    }
+
+    // Sums up the outputs of the given addresses which are still available for spending
+    private Set<Address> updateBalances(Set<Address> addresses) {
+        Set<Address> changedAddresses = new HashSet<>();
+        for (Address address : addresses) {
+            Coin balance = Coin.ZERO;
+            Map<TransactionOutPoint, TransactionOutput> outputs = outputsByAddress.get(address);
+            if (outputs != null) {
+                outputs.values().removeIf(output -> !output.isAvailableForSpending());
+                for (TransactionOutput output : outputs.values()) {
+                    balance = balance.add(output.getValue());
+                }
+                if (outputs.isEmpty())
+                    outputsByAddress.remove(address);
+            }
+
+            Coin previousBalance = balance.isZero() ? balanceByAddress.remove(address) : balanceByAddress.put(address, balance);
+            if (!balance.equals(previousBalance != null ? previousBalance : Coin.ZERO))
+                changedAddresses.add(address);
+        }
+        return changedAddresses;
+    }
+}
@@ -25,19 +25,27 @@ import org.bitcoinj.crypto.DeterministicKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * The List supporting our persistence solution.
+ * The list only grows, entries are added with add. We keep indexes by offer id and by address, so lookups don't need
+ * to iterate the list.
  */
-public class AddressEntryList extends ArrayList<AddressEntry> implements Serializable {
+public class AddressEntryList extends ArrayList<AddressEntry> implements Serializable, Storage.Snapshotable<AddressEntryList> {
     // That object is saved to disc. We need to take care of changes to not break deserialization.
     private static final long serialVersionUID = Version.LOCAL_DB_VERSION;
     private static final Logger log = LoggerFactory.getLogger(AddressEntryList.class);
 
     final transient private Storage<AddressEntryList> storage;
     transient private Wallet wallet;
+    // Not filled in deserialized objects and snapshots, we only look up entries in the instance used by WalletService
+    final transient private Map<String, AddressEntry> addressEntryByOfferId = new ConcurrentHashMap<>();
+    final transient private Map<String, AddressEntry> addressEntryByAddress = new ConcurrentHashMap<>();
 
     // Persisted fields are in ArrayList superclass
 
@@ -46,6 +54,11 @@ public class AddressEntryList extends ArrayList<AddressEntry> implements Seriali
         this.storage = storage;
     }
 
+    private AddressEntryList(AddressEntryList addressEntryList) {
+        super(addressEntryList);
+        this.storage = null;
+    }
+
     public void onWalletReady(Wallet wallet) {
         this.wallet = wallet;
 
@@ -75,6 +88,31 @@ public class AddressEntryList extends ArrayList<AddressEntry> implements Seriali
     }
 
 
+    @Override
+    public boolean add(AddressEntry addressEntry) {
+        boolean result = super.add(addressEntry);
+        // Like a search in the list we return the first entry for an offer id
+        if (addressEntry.getOfferId() != null)
+            addressEntryByOfferId.putIfAbsent(addressEntry.getOfferId(), addressEntry);
+        addressEntryByAddress.putIfAbsent(addressEntry.getAddressString(), addressEntry);
+        return result;
+    }
+
+    @Nullable
+    public AddressEntry getAddressEntryByOfferId(String offerId) {
+        return addressEntryByOfferId.get(offerId);
+    }
+
+    @Nullable
+    public AddressEntry getAddressEntryByAddress(String address) {
+        return addressEntryByAddress.get(address);
+    }
+
+    @Override
+    public AddressEntryList getSnapshot() {
+        return new AddressEntryList(this);
+    }
+
     public AddressEntry getArbitratorAddressEntry() {
         if (size() > 0)
             return get(0);
@@ -77,6 +77,7 @@ public class WalletService {
     private final TradeWalletService tradeWalletService;
     private final AddressEntryList addressEntryList;
     private final NetworkParameters params;
+    private final AddressBalances addressBalances;
     private final File walletDir;
     private final UserAgent userAgent;
 
@@ -99,6 +100,7 @@ public class WalletService {
         this.tradeWalletService = tradeWalletService;
         this.addressEntryList = addressEntryList;
         this.params = preferences.getBitcoinNetwork().getParameters();
+        this.addressBalances = new AddressBalances(params);
         this.walletDir = new File(walletDir, "bitcoin");
         this.userAgent = userAgent;
     }
@@ -131,7 +133,9 @@ public class WalletService {
                     walletAppKit.peerGroup().setMaxConnections(11);
                 walletAppKit.peerGroup().setBloomFilterFalsePositiveRate(0.00001);
                 wallet = walletAppKit.wallet();
+                // The listener is added first so no transaction between filling the index and adding it gets lost
                 wallet.addEventListener(walletEventListener);
+                addressBalances.reset(wallet.calculateAllSpendCandidates());
 
                 addressEntryList.onWalletReady(wallet);
                 arbitratorAddressEntry = addressEntryList.getArbitratorAddressEntry();
@@ -307,6 +311,7 @@ public class WalletService {
     // AddressInfo 
     ///////////////////////////////////////////////////////////////////////////////////////////
 
+    // Copies the list, use the lookups by offer id or address on hot paths
     public List<AddressEntry> getAddressEntryList() {
         return ImmutableList.copyOf(addressEntryList);
     }
@@ -316,15 +321,15 @@ public class WalletService {
     }
 
     public AddressEntry getAddressEntryByOfferId(String offerId) {
-        Optional<AddressEntry> addressEntry = getAddressEntryList().stream().filter(e -> offerId.equals(e.getOfferId())).findFirst();
-        if (addressEntry.isPresent())
-            return addressEntry.get();
+        AddressEntry addressEntry = addressEntryList.getAddressEntryByOfferId(offerId);
+        if (addressEntry != null)
+            return addressEntry;
         else
             return addressEntryList.getNewAddressEntry(AddressEntry.Context.TRADE, offerId);
     }
 
     private Optional<AddressEntry> getAddressEntryByAddress(String address) {
-        return getAddressEntryList().stream().filter(e -> address.equals(e.getAddressString())).findFirst();
+        return Optional.ofNullable(addressEntryList.getAddressEntryByAddress(address));
     }
 
 
@@ -417,20 +422,9 @@ public class WalletService {
         return wallet != null ? wallet.getBalance(Wallet.BalanceType.AVAILABLE) : Coin.ZERO;
     }
 
+    // Read from the index which is updated by the wallet events, we don't scan all spend candidates for each call
     public Coin getBalanceForAddress(Address address) {
-        return wallet != null ? getBalance(wallet.calculateAllSpendCandidates(), address) : Coin.ZERO;
-    }
-
-    private Coin getBalance(List<TransactionOutput> transactionOutputs, Address address) {
-        Coin balance = Coin.ZERO;
-        for (TransactionOutput transactionOutput : transactionOutputs) {
-            if (transactionOutput.getScriptPubKey().isSentToAddress() || transactionOutput.getScriptPubKey().isPayToScriptHash()) {
-                Address addressOutput = transactionOutput.getScriptPubKey().getToAddress(params);
-                if (addressOutput.equals(address))
-                    balance = balance.add(transactionOutput.getValue());
-            }
-        }
-        return balance;
+        return wallet != null ? addressBalances.getBalance(address) : Coin.ZERO;
     }
 
 
@@ -576,16 +570,29 @@ public class WalletService {
     private class BitsquareWalletEventListener extends AbstractWalletEventListener {
         @Override
         public void onCoinsReceived(Wallet wallet, Transaction tx, Coin prevBalance, Coin newBalance) {
-            notifyBalanceListeners();
+            notifyBalanceListeners(addressBalances.update(tx, wallet), true);
         }
 
         @Override
         public void onCoinsSent(Wallet wallet, Transaction tx, Coin prevBalance, Coin newBalance) {
-            notifyBalanceListeners();
+            notifyBalanceListeners(addressBalances.update(tx, wallet), true);
+        }
+
+        @Override
+        public void onReorganize(Wallet wallet) {
+            notifyBalanceListeners(addressBalances.reset(wallet.calculateAllSpendCandidates()), true);
         }
 
         @Override
         public void onTransactionConfidenceChanged(Wallet wallet, Transaction tx) {
+            // A dead tx releases the outputs spent by its inputs, those are not reachable from the tx anymore
+            Set<Address> changedAddresses;
+            if (tx.getConfidence().getConfidenceType() == TransactionConfidence.ConfidenceType.DEAD)
+                changedAddresses = addressBalances.reset(wallet.calculateAllSpendCandidates());
+            else
+                changedAddresses = addressBalances.update(tx, wallet);
+            notifyBalanceListeners(changedAddresses, false);
+
             for (AddressConfidenceListener addressConfidenceListener : addressConfidenceListeners) {
                 List<TransactionConfidence> transactionConfidenceList = new ArrayList<>();
                 transactionConfidenceList.add(getTransactionConfidence(tx, addressConfidenceListener.getAddress()));
@@ -600,15 +607,19 @@ public class WalletService {
                             txConfidenceListener.onTransactionConfidenceChanged(tx.getConfidence()));
         }
 
-        private void notifyBalanceListeners() {
-            for (BalanceListener balanceListener : balanceListeners) {
-                Coin balance;
-                if (balanceListener.getAddress() != null)
-                    balance = getBalanceForAddress(balanceListener.getAddress());
-                else
-                    balance = getAvailableBalance();
+        // Listeners of an address are only notified if the balance of their address has changed
+        private void notifyBalanceListeners(Set<Address> changedAddresses, boolean notifyAvailableBalance) {
+            if (changedAddresses.isEmpty() && !notifyAvailableBalance)
+                return;
 
-                balanceListener.onBalanceChanged(balance);
+            for (BalanceListener balanceListener : balanceListeners) {
+                Address address = balanceListener.getAddress();
+                if (address != null) {
+                    if (changedAddresses.contains(address))
+                        balanceListener.onBalanceChanged(getBalanceForAddress(address));
+                } else if (notifyAvailableBalance) {
+                    balanceListener.onBalanceChanged(getAvailableBalance());
+                }
             }
         }
     }
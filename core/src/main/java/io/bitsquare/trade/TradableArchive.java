@@ -0,0 +1,200 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.trade;
+
+import io.bitsquare.common.crypto.KeyRing;
+import io.bitsquare.storage.BlobStore;
+import io.bitsquare.storage.Storage;
+import io.bitsquare.storage.StorageFormat;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Archive for tradables which are not active anymore (closed or failed trades, canceled offers).
+ * Only a summary index is kept in memory and persisted with Storage. The full tradable is written once to a
+ * BlobStore when it is added and loaded on demand, so the history does not need to be deserialized at startup.
+ * The tradable is encoded when it is added, the write happens on the persistence thread.
+ * Later changes of an archived tradable are not persisted.
+ */
+public class TradableArchive<T extends Tradable> {
+    private static final Logger log = LoggerFactory.getLogger(TradableArchive.class);
+
+    // Number of loaded tradables we keep in memory
+    private static final int CACHE_SIZE = 20;
+    private static final Comparator<TradableSummary> LATEST_FIRST =
+            Comparator.comparing(TradableSummary::getDate).reversed();
+
+    private final KeyRing keyRing;
+    private final BlobStore blobStore;
+    private final Storage<ArrayList<TradableSummary>> storage;
+    // Sorted by date, latest first
+    private final ArrayList<TradableSummary> summaries = new ArrayList<>();
+    private final ObservableList<TradableSummary> observableList;
+    private final Map<String, TradableSummary> summaryById = new HashMap<>();
+    private final Map<String, T> cache = new LinkedHashMap<String, T>(CACHE_SIZE, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, T> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @param fileName Name of the TradableList file used by old versions. The index is stored as fileName + "Index",
+     *                 the tradables in the dir fileName + "Archive".
+     */
+    public TradableArchive(File storageDir, String fileName, KeyRing keyRing) {
+        this.keyRing = keyRing;
+        this.blobStore = new BlobStore(new File(storageDir, fileName + "Archive"));
+        this.storage = new Storage<>(storageDir);
+
+        ArrayList<TradableSummary> persisted = storage.initAndGetPersisted(summaries, fileName + "Index");
+        if (persisted != null)
+            summaries.addAll(persisted);
+        summaries.sort(LATEST_FIRST);
+        summaries.stream().forEach(summary -> summaryById.put(summary.getId(), summary));
+        observableList = FXCollections.observableArrayList(summaries);
+
+        migrate(storageDir, fileName);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Writes the tradable to the archive. Tradables already in the archive are ignored.
+     */
+    public void add(T tradable) {
+        if (contains(tradable.getId())) {
+            log.warn("Tradable {} is already in the archive", tradable.getId());
+            return;
+        }
+
+        try {
+            byte[] hash = blobStore.putLater(StorageFormat.encode(tradable));
+            TradableSummary summary = new TradableSummary(tradable, tradable.getOffer().isMyOffer(keyRing), hash);
+            int index = Collections.binarySearch(summaries, summary, LATEST_FIRST);
+            if (index < 0)
+                index = -index - 1;
+            summaries.add(index, summary);
+            observableList.add(index, summary);
+            summaryById.put(summary.getId(), summary);
+            cache.put(summary.getId(), tradable);
+            storage.queueUpForSave();
+        } catch (IOException e) {
+            e.printStackTrace();
+            log.error("Could not add tradable " + tradable.getId() + " to the archive: " + e.getMessage());
+        }
+    }
+
+    public boolean contains(String id) {
+        return summaryById.containsKey(id);
+    }
+
+    public int size() {
+        return summaries.size();
+    }
+
+    /**
+     * @return The summaries in the range, sorted by date with the latest first.
+     */
+    public List<TradableSummary> getSummaries(int offset, int limit) {
+        int from = Math.min(Math.max(offset, 0), summaries.size());
+        int to = Math.min(from + Math.max(limit, 0), summaries.size());
+        return new ArrayList<>(summaries.subList(from, to));
+    }
+
+    public ObservableList<TradableSummary> getObservableList() {
+        return observableList;
+    }
+
+    /**
+     * Loads the full tradable from the archive.
+     *
+     * @return The tradable or empty if the id is unknown or the archived data cannot be read.
+     */
+    public Optional<T> load(String id) {
+        T tradable = cache.get(id);
+        if (tradable != null)
+            return Optional.of(tradable);
+
+        TradableSummary summary = summaryById.get(id);
+        if (summary == null)
+            return Optional.empty();
+
+        byte[] data = blobStore.get(summary.getHash());
+        if (data == null)
+            return Optional.empty();
+
+        try {
+            //noinspection unchecked
+            tradable = (T) StorageFormat.decode(data);
+            cache.put(id, tradable);
+            return Optional.of(tradable);
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            e.printStackTrace();
+            log.error("Could not load tradable " + id + " from the archive: " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // Old versions kept all tradables in a TradableList file. We move them to the archive and delete the old file at
+    // the next start when we know that the index with the moved tradables has been written.
+    private void migrate(File storageDir, String legacyFileName) {
+        if (!new File(storageDir, legacyFileName).exists())
+            return;
+
+        Storage<TradableList<T>> legacyStorage = new Storage<>(storageDir);
+        TradableList<T> legacyList = legacyStorage.initAndGetPersisted(legacyFileName);
+        if (legacyList == null)
+            return;
+
+        List<T> notArchived = legacyList.stream()
+                .filter(tradable -> !contains(tradable.getId()))
+                .collect(Collectors.toList());
+        if (notArchived.isEmpty()) {
+            // We don't use Storage.remove as it deletes the backups of the file as well, those are kept for recovery
+            File legacyFile = new File(storageDir, legacyFileName);
+            if (legacyFile.delete())
+                log.info("Removed {} as all its tradables are in the archive", legacyFileName);
+            else
+                log.warn("Could not delete " + legacyFile);
+        } else {
+            notArchived.stream().forEach(this::add);
+            log.info("Moved {} tradables from {} to the archive", notArchived.size(), legacyFileName);
+        }
+    }
+}
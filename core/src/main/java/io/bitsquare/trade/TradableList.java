@@ -24,12 +24,20 @@ import javafx.collections.ObservableList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.Serializable;
+import javax.annotation.Nullable;
+
+import java.io.*;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
-public class TradableList<T extends Tradable> extends ArrayList<T> implements Serializable {
+/**
+ * The snapshot handed over to the persistence thread is the list serialized on the calling thread, so a save does not
+ * serialize a trade while it is mutated by the protocol.
+ */
+public class TradableList<T extends Tradable> extends ArrayList<T> implements Serializable, Storage.JournalHandler,
+        Storage.Snapshotable<TradableList<T>>, Storage.SerializedSnapshot {
     // That object is saved to disc. We need to take care of changes to not break deserialization.
     private static final long serialVersionUID = Version.LOCAL_DB_VERSION;
 
@@ -38,6 +46,11 @@ public class TradableList<T extends Tradable> extends ArrayList<T> implements Se
     transient final private Storage<TradableList<T>> storage;
     // Use getObservableList() also class locally, to be sure that object exists in case we use the object as deserialized form
     transient private ObservableList<T> observableList;
+    // Lookup of the journal handler which is called for every persisted change of a tradable
+    transient private Map<String, T> tradablesById;
+    // Only set at a snapshot
+    @Nullable
+    transient private byte[] serialized;
 
     // Superclass is ArrayList, which will be persisted
 
@@ -46,15 +59,32 @@ public class TradableList<T extends Tradable> extends ArrayList<T> implements Se
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     public TradableList(Storage<TradableList<T>> storage, String fileName) {
+        this(storage, fileName, false);
+    }
+
+    // With useJournal a change of a single tradable is appended to a journal instead of writing the whole list
+    public TradableList(Storage<TradableList<T>> storage, String fileName, boolean useJournal) {
         this.storage = storage;
 
         TradableList persisted = storage.initAndGetPersisted(this, fileName);
         if (persisted != null) {
             this.addAll(persisted);
         }
+        tradablesById = new HashMap<>();
+        this.stream().forEach(tradable -> tradablesById.put(tradable.getId(), tradable));
+        if (useJournal)
+            storage.initJournal(this);
+
         observableList = FXCollections.observableArrayList(this);
     }
 
+    // Used for the snapshot which gets persisted
+    private TradableList(List<T> tradables, @Nullable byte[] serialized) {
+        super(tradables);
+        this.storage = null;
+        this.serialized = serialized;
+    }
+
     private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
         try {
             in.defaultReadObject();
@@ -66,8 +96,9 @@ public class TradableList<T extends Tradable> extends ArrayList<T> implements Se
     @Override
     public boolean add(T tradable) {
         boolean result = super.add(tradable);
+        tradablesById.put(tradable.getId(), tradable);
         getObservableList().add(tradable);
-        storage.queueUpForSave();
+        storage.queueUpEntryForSave(tradable.getId(), tradable);
         return result;
     }
 
@@ -75,10 +106,64 @@ public class TradableList<T extends Tradable> extends ArrayList<T> implements Se
     public boolean remove(Object tradable) {
         boolean result = super.remove(tradable);
         getObservableList().remove(tradable);
-        storage.queueUpForSave();
+        if (result) {
+            tradablesById.remove(((Tradable) tradable).getId());
+            storage.queueUpEntryForRemoval(((Tradable) tradable).getId());
+        } else
+            storage.queueUpForSave();
         return result;
     }
 
+
+    // The tradables are serialized with their current state, also changes which have not been persisted yet
+    @Override
+    public TradableList<T> getSnapshot() {
+        TradableList<T> copy = new TradableList<>(this, null);
+        try {
+            return new TradableList<>(new ArrayList<>(), Storage.serializeEntry(copy));
+        } catch (IOException e) {
+            // The save fails as it would have with the list itself
+            e.printStackTrace();
+            log.error("Could not serialize tradables: " + e.getMessage());
+            return copy;
+        }
+    }
+
+    @Nullable
+    @Override
+    public byte[] getSerialized() {
+        return serialized;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // JournalHandler implementation
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public boolean containsEntry(String key) {
+        return tradablesById.containsKey(key);
+    }
+
+    // Only called at the replay of the journal, so we search the position only if an entry gets replaced or removed
+    @Override
+    public void applyEntry(String key, @Nullable Serializable entry) {
+        T existing = tradablesById.get(key);
+        if (entry == null) {
+            if (existing != null) {
+                super.remove(existing);
+                tradablesById.remove(key);
+            }
+        } else {
+            T tradable = (T) entry;
+            if (existing != null)
+                set(indexOf(existing), tradable);
+            else
+                super.add(tradable);
+            tradablesById.put(key, tradable);
+        }
+    }
+
     public ObservableList<T> getObservableList() {
         if (observableList == null)
             observableList = FXCollections.observableArrayList(this);
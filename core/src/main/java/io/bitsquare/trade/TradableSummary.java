@@ -0,0 +1,163 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.trade;
+
+import io.bitsquare.app.Version;
+import io.bitsquare.trade.offer.Offer;
+import io.bitsquare.trade.offer.OpenOffer;
+import org.bitcoinj.core.Coin;
+import org.bitcoinj.utils.Fiat;
+
+import javax.annotation.Nullable;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Immutable summary of an archived tradable with the data we display in the trade history tables.
+ * The full tradable is loaded from the archive by the hash if it is needed.
+ */
+public final class TradableSummary implements Serializable {
+    // That object is saved to disc. We need to take care of changes to not break deserialization.
+    private static final long serialVersionUID = Version.LOCAL_DB_VERSION;
+
+    private final String id;
+    private final String shortId;
+    private final long date;
+    private final String currencyCode;
+    private final Fiat price;
+    // Our direction, the mirrored offer direction if we have been the taker
+    private final Offer.Direction direction;
+    private final boolean isTrade;
+    @Nullable
+    private final Coin tradeAmount;
+    @Nullable
+    private final Fiat tradeVolume;
+    @Nullable
+    private final Trade.State tradeState;
+    @Nullable
+    private final Trade.DisputeState disputeState;
+    @Nullable
+    private final OpenOffer.State openOfferState;
+    private final byte[] hash;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public TradableSummary(Tradable tradable, boolean isMyOffer, byte[] hash) {
+        Offer offer = tradable.getOffer();
+        this.id = tradable.getId();
+        this.shortId = tradable.getShortId();
+        this.date = tradable.getDate().getTime();
+        this.currencyCode = offer.getCurrencyCode();
+        this.price = offer.getPrice();
+        this.direction = isMyOffer ? offer.getDirection() : offer.getMirroredDirection();
+        this.hash = hash;
+        this.isTrade = tradable instanceof Trade;
+
+        if (isTrade) {
+            Trade trade = (Trade) tradable;
+            tradeAmount = trade.getTradeAmount();
+            tradeVolume = trade.getTradeVolume();
+            tradeState = trade.getState();
+            disputeState = trade.getDisputeState();
+            openOfferState = null;
+        } else {
+            tradeAmount = null;
+            tradeVolume = null;
+            tradeState = null;
+            disputeState = null;
+            openOfferState = tradable instanceof OpenOffer ? ((OpenOffer) tradable).getState() : null;
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Getters
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public String getId() {
+        return id;
+    }
+
+    public String getShortId() {
+        return shortId;
+    }
+
+    public Date getDate() {
+        return new Date(date);
+    }
+
+    public String getCurrencyCode() {
+        return currencyCode;
+    }
+
+    public Fiat getPrice() {
+        return price;
+    }
+
+    public Offer.Direction getDirection() {
+        return direction;
+    }
+
+    public boolean isTrade() {
+        return isTrade;
+    }
+
+    @Nullable
+    public Coin getTradeAmount() {
+        return tradeAmount;
+    }
+
+    @Nullable
+    public Fiat getTradeVolume() {
+        return tradeVolume;
+    }
+
+    @Nullable
+    public Trade.State getTradeState() {
+        return tradeState;
+    }
+
+    @Nullable
+    public Trade.DisputeState getDisputeState() {
+        return disputeState;
+    }
+
+    @Nullable
+    public OpenOffer.State getOpenOfferState() {
+        return openOfferState;
+    }
+
+    byte[] getHash() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "TradableSummary{" +
+                "id='" + id + '\'' +
+                ", date=" + getDate() +
+                ", currencyCode='" + currencyCode + '\'' +
+                ", tradeAmount=" + tradeAmount +
+                ", tradeState=" + tradeState +
+                ", openOfferState=" + openOfferState +
+                '}';
+    }
+}
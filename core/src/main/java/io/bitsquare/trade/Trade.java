@@ -342,7 +342,7 @@ abstract public class Trade implements Tradable, Model, Serializable {
     @Override
     public void persist() {
         if (storage != null)
-            storage.queueUpForSave();
+            storage.queueUpEntryForSave(getId(), this);
     }
 
     @Override
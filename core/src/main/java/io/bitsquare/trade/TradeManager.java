@@ -17,6 +17,7 @@
 
 package io.bitsquare.trade;
 
+import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.FutureCallback;
 import io.bitsquare.arbitration.ArbitratorManager;
 import io.bitsquare.btc.AddressEntry;
@@ -30,6 +31,7 @@ import io.bitsquare.p2p.FirstPeerAuthenticatedListener;
 import io.bitsquare.p2p.Message;
 import io.bitsquare.p2p.NodeAddress;
 import io.bitsquare.p2p.P2PService;
+import io.bitsquare.p2p.network.Capabilities;
 import io.bitsquare.p2p.messaging.DecryptedMailListener;
 import io.bitsquare.p2p.messaging.DecryptedMailboxListener;
 import io.bitsquare.p2p.messaging.DecryptedMsgWithPubKey;
@@ -41,6 +43,9 @@ import io.bitsquare.trade.offer.Offer;
 import io.bitsquare.trade.offer.OpenOffer;
 import io.bitsquare.trade.offer.OpenOfferManager;
 import io.bitsquare.trade.protocol.availability.OfferAvailabilityModel;
+import io.bitsquare.trade.protocol.availability.OfferAvailabilityProtocol;
+import io.bitsquare.trade.protocol.availability.OffersAvailabilityProtocol;
+import io.bitsquare.trade.protocol.availability.messages.OffersAvailabilityRequest;
 import io.bitsquare.trade.protocol.trade.messages.PayDepositRequest;
 import io.bitsquare.trade.protocol.trade.messages.TradeMessage;
 import io.bitsquare.user.User;
@@ -59,9 +64,14 @@ import org.spongycastle.crypto.params.KeyParameter;
 import javax.inject.Inject;
 import javax.inject.Named;
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static io.bitsquare.util.Validator.nonEmptyStringOf;
 
@@ -81,6 +91,9 @@ public class TradeManager {
     private final Storage<TradableList<Trade>> tradableListStorage;
     private final TradableList<Trade> trades;
     private final BooleanProperty pendingTradesInitialized = new SimpleBooleanProperty();
+    // Running checks of checkOffersAvailability, kept so they can be cancelled
+    private final Set<OffersAvailabilityProtocol> offersAvailabilityProtocols = new HashSet<>();
+    private final Set<OfferAvailabilityProtocol> offerAvailabilityProtocols = new HashSet<>();
     private final FirstPeerAuthenticatedListener firstPeerAuthenticatedListener;
 
 
@@ -110,7 +123,7 @@ public class TradeManager {
         this.p2PService = p2PService;
 
         tradableListStorage = new Storage<>(storageDir);
-        this.trades = new TradableList<>(tradableListStorage, "PendingTrades");
+        this.trades = new TradableList<>(tradableListStorage, "PendingTrades", true);
 
         p2PService.addDecryptedMailListener(new DecryptedMailListener() {
             @Override
@@ -253,6 +266,75 @@ public class TradeManager {
         offer.checkOfferAvailability(getOfferAvailabilityModel(offer), resultHandler);
     }
 
+    /**
+     * Checks the availability of many offers with one request per offerer (max. OffersAvailabilityRequest.MAX_OFFERS
+     * offers per request) instead of one request per offer. Offerers with an older version do not know the
+     * OffersAvailabilityRequest, so offers of offerers which have not advertised Capabilities.BATCHED_OFFER_AVAILABILITY
+     * are checked with one OfferAvailabilityRequest per offer. The resultHandler is called when all requests are
+     * completed or failed, the result is the state of the offers.
+     */
+    public void checkOffersAvailability(List<Offer> offers, ResultHandler resultHandler) {
+        List<List<Offer>> requests = new ArrayList<>();
+        List<Offer> singleRequests = new ArrayList<>();
+        offers.stream()
+                .collect(Collectors.groupingBy(Offer::getOffererNodeAddress))
+                .forEach((offererNodeAddress, offersOfOfferer) -> {
+                    if (p2PService.peerSupportsCapability(offererNodeAddress, Capabilities.BATCHED_OFFER_AVAILABILITY))
+                        requests.addAll(Lists.partition(offersOfOfferer, OffersAvailabilityRequest.MAX_OFFERS));
+                    else
+                        singleRequests.addAll(offersOfOfferer);
+                });
+        if (requests.isEmpty() && singleRequests.isEmpty()) {
+            resultHandler.handleResult();
+            return;
+        }
+
+        int[] pendingRequests = {requests.size() + singleRequests.size()};
+        Runnable onRequestDone = () -> {
+            if (--pendingRequests[0] == 0)
+                resultHandler.handleResult();
+        };
+        requests.stream().forEach(offersOfRequest -> {
+            OffersAvailabilityProtocol[] protocol = new OffersAvailabilityProtocol[1];
+            Runnable onProtocolDone = () -> {
+                offersAvailabilityProtocols.remove(protocol[0]);
+                onRequestDone.run();
+            };
+            protocol[0] = new OffersAvailabilityProtocol(offersOfRequest, keyRing.getPubKeyRing(), p2PService,
+                    onProtocolDone::run,
+                    errorMessage -> {
+                        log.warn(errorMessage);
+                        onProtocolDone.run();
+                    });
+            offersAvailabilityProtocols.add(protocol[0]);
+            protocol[0].sendOffersAvailabilityRequest();
+        });
+        singleRequests.stream().forEach(offer -> {
+            OfferAvailabilityProtocol[] protocol = new OfferAvailabilityProtocol[1];
+            Runnable onProtocolDone = () -> {
+                protocol[0].cancel();
+                offerAvailabilityProtocols.remove(protocol[0]);
+                onRequestDone.run();
+            };
+            protocol[0] = new OfferAvailabilityProtocol(getOfferAvailabilityModel(offer),
+                    onProtocolDone::run,
+                    errorMessage -> {
+                        log.warn(errorMessage);
+                        onProtocolDone.run();
+                    });
+            offerAvailabilityProtocols.add(protocol[0]);
+            protocol[0].sendOfferAvailabilityRequest();
+        });
+    }
+
+    // If we are not interested in the results of checkOffersAvailability anymore
+    public void cancelOffersAvailabilityRequests() {
+        offersAvailabilityProtocols.stream().forEach(OffersAvailabilityProtocol::cancel);
+        offersAvailabilityProtocols.clear();
+        offerAvailabilityProtocols.stream().forEach(OfferAvailabilityProtocol::cancel);
+        offerAvailabilityProtocols.clear();
+    }
+
     // When closing take offer view, we are not interested in the onCheckOfferAvailability result anymore, so remove from the map
     public void onCancelAvailabilityRequest(Offer offer) {
         offer.cancelAvailabilityRequest();
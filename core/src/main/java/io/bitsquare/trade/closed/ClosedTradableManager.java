@@ -19,9 +19,9 @@ package io.bitsquare.trade.closed;
 
 import com.google.inject.Inject;
 import io.bitsquare.common.crypto.KeyRing;
-import io.bitsquare.storage.Storage;
 import io.bitsquare.trade.Tradable;
-import io.bitsquare.trade.TradableList;
+import io.bitsquare.trade.TradableArchive;
+import io.bitsquare.trade.TradableSummary;
 import io.bitsquare.trade.offer.Offer;
 import javafx.collections.ObservableList;
 import org.slf4j.Logger;
@@ -29,17 +29,18 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Named;
 import java.io.File;
+import java.util.List;
 import java.util.Optional;
 
 public class ClosedTradableManager {
     private static final Logger log = LoggerFactory.getLogger(ClosedTradableManager.class);
-    private final TradableList<Tradable> closedTrades;
+    private final TradableArchive<Tradable> closedTrades;
     private final KeyRing keyRing;
 
     @Inject
     public ClosedTradableManager(KeyRing keyRing, @Named("storage.dir") File storageDir) {
         this.keyRing = keyRing;
-        this.closedTrades = new TradableList<>(new Storage<>(storageDir), "ClosedTrades");
+        this.closedTrades = new TradableArchive<>(storageDir, "ClosedTrades", keyRing);
     }
 
     public void add(Tradable tradable) {
@@ -50,12 +51,21 @@ public class ClosedTradableManager {
         return offer.isMyOffer(keyRing);
     }
 
-    public ObservableList<Tradable> getClosedTrades() {
+    public ObservableList<TradableSummary> getClosedTradeSummaries() {
         return closedTrades.getObservableList();
     }
 
+    public List<TradableSummary> getClosedTradeSummaries(int offset, int limit) {
+        return closedTrades.getSummaries(offset, limit);
+    }
+
+    public int getNumClosedTrades() {
+        return closedTrades.size();
+    }
+
+    // Loads the tradable from the archive
     public Optional<Tradable> getTradableById(String id) {
-        return closedTrades.stream().filter(e -> e.getId().equals(id)).findFirst();
+        return closedTrades.load(id);
     }
 
 }
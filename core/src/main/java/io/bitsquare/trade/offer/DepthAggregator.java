@@ -0,0 +1,233 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.trade.offer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.*;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Aggregates the amounts of the offers of one currency in price buckets for the depth chart. Adding or removing an
+ * offer only updates its bucket, so we don't need to iterate all offers on each change.
+ * <p>
+ * Buy offers are rounded down and sell offers up to the bucket price. If a side has more than maxPoints buckets we
+ * switch to the next larger bucket size (1, 2, 5, 10, 20, 50... in the smallest unit of the price) and rebuild the
+ * buckets, so the number of chart points is bounded independent of the number of offers.
+ * Not thread safe, it is used from the user thread like the OrderBook.
+ */
+public class DepthAggregator implements OrderBook.Listener {
+    private static final Logger log = LoggerFactory.getLogger(DepthAggregator.class);
+
+    public static final int DEFAULT_MAX_POINTS = 100;
+
+    public interface Listener {
+        void onDepthChanged(Offer.Direction direction);
+    }
+
+    private static class Bucket {
+        private long amount;
+        private int numOffers;
+    }
+
+    private final OrderBook orderBook;
+    private final long minBucketSize;
+    private final int maxPoints;
+    // Best price first like in the OrderBook
+    private final TreeMap<Long, Bucket> buyBuckets = new TreeMap<>(Collections.reverseOrder());
+    private final TreeMap<Long, Bucket> sellBuckets = new TreeMap<>();
+    @Nullable
+    private String currencyCode;
+    private long bucketSize;
+    @Nullable
+    private Listener listener;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @param minBucketSize Smallest bucket size in the smallest unit of the price
+     * @param maxPoints     Max. number of chart points per side
+     */
+    public DepthAggregator(OrderBook orderBook, long minBucketSize, int maxPoints) {
+        checkArgument(minBucketSize > 0, "minBucketSize must be positive");
+        checkArgument(maxPoints > 0, "maxPoints must be positive");
+        this.orderBook = orderBook;
+        this.minBucketSize = minBucketSize;
+        this.maxPoints = maxPoints;
+        this.bucketSize = minBucketSize;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Starts listening to the order book and aggregates the offers of that currency.
+     */
+    public void activate(String currencyCode, Listener listener) {
+        this.listener = listener;
+        orderBook.addListener(this);
+        setCurrencyCode(currencyCode);
+    }
+
+    public void deactivate() {
+        orderBook.removeListener(this);
+        listener = null;
+    }
+
+    /**
+     * Rebuilds the buckets for the new currency starting with the smallest bucket size again.
+     */
+    public void setCurrencyCode(String currencyCode) {
+        this.currencyCode = currencyCode;
+        bucketSize = minBucketSize;
+        rebuild();
+        notifyListener(Offer.Direction.BUY);
+        notifyListener(Offer.Direction.SELL);
+    }
+
+    /**
+     * @return At most maxPoints points of the cumulative amount per bucket, the best price first.
+     */
+    public List<OrderBook.CumulativeAmount> getPoints(Offer.Direction direction) {
+        TreeMap<Long, Bucket> buckets = getBuckets(direction);
+        List<OrderBook.CumulativeAmount> points = new ArrayList<>(buckets.size());
+        long cumulativeAmount = 0;
+        for (Map.Entry<Long, Bucket> entry : buckets.entrySet()) {
+            cumulativeAmount += entry.getValue().amount;
+            points.add(new OrderBook.CumulativeAmount(entry.getKey() * bucketSize, cumulativeAmount));
+        }
+        return points;
+    }
+
+    public long getBucketSize() {
+        return bucketSize;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // OrderBook.Listener
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void onOfferAdded(Offer offer) {
+        if (!offer.getCurrencyCode().equals(currencyCode))
+            return;
+
+        TreeMap<Long, Bucket> buckets = getBuckets(offer.getDirection());
+        Bucket bucket = buckets.computeIfAbsent(getBucketIndex(offer), index -> new Bucket());
+        bucket.amount += offer.getAmount().value;
+        bucket.numOffers++;
+
+        if (buckets.size() > maxPoints) {
+            // rebuild increases the bucket size further if needed
+            bucketSize = getNextBucketSize(bucketSize);
+            rebuild();
+            log.debug("Increased bucket size to {} for {}", bucketSize, currencyCode);
+            notifyListener(Offer.Direction.BUY);
+            notifyListener(Offer.Direction.SELL);
+        } else {
+            notifyListener(offer.getDirection());
+        }
+    }
+
+    @Override
+    public void onOfferRemoved(Offer offer) {
+        if (!offer.getCurrencyCode().equals(currencyCode))
+            return;
+
+        TreeMap<Long, Bucket> buckets = getBuckets(offer.getDirection());
+        long index = getBucketIndex(offer);
+        Bucket bucket = buckets.get(index);
+        if (bucket != null) {
+            bucket.amount -= offer.getAmount().value;
+            if (--bucket.numOffers == 0)
+                buckets.remove(index);
+            notifyListener(offer.getDirection());
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void rebuild() {
+        buyBuckets.clear();
+        sellBuckets.clear();
+        if (currencyCode == null)
+            return;
+
+        for (Offer.Direction direction : Offer.Direction.values()) {
+            TreeMap<Long, Bucket> buckets = getBuckets(direction);
+            for (OrderBook.PriceLevel priceLevel : orderBook.getSide(currencyCode, direction).getPriceLevels()) {
+                Bucket bucket = buckets.computeIfAbsent(getBucketIndex(direction, priceLevel.getPrice()),
+                        index -> new Bucket());
+                bucket.amount += priceLevel.getAmount();
+                bucket.numOffers += priceLevel.getNumOffers();
+            }
+            if (buckets.size() > maxPoints) {
+                // Both sides use the same bucket size
+                bucketSize = getNextBucketSize(bucketSize);
+                rebuild();
+                return;
+            }
+        }
+    }
+
+    private long getBucketIndex(Offer offer) {
+        return getBucketIndex(offer.getDirection(), offer.getPrice().value);
+    }
+
+    private long getBucketIndex(Offer.Direction direction, long price) {
+        if (direction == Offer.Direction.BUY)
+            return Math.floorDiv(price, bucketSize);
+        else
+            return -Math.floorDiv(-price, bucketSize);
+    }
+
+    // 1, 2, 5, 10, 20, 50...
+    private static long getNextBucketSize(long bucketSize) {
+        long magnitude = 1;
+        while (magnitude * 10 <= bucketSize)
+            magnitude *= 10;
+        long step = bucketSize / magnitude;
+        if (step < 2)
+            return 2 * magnitude;
+        else if (step < 5)
+            return 5 * magnitude;
+        else
+            return 10 * magnitude;
+    }
+
+    private TreeMap<Long, Bucket> getBuckets(Offer.Direction direction) {
+        return direction == Offer.Direction.BUY ? buyBuckets : sellBuckets;
+    }
+
+    private void notifyListener(Offer.Direction direction) {
+        if (listener != null)
+            listener.onDepthChanged(direction);
+    }
+}
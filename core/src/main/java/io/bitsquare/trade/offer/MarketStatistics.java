@@ -0,0 +1,122 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.trade.offer;
+
+import javax.annotation.Nullable;
+
+/**
+ * Immutable snapshot of the offers of one currency. Prices and volumes are in the smallest unit of the fiat currency,
+ * amounts in satoshi. The bid is the best price of the buy offers, the ask the best price of the sell offers.
+ */
+public final class MarketStatistics {
+    private final String currencyCode;
+    @Nullable
+    private final Long bestBidPrice;
+    @Nullable
+    private final Long bestAskPrice;
+    @Nullable
+    private final Long spread;
+    private final int numBuyOffers;
+    private final int numSellOffers;
+    private final long buyAmount;
+    private final long sellAmount;
+    private final long buyVolume;
+    private final long sellVolume;
+
+    MarketStatistics(OrderBook.Side buySide, OrderBook.Side sellSide) {
+        this.currencyCode = buySide.getCurrencyCode();
+        OrderBook.PriceLevel bestBid = buySide.getBestPriceLevel();
+        OrderBook.PriceLevel bestAsk = sellSide.getBestPriceLevel();
+        this.bestBidPrice = bestBid != null ? bestBid.getPrice() : null;
+        this.bestAskPrice = bestAsk != null ? bestAsk.getPrice() : null;
+        this.spread = bestBidPrice != null && bestAskPrice != null ? bestAskPrice - bestBidPrice : null;
+        this.numBuyOffers = buySide.getNumOffers();
+        this.numSellOffers = sellSide.getNumOffers();
+        this.buyAmount = buySide.getAmount();
+        this.sellAmount = sellSide.getAmount();
+        this.buyVolume = buySide.getVolume();
+        this.sellVolume = sellSide.getVolume();
+    }
+
+    public String getCurrencyCode() {
+        return currencyCode;
+    }
+
+    @Nullable
+    public Long getBestBidPrice() {
+        return bestBidPrice;
+    }
+
+    @Nullable
+    public Long getBestAskPrice() {
+        return bestAskPrice;
+    }
+
+    @Nullable
+    public Long getSpread() {
+        return spread;
+    }
+
+    public int getNumBuyOffers() {
+        return numBuyOffers;
+    }
+
+    public int getNumSellOffers() {
+        return numSellOffers;
+    }
+
+    public int getNumOffers() {
+        return numBuyOffers + numSellOffers;
+    }
+
+    public long getBuyAmount() {
+        return buyAmount;
+    }
+
+    public long getSellAmount() {
+        return sellAmount;
+    }
+
+    public long getTotalAmount() {
+        return buyAmount + sellAmount;
+    }
+
+    public long getBuyVolume() {
+        return buyVolume;
+    }
+
+    public long getSellVolume() {
+        return sellVolume;
+    }
+
+    @Override
+    public String toString() {
+        return "MarketStatistics{" +
+                "currencyCode='" + currencyCode + '\'' +
+                ", bestBidPrice=" + bestBidPrice +
+                ", bestAskPrice=" + bestAskPrice +
+                ", spread=" + spread +
+                ", numBuyOffers=" + numBuyOffers +
+                ", numSellOffers=" + numSellOffers +
+                ", buyAmount=" + buyAmount +
+                ", sellAmount=" + sellAmount +
+                ", buyVolume=" + buyVolume +
+                ", sellVolume=" + sellVolume +
+                '}';
+    }
+}
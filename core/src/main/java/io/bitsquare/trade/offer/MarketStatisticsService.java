@@ -0,0 +1,143 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.trade.offer;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.inject.name.Named;
+import io.bitsquare.app.ProgramArguments;
+import io.bitsquare.common.UserThread;
+import io.bitsquare.common.util.Utilities;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Provides the best bid and ask, spread, amounts, volumes and number of offers per currency without any dependency to
+ * the UI, so it can be used by a headless node as well. The data are read from the OrderBook which keeps them up to
+ * date with each storage event, so a snapshot of one currency costs O(log n).
+ * <p>
+ * If a dump file is set by the program arguments the snapshot of all currencies is written as JSON to that file
+ * periodically.
+ * The snapshot methods need to be called from the user thread like the OrderBook.
+ */
+public class MarketStatisticsService {
+    private static final Logger log = LoggerFactory.getLogger(MarketStatisticsService.class);
+
+    public static final long DEFAULT_DUMP_INTERVAL_SEC = 60;
+
+    // Serialized by Gson
+    private static class Dump {
+        private final long date;
+        private final List<MarketStatistics> markets;
+
+        private Dump(long date, List<MarketStatistics> markets) {
+            this.date = date;
+            this.markets = markets;
+        }
+    }
+
+    private final OrderBook orderBook;
+    @Nullable
+    private final File dumpFile;
+    private final long dumpIntervalSec;
+    private ScheduledThreadPoolExecutor dumpExecutor;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Inject
+    public MarketStatisticsService(OrderBook orderBook,
+                                   @Named(ProgramArguments.STATISTICS_DUMP_FILE) String dumpFile,
+                                   @Named(ProgramArguments.STATISTICS_DUMP_INTERVAL) long dumpIntervalSec) {
+        this.orderBook = orderBook;
+        this.dumpFile = dumpFile.isEmpty() ? null : new File(dumpFile);
+        this.dumpIntervalSec = dumpIntervalSec;
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public void onAllServicesInitialized() {
+        if (dumpFile != null && dumpIntervalSec > 0) {
+            log.info("Dump market statistics every {} sec. to {}", dumpIntervalSec, dumpFile);
+            dumpExecutor = Utilities.getScheduledThreadPoolExecutor("MarketStatisticsDump", 1, 1, 5);
+            // The snapshot is taken on the user thread, the file is written on the executor thread
+            dumpExecutor.scheduleAtFixedRate(() -> UserThread.execute(() -> {
+                String json = getSnapshotAsJson();
+                dumpExecutor.execute(() -> writeDump(json));
+            }), 0, dumpIntervalSec, TimeUnit.SECONDS);
+        }
+    }
+
+    public void shutDown() {
+        if (dumpExecutor != null)
+            MoreExecutors.shutdownAndAwaitTermination(dumpExecutor, 500, TimeUnit.MILLISECONDS);
+    }
+
+    public MarketStatistics getStatistics(String currencyCode) {
+        return new MarketStatistics(orderBook.getSide(currencyCode, Offer.Direction.BUY),
+                orderBook.getSide(currencyCode, Offer.Direction.SELL));
+    }
+
+    /**
+     * @return The statistics of all currencies with offers sorted by currency code.
+     */
+    public List<MarketStatistics> getSnapshot() {
+        return orderBook.getCurrencyCodes().stream()
+                .sorted()
+                .map(this::getStatistics)
+                .collect(Collectors.toList());
+    }
+
+    public String getSnapshotAsJson() {
+        return Utilities.objectToJson(new Dump(System.currentTimeMillis(), getSnapshot()));
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    // Readers never see a partly written file
+    private void writeDump(String json) {
+        try {
+            File tempFile = new File(dumpFile.getAbsoluteFile().getParentFile(), dumpFile.getName() + ".tmp");
+            Files.write(tempFile.toPath(), json.getBytes(StandardCharsets.UTF_8));
+            Files.move(tempFile.toPath(), dumpFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            e.printStackTrace();
+            log.error("Error at writing market statistics to " + dumpFile + ": " + e.getMessage());
+        }
+    }
+}
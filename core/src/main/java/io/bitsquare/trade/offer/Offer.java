@@ -19,6 +19,8 @@ package io.bitsquare.trade.offer;
 
 import io.bitsquare.app.Version;
 import io.bitsquare.btc.Restrictions;
+import io.bitsquare.common.crypto.CanonicalEncodable;
+import io.bitsquare.common.crypto.CanonicalEncoder;
 import io.bitsquare.common.crypto.KeyRing;
 import io.bitsquare.common.crypto.PubKeyRing;
 import io.bitsquare.common.handlers.ResultHandler;
@@ -45,7 +47,7 @@ import java.util.List;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
-public final class Offer implements PubKeyProtectedExpirablePayload {
+public final class Offer implements PubKeyProtectedExpirablePayload, CanonicalEncodable {
     // That object is sent over the wire, so we need to take care of version compatibility.
     @JsonExclude
     private static final long serialVersionUID = Version.NETWORK_PROTOCOL_VERSION;
@@ -340,6 +342,25 @@ public final class Offer implements PubKeyProtectedExpirablePayload {
         return errorMessageProperty;
     }
 
+    @Override
+    public void encode(CanonicalEncoder encoder) {
+        encoder.writeString(id)
+                .writeString(direction != null ? direction.name() : null)
+                .writeString(currencyCode)
+                .writeLong(date)
+                .writeLong(fiatPrice)
+                .writeLong(amount)
+                .writeLong(minAmount)
+                .write(offererNodeAddress)
+                .write(pubKeyRing)
+                .writeString(paymentMethodName)
+                .writeString(paymentMethodCountryCode)
+                .writeString(offererPaymentAccountId)
+                .writeStringList(acceptedCountryCodes)
+                .writeList(arbitratorNodeAddresses)
+                .writeString(offerFeePaymentTxID);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
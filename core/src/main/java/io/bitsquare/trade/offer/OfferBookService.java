@@ -24,6 +24,7 @@ import io.bitsquare.p2p.storage.HashMapChangedListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -52,21 +53,7 @@ public class OfferBookService {
     }
 
     public void addOffer(Offer offer, ResultHandler resultHandler, ErrorMessageHandler errorMessageHandler) {
-        doAddOffer(offer, resultHandler, errorMessageHandler, false);
-    }
-
-    public void republishOffer(Offer offer, ResultHandler resultHandler, ErrorMessageHandler errorMessageHandler) {
-        doAddOffer(offer, resultHandler, errorMessageHandler, true);
-    }
-
-    private void doAddOffer(Offer offer, ResultHandler resultHandler, ErrorMessageHandler errorMessageHandler, boolean rePublish) {
-        boolean result;
-        if (rePublish)
-            result = p2PService.republishData(offer);
-        else
-            result = p2PService.addData(offer);
-
-        if (result) {
+        if (p2PService.addData(offer)) {
             log.trace("Add offer to network was successful. Offer = " + offer);
             resultHandler.handleResult();
         } else {
@@ -74,6 +61,15 @@ public class OfferBookService {
         }
     }
 
+    public void refreshTTL(Offer offer, ResultHandler resultHandler, ErrorMessageHandler errorMessageHandler) {
+        if (p2PService.refreshTTL(offer)) {
+            log.trace("Refresh TTL of offer was successful. Offer = " + offer);
+            resultHandler.handleResult();
+        } else {
+            errorMessageHandler.handleErrorMessage("Refresh TTL of offer failed");
+        }
+    }
+
     public void removeOffer(Offer offer, ResultHandler resultHandler, ErrorMessageHandler errorMessageHandler) {
         if (p2PService.removeData(offer)) {
             log.trace("Remove offer from network was successful. Offer = " + offer);
@@ -83,6 +79,21 @@ public class OfferBookService {
         }
     }
 
+    // The batch variants broadcast all offers together, entries which are not accepted don't affect the others.
+
+    public void addOffers(List<Offer> offers, ResultHandler resultHandler, ErrorMessageHandler errorMessageHandler) {
+        handleBatchResult("Add", offers, p2PService.addData(offers), resultHandler, errorMessageHandler);
+    }
+
+    public void refreshTTL(List<Offer> offers, ResultHandler resultHandler, ErrorMessageHandler errorMessageHandler) {
+        handleBatchResult("Refresh TTL of", offers, p2PService.refreshTTL(offers), resultHandler, errorMessageHandler);
+    }
+
+    public void removeOffers(List<Offer> offers, @Nullable ResultHandler resultHandler,
+                             @Nullable ErrorMessageHandler errorMessageHandler) {
+        handleBatchResult("Remove", offers, p2PService.removeData(offers), resultHandler, errorMessageHandler);
+    }
+
     public List<Offer> getOffers() {
         final List<Offer> offers = p2PService.getDataMap().values().stream()
                 .filter(e -> e.expirablePayload instanceof Offer)
@@ -95,4 +106,21 @@ public class OfferBookService {
         log.debug("removeOfferAtShutDown " + offer);
         removeOffer(offer, null, null);
     }
+
+    public void removeOffersAtShutDown(List<Offer> offers) {
+        log.debug("removeOffersAtShutDown " + offers.size() + " offers");
+        removeOffers(offers, null, null);
+    }
+
+    private void handleBatchResult(String operation, List<Offer> offers, int accepted,
+                                   @Nullable ResultHandler resultHandler, @Nullable ErrorMessageHandler errorMessageHandler) {
+        if (accepted == offers.size()) {
+            log.trace(operation + " " + offers.size() + " offers was successful.");
+            if (resultHandler != null) resultHandler.handleResult();
+        } else {
+            if (errorMessageHandler != null)
+                errorMessageHandler.handleErrorMessage(operation + " offers failed for " + (offers.size() - accepted) +
+                        " of " + offers.size() + " offers");
+        }
+    }
 }
@@ -0,0 +1,226 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.trade.offer;
+
+import io.bitsquare.arbitration.Arbitrator;
+import io.bitsquare.p2p.NodeAddress;
+import io.bitsquare.payment.PaymentAccount;
+import io.bitsquare.payment.SepaAccount;
+import io.bitsquare.user.User;
+import javafx.collections.SetChangeListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.inject.Inject;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Index of the offers in the OrderBook the user can take. Each offer gets a slot and we keep one bitset for the offers
+ * matching one of the user's payment accounts and one for the offers with an arbitrator the user has accepted, so
+ * ArbitrationSelectionRule finds a candidate.
+ * <p>
+ * The bits of an offer are calculated once when it is added. If a payment account is added we only check the offers
+ * which did not match before, if one is removed only the offers which matched. The accepted arbitrators list of the
+ * user is replaced on each change, so we recalculate the arbitrator bits when we see a new list.
+ * Not thread safe, it is used from the user thread like the OrderBook.
+ */
+public class OfferCompatibilityIndex implements OrderBook.Listener {
+    private static final Logger log = LoggerFactory.getLogger(OfferCompatibilityIndex.class);
+
+    private final User user;
+    private final List<Offer> offersBySlot = new ArrayList<>();
+    private final Map<String, Integer> slotByOfferId = new HashMap<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    private final BitSet paymentAccountMatches = new BitSet();
+    private final BitSet arbitratorMatches = new BitSet();
+    private List<Arbitrator> indexedAcceptedArbitrators;
+    private Set<NodeAddress> acceptedArbitratorNodeAddresses;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Inject
+    public OfferCompatibilityIndex(OrderBook orderBook, User user) {
+        this.user = user;
+        updateAcceptedArbitrators();
+
+        user.getPaymentAccountsAsObservable().addListener((SetChangeListener<PaymentAccount>) change -> {
+            if (change.wasAdded())
+                onPaymentAccountAdded(change.getElementAdded());
+            if (change.wasRemoved())
+                onPaymentAccountRemoved();
+        });
+
+        orderBook.addListener(this);
+        for (String currencyCode : orderBook.getCurrencyCodes()) {
+            orderBook.getSide(currencyCode, Offer.Direction.BUY).getOffers().stream().forEach(this::onOfferAdded);
+            orderBook.getSide(currencyCode, Offer.Direction.SELL).getOffers().stream().forEach(this::onOfferAdded);
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public boolean isPaymentAccountValidForOffer(Offer offer) {
+        Integer slot = slotByOfferId.get(offer.getId());
+        if (slot != null)
+            return paymentAccountMatches.get(slot);
+        else
+            return isPaymentAccountValidForOffer(user.getPaymentAccountsAsObservable(), offer);
+    }
+
+    public boolean hasMatchingArbitrator(Offer offer) {
+        updateAcceptedArbitrators();
+        Integer slot = slotByOfferId.get(offer.getId());
+        if (slot != null)
+            return arbitratorMatches.get(slot);
+        else
+            return hasMatchingArbitrator(acceptedArbitratorNodeAddresses, offer);
+    }
+
+    public boolean isTakeable(Offer offer) {
+        return isPaymentAccountValidForOffer(offer) && hasMatchingArbitrator(offer);
+    }
+
+    /**
+     * @return The offers with a matching payment account and arbitrator.
+     */
+    public List<Offer> getTakeableOffers() {
+        BitSet takeable = getTakeableBits();
+        List<Offer> offers = new ArrayList<>(takeable.cardinality());
+        for (int slot = takeable.nextSetBit(0); slot >= 0; slot = takeable.nextSetBit(slot + 1)) {
+            offers.add(offersBySlot.get(slot));
+        }
+        return offers;
+    }
+
+    public int getNumTakeableOffers() {
+        return getTakeableBits().cardinality();
+    }
+
+    public static boolean isPaymentAccountValidForOffer(Collection<PaymentAccount> paymentAccounts, Offer offer) {
+        return paymentAccounts.stream().filter(paymentAccount -> isPaymentAccountValidForOffer(paymentAccount, offer))
+                .findAny().isPresent();
+    }
+
+    public static boolean isPaymentAccountValidForOffer(PaymentAccount paymentAccount, Offer offer) {
+        if (!paymentAccount.getPaymentMethod().equals(offer.getPaymentMethod()))
+            return false;
+
+        List<String> offerAcceptedCountryCodes = offer.getAcceptedCountryCodes();
+        if (offerAcceptedCountryCodes != null && paymentAccount instanceof SepaAccount &&
+                !((SepaAccount) paymentAccount).getAcceptedCountryCodes().stream()
+                        .filter(offerAcceptedCountryCodes::contains)
+                        .findAny().isPresent())
+            return false;
+
+        return paymentAccount.getTradeCurrencies().stream()
+                .filter(currency -> currency.getCode().equals(offer.getCurrencyCode()))
+                .findAny().isPresent();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // OrderBook.Listener
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    public void onOfferAdded(Offer offer) {
+        updateAcceptedArbitrators();
+        Integer slot = slotByOfferId.get(offer.getId());
+        if (slot == null) {
+            slot = freeSlots.isEmpty() ? offersBySlot.size() : freeSlots.pop();
+            if (slot == offersBySlot.size())
+                offersBySlot.add(offer);
+            else
+                offersBySlot.set(slot, offer);
+            slotByOfferId.put(offer.getId(), slot);
+        } else {
+            offersBySlot.set(slot, offer);
+        }
+        paymentAccountMatches.set(slot, isPaymentAccountValidForOffer(user.getPaymentAccountsAsObservable(), offer));
+        arbitratorMatches.set(slot, hasMatchingArbitrator(acceptedArbitratorNodeAddresses, offer));
+    }
+
+    @Override
+    public void onOfferRemoved(Offer offer) {
+        Integer slot = slotByOfferId.remove(offer.getId());
+        if (slot != null) {
+            offersBySlot.set(slot, null);
+            paymentAccountMatches.clear(slot);
+            arbitratorMatches.clear(slot);
+            freeSlots.push(slot);
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private BitSet getTakeableBits() {
+        updateAcceptedArbitrators();
+        BitSet takeable = (BitSet) paymentAccountMatches.clone();
+        takeable.and(arbitratorMatches);
+        return takeable;
+    }
+
+    private void onPaymentAccountAdded(PaymentAccount paymentAccount) {
+        for (int slot = paymentAccountMatches.nextClearBit(0); slot < offersBySlot.size();
+             slot = paymentAccountMatches.nextClearBit(slot + 1)) {
+            Offer offer = offersBySlot.get(slot);
+            if (offer != null && isPaymentAccountValidForOffer(paymentAccount, offer))
+                paymentAccountMatches.set(slot);
+        }
+    }
+
+    private void onPaymentAccountRemoved() {
+        Set<PaymentAccount> paymentAccounts = user.getPaymentAccountsAsObservable();
+        for (int slot = paymentAccountMatches.nextSetBit(0); slot >= 0; slot = paymentAccountMatches.nextSetBit(slot + 1)) {
+            if (!isPaymentAccountValidForOffer(paymentAccounts, offersBySlot.get(slot)))
+                paymentAccountMatches.clear(slot);
+        }
+    }
+
+    private void updateAcceptedArbitrators() {
+        List<Arbitrator> acceptedArbitrators = user.getAcceptedArbitrators();
+        if (acceptedArbitrators == indexedAcceptedArbitrators)
+            return;
+
+        indexedAcceptedArbitrators = acceptedArbitrators;
+        acceptedArbitratorNodeAddresses = acceptedArbitrators != null ?
+                acceptedArbitrators.stream().map(Arbitrator::getArbitratorNodeAddress).collect(Collectors.toSet()) :
+                Collections.emptySet();
+        arbitratorMatches.clear();
+        for (int slot = 0; slot < offersBySlot.size(); slot++) {
+            Offer offer = offersBySlot.get(slot);
+            if (offer != null && hasMatchingArbitrator(acceptedArbitratorNodeAddresses, offer))
+                arbitratorMatches.set(slot);
+        }
+    }
+
+    private static boolean hasMatchingArbitrator(Set<NodeAddress> acceptedArbitratorNodeAddresses, Offer offer) {
+        return offer.getArbitratorNodeAddresses().stream().filter(acceptedArbitratorNodeAddresses::contains)
+                .findAny().isPresent();
+    }
+}
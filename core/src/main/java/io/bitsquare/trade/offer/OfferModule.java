@@ -18,7 +18,9 @@
 package io.bitsquare.trade.offer;
 
 import com.google.inject.Singleton;
+import com.google.inject.name.Names;
 import io.bitsquare.app.AppModule;
+import io.bitsquare.app.ProgramArguments;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.env.Environment;
@@ -34,5 +36,14 @@ public class OfferModule extends AppModule {
     protected final void configure() {
         bind(OpenOfferManager.class).in(Singleton.class);
         bind(OfferBookService.class).in(Singleton.class);
+        bind(OrderBook.class).in(Singleton.class);
+        bind(OfferCompatibilityIndex.class).in(Singleton.class);
+        bind(MarketStatisticsService.class).in(Singleton.class);
+
+        String statisticsDumpFile = env.getProperty(ProgramArguments.STATISTICS_DUMP_FILE, "");
+        bindConstant().annotatedWith(Names.named(ProgramArguments.STATISTICS_DUMP_FILE)).to(statisticsDumpFile);
+        Long statisticsDumpInterval = env.getProperty(ProgramArguments.STATISTICS_DUMP_INTERVAL, Long.class,
+                MarketStatisticsService.DEFAULT_DUMP_INTERVAL_SEC);
+        bindConstant().annotatedWith(Names.named(ProgramArguments.STATISTICS_DUMP_INTERVAL)).to(statisticsDumpInterval);
     }
 }
\ No newline at end of file
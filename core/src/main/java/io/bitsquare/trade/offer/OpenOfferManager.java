@@ -35,9 +35,12 @@ import io.bitsquare.trade.closed.ClosedTradableManager;
 import io.bitsquare.trade.handlers.TransactionResultHandler;
 import io.bitsquare.trade.protocol.availability.messages.OfferAvailabilityRequest;
 import io.bitsquare.trade.protocol.availability.messages.OfferAvailabilityResponse;
+import io.bitsquare.trade.protocol.availability.messages.OffersAvailabilityRequest;
+import io.bitsquare.trade.protocol.availability.messages.OffersAvailabilityResponse;
 import io.bitsquare.trade.protocol.placeoffer.PlaceOfferModel;
 import io.bitsquare.trade.protocol.placeoffer.PlaceOfferProtocol;
 import io.bitsquare.user.User;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,17 +48,22 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nullable;
 import javax.inject.Named;
 import java.io.File;
-import java.util.Optional;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.*;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.inject.internal.util.$Preconditions.checkNotNull;
 import static io.bitsquare.util.Validator.nonEmptyStringOf;
 
 public class OpenOfferManager {
     private static final Logger log = LoggerFactory.getLogger(OpenOfferManager.class);
 
+    // Every n-th round we broadcast our offers in full, in between we only refresh their TTL.
+    // Peers with an older version get the refreshed offers in full (see P2PDataStorage), peers which have missed an
+    // offer request it when they get the refresh. The full republish covers peers we could not reach that way.
+    private static final int FULL_REPUBLISH_INTERVAL = 4;
+
     private final KeyRing keyRing;
     private final User user;
     private final P2PService p2PService;
@@ -65,10 +73,13 @@ public class OpenOfferManager {
     private final ClosedTradableManager closedTradableManager;
 
     private final TradableList<OpenOffer> openOffers;
+    // Index for the lookups at availability requests, kept in sync with openOffers by a ListChangeListener
+    private final Map<String, OpenOffer> openOffersById = new HashMap<>();
     private final Storage<TradableList<OpenOffer>> openOffersStorage;
     private boolean shutDownRequested;
     private FirstPeerAuthenticatedListener firstPeerAuthenticatedListener;
     private final Timer timer = new Timer();
+    private int rePublishRound;
 
     ///////////////////////////////////////////////////////////////////////////////////////////
     // Constructor
@@ -98,6 +109,14 @@ public class OpenOfferManager {
     }
 
     private void init() {
+        openOffers.stream().forEach(openOffer -> openOffersById.put(openOffer.getId(), openOffer));
+        openOffers.getObservableList().addListener((ListChangeListener<OpenOffer>) change -> {
+            while (change.next()) {
+                change.getRemoved().stream().forEach(openOffer -> openOffersById.remove(openOffer.getId()));
+                change.getAddedSubList().stream().forEach(openOffer -> openOffersById.put(openOffer.getId(), openOffer));
+            }
+        });
+
         // In case the app did get killed the shutDown from the modules is not called, so we use a shutdown hook
         Runtime.getRuntime().addShutdownHook(new Thread(OpenOfferManager.this::shutDown,
                 "OpenOfferManager.ShutDownHook"));
@@ -109,6 +128,8 @@ public class OpenOfferManager {
             Message message = decryptedMessageWithPubKey.message;
             if (message instanceof OfferAvailabilityRequest)
                 handleOfferAvailabilityRequest((OfferAvailabilityRequest) message, peerAddress);
+            else if (message instanceof OffersAvailabilityRequest)
+                handleOffersAvailabilityRequest((OffersAvailabilityRequest) message, peerAddress);
         });
     }
 
@@ -155,11 +176,24 @@ public class OpenOfferManager {
     }
 
     private void rePublishOffers() {
-        if (!openOffers.isEmpty()) log.trace("rePublishOffers");
+        // The first round after startup is a full republish as the network might not have our offers anymore
+        boolean fullRepublish = rePublishRound++ % FULL_REPUBLISH_INTERVAL == 0;
+        if (openOffers.isEmpty())
+            return;
+
+        log.trace("rePublishOffers fullRepublish=" + fullRepublish);
+        // All offers are sent in one batch
+        List<Offer> offers = openOffers.stream().map(OpenOffer::getOffer).collect(Collectors.toList());
+        if (fullRepublish)
+            offerBookService.addOffers(offers,
+                    () -> log.debug("Successful added offers to P2P network"),
+                    errorMessage -> log.error("Add offers to P2P network failed. " + errorMessage));
+        else
+            offerBookService.refreshTTL(offers,
+                    () -> log.debug("Successful refreshed TTL of offers"),
+                    errorMessage -> log.error("Refresh TTL of offers failed. " + errorMessage));
+
         for (OpenOffer openOffer : openOffers) {
-            offerBookService.republishOffer(openOffer.getOffer(),
-                    () -> log.debug("Successful added offer to P2P network"),
-                    errorMessage -> log.error("Add offer to P2P network failed. " + errorMessage));
             //setupDepositPublishedListener(openOffer);
             openOffer.setStorage(openOffersStorage);
         }
@@ -177,9 +211,8 @@ public class OpenOfferManager {
             log.debug("shutDown");
             shutDownRequested = true;
             // we remove own offers from offerbook when we go offline
-            for (OpenOffer openOffer : openOffers) {
-                offerBookService.removeOfferAtShutDown(openOffer.getOffer());
-            }
+            if (!openOffers.isEmpty())
+                offerBookService.removeOffersAtShutDown(openOffers.stream().map(OpenOffer::getOffer).collect(Collectors.toList()));
 
             // delay a bit before we signal that we are done to give time for network
             if (completeHandler != null)
@@ -262,7 +295,7 @@ public class OpenOfferManager {
     }
 
     public Optional<OpenOffer> findOpenOffer(String offerId) {
-        return openOffers.stream().filter(openOffer -> openOffer.getId().equals(offerId)).findAny();
+        return Optional.ofNullable(openOffersById.get(offerId));
     }
 
     // Close openOffer after deposit published
@@ -292,8 +325,7 @@ public class OpenOfferManager {
             return;
         }
 
-        Optional<OpenOffer> openOfferOptional = findOpenOffer(message.offerId);
-        boolean isAvailable = openOfferOptional.isPresent() && openOfferOptional.get().getState() == OpenOffer.State.AVAILABLE;
+        boolean isAvailable = isAvailable(message.offerId);
         try {
             p2PService.sendEncryptedMailMessage(sender,
                     message.getPubKeyRing(),
@@ -315,7 +347,47 @@ public class OpenOfferManager {
         }
     }
 
+    private void handleOffersAvailabilityRequest(OffersAvailabilityRequest message, NodeAddress sender) {
+        log.trace("handleNewMessage: message = " + message.getClass().getSimpleName() + " from " + sender);
+        try {
+            nonEmptyStringOf(message.uid);
+            checkNotNull(message.offerIds);
+            checkArgument(message.offerIds.size() <= OffersAvailabilityRequest.MAX_OFFERS, "Too many offer IDs");
+            checkNotNull(message.getPubKeyRing());
+        } catch (Throwable t) {
+            log.warn("Invalid message " + message.toString());
+            return;
+        }
+
+        Map<String, Boolean> isAvailableByOfferId = new HashMap<>();
+        message.offerIds.stream().forEach(offerId -> isAvailableByOfferId.put(offerId, isAvailable(offerId)));
+        try {
+            p2PService.sendEncryptedMailMessage(sender,
+                    message.getPubKeyRing(),
+                    new OffersAvailabilityResponse(message.uid, isAvailableByOfferId),
+                    new SendMailMessageListener() {
+                        @Override
+                        public void onArrived() {
+                            log.trace("OffersAvailabilityResponse successfully arrived at peer");
+                        }
+
+                        @Override
+                        public void onFault() {
+                            log.info("Sending OffersAvailabilityResponse failed.");
+                        }
+                    });
+        } catch (Throwable t) {
+            t.printStackTrace();
+            log.info("Exception at handleOffersAvailabilityRequest " + t.getMessage());
+        }
+    }
+
+    private boolean isAvailable(String offerId) {
+        OpenOffer openOffer = openOffersById.get(offerId);
+        return openOffer != null && openOffer.getState() == OpenOffer.State.AVAILABLE;
+    }
+
     public Optional<OpenOffer> getOpenOfferById(String offerId) {
-        return openOffers.stream().filter(e -> e.getId().equals(offerId)).findFirst();
+        return findOpenOffer(offerId);
     }
 }
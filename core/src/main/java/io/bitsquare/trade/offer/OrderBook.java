@@ -0,0 +1,333 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.trade.offer;
+
+import io.bitsquare.p2p.storage.HashMapChangedListener;
+import io.bitsquare.p2p.storage.data.ProtectedData;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * Holds the offers of the offerbook sorted by price per currency and direction. It is updated incrementally by the add
+ * and remove events of the storage, so readers don't need to filter and sort the whole offer list on each change.
+ * <p>
+ * Each side holds the offers grouped by price level, the best price first (highest for buy offers, lowest for sell
+ * offers). Adding or removing an offer costs O(log n).
+ * Not thread safe, it is only accessed from the user thread like the storage events.
+ */
+public class OrderBook {
+    private static final Logger log = LoggerFactory.getLogger(OrderBook.class);
+
+    public interface Listener {
+        void onOfferAdded(Offer offer);
+
+        void onOfferRemoved(Offer offer);
+    }
+
+    /**
+     * Offers with the same price, in the order they got added.
+     */
+    public static class PriceLevel {
+        private final long price;
+        private final Map<String, Offer> offersById = new LinkedHashMap<>();
+        private long amount;
+        private long volume;
+
+        private PriceLevel(long price) {
+            this.price = price;
+        }
+
+        private void add(Offer offer) {
+            offersById.put(offer.getId(), offer);
+            amount += offer.getAmount().value;
+            volume += getOfferVolume(offer);
+        }
+
+        private void remove(Offer offer) {
+            if (offersById.remove(offer.getId()) != null) {
+                amount -= offer.getAmount().value;
+                volume -= getOfferVolume(offer);
+            }
+        }
+
+        public long getPrice() {
+            return price;
+        }
+
+        public Collection<Offer> getOffers() {
+            return Collections.unmodifiableCollection(offersById.values());
+        }
+
+        public int getNumOffers() {
+            return offersById.size();
+        }
+
+        // Sum of the offer amounts in satoshi
+        public long getAmount() {
+            return amount;
+        }
+
+        // Sum of the offer volumes in the smallest unit of the fiat currency
+        public long getVolume() {
+            return volume;
+        }
+    }
+
+    /**
+     * Point of the cumulative amount of all offers from the best price up to and including that price.
+     */
+    public static class CumulativeAmount {
+        public final long price;
+        public final long cumulativeAmount;
+
+        CumulativeAmount(long price, long cumulativeAmount) {
+            this.price = price;
+            this.cumulativeAmount = cumulativeAmount;
+        }
+
+        @Override
+        public String toString() {
+            return "CumulativeAmount{" +
+                    "price=" + price +
+                    ", cumulativeAmount=" + cumulativeAmount +
+                    '}';
+        }
+    }
+
+    /**
+     * The offers of one currency and direction.
+     */
+    public static class Side {
+        private final String currencyCode;
+        private final Offer.Direction direction;
+        private final TreeMap<Long, PriceLevel> priceLevels;
+        private int numOffers;
+        private long amount;
+        private long volume;
+
+        private Side(String currencyCode, Offer.Direction direction) {
+            this.currencyCode = currencyCode;
+            this.direction = direction;
+            // Best price first: buyers pay more, sellers ask less
+            this.priceLevels = direction == Offer.Direction.BUY ?
+                    new TreeMap<>(Collections.reverseOrder()) : new TreeMap<>();
+        }
+
+        private void add(Offer offer) {
+            priceLevels.computeIfAbsent(offer.getPrice().value, PriceLevel::new).add(offer);
+            numOffers++;
+            amount += offer.getAmount().value;
+            volume += getOfferVolume(offer);
+        }
+
+        private void remove(Offer offer) {
+            long price = offer.getPrice().value;
+            PriceLevel priceLevel = priceLevels.get(price);
+            if (priceLevel != null) {
+                priceLevel.remove(offer);
+                if (priceLevel.getNumOffers() == 0)
+                    priceLevels.remove(price);
+            }
+            numOffers--;
+            amount -= offer.getAmount().value;
+            volume -= getOfferVolume(offer);
+        }
+
+        public String getCurrencyCode() {
+            return currencyCode;
+        }
+
+        public Offer.Direction getDirection() {
+            return direction;
+        }
+
+        /**
+         * @return The price levels, the best price first.
+         */
+        public Collection<PriceLevel> getPriceLevels() {
+            return Collections.unmodifiableCollection(priceLevels.values());
+        }
+
+        /**
+         * @return All offers, the best price first.
+         */
+        public List<Offer> getOffers() {
+            List<Offer> offers = new ArrayList<>(numOffers);
+            priceLevels.values().stream().forEach(priceLevel -> offers.addAll(priceLevel.offersById.values()));
+            return offers;
+        }
+
+        @Nullable
+        public PriceLevel getBestPriceLevel() {
+            Map.Entry<Long, PriceLevel> entry = priceLevels.firstEntry();
+            return entry != null ? entry.getValue() : null;
+        }
+
+        /**
+         * @return The cumulative amount per price level, the best price first.
+         */
+        public List<CumulativeAmount> getCumulativeAmounts() {
+            List<CumulativeAmount> result = new ArrayList<>(priceLevels.size());
+            long cumulativeAmount = 0;
+            for (PriceLevel priceLevel : priceLevels.values()) {
+                cumulativeAmount += priceLevel.amount;
+                result.add(new CumulativeAmount(priceLevel.price, cumulativeAmount));
+            }
+            return result;
+        }
+
+        public boolean isEmpty() {
+            return numOffers == 0;
+        }
+
+        public int getNumOffers() {
+            return numOffers;
+        }
+
+        public long getAmount() {
+            return amount;
+        }
+
+        public long getVolume() {
+            return volume;
+        }
+    }
+
+    private final Map<String, Offer> offersById = new HashMap<>();
+    private final Map<String, Side> buySidesByCurrencyCode = new HashMap<>();
+    private final Map<String, Side> sellSidesByCurrencyCode = new HashMap<>();
+    private final Set<Listener> listeners = new CopyOnWriteArraySet<>();
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    @Inject
+    public OrderBook(OfferBookService offerBookService) {
+        offerBookService.addHashSetChangedListener(new HashMapChangedListener() {
+            @Override
+            public void onAdded(ProtectedData entry) {
+                if (entry.expirablePayload instanceof Offer)
+                    add((Offer) entry.expirablePayload);
+            }
+
+            @Override
+            public void onRemoved(ProtectedData entry) {
+                if (entry.expirablePayload instanceof Offer)
+                    remove(((Offer) entry.expirablePayload).getId());
+            }
+        });
+        offerBookService.getOffers().stream().forEach(this::add);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Adds the offer or replaces an offer with the same id. Republished offers are reported again by the storage.
+     */
+    public void add(Offer offer) {
+        Offer existing = offersById.put(offer.getId(), offer);
+        if (existing != null)
+            removeFromSide(existing);
+
+        getOrCreateSide(offer.getCurrencyCode(), offer.getDirection()).add(offer);
+
+        if (existing != null)
+            listeners.stream().forEach(listener -> listener.onOfferRemoved(existing));
+        listeners.stream().forEach(listener -> listener.onOfferAdded(offer));
+    }
+
+    @Nullable
+    public Offer remove(String offerId) {
+        Offer offer = offersById.remove(offerId);
+        if (offer != null) {
+            removeFromSide(offer);
+            listeners.stream().forEach(listener -> listener.onOfferRemoved(offer));
+        }
+        return offer;
+    }
+
+    @Nullable
+    public Offer getOffer(String offerId) {
+        return offersById.get(offerId);
+    }
+
+    public boolean contains(String offerId) {
+        return offersById.containsKey(offerId);
+    }
+
+    /**
+     * @return The side of that currency and direction, an empty side if there are no offers.
+     */
+    public Side getSide(String currencyCode, Offer.Direction direction) {
+        Side side = getSides(direction).get(currencyCode);
+        return side != null ? side : new Side(currencyCode, direction);
+    }
+
+    public Set<String> getCurrencyCodes() {
+        Set<String> currencyCodes = new HashSet<>(buySidesByCurrencyCode.keySet());
+        currencyCodes.addAll(sellSidesByCurrencyCode.keySet());
+        return currencyCodes;
+    }
+
+    public int size() {
+        return offersById.size();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private Map<String, Side> getSides(Offer.Direction direction) {
+        return direction == Offer.Direction.BUY ? buySidesByCurrencyCode : sellSidesByCurrencyCode;
+    }
+
+    private Side getOrCreateSide(String currencyCode, Offer.Direction direction) {
+        return getSides(direction).computeIfAbsent(currencyCode, code -> new Side(code, direction));
+    }
+
+    private void removeFromSide(Offer offer) {
+        Map<String, Side> sides = getSides(offer.getDirection());
+        Side side = sides.get(offer.getCurrencyCode());
+        side.remove(offer);
+        if (side.isEmpty())
+            sides.remove(offer.getCurrencyCode());
+    }
+
+    private static long getOfferVolume(Offer offer) {
+        return offer.getOfferVolume() != null ? offer.getOfferVolume().value : 0;
+    }
+}
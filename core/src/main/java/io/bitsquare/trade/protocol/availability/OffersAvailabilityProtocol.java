@@ -0,0 +1,185 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.bitsquare.trade.protocol.availability;
+
+import io.bitsquare.common.UserThread;
+import io.bitsquare.common.crypto.PubKeyRing;
+import io.bitsquare.common.handlers.ErrorMessageHandler;
+import io.bitsquare.common.handlers.ResultHandler;
+import io.bitsquare.p2p.Message;
+import io.bitsquare.p2p.NodeAddress;
+import io.bitsquare.p2p.P2PService;
+import io.bitsquare.p2p.messaging.DecryptedMailListener;
+import io.bitsquare.p2p.messaging.SendMailMessageListener;
+import io.bitsquare.trade.offer.Offer;
+import io.bitsquare.trade.protocol.availability.messages.OffersAvailabilityRequest;
+import io.bitsquare.trade.protocol.availability.messages.OffersAvailabilityResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Checks the availability of several offers of one offerer with one request instead of one OfferAvailabilityProtocol
+ * per offer. The offer states are set like in ProcessOfferAvailabilityResponse.
+ * <p>
+ * Offerers with an older version do not know the OffersAvailabilityRequest and never respond, so it must only be used
+ * if the offerer has advertised Capabilities.BATCHED_OFFER_AVAILABILITY.
+ */
+public class OffersAvailabilityProtocol {
+    private static final Logger log = LoggerFactory.getLogger(OffersAvailabilityProtocol.class);
+
+    private static final long TIMEOUT_SEC = 10;
+
+    private final List<Offer> offers;
+    private final NodeAddress peerNodeAddress;
+    private final PubKeyRing pubKeyRing;
+    private final P2PService p2PService;
+    private final ResultHandler resultHandler;
+    private final ErrorMessageHandler errorMessageHandler;
+    private final DecryptedMailListener decryptedMailListener;
+    private final String uid = UUID.randomUUID().toString();
+
+    private final long timeoutMillis;
+
+    private java.util.Timer timeoutTimer;
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Constructor
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public OffersAvailabilityProtocol(List<Offer> offers, PubKeyRing pubKeyRing, P2PService p2PService,
+                                      ResultHandler resultHandler, ErrorMessageHandler errorMessageHandler) {
+        this(offers, pubKeyRing, p2PService, resultHandler, errorMessageHandler, TimeUnit.SECONDS.toMillis(TIMEOUT_SEC));
+    }
+
+    // Used by tests to not wait for the full timeout
+    OffersAvailabilityProtocol(List<Offer> offers, PubKeyRing pubKeyRing, P2PService p2PService,
+                               ResultHandler resultHandler, ErrorMessageHandler errorMessageHandler,
+                               long timeoutMillis) {
+        checkArgument(!offers.isEmpty(), "offers must not be empty");
+        checkArgument(offers.size() <= OffersAvailabilityRequest.MAX_OFFERS, "Too many offers for one request");
+        this.offers = new ArrayList<>(offers);
+        this.peerNodeAddress = offers.get(0).getOffererNodeAddress();
+        checkArgument(offers.stream().allMatch(offer -> offer.getOffererNodeAddress().equals(peerNodeAddress)),
+                "All offers must be from the same offerer");
+        this.pubKeyRing = pubKeyRing;
+        this.p2PService = p2PService;
+        this.resultHandler = resultHandler;
+        this.errorMessageHandler = errorMessageHandler;
+        this.timeoutMillis = timeoutMillis;
+
+        decryptedMailListener = (decryptedMessageWithPubKey, peerAddress) -> {
+            Message message = decryptedMessageWithPubKey.message;
+            if (message instanceof OffersAvailabilityResponse && uid.equals(((OffersAvailabilityResponse) message).uid)) {
+                log.trace("handle OffersAvailabilityResponse from " + peerAddress);
+                handle((OffersAvailabilityResponse) message);
+            }
+        };
+    }
+
+    private void cleanup() {
+        stopTimeout();
+        p2PService.removeDecryptedMailListener(decryptedMailListener);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // API
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public void sendOffersAvailabilityRequest() {
+        // reset
+        offers.stream().forEach(offer -> offer.setState(Offer.State.UNDEFINED));
+
+        p2PService.addDecryptedMailListener(decryptedMailListener);
+        startTimeout();
+        try {
+            List<String> offerIds = offers.stream().map(Offer::getId).collect(Collectors.toList());
+            p2PService.sendEncryptedMailMessage(peerNodeAddress,
+                    offers.get(0).getPubKeyRing(),
+                    new OffersAvailabilityRequest(uid, offerIds, pubKeyRing),
+                    new SendMailMessageListener() {
+                        @Override
+                        public void onArrived() {
+                            log.trace("OffersAvailabilityRequest successfully arrived at peer");
+                        }
+
+                        @Override
+                        public void onFault() {
+                            setState(Offer.State.OFFERER_OFFLINE);
+                            cleanup();
+                            errorMessageHandler.handleErrorMessage("Sending OffersAvailabilityRequest failed.");
+                        }
+                    });
+        } catch (Throwable t) {
+            t.printStackTrace();
+            cleanup();
+            errorMessageHandler.handleErrorMessage("An error occurred at sendOffersAvailabilityRequest: " + t.getMessage());
+        }
+    }
+
+    public void cancel() {
+        cleanup();
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private void handle(OffersAvailabilityResponse message) {
+        cleanup();
+        // Offers missing in the response are unknown to the offerer
+        offers.stream()
+                .filter(offer -> offer.getState() != Offer.State.REMOVED)
+                .forEach(offer -> offer.setState(Boolean.TRUE.equals(message.isAvailableByOfferId.get(offer.getId())) ?
+                        Offer.State.AVAILABLE : Offer.State.NOT_AVAILABLE));
+        resultHandler.handleResult();
+    }
+
+    private void setState(Offer.State state) {
+        offers.stream()
+                .filter(offer -> offer.getState() != Offer.State.REMOVED)
+                .forEach(offer -> offer.setState(state));
+    }
+
+    private void startTimeout() {
+        stopTimeout();
+
+        timeoutTimer = UserThread.runAfter(() -> {
+            log.warn("Timeout reached");
+            setState(Offer.State.OFFERER_OFFLINE);
+            cleanup();
+            errorMessageHandler.handleErrorMessage("Timeout reached: Peer has not responded.");
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void stopTimeout() {
+        if (timeoutTimer != null) {
+            timeoutTimer.cancel();
+            timeoutTimer = null;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.bitsquare.trade.protocol.availability.messages;
+
+import io.bitsquare.app.Version;
+import io.bitsquare.common.crypto.PubKeyRing;
+import io.bitsquare.p2p.messaging.MailMessage;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Requests the availability of several offers of the same offerer in one round trip.
+ */
+@Immutable
+public final class OffersAvailabilityRequest implements MailMessage {
+    // That object is sent over the wire, so we need to take care of version compatibility.
+    private static final long serialVersionUID = Version.NETWORK_PROTOCOL_VERSION;
+
+    public static final int MAX_OFFERS = 100;
+
+    private final int networkId = Version.getNetworkId();
+    // Used to match the response to the request
+    public final String uid;
+    public final ArrayList<String> offerIds;
+    private final PubKeyRing pubKeyRing;
+
+    public OffersAvailabilityRequest(String uid, List<String> offerIds, PubKeyRing pubKeyRing) {
+        this.uid = uid;
+        this.offerIds = new ArrayList<>(offerIds);
+        this.pubKeyRing = pubKeyRing;
+    }
+
+    public PubKeyRing getPubKeyRing() {
+        return pubKeyRing;
+    }
+
+    @Override
+    public int networkId() {
+        return networkId;
+    }
+
+    @Override
+    public String toString() {
+        return "OffersAvailabilityRequest{" +
+                "networkId=" + networkId +
+                ", uid='" + uid + '\'' +
+                ", offerIds=" + offerIds +
+                ", pubKeyRing=" + pubKeyRing +
+                '}';
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.bitsquare.trade.protocol.availability.messages;
+
+import io.bitsquare.app.Version;
+import io.bitsquare.p2p.messaging.MailMessage;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.HashMap;
+import java.util.Map;
+
+@Immutable
+public final class OffersAvailabilityResponse implements MailMessage {
+    // That object is sent over the wire, so we need to take care of version compatibility.
+    private static final long serialVersionUID = Version.NETWORK_PROTOCOL_VERSION;
+
+    private final int networkId = Version.getNetworkId();
+    public final String uid;
+    public final HashMap<String, Boolean> isAvailableByOfferId;
+
+    public OffersAvailabilityResponse(String uid, Map<String, Boolean> isAvailableByOfferId) {
+        this.uid = uid;
+        this.isAvailableByOfferId = new HashMap<>(isAvailableByOfferId);
+    }
+
+    @Override
+    public int networkId() {
+        return networkId;
+    }
+
+    @Override
+    public String toString() {
+        return "OffersAvailabilityResponse{" +
+                "networkId=" + networkId +
+                ", uid='" + uid + '\'' +
+                ", isAvailableByOfferId=" + isAvailableByOfferId +
+                '}';
+    }
+}
@@ -37,24 +37,9 @@ public abstract class TradeTask extends Task<Trade> {
         processModel = trade.getProcessModel();
     }
 
+    // Tasks of a parallel group fail on a worker thread, the trade is only updated on the UserThread
     @Override
-    protected void failed() {
+    protected void onFailed(String errorMessage) {
         trade.setErrorMessage(errorMessage);
-        super.failed();
-    }
-
-    @Override
-    protected void failed(String message) {
-        appendToErrorMessage(message);
-        trade.setErrorMessage(errorMessage);
-        super.failed();
-    }
-
-    @Override
-    protected void failed(Throwable t) {
-        t.printStackTrace();
-        appendExceptionToErrorMessage(t);
-        trade.setErrorMessage(errorMessage);
-        super.failed();
     }
 }
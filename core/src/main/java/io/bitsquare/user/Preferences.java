@@ -92,14 +92,15 @@ public class Preferences implements Serializable {
     private boolean useAnimations = true;
     private boolean useEffects = true;
     private boolean displaySecurityDepositInfo = true;
-    private final ArrayList<TradeCurrency> tradeCurrencies;
+    // Collections are replaced instead of mutated, so a background save never iterates a collection we are changing
+    private ArrayList<TradeCurrency> tradeCurrencies;
     private BlockChainExplorer blockChainExplorerMainNet;
     private BlockChainExplorer blockChainExplorerTestNet;
     private boolean showPlaceOfferConfirmation;
     private boolean showTakeOfferConfirmation;
     private String backupDirectory;
     private boolean autoSelectArbitrators = true;
-    private final Map<String, Boolean> showAgainMap;
+    private Map<String, Boolean> showAgainMap;
     private boolean tacAccepted;
     private Locale preferredLocale;
     private TradeCurrency preferredTradeCurrency;
@@ -192,14 +193,13 @@ public class Preferences implements Serializable {
             storage.queueUpForSave(2000);
         });
         tradeCurrenciesAsObservable.addListener((Observable ov) -> {
-            tradeCurrencies.clear();
-            tradeCurrencies.addAll(tradeCurrenciesAsObservable);
+            tradeCurrencies = new ArrayList<>(tradeCurrenciesAsObservable);
             storage.queueUpForSave();
         });
     }
 
     public void dontShowAgain(String id) {
-        showAgainMap.put(id, false);
+        putShowAgain(id, false);
         storage.queueUpForSave(2000);
     }
 
@@ -238,6 +238,12 @@ public class Preferences implements Serializable {
         tradeCurrenciesAsObservable.setAll(tradeCurrencies);
     }
 
+    private void putShowAgain(String key, boolean value) {
+        Map<String, Boolean> newShowAgainMap = new HashMap<>(showAgainMap);
+        newShowAgainMap.put(key, value);
+        showAgainMap = newShowAgainMap;
+    }
+
     private void setBlockChainExplorerTestNet(BlockChainExplorer blockChainExplorerTestNet) {
         this.blockChainExplorerTestNet = blockChainExplorerTestNet;
         storage.queueUpForSave(2000);
@@ -387,7 +393,7 @@ public class Preferences implements Serializable {
     public boolean showAgain(String key) {
         // if we add new and those are not in our stored map we display by default the new popup
         if (!getShowAgainMap().containsKey(key)) {
-            showAgainMap.put(key, true);
+            putShowAgain(key, true);
             storage.queueUpForSave(2000);
         }
 
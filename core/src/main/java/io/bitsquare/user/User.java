@@ -62,6 +62,7 @@ public class User implements Serializable {
     private String accountID;
     private Set<PaymentAccount> paymentAccounts = new HashSet<>();
     private PaymentAccount currentPaymentAccount;
+    // Lists are replaced instead of mutated, so a background save never iterates a list we are changing
     private List<String> acceptedLanguageLocaleCodes = new ArrayList<>();
     private Alert developersAlert;
     private Alert displayedAlert;
@@ -159,7 +160,9 @@ public class User implements Serializable {
 
     public boolean addAcceptedLanguageLocale(String localeCode) {
         if (!acceptedLanguageLocaleCodes.contains(localeCode)) {
-            boolean changed = acceptedLanguageLocaleCodes.add(localeCode);
+            List<String> newAcceptedLanguageLocaleCodes = new ArrayList<>(acceptedLanguageLocaleCodes);
+            boolean changed = newAcceptedLanguageLocaleCodes.add(localeCode);
+            acceptedLanguageLocaleCodes = newAcceptedLanguageLocaleCodes;
             if (changed)
                 storage.queueUpForSave();
             return changed;
@@ -169,7 +172,9 @@ public class User implements Serializable {
     }
 
     public boolean removeAcceptedLanguageLocale(String languageLocaleCode) {
-        boolean changed = acceptedLanguageLocaleCodes.remove(languageLocaleCode);
+        List<String> newAcceptedLanguageLocaleCodes = new ArrayList<>(acceptedLanguageLocaleCodes);
+        boolean changed = newAcceptedLanguageLocaleCodes.remove(languageLocaleCode);
+        acceptedLanguageLocaleCodes = newAcceptedLanguageLocaleCodes;
         if (changed)
             storage.queueUpForSave();
         return changed;
@@ -177,7 +182,9 @@ public class User implements Serializable {
 
     public void addAcceptedArbitrator(Arbitrator arbitrator) {
         if (!acceptedArbitrators.contains(arbitrator) && !isMyOwnRegisteredArbitrator(arbitrator)) {
-            acceptedArbitrators.add(arbitrator);
+            List<Arbitrator> newAcceptedArbitrators = new ArrayList<>(acceptedArbitrators);
+            newAcceptedArbitrators.add(arbitrator);
+            acceptedArbitrators = newAcceptedArbitrators;
             storage.queueUpForSave();
         }
     }
@@ -187,7 +194,9 @@ public class User implements Serializable {
     }
 
     public void removeAcceptedArbitrator(Arbitrator arbitrator) {
-        acceptedArbitrators.remove(arbitrator);
+        List<Arbitrator> newAcceptedArbitrators = new ArrayList<>(acceptedArbitrators);
+        newAcceptedArbitrators.remove(arbitrator);
+        acceptedArbitrators = newAcceptedArbitrators;
         storage.queueUpForSave();
     }
 
@@ -0,0 +1,95 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.bitsquare.arbitration;
+
+import com.google.common.io.Files;
+import io.bitsquare.arbitration.messages.DisputeMailMessage;
+import io.bitsquare.btc.TradeWalletService;
+import io.bitsquare.btc.WalletService;
+import io.bitsquare.common.crypto.KeyRing;
+import io.bitsquare.common.crypto.KeyStorage;
+import io.bitsquare.common.util.Utilities;
+import io.bitsquare.p2p.P2PService;
+import io.bitsquare.p2p.messaging.SendMailboxMessageListener;
+import io.bitsquare.storage.PersistenceScheduler;
+import io.bitsquare.trade.Contract;
+import io.bitsquare.trade.TradeManager;
+import io.bitsquare.trade.offer.OpenOfferManager;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class DisputeManagerTest {
+    private File dir;
+    private KeyRing keyRing;
+    private P2PService p2PService;
+    private DisputeManager disputeManager;
+
+    @Before
+    public void setup() {
+        Security.addProvider(new BouncyCastleProvider());
+        dir = Files.createTempDir();
+        File keyDir = new File(dir, "keys");
+        keyDir.mkdir();
+        keyRing = new KeyRing(new KeyStorage(keyDir));
+        p2PService = mock(P2PService.class);
+        disputeManager = new DisputeManager(p2PService, mock(TradeWalletService.class), mock(WalletService.class),
+                mock(TradeManager.class), mock(OpenOfferManager.class), keyRing, dir);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        PersistenceScheduler.flushAll();
+        Utilities.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testAttachmentsMovedToStoreAfterSend() {
+        Dispute dispute = mock(Dispute.class);
+        when(dispute.getTradeId()).thenReturn("tradeId");
+        when(dispute.getTraderPubKeyRing()).thenReturn(keyRing.getPubKeyRing());
+        when(dispute.getArbitratorPubKeyRing()).thenReturn(keyRing.getPubKeyRing());
+        when(dispute.getContract()).thenReturn(mock(Contract.class));
+
+        byte[] screenshot = "screenshot".getBytes();
+        DisputeMailMessage.Attachment attachment = new DisputeMailMessage.Attachment("screenshot.png", screenshot);
+        DisputeMailMessage disputeMailMessage = disputeManager.sendDisputeMailMessage(dispute, "text",
+                new ArrayList<>(Collections.singletonList(attachment)));
+        // The data are sent inline
+        assertFalse(disputeMailMessage.getAttachments().get(0).isReference());
+
+        ArgumentCaptor<SendMailboxMessageListener> listener = ArgumentCaptor.forClass(SendMailboxMessageListener.class);
+        verify(p2PService).sendEncryptedMailboxMessage(any(), any(), any(), listener.capture());
+        listener.getValue().onStoredInMailbox();
+
+        DisputeMailMessage.Attachment storedAttachment = disputeMailMessage.getAttachments().get(0);
+        assertTrue(storedAttachment.isReference());
+        assertArrayEquals(screenshot, disputeManager.getAttachmentBytes(storedAttachment));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.bitsquare.btc;
+
+import org.bitcoinj.core.*;
+import org.bitcoinj.params.RegTestParams;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class AddressBalancesTest {
+    private final NetworkParameters params = RegTestParams.get();
+    private Wallet wallet;
+    private AddressBalances addressBalances;
+    private Address address1;
+    private Address address2;
+
+    @Before
+    public void setUp() {
+        wallet = new Wallet(params);
+        address1 = wallet.freshReceiveAddress();
+        address2 = wallet.freshReceiveAddress();
+        addressBalances = new AddressBalances(params);
+    }
+
+    @Test
+    public void testUpdate() {
+        Transaction fundingTx = new Transaction(params);
+        fundingTx.addOutput(Coin.COIN, address1);
+        fundingTx.addOutput(Coin.CENT, address2);
+        fundingTx.addOutput(Coin.CENT, new ECKey().toAddress(params));
+
+        Set<Address> changedAddresses = addressBalances.update(fundingTx, wallet);
+        assertEquals(2, changedAddresses.size());
+        assertEquals(Coin.COIN, addressBalances.getBalance(address1));
+        assertEquals(Coin.CENT, addressBalances.getBalance(address2));
+
+        // Same tx again (e.g. confidence changed) does not change a balance
+        assertTrue(addressBalances.update(fundingTx, wallet).isEmpty());
+
+        // Spend the output of address1 and send the change to address2
+        Transaction spendingTx = new Transaction(params);
+        TransactionInput input = spendingTx.addInput(fundingTx.getOutput(0));
+        fundingTx.getOutput(0).markAsSpent(input);
+        spendingTx.addOutput(Coin.CENT, address2);
+        spendingTx.addOutput(Coin.CENT.multiply(90), new ECKey().toAddress(params));
+
+        changedAddresses = addressBalances.update(spendingTx, wallet);
+        assertEquals(2, changedAddresses.size());
+        assertEquals(Coin.ZERO, addressBalances.getBalance(address1));
+        assertEquals(Coin.CENT.multiply(2), addressBalances.getBalance(address2));
+    }
+
+    @Test
+    public void testReset() {
+        Transaction fundingTx = new Transaction(params);
+        fundingTx.addOutput(Coin.COIN, address1);
+        fundingTx.addOutput(Coin.CENT, address2);
+        addressBalances.update(fundingTx, wallet);
+
+        Set<Address> changedAddresses = addressBalances.reset(Collections.singletonList(fundingTx.getOutput(1)));
+        assertEquals(Collections.singleton(address1), changedAddresses);
+        assertEquals(Coin.ZERO, addressBalances.getBalance(address1));
+        assertEquals(Coin.CENT, addressBalances.getBalance(address2));
+    }
+}
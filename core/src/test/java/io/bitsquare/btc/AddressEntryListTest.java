@@ -0,0 +1,50 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.btc;
+
+import org.bitcoinj.crypto.DeterministicKey;
+import org.bitcoinj.crypto.HDKeyDerivation;
+import org.bitcoinj.params.RegTestParams;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AddressEntryListTest {
+
+    @Test
+    public void testLookups() {
+        DeterministicKey masterKey = HDKeyDerivation.createMasterPrivateKey(new byte[32]);
+        AddressEntryList addressEntryList = new AddressEntryList(null);
+        AddressEntry arbitratorEntry = new AddressEntry(HDKeyDerivation.deriveChildKey(masterKey, 0),
+                RegTestParams.get(), AddressEntry.Context.ARBITRATOR);
+        AddressEntry tradeEntry = new AddressEntry(HDKeyDerivation.deriveChildKey(masterKey, 1),
+                RegTestParams.get(), AddressEntry.Context.TRADE, "offerId");
+        AddressEntry laterTradeEntry = new AddressEntry(HDKeyDerivation.deriveChildKey(masterKey, 2),
+                RegTestParams.get(), AddressEntry.Context.TRADE, "offerId");
+        addressEntryList.add(arbitratorEntry);
+        addressEntryList.add(tradeEntry);
+        addressEntryList.add(laterTradeEntry);
+
+        // The first entry of an offer is used like with a search in the list
+        assertSame(tradeEntry, addressEntryList.getAddressEntryByOfferId("offerId"));
+        assertNull(addressEntryList.getAddressEntryByOfferId("unknown"));
+        assertSame(laterTradeEntry, addressEntryList.getAddressEntryByAddress(laterTradeEntry.getAddressString()));
+        assertSame(arbitratorEntry, addressEntryList.getAddressEntryByAddress(arbitratorEntry.getAddressString()));
+        assertSame(arbitratorEntry, addressEntryList.getArbitratorAddressEntry());
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.trade;
+
+import com.google.common.io.Files;
+import io.bitsquare.common.crypto.KeyRing;
+import io.bitsquare.common.crypto.KeyStorage;
+import io.bitsquare.common.util.Utilities;
+import io.bitsquare.locale.Country;
+import io.bitsquare.locale.Region;
+import io.bitsquare.p2p.NodeAddress;
+import io.bitsquare.payment.PaymentMethod;
+import io.bitsquare.storage.FileManager;
+import io.bitsquare.storage.PersistenceScheduler;
+import io.bitsquare.storage.Storage;
+import io.bitsquare.trade.offer.Offer;
+import io.bitsquare.trade.offer.OpenOffer;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.Security;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class TradableArchiveTest {
+    private File dir;
+    private KeyRing keyRing;
+
+    @Before
+    public void setup() {
+        Security.addProvider(new BouncyCastleProvider());
+        dir = Files.createTempDir();
+        File keyDir = new File(dir, "keys");
+        keyDir.mkdir();
+        keyRing = new KeyRing(new KeyStorage(keyDir));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Utilities.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testPagingAndLoading() throws InterruptedException {
+        TradableArchive<OpenOffer> archive = new TradableArchive<>(dir, "ClosedTrades", keyRing);
+        for (int i = 0; i < 5; i++) {
+            archive.add(createCanceledOffer(i));
+        }
+        assertEquals(5, archive.size());
+
+        // latest first
+        List<TradableSummary> page = archive.getSummaries(0, 2);
+        assertEquals(Arrays.asList(4L, 3L), getPrices(page));
+        assertEquals(Collections.singletonList(0L), getPrices(archive.getSummaries(4, 2)));
+        assertTrue(archive.getSummaries(10, 2).isEmpty());
+
+        TradableSummary summary = page.get(0);
+        assertFalse(summary.isTrade());
+        assertEquals(OpenOffer.State.CANCELED, summary.getOpenOfferState());
+        assertEquals(Offer.Direction.BUY, summary.getDirection());
+        assertEquals("EUR", summary.getCurrencyCode());
+
+        PersistenceScheduler.flushAll();
+        TradableArchive<OpenOffer> reopened = new TradableArchive<>(dir, "ClosedTrades", keyRing);
+        assertEquals(getPrices(archive.getSummaries(0, 5)), getPrices(reopened.getSummaries(0, 5)));
+        OpenOffer openOffer = reopened.load(summary.getId()).get();
+        assertEquals(summary.getId(), openOffer.getId());
+        assertEquals(OpenOffer.State.CANCELED, openOffer.getState());
+        assertFalse(reopened.load("unknown").isPresent());
+    }
+
+    @Test
+    public void testMigrationOfTradableList() throws InterruptedException, IOException {
+        TradableList<OpenOffer> legacyList = new TradableList<>(new Storage<>(dir), "ClosedTrades");
+        legacyList.add(createCanceledOffer(1));
+        legacyList.add(createCanceledOffer(2));
+        PersistenceScheduler.flushAll();
+        File legacyFile = new File(dir, "ClosedTrades");
+        assertTrue(legacyFile.exists());
+        new FileManager<>(dir, legacyFile, 0).backupFile("ClosedTrades");
+
+        TradableArchive<OpenOffer> archive = new TradableArchive<>(dir, "ClosedTrades", keyRing);
+        assertEquals(2, archive.size());
+        assertTrue(archive.load(legacyList.get(0).getId()).isPresent());
+        // The old file is kept until the index has been written
+        assertTrue(legacyFile.exists());
+
+        PersistenceScheduler.flushAll();
+        archive = new TradableArchive<>(dir, "ClosedTrades", keyRing);
+        assertEquals(2, archive.size());
+        assertFalse(legacyFile.exists());
+        // The backups of the old file are kept
+        assertEquals(1, new File(dir, "backup").listFiles((backupDir, name) -> name.startsWith("ClosedTrades.")).length);
+    }
+
+    private OpenOffer createCanceledOffer(long price) throws InterruptedException {
+        // The archive is sorted by the offer date which has a resolution of 1 ms
+        Thread.sleep(2);
+        Offer offer = new Offer(UUID.randomUUID().toString(),
+                new NodeAddress("lmvdenjkyvx2ovga.onion", 8001),
+                keyRing.getPubKeyRing(),
+                Offer.Direction.BUY,
+                price,
+                100000000,
+                10000000,
+                PaymentMethod.SEPA_ID,
+                "EUR",
+                new Country("DE", "Germany", new Region("EU", "Europe")),
+                UUID.randomUUID().toString(),
+                Collections.singletonList(new NodeAddress("eo5ay2lyzrfvx2nr.onion", 8002)),
+                Collections.singletonList("DE"));
+        OpenOffer openOffer = new OpenOffer(offer, new Storage<>(dir));
+        openOffer.setState(OpenOffer.State.CANCELED);
+        return openOffer;
+    }
+
+    private static List<Long> getPrices(List<TradableSummary> summaries) {
+        return summaries.stream().map(summary -> summary.getPrice().getValue()).collect(Collectors.toList());
+    }
+}
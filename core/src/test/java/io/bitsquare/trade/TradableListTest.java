@@ -0,0 +1,140 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.bitsquare.trade;
+
+import com.google.common.io.Files;
+import io.bitsquare.common.crypto.KeyRing;
+import io.bitsquare.common.crypto.KeyStorage;
+import io.bitsquare.common.util.Utilities;
+import io.bitsquare.locale.Country;
+import io.bitsquare.locale.Region;
+import io.bitsquare.p2p.NodeAddress;
+import io.bitsquare.payment.PaymentMethod;
+import io.bitsquare.storage.PersistenceScheduler;
+import io.bitsquare.storage.Storage;
+import io.bitsquare.trade.offer.Offer;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.Security;
+import java.util.Collections;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+
+public class TradableListTest {
+    private static final int NUM_MUTATIONS = 2_000;
+
+    private File dir;
+    private KeyRing keyRing;
+
+    @Before
+    public void setup() {
+        Security.addProvider(new BouncyCastleProvider());
+        dir = Files.createTempDir();
+        File keyDir = new File(dir, "keys");
+        keyDir.mkdir();
+        keyRing = new KeyRing(new KeyStorage(keyDir));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Utilities.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testMutateTradeWhileSaveIsPending() {
+        Storage<TradableList<Trade>> storage = new Storage<>(dir);
+        TradableList<Trade> trades = new TradableList<>(storage, "PendingTrades", true);
+        Trade trade = new BuyerAsOffererTrade(createOffer(), storage);
+        trades.add(trade);
+
+        trade.setTakerContractSignature("persisted");
+        trade.persist();
+        storage.queueUpForSave(0);
+        // Not persisted, so it must not be part of the pending save
+        trade.setTakerContractSignature("mutated");
+        PersistenceScheduler.flushAll();
+
+        assertEquals("persisted", readTrade().getTakerContractSignature());
+    }
+
+    // The baseline serialized the live list at a full save, so changes without persist() got saved as well
+    @Test
+    public void testFullSaveContainsNotPersistedChanges() {
+        Storage<TradableList<Trade>> storage = new Storage<>(dir);
+        TradableList<Trade> trades = new TradableList<>(storage, "PendingTrades", true);
+        Trade trade = new BuyerAsOffererTrade(createOffer(), storage);
+        trades.add(trade);
+        PersistenceScheduler.flushAll();
+
+        trade.setTakerContractSignature("not persisted");
+        storage.queueUpForSave(0);
+        PersistenceScheduler.flushAll();
+
+        assertEquals("not persisted", readTrade().getTakerContractSignature());
+    }
+
+    // Mutates the trade while the scheduler thread writes the snapshots and journal records
+    @Test
+    public void testMutateDuringSaves() {
+        Storage<TradableList<Trade>> storage = new Storage<>(dir);
+        TradableList<Trade> trades = new TradableList<>(storage, "PendingTrades", true);
+        Trade trade = new BuyerAsOffererTrade(createOffer(), storage);
+        trades.add(trade);
+
+        for (int i = 0; i < NUM_MUTATIONS; i++) {
+            trade.setTakerContractSignature("signature " + i);
+            trade.getProcessModel().setTakeOfferFeeTxId("tx " + i);
+            trade.persist();
+            if (i % 10 == 0)
+                storage.queueUpForSave(0);
+        }
+        PersistenceScheduler.flushAll();
+
+        assertEquals(0, PersistenceScheduler.getStats().get("PendingTrades").getNumFailures());
+        Trade persistedTrade = readTrade();
+        assertEquals("signature " + (NUM_MUTATIONS - 1), persistedTrade.getTakerContractSignature());
+        assertEquals("tx " + (NUM_MUTATIONS - 1), persistedTrade.getProcessModel().getTakeOfferFeeTxId());
+    }
+
+    private Trade readTrade() {
+        TradableList<Trade> persisted = new TradableList<>(new Storage<>(dir), "PendingTrades", true);
+        assertEquals(1, persisted.size());
+        return persisted.get(0);
+    }
+
+    private Offer createOffer() {
+        return new Offer(UUID.randomUUID().toString(),
+                new NodeAddress("lmvdenjkyvx2ovga.onion", 8001),
+                keyRing.getPubKeyRing(),
+                Offer.Direction.BUY,
+                1000,
+                100000000,
+                10000000,
+                PaymentMethod.SEPA_ID,
+                "EUR",
+                new Country("DE", "Germany", new Region("EU", "Europe")),
+                UUID.randomUUID().toString(),
+                Collections.singletonList(new NodeAddress("eo5ay2lyzrfvx2nr.onion", 8002)),
+                Collections.singletonList("DE"));
+    }
+}
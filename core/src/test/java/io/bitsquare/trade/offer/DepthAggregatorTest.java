@@ -0,0 +1,113 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.trade.offer;
+
+import io.bitsquare.p2p.NodeAddress;
+import io.bitsquare.payment.PaymentMethod;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+public class DepthAggregatorTest {
+    private OrderBook orderBook;
+    private DepthAggregator depthAggregator;
+    private List<Offer.Direction> changes;
+
+    @Before
+    public void setup() {
+        orderBook = new OrderBook(mock(OfferBookService.class));
+        depthAggregator = new DepthAggregator(orderBook, 10, 5);
+        changes = new ArrayList<>();
+        depthAggregator.activate("EUR", changes::add);
+        changes.clear();
+    }
+
+    @Test
+    public void testBuckets() {
+        orderBook.add(createOffer(Offer.Direction.BUY, "EUR", 3005, 1));
+        orderBook.add(createOffer(Offer.Direction.BUY, "EUR", 3009, 2));
+        orderBook.add(createOffer(Offer.Direction.BUY, "EUR", 2990, 4));
+        orderBook.add(createOffer(Offer.Direction.SELL, "EUR", 3011, 1));
+        orderBook.add(createOffer(Offer.Direction.SELL, "USD", 3011, 1));
+        assertEquals(4, changes.size());
+        assertEquals(Offer.Direction.SELL, changes.get(3));
+
+        // Buy offers are rounded down, sell offers up
+        List<OrderBook.CumulativeAmount> buyPoints = depthAggregator.getPoints(Offer.Direction.BUY);
+        assertEquals(2, buyPoints.size());
+        assertEquals(3000, buyPoints.get(0).price);
+        assertEquals(3, buyPoints.get(0).cumulativeAmount);
+        assertEquals(2990, buyPoints.get(1).price);
+        assertEquals(7, buyPoints.get(1).cumulativeAmount);
+
+        List<OrderBook.CumulativeAmount> sellPoints = depthAggregator.getPoints(Offer.Direction.SELL);
+        assertEquals(1, sellPoints.size());
+        assertEquals(3020, sellPoints.get(0).price);
+    }
+
+    @Test
+    public void testRemove() {
+        Offer offer = createOffer(Offer.Direction.BUY, "EUR", 3005, 1);
+        orderBook.add(offer);
+        orderBook.add(createOffer(Offer.Direction.BUY, "EUR", 3009, 2));
+        orderBook.remove(offer.getId());
+        assertEquals(2, depthAggregator.getPoints(Offer.Direction.BUY).get(0).cumulativeAmount);
+
+        orderBook.remove(orderBook.getSide("EUR", Offer.Direction.BUY).getOffers().get(0).getId());
+        assertTrue(depthAggregator.getPoints(Offer.Direction.BUY).isEmpty());
+    }
+
+    @Test
+    public void testBoundedNumberOfPoints() {
+        for (int i = 0; i < 1000; i++) {
+            orderBook.add(createOffer(Offer.Direction.SELL, "EUR", 3000 + i * 7, 1));
+        }
+        List<OrderBook.CumulativeAmount> points = depthAggregator.getPoints(Offer.Direction.SELL);
+        assertTrue(points.size() <= 5);
+        assertEquals(2000, depthAggregator.getBucketSize());
+        assertEquals(1000, points.get(points.size() - 1).cumulativeAmount);
+
+        // Changing the currency starts with the smallest bucket size again
+        depthAggregator.setCurrencyCode("USD");
+        assertEquals(10, depthAggregator.getBucketSize());
+        assertTrue(depthAggregator.getPoints(Offer.Direction.SELL).isEmpty());
+    }
+
+    private static Offer createOffer(Offer.Direction direction, String currencyCode, long price, long amount) {
+        return new Offer(UUID.randomUUID().toString(),
+                new NodeAddress("lmvdenjkyvx2ovga.onion", 8001),
+                null,
+                direction,
+                price,
+                amount,
+                amount,
+                PaymentMethod.OK_PAY_ID,
+                currencyCode,
+                null,
+                UUID.randomUUID().toString(),
+                Collections.singletonList(new NodeAddress("eo5ay2lyzrfvx2nr.onion", 8002)),
+                null);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.trade.offer;
+
+import io.bitsquare.p2p.NodeAddress;
+import io.bitsquare.payment.PaymentMethod;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+public class MarketStatisticsServiceTest {
+    private OrderBook orderBook;
+    private MarketStatisticsService marketStatisticsService;
+
+    @Before
+    public void setup() {
+        orderBook = new OrderBook(mock(OfferBookService.class));
+        marketStatisticsService = new MarketStatisticsService(orderBook, "", MarketStatisticsService.DEFAULT_DUMP_INTERVAL_SEC);
+    }
+
+    @Test
+    public void testStatistics() {
+        orderBook.add(createOffer(Offer.Direction.BUY, "EUR", 2_900_000, 100_000_000));
+        orderBook.add(createOffer(Offer.Direction.BUY, "EUR", 3_000_000, 50_000_000));
+        Offer bestAsk = createOffer(Offer.Direction.SELL, "EUR", 3_100_000, 100_000_000);
+        orderBook.add(bestAsk);
+        orderBook.add(createOffer(Offer.Direction.SELL, "EUR", 3_200_000, 100_000_000));
+
+        MarketStatistics statistics = marketStatisticsService.getStatistics("EUR");
+        assertEquals(3_000_000, (long) statistics.getBestBidPrice());
+        assertEquals(3_100_000, (long) statistics.getBestAskPrice());
+        assertEquals(100_000, (long) statistics.getSpread());
+        assertEquals(2, statistics.getNumBuyOffers());
+        assertEquals(4, statistics.getNumOffers());
+        assertEquals(150_000_000, statistics.getBuyAmount());
+        assertEquals(350_000_000, statistics.getTotalAmount());
+        // 1 BTC at 290 EUR + 0.5 BTC at 300 EUR
+        assertEquals(4_400_000, statistics.getBuyVolume());
+
+        orderBook.remove(bestAsk.getId());
+        assertEquals(3_200_000, (long) marketStatisticsService.getStatistics("EUR").getBestAskPrice());
+    }
+
+    @Test
+    public void testSnapshot() {
+        orderBook.add(createOffer(Offer.Direction.SELL, "USD", 4_000_000, 100_000_000));
+        orderBook.add(createOffer(Offer.Direction.BUY, "EUR", 3_000_000, 100_000_000));
+
+        List<MarketStatistics> snapshot = marketStatisticsService.getSnapshot();
+        assertEquals(2, snapshot.size());
+        assertEquals("EUR", snapshot.get(0).getCurrencyCode());
+        assertNull(snapshot.get(0).getBestAskPrice());
+        assertNull(snapshot.get(0).getSpread());
+        assertEquals("USD", snapshot.get(1).getCurrencyCode());
+
+        String json = marketStatisticsService.getSnapshotAsJson();
+        assertTrue(json.contains("\"currencyCode\": \"USD\""));
+        assertTrue(json.contains("\"bestAskPrice\": 4000000"));
+    }
+
+    private static Offer createOffer(Offer.Direction direction, String currencyCode, long price, long amount) {
+        return new Offer(UUID.randomUUID().toString(),
+                new NodeAddress("lmvdenjkyvx2ovga.onion", 8001),
+                null,
+                direction,
+                price,
+                amount,
+                amount,
+                PaymentMethod.OK_PAY_ID,
+                currencyCode,
+                null,
+                UUID.randomUUID().toString(),
+                Collections.singletonList(new NodeAddress("eo5ay2lyzrfvx2nr.onion", 8002)),
+                null);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.trade.offer;
+
+import com.google.common.io.Files;
+import io.bitsquare.arbitration.Arbitrator;
+import io.bitsquare.common.crypto.KeyRing;
+import io.bitsquare.common.crypto.KeyStorage;
+import io.bitsquare.common.util.Utilities;
+import io.bitsquare.p2p.NodeAddress;
+import io.bitsquare.payment.PaymentMethod;
+import io.bitsquare.payment.SwishAccount;
+import io.bitsquare.storage.Storage;
+import io.bitsquare.user.User;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.NoSuchAlgorithmException;
+import java.security.Security;
+import java.util.Collections;
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+public class OfferCompatibilityIndexTest {
+    private static final NodeAddress ARBITRATOR_NODE_ADDRESS = new NodeAddress("eo5ay2lyzrfvx2nr.onion", 8002);
+
+    private File dir;
+    private KeyRing keyRing;
+    private User user;
+    private OrderBook orderBook;
+    private OfferCompatibilityIndex index;
+
+    @Before
+    public void setup() throws NoSuchAlgorithmException {
+        Security.addProvider(new BouncyCastleProvider());
+        dir = Files.createTempDir();
+        File keyDir = new File(dir, "keys");
+        keyDir.mkdir();
+        keyRing = new KeyRing(new KeyStorage(keyDir));
+        user = new User(new Storage<>(dir), keyRing);
+        orderBook = new OrderBook(mock(OfferBookService.class));
+        index = new OfferCompatibilityIndex(orderBook, user);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Utilities.deleteDirectory(dir);
+    }
+
+    @Test
+    public void testPaymentAccounts() {
+        Offer sekOffer = createOffer("SEK");
+        Offer eurOffer = createOffer("EUR");
+        orderBook.add(sekOffer);
+        orderBook.add(eurOffer);
+        assertFalse(index.isPaymentAccountValidForOffer(sekOffer));
+
+        SwishAccount sekAccount = new SwishAccount();
+        user.addPaymentAccount(sekAccount);
+        assertTrue(index.isPaymentAccountValidForOffer(sekOffer));
+        assertFalse(index.isPaymentAccountValidForOffer(eurOffer));
+
+        // Offers added later get their bits when they are added
+        Offer otherSekOffer = createOffer("SEK");
+        orderBook.add(otherSekOffer);
+        assertTrue(index.isPaymentAccountValidForOffer(otherSekOffer));
+
+        user.removePaymentAccount(sekAccount);
+        assertFalse(index.isPaymentAccountValidForOffer(sekOffer));
+        assertFalse(index.isPaymentAccountValidForOffer(otherSekOffer));
+    }
+
+    @Test
+    public void testTakeableOffers() {
+        Offer sekOffer = createOffer("SEK");
+        Offer eurOffer = createOffer("EUR");
+        orderBook.add(sekOffer);
+        orderBook.add(eurOffer);
+        user.addPaymentAccount(new SwishAccount());
+        assertFalse(index.hasMatchingArbitrator(sekOffer));
+        assertEquals(0, index.getNumTakeableOffers());
+
+        // The accepted arbitrators list is replaced on change, the index picks up the new list
+        user.addAcceptedArbitrator(new Arbitrator(ARBITRATOR_NODE_ADDRESS, new byte[]{}, "", keyRing.getPubKeyRing(),
+                Collections.singletonList("en"), new Date(), new byte[]{}, ""));
+        assertTrue(index.hasMatchingArbitrator(eurOffer));
+        assertEquals(Collections.singletonList(sekOffer), index.getTakeableOffers());
+        assertTrue(index.isTakeable(sekOffer));
+
+        // Slots of removed offers get reused
+        orderBook.remove(sekOffer.getId());
+        assertEquals(0, index.getNumTakeableOffers());
+        Offer otherSekOffer = createOffer("SEK");
+        orderBook.add(otherSekOffer);
+        assertEquals(Collections.singletonList(otherSekOffer), index.getTakeableOffers());
+    }
+
+    private static Offer createOffer(String currencyCode) {
+        return new Offer(UUID.randomUUID().toString(),
+                new NodeAddress("lmvdenjkyvx2ovga.onion", 8001),
+                null,
+                Offer.Direction.SELL,
+                3000,
+                1,
+                1,
+                PaymentMethod.SWISH_ID,
+                currencyCode,
+                null,
+                UUID.randomUUID().toString(),
+                Collections.singletonList(ARBITRATOR_NODE_ADDRESS),
+                null);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package io.bitsquare.trade.offer;
+
+import io.bitsquare.p2p.NodeAddress;
+import io.bitsquare.payment.PaymentMethod;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+public class OrderBookTest {
+    private OrderBook orderBook;
+
+    @Before
+    public void setup() {
+        orderBook = new OrderBook(mock(OfferBookService.class));
+    }
+
+    @Test
+    public void testSortedByBestPrice() {
+        orderBook.add(createOffer(Offer.Direction.BUY, "EUR", 3000, 1));
+        orderBook.add(createOffer(Offer.Direction.BUY, "EUR", 3200, 2));
+        orderBook.add(createOffer(Offer.Direction.BUY, "EUR", 3100, 3));
+        orderBook.add(createOffer(Offer.Direction.SELL, "EUR", 3400, 1));
+        orderBook.add(createOffer(Offer.Direction.SELL, "EUR", 3300, 2));
+        orderBook.add(createOffer(Offer.Direction.SELL, "USD", 4000, 1));
+
+        OrderBook.Side buySide = orderBook.getSide("EUR", Offer.Direction.BUY);
+        assertEquals(Arrays.asList(3200L, 3100L, 3000L), getPrices(buySide.getOffers()));
+        assertEquals(3200, buySide.getBestPriceLevel().getPrice());
+        assertEquals(6, buySide.getAmount());
+
+        OrderBook.Side sellSide = orderBook.getSide("EUR", Offer.Direction.SELL);
+        assertEquals(Arrays.asList(3300L, 3400L), getPrices(sellSide.getOffers()));
+        assertEquals(1, orderBook.getSide("USD", Offer.Direction.SELL).getNumOffers());
+        assertTrue(orderBook.getSide("USD", Offer.Direction.BUY).isEmpty());
+        assertEquals(2, orderBook.getCurrencyCodes().size());
+    }
+
+    @Test
+    public void testCumulativeAmounts() {
+        orderBook.add(createOffer(Offer.Direction.BUY, "EUR", 3000, 1));
+        orderBook.add(createOffer(Offer.Direction.BUY, "EUR", 3200, 2));
+        orderBook.add(createOffer(Offer.Direction.BUY, "EUR", 3200, 4));
+
+        List<OrderBook.CumulativeAmount> cumulativeAmounts =
+                orderBook.getSide("EUR", Offer.Direction.BUY).getCumulativeAmounts();
+        assertEquals(2, cumulativeAmounts.size());
+        assertEquals(3200, cumulativeAmounts.get(0).price);
+        assertEquals(6, cumulativeAmounts.get(0).cumulativeAmount);
+        assertEquals(3000, cumulativeAmounts.get(1).price);
+        assertEquals(7, cumulativeAmounts.get(1).cumulativeAmount);
+    }
+
+    @Test
+    public void testAddAgainAndRemove() {
+        Offer offer = createOffer(Offer.Direction.SELL, "EUR", 3000, 1);
+        Offer other = createOffer(Offer.Direction.SELL, "EUR", 3000, 2);
+        orderBook.add(offer);
+        orderBook.add(other);
+        // Republished offers are added again
+        orderBook.add(offer);
+        assertEquals(2, orderBook.size());
+        OrderBook.Side side = orderBook.getSide("EUR", Offer.Direction.SELL);
+        assertEquals(1, side.getPriceLevels().size());
+        assertEquals(3, side.getAmount());
+
+        assertSame(offer, orderBook.remove(offer.getId()));
+        assertNull(orderBook.remove(offer.getId()));
+        assertEquals(2, side.getAmount());
+        assertEquals(2, side.getBestPriceLevel().getAmount());
+
+        orderBook.remove(other.getId());
+        assertTrue(orderBook.getSide("EUR", Offer.Direction.SELL).isEmpty());
+        assertTrue(orderBook.getCurrencyCodes().isEmpty());
+    }
+
+    private static List<Long> getPrices(List<Offer> offers) {
+        return offers.stream().map(offer -> offer.getPrice().value).collect(Collectors.toList());
+    }
+
+    private static Offer createOffer(Offer.Direction direction, String currencyCode, long price, long amount) {
+        return new Offer(UUID.randomUUID().toString(),
+                new NodeAddress("lmvdenjkyvx2ovga.onion", 8001),
+                null,
+                direction,
+                price,
+                amount,
+                amount,
+                PaymentMethod.OK_PAY_ID,
+                currencyCode,
+                null,
+                UUID.randomUUID().toString(),
+                Collections.singletonList(new NodeAddress("eo5ay2lyzrfvx2nr.onion", 8002)),
+                null);
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * This file is part of Bitsquare.
+ *
+ * Bitsquare is free software: you can redistribute it and/or modify it
+ * under the terms of the GNU Affero General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or (at
+ * your option) any later version.
+ *
+ * Bitsquare is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Affero General Public
+ * License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with Bitsquare. If not, see <http://www.gnu.org/licenses/>.
+ */
+package io.bitsquare.trade.protocol.availability;
+
+import io.bitsquare.p2p.Message;
+import io.bitsquare.p2p.NodeAddress;
+import io.bitsquare.p2p.P2PService;
+import io.bitsquare.p2p.messaging.DecryptedMailListener;
+import io.bitsquare.p2p.messaging.DecryptedMsgWithPubKey;
+import io.bitsquare.p2p.messaging.MailMessage;
+import io.bitsquare.p2p.messaging.SendMailMessageListener;
+import io.bitsquare.payment.PaymentMethod;
+import io.bitsquare.trade.offer.Offer;
+import io.bitsquare.trade.protocol.availability.messages.OffersAvailabilityRequest;
+import io.bitsquare.trade.protocol.availability.messages.OffersAvailabilityResponse;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+// The offerer is mocked by the P2PService, responses are delivered to the registered mail listeners
+public class OffersAvailabilityProtocolTest {
+    private static final NodeAddress OFFERER_NODE_ADDRESS = new NodeAddress("lmvdenjkyvx2ovga.onion", 8001);
+    private static final long TIMEOUT_MILLIS = 200;
+
+    private P2PService p2PService;
+    private final List<DecryptedMailListener> mailListeners = new CopyOnWriteArrayList<>();
+    private final AtomicInteger numResults = new AtomicInteger();
+    private Offer offer1;
+    private Offer offer2;
+
+    @Before
+    public void setup() {
+        p2PService = mock(P2PService.class);
+        doAnswer(invocation -> mailListeners.add((DecryptedMailListener) invocation.getArguments()[0]))
+                .when(p2PService).addDecryptedMailListener(any(DecryptedMailListener.class));
+        doAnswer(invocation -> mailListeners.remove((DecryptedMailListener) invocation.getArguments()[0]))
+                .when(p2PService).removeDecryptedMailListener(any(DecryptedMailListener.class));
+        offer1 = createOffer();
+        offer2 = createOffer();
+    }
+
+    @Test
+    public void testResponseSetsStateOfAllOffers() {
+        OffersAvailabilityProtocol protocol = createProtocol();
+        protocol.sendOffersAvailabilityRequest();
+
+        OffersAvailabilityRequest request = (OffersAvailabilityRequest) getSentMessages(1).get(0);
+        assertEquals(Arrays.asList(offer1.getId(), offer2.getId()), request.offerIds);
+
+        // offer2 is unknown to the offerer
+        deliver(new OffersAvailabilityResponse(request.uid, Collections.singletonMap(offer1.getId(), true)));
+
+        assertEquals(Offer.State.AVAILABLE, offer1.getState());
+        assertEquals(Offer.State.NOT_AVAILABLE, offer2.getState());
+        assertEquals(1, numResults.get());
+        assertTrue(mailListeners.isEmpty());
+    }
+
+    @Test
+    public void testTimeoutMarksOffersOffline() throws Exception {
+        List<String> errorMessages = new CopyOnWriteArrayList<>();
+        new OffersAvailabilityProtocol(Arrays.asList(offer1, offer2), null, p2PService,
+                numResults::incrementAndGet, errorMessages::add, TIMEOUT_MILLIS)
+                .sendOffersAvailabilityRequest();
+        getSentMessages(1);
+
+        Thread.sleep(TIMEOUT_MILLIS * 3);
+        assertEquals(1, errorMessages.size());
+        assertEquals(Offer.State.OFFERER_OFFLINE, offer1.getState());
+        assertEquals(Offer.State.OFFERER_OFFLINE, offer2.getState());
+        assertEquals(0, numResults.get());
+        assertTrue(mailListeners.isEmpty());
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        OffersAvailabilityProtocol protocol = createProtocol();
+        protocol.sendOffersAvailabilityRequest();
+        OffersAvailabilityRequest request = (OffersAvailabilityRequest) getSentMessages(1).get(0);
+        protocol.cancel();
+
+        assertTrue(mailListeners.isEmpty());
+        deliver(new OffersAvailabilityResponse(request.uid, Collections.singletonMap(offer1.getId(), true)));
+        // The timeout is stopped as well, the errorMessageHandler would fail the test
+        Thread.sleep(TIMEOUT_MILLIS * 3);
+        assertEquals(Offer.State.UNDEFINED, offer1.getState());
+        assertEquals(0, numResults.get());
+    }
+
+    private OffersAvailabilityProtocol createProtocol() {
+        return new OffersAvailabilityProtocol(Arrays.asList(offer1, offer2), null, p2PService,
+                numResults::incrementAndGet,
+                errorMessage -> {
+                    throw new AssertionError(errorMessage);
+                },
+                TIMEOUT_MILLIS);
+    }
+
+    private List<MailMessage> getSentMessages(int numMessages) {
+        ArgumentCaptor<MailMessage> captor = ArgumentCaptor.forClass(MailMessage.class);
+        verify(p2PService, timeout(5000).times(numMessages)).sendEncryptedMailMessage(eq(OFFERER_NODE_ADDRESS), any(),
+                captor.capture(), any(SendMailMessageListener.class));
+        return captor.getAllValues();
+    }
+
+    private void deliver(Message message) {
+        mailListeners.stream().forEach(listener ->
+                listener.onMailMessage(new DecryptedMsgWithPubKey(message, null), OFFERER_NODE_ADDRESS));
+    }
+
+    private static Offer createOffer() {
+        return new Offer(UUID.randomUUID().toString(),
+                OFFERER_NODE_ADDRESS,
+                null,
+                Offer.Direction.SELL,
+                3000,
+                1,
+                1,
+                PaymentMethod.SWISH_ID,
+                "SEK",
+                null,
+                UUID.randomUUID().toString(),
+                Collections.singletonList(new NodeAddress("arbitrator.onion", 8001)),
+                null);
+    }
+}
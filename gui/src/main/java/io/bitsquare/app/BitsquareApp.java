@@ -25,6 +25,7 @@ import io.bitsquare.arbitration.ArbitratorManager;
 import io.bitsquare.btc.WalletService;
 import io.bitsquare.common.UserThread;
 import io.bitsquare.common.handlers.ResultHandler;
+import io.bitsquare.common.taskrunner.TaskStatistics;
 import io.bitsquare.common.util.Utilities;
 import io.bitsquare.gui.SystemTray;
 import io.bitsquare.gui.common.view.CachingViewLoader;
@@ -40,6 +41,8 @@ import io.bitsquare.gui.popups.SendAlertMessagePopup;
 import io.bitsquare.gui.util.ImageUtil;
 import io.bitsquare.p2p.P2PService;
 import io.bitsquare.storage.Storage;
+import io.bitsquare.storage.StorageLoader;
+import io.bitsquare.trade.offer.MarketStatisticsService;
 import io.bitsquare.trade.offer.OpenOfferManager;
 import javafx.application.Application;
 import javafx.application.Platform;
@@ -63,6 +66,7 @@ import org.reactfx.util.FxTimer;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.env.Environment;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Paths;
 import java.security.Security;
@@ -123,6 +127,9 @@ public class BitsquareApp extends Application {
         shutDownHandler = this::stop;
 
         try {
+            // Read the persisted data in parallel while Guice creates the objects using them
+            StorageLoader.preload(new File(env.getRequiredProperty(Storage.DIR_KEY)));
+
             // Guice
             bitsquareAppModule = new BitsquareAppModule(env, primaryStage);
             injector = Guice.createInjector(bitsquareAppModule);
@@ -197,6 +204,8 @@ public class BitsquareApp extends Application {
             // make the UI visible
             primaryStage.show();
 
+            StorageLoader.logReport();
+
             //showDebugWindow();
         } catch (Throwable throwable) {
             showErrorPopup(throwable, false);
@@ -304,9 +313,11 @@ public class BitsquareApp extends Application {
 
     private void gracefulShutDown(ResultHandler resultHandler) {
         log.debug("gracefulShutDown");
+        TaskStatistics.logReport();
         try {
             if (injector != null) {
                 injector.getInstance(ArbitratorManager.class).shutDown();
+                injector.getInstance(MarketStatisticsService.class).shutDown();
                 injector.getInstance(MainViewModel.class).shutDown();
                 injector.getInstance(OpenOfferManager.class).shutDown(() -> {
                     injector.getInstance(P2PService.class).shutDown(() -> {
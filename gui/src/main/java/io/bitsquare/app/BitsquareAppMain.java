@@ -20,6 +20,7 @@ package io.bitsquare.app;
 import io.bitsquare.BitsquareException;
 import io.bitsquare.btc.BitcoinNetwork;
 import io.bitsquare.btc.RegTestHost;
+import io.bitsquare.trade.offer.MarketStatisticsService;
 import io.bitsquare.util.joptsimple.EnumValueConverter;
 import joptsimple.OptionException;
 import joptsimple.OptionParser;
@@ -109,6 +110,12 @@ public class BitsquareAppMain extends BitsquareExecutable {
         parser.accepts(ProgramArguments.DEV_TEST, description("Enable arbitrator dev priv key", false))
                 .withRequiredArg()
                 .ofType(boolean.class);
+        parser.accepts(ProgramArguments.STATISTICS_DUMP_FILE, description("File to dump the market statistics as JSON", null))
+                .withRequiredArg();
+        parser.accepts(ProgramArguments.STATISTICS_DUMP_INTERVAL, description("Interval in sec. for dumping the market statistics",
+                MarketStatisticsService.DEFAULT_DUMP_INTERVAL_SEC))
+                .withRequiredArg()
+                .ofType(long.class);
         parser.accepts(BitcoinNetwork.KEY, description("Bitcoin network", BitcoinNetwork.DEFAULT))
                 .withRequiredArg()
                 .ofType(BitcoinNetwork.class)
@@ -43,6 +43,7 @@ import io.bitsquare.p2p.P2PService;
 import io.bitsquare.p2p.P2PServiceListener;
 import io.bitsquare.trade.Trade;
 import io.bitsquare.trade.TradeManager;
+import io.bitsquare.trade.offer.MarketStatisticsService;
 import io.bitsquare.trade.offer.OpenOffer;
 import io.bitsquare.trade.offer.OpenOfferManager;
 import io.bitsquare.user.Preferences;
@@ -76,6 +77,7 @@ public class MainViewModel implements ViewModel {
     private final P2PService p2PService;
     private final TradeManager tradeManager;
     private final OpenOfferManager openOfferManager;
+    private final MarketStatisticsService marketStatisticsService;
     private final DisputeManager disputeManager;
     private final Preferences preferences;
     private final AlertManager alertManager;
@@ -125,7 +127,8 @@ public class MainViewModel implements ViewModel {
     @Inject
     public MainViewModel(WalletService walletService, TradeWalletService tradeWalletService,
                          ArbitratorManager arbitratorManager, P2PService p2PService, TradeManager tradeManager,
-                         OpenOfferManager openOfferManager, DisputeManager disputeManager, Preferences preferences,
+                         OpenOfferManager openOfferManager, MarketStatisticsService marketStatisticsService,
+                         DisputeManager disputeManager, Preferences preferences,
                          User user, AlertManager alertManager, WalletPasswordPopup walletPasswordPopup,
                          BSFormatter formatter) {
         this.user = user;
@@ -135,6 +138,7 @@ public class MainViewModel implements ViewModel {
         this.p2PService = p2PService;
         this.tradeManager = tradeManager;
         this.openOfferManager = openOfferManager;
+        this.marketStatisticsService = marketStatisticsService;
         this.disputeManager = disputeManager;
         this.preferences = preferences;
         this.alertManager = alertManager;
@@ -357,6 +361,8 @@ public class MainViewModel implements ViewModel {
         openOfferManager.getOpenOffers().addListener((ListChangeListener<OpenOffer>) c -> updateBalance());
         openOfferManager.onAllServicesInitialized();
 
+        // marketStatisticsService
+        marketStatisticsService.onAllServicesInitialized();
 
         // alertManager
         alertManager.alertMessageProperty().addListener((observable, oldValue, newValue) -> displayAlertIfPresent(newValue));
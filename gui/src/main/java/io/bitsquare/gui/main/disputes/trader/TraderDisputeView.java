@@ -262,8 +262,15 @@ public class TraderDisputeView extends ActivatableView<VBox, Void> {
             fileChooser.setInitialDirectory(new File(System.getProperty("user.home")));*/
         File file = fileChooser.showSaveDialog(stage);
         if (file != null) {
+            // The data are loaded only when the user opens the attachment
+            byte[] bytes = disputeManager.getAttachmentBytes(attachment);
+            if (bytes == null) {
+                new Popup().error("The data of the attachment are not available anymore.").show();
+                return;
+            }
+
             try (FileOutputStream fileOutputStream = new FileOutputStream(file.getAbsolutePath())) {
-                fileOutputStream.write(attachment.getBytes());
+                fileOutputStream.write(bytes);
             } catch (IOException e) {
                 e.printStackTrace();
                 System.out.println(e.getMessage());
@@ -22,7 +22,6 @@ import io.bitsquare.common.util.Tuple2;
 import io.bitsquare.gui.common.view.ActivatableViewAndModel;
 import io.bitsquare.gui.common.view.FxmlView;
 import io.bitsquare.gui.main.markets.statistics.MarketStatisticItem;
-import io.bitsquare.gui.main.offer.offerbook.OfferBookListItem;
 import io.bitsquare.gui.util.BSFormatter;
 import io.bitsquare.locale.CurrencyUtil;
 import io.bitsquare.locale.TradeCurrency;
@@ -30,7 +29,6 @@ import io.bitsquare.trade.offer.Offer;
 import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
-import javafx.collections.ListChangeListener;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.chart.AreaChart;
@@ -51,7 +49,6 @@ public class MarketsChartsView extends ActivatableViewAndModel<VBox, MarketsChar
 
     private NumberAxis xAxis, yAxis;
     XYChart.Series seriesBuy, seriesSell;
-    private final ListChangeListener<OfferBookListItem> changeListener;
     private final BSFormatter formatter;
     private TableView<Offer> buyOfferTableView;
     private TableView<Offer> sellOfferTableView;
@@ -71,8 +68,6 @@ public class MarketsChartsView extends ActivatableViewAndModel<VBox, MarketsChar
     public MarketsChartsView(MarketsChartsViewModel model, BSFormatter formatter) {
         super(model);
         this.formatter = formatter;
-
-        changeListener = c -> updateChartData();
     }
 
     @Override
@@ -119,12 +114,8 @@ public class MarketsChartsView extends ActivatableViewAndModel<VBox, MarketsChar
         currencyComboBox.setItems(model.getTradeCurrencies());
         currencyComboBox.getSelectionModel().select(model.getTradeCurrency());
         currencyComboBox.setVisibleRowCount(Math.min(currencyComboBox.getItems().size(), 25));
-        currencyComboBox.setOnAction(e -> {
-            model.onSetTradeCurrency(currencyComboBox.getSelectionModel().getSelectedItem());
-            updateChartData();
-        });
+        currencyComboBox.setOnAction(e -> model.onSetTradeCurrency(currencyComboBox.getSelectionModel().getSelectedItem()));
 
-        model.getOfferBookListItems().addListener(changeListener);
         tradeCurrencySubscriber = EasyBind.subscribe(model.tradeCurrency,
                 newValue -> {
                     String code = newValue.getCode();
@@ -137,13 +128,10 @@ public class MarketsChartsView extends ActivatableViewAndModel<VBox, MarketsChar
 
         buyOfferTableView.setItems(model.getBuyOfferList());
         sellOfferTableView.setItems(model.getSellOfferList());
-
-        updateChartData();
     }
 
     @Override
     protected void deactivate() {
-        model.getOfferBookListItems().removeListener(changeListener);
         tradeCurrencySubscriber.unsubscribe();
     }
 
@@ -256,10 +244,10 @@ public class MarketsChartsView extends ActivatableViewAndModel<VBox, MarketsChar
         yAxis.setLabel("Amount in BTC");
         yAxis.setTickLabelFormatter(new NumberAxis.DefaultFormatter(yAxis, "", ""));
 
-        seriesBuy = new XYChart.Series();
+        seriesBuy = new XYChart.Series(model.getBuyData());
         seriesBuy.setName("Offers for  buy bitcoin  ");
 
-        seriesSell = new XYChart.Series();
+        seriesSell = new XYChart.Series(model.getSellData());
         seriesSell.setName("Offers for sell bitcoin");
 
         areaChart = new AreaChart<>(xAxis, yAxis);
@@ -271,15 +259,6 @@ public class MarketsChartsView extends ActivatableViewAndModel<VBox, MarketsChar
     }
 
 
-    private void updateChartData() {
-        seriesBuy.getData().clear();
-        seriesSell.getData().clear();
-
-        seriesBuy.getData().addAll(model.getBuyData());
-        seriesSell.getData().addAll(model.getSellData());
-    }
-
-
     private TableColumn<MarketStatisticItem, MarketStatisticItem> getCurrencyColumn() {
         TableColumn<MarketStatisticItem, MarketStatisticItem> column = new TableColumn<MarketStatisticItem, MarketStatisticItem>("Currency") {
             {
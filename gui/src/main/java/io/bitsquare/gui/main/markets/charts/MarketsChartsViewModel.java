@@ -20,33 +20,34 @@ package io.bitsquare.gui.main.markets.charts;
 import com.google.common.math.LongMath;
 import com.google.inject.Inject;
 import io.bitsquare.gui.common.model.ActivatableViewModel;
-import io.bitsquare.gui.main.offer.offerbook.OfferBook;
-import io.bitsquare.gui.main.offer.offerbook.OfferBookListItem;
 import io.bitsquare.locale.CurrencyUtil;
 import io.bitsquare.locale.TradeCurrency;
+import io.bitsquare.trade.offer.DepthAggregator;
 import io.bitsquare.trade.offer.Offer;
+import io.bitsquare.trade.offer.OrderBook;
 import io.bitsquare.user.Preferences;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.collections.FXCollections;
-import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.scene.chart.XYChart;
+import org.bitcoinj.core.Coin;
+import org.bitcoinj.utils.Fiat;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
 
 class MarketsChartsViewModel extends ActivatableViewModel {
 
-    private final OfferBook offerBook;
+    private final OrderBook orderBook;
     private final Preferences preferences;
 
     final ObjectProperty<TradeCurrency> tradeCurrency = new SimpleObjectProperty<>(CurrencyUtil.getDefaultTradeCurrency());
-    private final List<XYChart.Data> buyData = new ArrayList();
-    private final List<XYChart.Data> sellData = new ArrayList();
-    private final ObservableList<OfferBookListItem> offerBookListItems;
-    private final ListChangeListener<OfferBookListItem> listChangeListener;
+    private final ObservableList<XYChart.Data> buyData = FXCollections.observableArrayList();
+    private final ObservableList<XYChart.Data> sellData = FXCollections.observableArrayList();
+    private final DepthAggregator depthAggregator;
+    private final OrderBook.Listener orderBookListener;
     private final ObservableList<Offer> buyOfferList = FXCollections.observableArrayList();
     private final ObservableList<Offer> sellOfferList = FXCollections.observableArrayList();
 
@@ -56,73 +57,65 @@ class MarketsChartsViewModel extends ActivatableViewModel {
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     @Inject
-    public MarketsChartsViewModel(OfferBook offerBook, Preferences preferences) {
-        this.offerBook = offerBook;
+    public MarketsChartsViewModel(OrderBook orderBook, Preferences preferences) {
+        this.orderBook = orderBook;
         this.preferences = preferences;
 
-        offerBookListItems = offerBook.getOfferBookListItems();
-        listChangeListener = c -> updateChartData(offerBookListItems);
+        // We start with the smallest price unit, the aggregator increases the bucket size if there are too many points
+        depthAggregator = new DepthAggregator(orderBook, 1, DepthAggregator.DEFAULT_MAX_POINTS);
+
+        // We only need to update if the offer is in the selected currency
+        orderBookListener = new OrderBook.Listener() {
+            @Override
+            public void onOfferAdded(Offer offer) {
+                if (offer.getCurrencyCode().equals(getCurrencyCode()))
+                    updateOfferList(offer.getDirection());
+            }
+
+            @Override
+            public void onOfferRemoved(Offer offer) {
+                if (offer.getCurrencyCode().equals(getCurrencyCode()))
+                    updateOfferList(offer.getDirection());
+            }
+        };
     }
 
     @Override
     protected void activate() {
-        offerBookListItems.addListener(listChangeListener);
-        offerBook.fillOfferBookListItems();
-        updateChartData(offerBookListItems);
+        orderBook.addListener(orderBookListener);
+        depthAggregator.activate(getCurrencyCode(), this::updateChartData);
+        updateOfferList(Offer.Direction.BUY);
+        updateOfferList(Offer.Direction.SELL);
     }
 
     @Override
     protected void deactivate() {
-        offerBookListItems.removeListener(listChangeListener);
+        orderBook.removeListener(orderBookListener);
+        depthAggregator.deactivate();
     }
 
-    private void updateChartData(ObservableList<OfferBookListItem> offerBookListItems) {
-        List<Offer> offerList = offerBookListItems.stream()
-                .map(OfferBookListItem::getOffer)
-                .collect(Collectors.toList());
-
-        buyOfferList.clear();
-        buyOfferList.addAll(offerList
-                .stream()
-                .filter(e -> e.getCurrencyCode().equals(tradeCurrency.get().getCode())
-                        && e.getDirection().equals(Offer.Direction.BUY))
-                .sorted((o1, o2) -> {
-                    long a = o1.getPrice().value;
-                    long b = o2.getPrice().value;
-                    if (a != b)
-                        return a < b ? 1 : -1;
-                    return 0;
-                })
-                .collect(Collectors.toList()));
-        iterateBuyOffers(buyOfferList, Offer.Direction.BUY, buyData);
-
-        sellOfferList.clear();
-        sellOfferList.addAll(offerList
-                .stream()
-                .filter(e -> e.getCurrencyCode().equals(tradeCurrency.get().getCode())
-                        && e.getDirection().equals(Offer.Direction.SELL))
-                .sorted((o1, o2) -> {
-                    long a = o1.getPrice().value;
-                    long b = o2.getPrice().value;
-                    if (a != b)
-                        return a > b ? 1 : -1;
-                    return 0;
-                })
-                .collect(Collectors.toList()));
-        iterateBuyOffers(sellOfferList, Offer.Direction.SELL, sellData);
+    // The sides are sorted by the order book already, the best price first
+    private void updateOfferList(Offer.Direction direction) {
+        List<Offer> offers = orderBook.getSide(getCurrencyCode(), direction).getOffers();
+        if (direction == Offer.Direction.BUY)
+            buyOfferList.setAll(offers);
+        else
+            sellOfferList.setAll(offers);
     }
 
-    private void iterateBuyOffers(List<Offer> sortedList, Offer.Direction direction, List<XYChart.Data> data) {
-        data.clear();
-        double accumulatedAmount = 0;
-        for (Offer offer : sortedList) {
-            double price = (double) offer.getPrice().value / LongMath.pow(10, offer.getPrice().smallestUnitExponent());
-            double amount = (double) offer.getAmount().value / LongMath.pow(10, offer.getAmount().smallestUnitExponent());
-            accumulatedAmount += amount;
-            if (direction.equals(Offer.Direction.BUY))
-                data.add(0, new XYChart.Data(price, accumulatedAmount));
-            else
-                data.add(new XYChart.Data(price, accumulatedAmount));
+    // The x axis is ascending, so the buy side starts with the lowest price
+    private void updateChartData(Offer.Direction direction) {
+        List<XYChart.Data> data = new ArrayList<>();
+        for (OrderBook.CumulativeAmount point : depthAggregator.getPoints(direction)) {
+            double price = (double) point.price / LongMath.pow(10, Fiat.SMALLEST_UNIT_EXPONENT);
+            double amount = (double) point.cumulativeAmount / LongMath.pow(10, Coin.SMALLEST_UNIT_EXPONENT);
+            data.add(new XYChart.Data(price, amount));
+        }
+        if (direction == Offer.Direction.BUY) {
+            Collections.reverse(data);
+            buyData.setAll(data);
+        } else {
+            sellData.setAll(data);
         }
     }
 
@@ -133,18 +126,20 @@ class MarketsChartsViewModel extends ActivatableViewModel {
 
     public void onSetTradeCurrency(TradeCurrency tradeCurrency) {
         this.tradeCurrency.set(tradeCurrency);
-        updateChartData(offerBookListItems);
+        depthAggregator.setCurrencyCode(tradeCurrency.getCode());
+        updateOfferList(Offer.Direction.BUY);
+        updateOfferList(Offer.Direction.SELL);
     }
 
     ///////////////////////////////////////////////////////////////////////////////////////////
     // Getters
     ///////////////////////////////////////////////////////////////////////////////////////////
 
-    public List<XYChart.Data> getBuyData() {
+    public ObservableList<XYChart.Data> getBuyData() {
         return buyData;
     }
 
-    public List<XYChart.Data> getSellData() {
+    public ObservableList<XYChart.Data> getSellData() {
         return sellData;
     }
 
@@ -152,10 +147,6 @@ class MarketsChartsViewModel extends ActivatableViewModel {
         return tradeCurrency.get().getCode();
     }
 
-    public ObservableList<OfferBookListItem> getOfferBookListItems() {
-        return offerBookListItems;
-    }
-
     public ObservableList<Offer> getBuyOfferList() {
         return buyOfferList;
     }
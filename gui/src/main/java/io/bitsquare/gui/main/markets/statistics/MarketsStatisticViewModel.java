@@ -19,26 +19,21 @@ package io.bitsquare.gui.main.markets.statistics;
 
 import com.google.inject.Inject;
 import io.bitsquare.gui.common.model.ActivatableViewModel;
-import io.bitsquare.gui.main.offer.offerbook.OfferBook;
-import io.bitsquare.gui.main.offer.offerbook.OfferBookListItem;
+import io.bitsquare.trade.offer.MarketStatisticsService;
 import io.bitsquare.trade.offer.Offer;
+import io.bitsquare.trade.offer.OrderBook;
 import javafx.collections.FXCollections;
-import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import org.bitcoinj.core.Coin;
 import org.bitcoinj.utils.Fiat;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 import java.util.stream.Collectors;
 
 class MarketsStatisticViewModel extends ActivatableViewModel {
 
-    private final OfferBook offerBook;
-    private final ObservableList<OfferBookListItem> offerBookListItems;
-    private final ListChangeListener<OfferBookListItem> listChangeListener;
+    private final OrderBook orderBook;
+    private final MarketStatisticsService marketStatisticsService;
+    private final OrderBook.Listener orderBookListener;
     final ObservableList<MarketStatisticItem> marketStatisticItems = FXCollections.observableArrayList();
 
 
@@ -47,72 +42,41 @@ class MarketsStatisticViewModel extends ActivatableViewModel {
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     @Inject
-    public MarketsStatisticViewModel(OfferBook offerBook) {
-        this.offerBook = offerBook;
+    public MarketsStatisticViewModel(OrderBook orderBook, MarketStatisticsService marketStatisticsService) {
+        this.orderBook = orderBook;
+        this.marketStatisticsService = marketStatisticsService;
 
-        offerBookListItems = offerBook.getOfferBookListItems();
-        listChangeListener = c -> update(offerBookListItems);
+        orderBookListener = new OrderBook.Listener() {
+            @Override
+            public void onOfferAdded(Offer offer) {
+                update();
+            }
+
+            @Override
+            public void onOfferRemoved(Offer offer) {
+                update();
+            }
+        };
     }
 
     @Override
     protected void activate() {
-        offerBookListItems.addListener(listChangeListener);
-        offerBook.fillOfferBookListItems();
-        update(offerBookListItems);
+        orderBook.addListener(orderBookListener);
+        update();
     }
 
     @Override
     protected void deactivate() {
-        offerBookListItems.removeListener(listChangeListener);
+        orderBook.removeListener(orderBookListener);
     }
 
-    private void update(ObservableList<OfferBookListItem> offerBookListItems) {
-        Map<String, List<Offer>> offersByCurrencyMap = new HashMap<>();
-        for (OfferBookListItem offerBookListItem : offerBookListItems) {
-            Offer offer = offerBookListItem.getOffer();
-            String currencyCode = offer.getCurrencyCode();
-            if (!offersByCurrencyMap.containsKey(currencyCode))
-                offersByCurrencyMap.put(currencyCode, new ArrayList<>());
-            offersByCurrencyMap.get(currencyCode).add(offer);
-        }
-        marketStatisticItems.clear();
-        long totalAmount = 0;
-        for (String currencyCode : offersByCurrencyMap.keySet()) {
-            List<Offer> offers = offersByCurrencyMap.get(currencyCode);
-            List<Offer> buyOffers = offers
-                    .stream()
-                    .filter(e -> e.getDirection().equals(Offer.Direction.BUY))
-                    .sorted((o1, o2) -> {
-                        long a = o1.getPrice().value;
-                        long b = o2.getPrice().value;
-                        if (a != b)
-                            return a < b ? 1 : -1;
-                        return 0;
-                    })
-                    .collect(Collectors.toList());
-            Fiat bestBuyOfferPrice = buyOffers.isEmpty() ? null : buyOffers.get(0).getPrice();
-            List<Offer> sellOffers = offers
-                    .stream()
-                    .filter(e -> e.getDirection().equals(Offer.Direction.SELL))
-                    .sorted((o1, o2) -> {
-                        long a = o1.getPrice().value;
-                        long b = o2.getPrice().value;
-                        if (a != b)
-                            return a > b ? 1 : -1;
-                        return 0;
-                    })
-                    .collect(Collectors.toList());
-            Fiat bestSellOfferPrice = sellOffers.isEmpty() ? null : sellOffers.get(0).getPrice();
-
-            Fiat spread = null;
-            if (bestBuyOfferPrice != null && bestSellOfferPrice != null) {
-                spread = bestSellOfferPrice.subtract(bestBuyOfferPrice);
-            }
-
-            for (Offer offer : offers) {
-                totalAmount += offer.getAmount().getValue();
-            }
-            marketStatisticItems.add(new MarketStatisticItem(currencyCode, offers.size(), spread, Coin.valueOf(totalAmount)));
-        }
+    // The statistics are maintained by the order book, so that costs O(log n) per currency
+    private void update() {
+        marketStatisticItems.setAll(marketStatisticsService.getSnapshot().stream()
+                .map(statistics -> new MarketStatisticItem(statistics.getCurrencyCode(),
+                        statistics.getNumOffers(),
+                        statistics.getSpread() != null ? Fiat.valueOf(statistics.getCurrencyCode(), statistics.getSpread()) : null,
+                        Coin.valueOf(statistics.getTotalAmount())))
+                .collect(Collectors.toList()));
     }
 }
@@ -29,8 +29,7 @@ import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import java.io.Serializable;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.*;
 
 /**
  * Holds and manages the unsorted and unfiltered offerbook list of both buy and sell offers.
@@ -38,12 +37,15 @@ import java.util.concurrent.CopyOnWriteArraySet;
  * As it is used only by the Buy and Sell UIs we treat it as local UI model.
  * It also use OfferRepository.Listener as the lists items class and we don't want to get any dependency out of the
  * package for that.
+ * The items are indexed by offer id, so we can look them up without iterating the list and only apply the
+ * difference to the list if a view gets activated.
  */
 public class OfferBook {
     private static final Logger log = LoggerFactory.getLogger(OfferBook.class);
 
     private final OfferBookService offerBookService;
     private final ObservableList<OfferBookListItem> offerBookListItems = FXCollections.observableArrayList();
+    private final Map<String, OfferBookListItem> offerBookListItemsById = new HashMap<>();
 
 
     ///////////////////////////////////////////////////////////////////////////////////////////
@@ -60,9 +62,12 @@ public class OfferBook {
                 Serializable data = entry.expirablePayload;
                 if (data instanceof Offer) {
                     Offer offer = (Offer) data;
-                    OfferBookListItem offerBookListItem = new OfferBookListItem(offer);
-                    if (!offerBookListItems.contains(offerBookListItem))
+                    // Republished offers are reported again, we keep the existing item
+                    if (!offerBookListItemsById.containsKey(offer.getId())) {
+                        OfferBookListItem offerBookListItem = new OfferBookListItem(offer);
+                        offerBookListItemsById.put(offer.getId(), offerBookListItem);
                         offerBookListItems.add(offerBookListItem);
+                    }
                 }
             }
 
@@ -78,7 +83,9 @@ public class OfferBook {
                     // clean up possible references in openOfferManager 
                     tradeManager.onOfferRemovedFromRemoteOfferBook(offer);
 
-                    offerBookListItems.removeIf(item -> item.getOffer().getId().equals(offer.getId()));
+                    OfferBookListItem offerBookListItem = offerBookListItemsById.remove(offer.getId());
+                    if (offerBookListItem != null)
+                        offerBookListItems.remove(offerBookListItem);
                 }
             }
         });
@@ -88,14 +95,41 @@ public class OfferBook {
         return offerBookListItems;
     }
 
+    /**
+     * Brings the list in sync with the offers in the storage. Existing items are kept, so listeners only get notified
+     * about the offers which have been added or removed in the meantime.
+     */
     public void fillOfferBookListItems() {
         log.debug("fillOfferBookListItems");
         List<Offer> offers = offerBookService.getOffers();
-        CopyOnWriteArraySet<OfferBookListItem> list = new CopyOnWriteArraySet<>();
-        offers.stream().forEach(e -> list.add(new OfferBookListItem(e)));
-        offerBookListItems.clear();
-        offerBookListItems.addAll(list);
+        Set<String> offerIds = new HashSet<>(offers.size());
+        List<OfferBookListItem> addedItems = new ArrayList<>();
+        for (Offer offer : offers) {
+            offerIds.add(offer.getId());
+            if (!offerBookListItemsById.containsKey(offer.getId())) {
+                OfferBookListItem offerBookListItem = new OfferBookListItem(offer);
+                offerBookListItemsById.put(offer.getId(), offerBookListItem);
+                addedItems.add(offerBookListItem);
+            }
+        }
+
+        Set<OfferBookListItem> removedItems = new HashSet<>();
+        Iterator<Map.Entry<String, OfferBookListItem>> iterator = offerBookListItemsById.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, OfferBookListItem> entry = iterator.next();
+            if (!offerIds.contains(entry.getKey())) {
+                removedItems.add(entry.getValue());
+                iterator.remove();
+            }
+        }
+
+        // Each call fires one change event
+        if (!removedItems.isEmpty())
+            offerBookListItems.removeAll(removedItems);
+        if (!addedItems.isEmpty())
+            offerBookListItems.addAll(addedItems);
 
-        log.debug("offerBookListItems " + offerBookListItems.size());
+        log.debug("offerBookListItems " + offerBookListItems.size() + ", added " + addedItems.size() +
+                ", removed " + removedItems.size());
     }
 }
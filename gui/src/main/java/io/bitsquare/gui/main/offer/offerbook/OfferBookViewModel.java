@@ -26,11 +26,10 @@ import io.bitsquare.locale.BSResources;
 import io.bitsquare.locale.CountryUtil;
 import io.bitsquare.locale.CurrencyUtil;
 import io.bitsquare.locale.TradeCurrency;
-import io.bitsquare.p2p.NodeAddress;
 import io.bitsquare.p2p.P2PService;
 import io.bitsquare.payment.PaymentMethod;
-import io.bitsquare.payment.SepaAccount;
 import io.bitsquare.trade.offer.Offer;
+import io.bitsquare.trade.offer.OfferCompatibilityIndex;
 import io.bitsquare.trade.offer.OpenOfferManager;
 import io.bitsquare.user.Preferences;
 import io.bitsquare.user.User;
@@ -43,12 +42,12 @@ import javafx.collections.transformation.FilteredList;
 import javafx.collections.transformation.SortedList;
 
 import java.util.List;
-import java.util.Optional;
 
 class OfferBookViewModel extends ActivatableViewModel {
     private final OpenOfferManager openOfferManager;
     private final User user;
     private final OfferBook offerBook;
+    private final OfferCompatibilityIndex offerCompatibilityIndex;
     private final Preferences preferences;
     private final P2PService p2PService;
     private final BSFormatter formatter;
@@ -71,13 +70,14 @@ class OfferBookViewModel extends ActivatableViewModel {
 
     @Inject
     public OfferBookViewModel(User user, OpenOfferManager openOfferManager, OfferBook offerBook,
-                              Preferences preferences, P2PService p2PService,
+                              OfferCompatibilityIndex offerCompatibilityIndex, Preferences preferences, P2PService p2PService,
                               BSFormatter formatter) {
         super();
 
         this.openOfferManager = openOfferManager;
         this.user = user;
         this.offerBook = offerBook;
+        this.offerCompatibilityIndex = offerCompatibilityIndex;
         this.preferences = preferences;
         this.p2PService = p2PService;
         this.formatter = formatter;
@@ -238,22 +238,7 @@ class OfferBookViewModel extends ActivatableViewModel {
     }
 
     boolean isPaymentAccountValidForOffer(Offer offer) {
-
-        Optional<TradeCurrency> result1 = user.getPaymentAccounts().stream()
-                .filter(paymentAccount -> paymentAccount.getPaymentMethod().equals(offer.getPaymentMethod()))
-                .filter(paymentAccount -> {
-                    List<String> offerAcceptedCountryCodes = offer.getAcceptedCountryCodes();
-                    if (offerAcceptedCountryCodes != null && paymentAccount instanceof SepaAccount) {
-                        return ((SepaAccount) paymentAccount).getAcceptedCountryCodes().stream()
-                                .filter(offerAcceptedCountryCodes::contains)
-                                .findAny().isPresent();
-                    } else {
-                        return true;
-                    }
-                })
-                .flatMap(paymentAccount -> paymentAccount.getTradeCurrencies().stream())
-                .filter(currency -> currency.getCode().equals(offer.getCurrencyCode())).findAny();
-        return result1.isPresent();
+        return offerCompatibilityIndex.isPaymentAccountValidForOffer(offer);
     }
 
     public boolean hasPaymentAccountForCurrency() {
@@ -283,12 +268,6 @@ class OfferBookViewModel extends ActivatableViewModel {
 
 
     public boolean hasMatchingArbitrator(Offer offer) {
-        for (NodeAddress offerArbitratorNodeAddress : offer.getArbitratorNodeAddresses()) {
-            for (NodeAddress acceptedArbitratorNodeAddress : user.getAcceptedArbitratorAddresses()) {
-                if (offerArbitratorNodeAddress.equals(acceptedArbitratorNodeAddress))
-                    return true;
-            }
-        }
-        return false;
+        return offerCompatibilityIndex.hasMatchingArbitrator(offer);
     }
 }
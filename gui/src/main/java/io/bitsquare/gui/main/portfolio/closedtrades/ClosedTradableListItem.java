@@ -17,20 +17,20 @@
 
 package io.bitsquare.gui.main.portfolio.closedtrades;
 
-import io.bitsquare.trade.Tradable;
+import io.bitsquare.trade.TradableSummary;
 
 /**
  * We could remove that wrapper if it is not needed for additional UI only fields.
  */
 class ClosedTradableListItem {
 
-    private final Tradable tradable;
+    private final TradableSummary summary;
 
-    ClosedTradableListItem(Tradable tradable) {
-        this.tradable = tradable;
+    ClosedTradableListItem(TradableSummary summary) {
+        this.summary = summary;
     }
 
-    Tradable getTradable() {
-        return tradable;
+    TradableSummary getSummary() {
+        return summary;
     }
 }
@@ -20,19 +20,28 @@ package io.bitsquare.gui.main.portfolio.closedtrades;
 import com.google.inject.Inject;
 import io.bitsquare.gui.common.model.ActivatableDataModel;
 import io.bitsquare.trade.Tradable;
+import io.bitsquare.trade.TradableSummary;
 import io.bitsquare.trade.closed.ClosedTradableManager;
-import io.bitsquare.trade.offer.Offer;
+import javafx.beans.property.IntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.SimpleIntegerProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 class ClosedTradesDataModel extends ActivatableDataModel {
+    // Number of trades shown per page. Only the summaries of the archived trades are used for the table.
+    static final int PAGE_SIZE = 100;
+
     private final ClosedTradableManager closedTradableManager;
 
     private final ObservableList<ClosedTradableListItem> list = FXCollections.observableArrayList();
-    private final ListChangeListener<Tradable> tradesListChangeListener;
+    private final ListChangeListener<TradableSummary> tradesListChangeListener;
+    private final IntegerProperty numPages = new SimpleIntegerProperty(1);
+    private int page;
 
     @Inject
     public ClosedTradesDataModel(ClosedTradableManager closedTradableManager) {
@@ -44,29 +53,41 @@ class ClosedTradesDataModel extends ActivatableDataModel {
     @Override
     protected void activate() {
         applyList();
-        closedTradableManager.getClosedTrades().addListener(tradesListChangeListener);
+        closedTradableManager.getClosedTradeSummaries().addListener(tradesListChangeListener);
     }
 
     @Override
     protected void deactivate() {
-        closedTradableManager.getClosedTrades().removeListener(tradesListChangeListener);
+        closedTradableManager.getClosedTradeSummaries().removeListener(tradesListChangeListener);
     }
 
     public ObservableList<ClosedTradableListItem> getList() {
         return list;
     }
 
-    public Offer.Direction getDirection(Offer offer) {
-        return closedTradableManager.wasMyOffer(offer) ? offer.getDirection() : offer.getMirroredDirection();
+    public ReadOnlyIntegerProperty numPagesProperty() {
+        return numPages;
     }
 
-    private void applyList() {
-        list.clear();
+    public void setPage(int page) {
+        this.page = page;
+        applyList();
+    }
 
-        list.addAll(closedTradableManager.getClosedTrades().stream().map(ClosedTradableListItem::new).collect(Collectors.toList()));
+    // The full tradable is loaded from the archive
+    public Optional<Tradable> getTradable(ClosedTradableListItem item) {
+        return closedTradableManager.getTradableById(item.getSummary().getId());
+    }
+
+    private void applyList() {
+        int numTrades = closedTradableManager.getNumClosedTrades();
+        numPages.set(Math.max(1, (numTrades + PAGE_SIZE - 1) / PAGE_SIZE));
+        page = Math.min(page, numPages.get() - 1);
 
-        // we sort by date, earliest first
-        list.sort((o1, o2) -> o2.getTradable().getDate().compareTo(o1.getTradable().getDate()));
+        // Summaries are sorted by date, latest first
+        list.setAll(closedTradableManager.getClosedTradeSummaries(page * PAGE_SIZE, PAGE_SIZE).stream()
+                .map(ClosedTradableListItem::new)
+                .collect(Collectors.toList()));
     }
 
 }
@@ -20,6 +20,7 @@ package io.bitsquare.gui.main.portfolio.closedtrades;
 import io.bitsquare.gui.common.view.ActivatableViewAndModel;
 import io.bitsquare.gui.common.view.FxmlView;
 import io.bitsquare.gui.popups.OfferDetailsPopup;
+import io.bitsquare.gui.popups.Popup;
 import io.bitsquare.gui.popups.TradeDetailsPopup;
 import io.bitsquare.gui.util.BSFormatter;
 import io.bitsquare.trade.Tradable;
@@ -32,6 +33,7 @@ import javafx.scene.layout.VBox;
 import javafx.util.Callback;
 
 import javax.inject.Inject;
+import java.util.Optional;
 
 @FxmlView
 public class ClosedTradesView extends ActivatableViewAndModel<VBox, ClosedTradesViewModel> {
@@ -39,6 +41,8 @@ public class ClosedTradesView extends ActivatableViewAndModel<VBox, ClosedTrades
     @FXML
     TableView<ClosedTradableListItem> table;
     @FXML
+    Pagination pagination;
+    @FXML
     TableColumn<ClosedTradableListItem, ClosedTradableListItem> priceColumn, amountColumn, volumeColumn,
             directionColumn, dateColumn, tradeIdColumn, stateColumn;
     private final BSFormatter formatter;
@@ -65,11 +69,21 @@ public class ClosedTradesView extends ActivatableViewAndModel<VBox, ClosedTrades
 
         table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
         table.setPlaceholder(new Label("No closed trades available"));
+
+        pagination.visibleProperty().bind(pagination.pageCountProperty().greaterThan(1));
+        pagination.managedProperty().bind(pagination.visibleProperty());
+        pagination.currentPageIndexProperty().addListener((ov, oldValue, newValue) -> model.setPage(newValue.intValue()));
     }
 
     @Override
     protected void activate() {
         table.setItems(model.getList());
+        pagination.pageCountProperty().bind(model.numPagesProperty());
+    }
+
+    @Override
+    protected void deactivate() {
+        pagination.pageCountProperty().unbind();
     }
 
 
@@ -93,11 +107,16 @@ public class ClosedTradesView extends ActivatableViewAndModel<VBox, ClosedTrades
                                     hyperlink = new Hyperlink(model.getTradeId(item));
                                     Tooltip.install(hyperlink, new Tooltip(model.getTradeId(item)));
                                     hyperlink.setOnAction(event -> {
-                                        Tradable tradable = item.getTradable();
-                                        if (tradable instanceof Trade)
-                                            tradeDetailsPopup.show((Trade) tradable);
-                                        else if (tradable instanceof OpenOffer)
-                                            offerDetailsPopup.show(tradable.getOffer());
+                                        Optional<Tradable> tradableOptional = model.getTradable(item);
+                                        if (tradableOptional.isPresent()) {
+                                            Tradable tradable = tradableOptional.get();
+                                            if (tradable instanceof Trade)
+                                                tradeDetailsPopup.show((Trade) tradable);
+                                            else if (tradable instanceof OpenOffer)
+                                                offerDetailsPopup.show(tradable.getOffer());
+                                        } else {
+                                            new Popup().error("The data of that trade could not be loaded from the archive.").show();
+                                        }
                                     });
                                     setGraphic(hyperlink);
                                 } else {
@@ -21,10 +21,15 @@ import com.google.inject.Inject;
 import io.bitsquare.gui.common.model.ActivatableWithDataModel;
 import io.bitsquare.gui.common.model.ViewModel;
 import io.bitsquare.gui.util.BSFormatter;
+import io.bitsquare.trade.Tradable;
+import io.bitsquare.trade.TradableSummary;
 import io.bitsquare.trade.Trade;
 import io.bitsquare.trade.offer.OpenOffer;
+import javafx.beans.property.ReadOnlyIntegerProperty;
 import javafx.collections.ObservableList;
 
+import java.util.Optional;
+
 class ClosedTradesViewModel extends ActivatableWithDataModel<ClosedTradesDataModel> implements ViewModel {
     private final BSFormatter formatter;
 
@@ -40,59 +45,70 @@ class ClosedTradesViewModel extends ActivatableWithDataModel<ClosedTradesDataMod
         return dataModel.getList();
     }
 
+    public ReadOnlyIntegerProperty numPagesProperty() {
+        return dataModel.numPagesProperty();
+    }
+
+    void setPage(int page) {
+        dataModel.setPage(page);
+    }
+
+    Optional<Tradable> getTradable(ClosedTradableListItem item) {
+        return dataModel.getTradable(item);
+    }
+
     String getTradeId(ClosedTradableListItem item) {
-        return item.getTradable().getShortId();
+        return item.getSummary().getShortId();
     }
 
     String getAmount(ClosedTradableListItem item) {
-        if (item != null && item.getTradable() instanceof Trade)
-            return formatter.formatCoinWithCode(((Trade) item.getTradable()).getTradeAmount());
-        else if (item != null && item.getTradable() instanceof OpenOffer)
+        if (item != null && item.getSummary().isTrade())
+            return formatter.formatCoinWithCode(item.getSummary().getTradeAmount());
+        else if (item != null)
             return "-";
         else
             return "";
     }
 
     String getPrice(ClosedTradableListItem item) {
-        return (item != null) ? formatter.formatFiat(item.getTradable().getOffer().getPrice()) : "";
+        return (item != null) ? formatter.formatFiat(item.getSummary().getPrice()) : "";
     }
 
     String getVolume(ClosedTradableListItem item) {
-        if (item != null && item.getTradable() instanceof Trade)
-            return formatter.formatFiatWithCode(((Trade) item.getTradable()).getTradeVolume());
-        else if (item != null && item.getTradable() instanceof OpenOffer)
+        if (item != null && item.getSummary().isTrade())
+            return formatter.formatFiatWithCode(item.getSummary().getTradeVolume());
+        else if (item != null)
             return "-";
         else
             return "";
     }
 
     String getDirectionLabel(ClosedTradableListItem item) {
-        return (item != null) ? formatter.getDirection(dataModel.getDirection(item.getTradable().getOffer())) : "";
+        return (item != null) ? formatter.getDirection(item.getSummary().getDirection()) : "";
     }
 
     String getDate(ClosedTradableListItem item) {
-        return formatter.formatDateTime(item.getTradable().getDate());
+        return formatter.formatDateTime(item.getSummary().getDate());
     }
 
     String getState(ClosedTradableListItem item) {
         if (item != null) {
-            if (item.getTradable() instanceof Trade) {
-                Trade trade = (Trade) item.getTradable();
-
+            TradableSummary summary = item.getSummary();
+            if (summary.isTrade()) {
                 // TODO 
                /* if (trade.isFailedState())
                     return "Failed";
                 else*/
-                if (trade.getState() == Trade.State.WITHDRAW_COMPLETED) {
+                if (summary.getTradeState() == Trade.State.WITHDRAW_COMPLETED) {
                     return "Completed";
-                } else if (trade.getDisputeState() == Trade.DisputeState.DISPUTE_CLOSED) {
+                } else if (summary.getDisputeState() == Trade.DisputeState.DISPUTE_CLOSED) {
                     return "Ticket closed";
                 } else {
                     log.error("That must not happen. We got a pending state but we are in the closed trades list.");
-                    return trade.getState().toString();
+                    return String.valueOf(summary.getTradeState());
                 }
-            } else if (item.getTradable() instanceof OpenOffer) {
-                OpenOffer.State state = ((OpenOffer) item.getTradable()).getState();
+            } else if (summary.getOpenOfferState() != null) {
+                OpenOffer.State state = summary.getOpenOfferState();
                 log.trace("OpenOffer state {}", state);
                 switch (state) {
                     case AVAILABLE:
@@ -19,6 +19,7 @@ package io.bitsquare.gui.main.portfolio.failedtrades;
 
 import io.bitsquare.gui.common.view.ActivatableViewAndModel;
 import io.bitsquare.gui.common.view.FxmlView;
+import io.bitsquare.gui.popups.Popup;
 import io.bitsquare.gui.popups.TradeDetailsPopup;
 import io.bitsquare.trade.Trade;
 import javafx.beans.property.ReadOnlyObjectWrapper;
@@ -28,6 +29,7 @@ import javafx.scene.layout.VBox;
 import javafx.util.Callback;
 
 import javax.inject.Inject;
+import java.util.Optional;
 
 @FxmlView
 public class FailedTradesView extends ActivatableViewAndModel<VBox, FailedTradesViewModel> {
@@ -84,8 +86,11 @@ public class FailedTradesView extends ActivatableViewAndModel<VBox, FailedTrades
                                     hyperlink = new Hyperlink(model.getTradeId(item));
                                     Tooltip.install(hyperlink, new Tooltip(model.getTradeId(item)));
                                     hyperlink.setOnAction(event -> {
-                                        Trade trade = item.getTrade();
-                                        tradeDetailsPopup.show(trade);
+                                        Optional<Trade> tradeOptional = model.getTrade(item);
+                                        if (tradeOptional.isPresent())
+                                            tradeDetailsPopup.show(tradeOptional.get());
+                                        else
+                                            new Popup().error("The data of that trade could not be loaded from the archive.").show();
                                     });
                                     setGraphic(hyperlink);
                                 } else {
@@ -24,6 +24,8 @@ import io.bitsquare.gui.util.BSFormatter;
 import io.bitsquare.trade.Trade;
 import javafx.collections.ObservableList;
 
+import java.util.Optional;
+
 class FailedTradesViewModel extends ActivatableWithDataModel<FailedTradesDataModel> implements ViewModel {
     private final BSFormatter formatter;
 
@@ -39,39 +41,42 @@ class FailedTradesViewModel extends ActivatableWithDataModel<FailedTradesDataMod
         return dataModel.getList();
     }
 
+    Optional<Trade> getTrade(FailedTradesListItem item) {
+        return dataModel.getTrade(item);
+    }
+
     String getTradeId(FailedTradesListItem item) {
-        return item.getTrade().getShortId();
+        return item.getSummary().getShortId();
     }
 
     String getAmount(FailedTradesListItem item) {
-        if (item != null && item.getTrade() instanceof Trade)
-            return formatter.formatCoinWithCode(item.getTrade().getTradeAmount());
+        if (item != null && item.getSummary().isTrade())
+            return formatter.formatCoinWithCode(item.getSummary().getTradeAmount());
         else
             return "";
     }
 
     String getPrice(FailedTradesListItem item) {
-        return (item != null) ? formatter.formatFiat(item.getTrade().getOffer().getPrice()) : "";
+        return (item != null) ? formatter.formatFiat(item.getSummary().getPrice()) : "";
     }
 
     String getVolume(FailedTradesListItem item) {
-        if (item != null && item.getTrade() instanceof Trade)
-            return formatter.formatFiatWithCode(item.getTrade().getTradeVolume());
+        if (item != null && item.getSummary().isTrade())
+            return formatter.formatFiatWithCode(item.getSummary().getTradeVolume());
         else
             return "";
     }
 
     String getDirectionLabel(FailedTradesListItem item) {
-        return (item != null) ? formatter.getDirection(dataModel.getDirection(item.getTrade().getOffer())) : "";
+        return (item != null) ? formatter.getDirection(item.getSummary().getDirection()) : "";
     }
 
     String getDate(FailedTradesListItem item) {
-        return formatter.formatDateTime(item.getTrade().getDate());
+        return formatter.formatDateTime(item.getSummary().getDate());
     }
 
     String getState(FailedTradesListItem item) {
         if (item != null) {
-            Trade trade = item.getTrade();
             //TODO
             //if (trade.isFailedState())
             return "Failed";
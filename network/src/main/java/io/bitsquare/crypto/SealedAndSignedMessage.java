@@ -1,13 +1,15 @@
 package io.bitsquare.crypto;
 
 import io.bitsquare.app.Version;
+import io.bitsquare.common.crypto.CanonicalEncodable;
+import io.bitsquare.common.crypto.CanonicalEncoder;
 import io.bitsquare.common.crypto.SealedAndSigned;
 import io.bitsquare.p2p.NodeAddress;
 import io.bitsquare.p2p.messaging.MailboxMessage;
 
 import java.util.Arrays;
 
-public final class SealedAndSignedMessage implements MailboxMessage {
+public final class SealedAndSignedMessage implements MailboxMessage, CanonicalEncodable {
     // That object is sent over the wire, so we need to take care of version compatibility.
     private static final long serialVersionUID = Version.NETWORK_PROTOCOL_VERSION;
 
@@ -30,6 +32,13 @@ public final class SealedAndSignedMessage implements MailboxMessage {
         return networkId;
     }
 
+    @Override
+    public void encode(CanonicalEncoder encoder) {
+        encoder.writeInt(networkId)
+                .write(sealedAndSigned)
+                .writeBytes(addressPrefixHash);
+    }
+
     @Override
     public String toString() {
         return "SealedAndSignedMessage{" +
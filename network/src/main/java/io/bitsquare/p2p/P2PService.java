@@ -16,6 +16,7 @@ import io.bitsquare.crypto.SealedAndSignedMessage;
 import io.bitsquare.p2p.messaging.*;
 import io.bitsquare.p2p.network.*;
 import io.bitsquare.p2p.peers.AuthenticationListener;
+import io.bitsquare.p2p.peers.Peer;
 import io.bitsquare.p2p.peers.PeerManager;
 import io.bitsquare.p2p.peers.RequestDataManager;
 import io.bitsquare.p2p.seed.SeedNodesRepository;
@@ -25,6 +26,7 @@ import io.bitsquare.p2p.storage.data.ExpirableMailboxPayload;
 import io.bitsquare.p2p.storage.data.ExpirablePayload;
 import io.bitsquare.p2p.storage.data.ProtectedData;
 import io.bitsquare.p2p.storage.data.ProtectedMailboxData;
+import io.bitsquare.p2p.storage.messages.*;
 import io.bitsquare.storage.Storage;
 import javafx.beans.property.*;
 import org.fxmisc.easybind.EasyBind;
@@ -35,6 +37,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
+import java.security.KeyPair;
 import java.security.PublicKey;
 import java.util.*;
 import java.util.concurrent.CopyOnWriteArraySet;
@@ -121,7 +124,7 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
         // network node
         networkNode = useLocalhost ? new LocalhostNetworkNode(port) : new TorNetworkNode(port, torDir);
         networkNode.addConnectionListener(this);
-        networkNode.addMessageListener(this);
+        networkNode.addMessageListener(SealedAndSignedMessage.class, this);
 
         // peer group 
         peerManager = getNewPeerManager();
@@ -621,6 +624,31 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
         }
     }
 
+    /**
+     * Extends the TTL of our data at the peers with a RefreshTTLMessage instead of broadcasting the whole data.
+     * If we don't hold the data anymore we publish it again.
+     */
+    public boolean refreshTTL(ExpirablePayload expirablePayload) {
+        Log.traceCall();
+        checkArgument(optionalKeyRing.isPresent(), "keyRing not set. Seems that is called on a seed node which must not happen.");
+        try {
+            checkAuthentication();
+            RefreshTTLMessage refreshTTLMessage = dataStorage.getRefreshTTLMessage(expirablePayload,
+                    optionalKeyRing.get().getSignatureKeyPair());
+            if (dataStorage.refreshTTL(refreshTTLMessage, networkNode.getNodeAddress()))
+                return true;
+
+            log.debug("Refresh TTL failed. We republish the data.");
+            return doAddData(expirablePayload, true);
+        } catch (AuthenticationException e) {
+            log.error(e.getMessage());
+            return false;
+        } catch (CryptoException e) {
+            log.error("Signing at getRefreshTTLMessage failed. That should never happen.");
+            return false;
+        }
+    }
+
     public boolean removeData(ExpirablePayload expirablePayload) {
         Log.traceCall();
         checkArgument(optionalKeyRing.isPresent(), "keyRing not set. Seems that is called on a seed node which must not happen.");
@@ -637,6 +665,29 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
         }
     }
 
+    // The batch variants send one BatchedDataMessage per BatchedDataMessage.MAX_ENTRIES payloads instead of one
+    // message per payload. Invalid entries don't affect the others, so we return the number of accepted entries.
+
+    public int addData(Collection<? extends ExpirablePayload> expirablePayloads) {
+        Log.traceCall();
+        return doProcessBatch(expirablePayloads, (payload, signatureKeyPair) ->
+                new AddDataMessage(dataStorage.getDataWithSignedSeqNr(payload, signatureKeyPair)));
+    }
+
+    // Data we don't hold anymore get published again
+    public int refreshTTL(Collection<? extends ExpirablePayload> expirablePayloads) {
+        Log.traceCall();
+        return doProcessBatch(expirablePayloads, (payload, signatureKeyPair) -> dataStorage.contains(payload) ?
+                dataStorage.getRefreshTTLMessage(payload, signatureKeyPair) :
+                new AddDataMessage(dataStorage.getDataWithSignedSeqNr(payload, signatureKeyPair)));
+    }
+
+    public int removeData(Collection<? extends ExpirablePayload> expirablePayloads) {
+        Log.traceCall();
+        return doProcessBatch(expirablePayloads, (payload, signatureKeyPair) ->
+                new RemoveDataMessage(dataStorage.getDataWithSignedSeqNr(payload, signatureKeyPair)));
+    }
+
 
     ///////////////////////////////////////////////////////////////////////////////////////////
     // Listeners
@@ -695,6 +746,12 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
         return authenticatedPeerNodeAddresses;
     }
 
+    // The capabilities of a peer are known only after we have authenticated with it (see Capabilities)
+    public boolean peerSupportsCapability(NodeAddress peerNodeAddress, int capability) {
+        Peer peer = peerManager.getAuthenticatedPeers().get(peerNodeAddress);
+        return peer != null && peer.connection.supportsCapability(capability);
+    }
+
     @NotNull
     public ReadOnlyIntegerProperty getNumAuthenticatedPeers() {
         return numAuthenticatedPeers;
@@ -720,6 +777,35 @@ public class P2PService implements SetupListener, MessageListener, ConnectionLis
         }
     }
 
+    private interface BatchEntryFactory {
+        DataBroadcastMessage createEntry(ExpirablePayload payload, KeyPair signatureKeyPair) throws CryptoException;
+    }
+
+    private int doProcessBatch(Collection<? extends ExpirablePayload> expirablePayloads, BatchEntryFactory entryFactory) {
+        checkArgument(optionalKeyRing.isPresent(), "keyRing not set. Seems that is called on a seed node which must not happen.");
+        try {
+            checkAuthentication();
+            KeyPair signatureKeyPair = optionalKeyRing.get().getSignatureKeyPair();
+            List<DataBroadcastMessage> entries = new ArrayList<>();
+            for (ExpirablePayload payload : expirablePayloads) {
+                entries.add(entryFactory.createEntry(payload, signatureKeyPair));
+            }
+
+            int accepted = 0;
+            for (int i = 0; i < entries.size(); i += BatchedDataMessage.MAX_ENTRIES) {
+                List<DataBroadcastMessage> batch = entries.subList(i, Math.min(entries.size(), i + BatchedDataMessage.MAX_ENTRIES));
+                accepted += dataStorage.processBatch(new BatchedDataMessage(batch), networkNode.getNodeAddress()).size();
+            }
+            return accepted;
+        } catch (AuthenticationException e) {
+            log.error(e.getMessage());
+            return 0;
+        } catch (CryptoException e) {
+            log.error("Signing of batch entries failed. That should never happen.");
+            return 0;
+        }
+    }
+
     private void checkAuthentication() throws AuthenticationException {
         Log.traceCall();
         if (authenticatedPeerNodeAddresses.isEmpty())
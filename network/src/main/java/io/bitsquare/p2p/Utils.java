@@ -1,10 +1,10 @@
 package io.bitsquare.p2p;
 
 import io.bitsquare.common.ByteArrayUtils;
+import io.bitsquare.common.util.SerializationBuffers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.Serializable;
 import java.net.ServerSocket;
@@ -31,45 +31,42 @@ public class Utils {
         return compress(ByteArrayUtils.objectToByteArray(input));
     }
 
-    private static byte[] compress(byte[] input) {
-        Deflater compressor = new Deflater();
-        compressor.setLevel(Deflater.BEST_SPEED);
+    public static byte[] compress(byte[] input) {
+        Deflater compressor = SerializationBuffers.getDeflater();
         compressor.setInput(input);
         compressor.finish();
-        ByteArrayOutputStream bos = new ByteArrayOutputStream(input.length);
-        byte[] buf = new byte[8192];
-        while (!compressor.finished()) {
-            int count = compressor.deflate(buf);
-            bos.write(buf, 0, count);
-        }
+        SerializationBuffers.PooledByteArrayOutputStream bos = SerializationBuffers.getOutputStream(input.length);
+        byte[] buf = SerializationBuffers.getScratchBuffer();
         try {
-            bos.close();
-        } catch (IOException ignored) {
+            while (!compressor.finished()) {
+                int count = compressor.deflate(buf);
+                bos.write(buf, 0, count);
+            }
+            return bos.toByteArray();
+        } finally {
+            bos.release();
         }
-        return bos.toByteArray();
     }
 
-    private static byte[] decompress(byte[] compressedData, int offset, int length) {
-        Inflater inflater = new Inflater();
+    public static byte[] decompress(byte[] compressedData, int offset, int length) {
+        Inflater inflater = SerializationBuffers.getInflater();
         inflater.setInput(compressedData, offset, length);
-        ByteArrayOutputStream bos = new ByteArrayOutputStream(length);
-        byte[] buf = new byte[8192];
-        while (!inflater.finished()) {
-            try {
+        SerializationBuffers.PooledByteArrayOutputStream bos = SerializationBuffers.getOutputStream(length);
+        byte[] buf = SerializationBuffers.getScratchBuffer();
+        try {
+            while (!inflater.finished()) {
                 int count = inflater.inflate(buf);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new DataFormatException("Compressed data is truncated");
                 bos.write(buf, 0, count);
-            } catch (DataFormatException e) {
-                e.printStackTrace();
-                throw new RuntimeException(e);
             }
-        }
-        try {
-            bos.close();
-        } catch (IOException e) {
+            return bos.toByteArray();
+        } catch (DataFormatException e) {
             e.printStackTrace();
             throw new RuntimeException(e);
+        } finally {
+            bos.release();
         }
-        return bos.toByteArray();
     }
 
     public static Serializable decompress(byte[] compressedData) {
@@ -0,0 +1,26 @@
+package io.bitsquare.p2p.network;
+
+/**
+ * Optional protocol features as bit flags. Peers send the features they support with the AuthenticationRequest and
+ * AuthenticationChallenge, peers with an older version send none. We use a feature on a connection only after the
+ * peer has advertised it, otherwise we fall back to what older versions understand.
+ * <p>
+ * Flags are part of the wire format. Never reuse or change a flag, only add new ones.
+ */
+public class Capabilities {
+    // Messages are written as byte array in the MessageSerializer format instead of a Java serialized Message object
+    public static final int MESSAGE_CODECS = 1;
+    // RefreshTTLMessage and MissingDataRequest
+    public static final int REFRESH_TTL = 1 << 1;
+    // BatchedDataMessage
+    public static final int BATCHED_DATA = 1 << 2;
+    // OffersAvailabilityRequest of the trade protocol
+    public static final int BATCHED_OFFER_AVAILABILITY = 1 << 3;
+
+    // All features of our version
+    public static final int SUPPORTED = MESSAGE_CODECS | REFRESH_TTL | BATCHED_DATA | BATCHED_OFFER_AVAILABILITY;
+
+    public static boolean contains(int capabilities, int capability) {
+        return (capabilities & capability) == capability;
+    }
+}
@@ -10,6 +10,7 @@ import io.bitsquare.p2p.Message;
 import io.bitsquare.p2p.NodeAddress;
 import io.bitsquare.p2p.Utils;
 import io.bitsquare.p2p.network.messages.CloseConnectionMessage;
+import io.bitsquare.p2p.network.serialization.MessageSerializer;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -59,6 +60,8 @@ public class Connection implements MessageListener {
     private Optional<NodeAddress> peerAddressOptional = Optional.empty();
     private volatile boolean isAuthenticated;
     private volatile boolean stopped;
+    // Set at authentication, until then we only use what older versions understand
+    private volatile int peerCapabilities;
 
     //TODO got java.util.zip.DataFormatException: invalid distance too far back
     // java.util.zip.DataFormatException: invalid literal/lengths set
@@ -128,6 +131,11 @@ public class Connection implements MessageListener {
         this.connectionPriority = connectionPriority;
     }
 
+    // Called form UserThread
+    public void setPeerCapabilities(int peerCapabilities) {
+        this.peerCapabilities = peerCapabilities;
+    }
+
     // Called form various threads
     public void sendMessage(Message message) {
         Log.traceCall();
@@ -138,20 +146,29 @@ public class Connection implements MessageListener {
                         "Write object to outputStream to peer: {} (uid={})\nmessage={}"
                         + "\n>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>>\n", peerAddress, uid, message);
 
-                Object objectToWrite;
-                if (useCompression) {
-                    byte[] messageAsBytes = ByteArrayUtils.objectToByteArray(message);
-                    // log.trace("Write object uncompressed data size: " + messageAsBytes.length);
-                    byte[] compressed = Utils.compress(message);
-                    //log.trace("Write object compressed data size: " + compressed.length);
-                    objectToWrite = compressed;
-                } else {
-                    // log.trace("Write object data size: " + ByteArrayUtils.objectToByteArray(message).length);
-                    objectToWrite = message;
+                // Peers with an older version expect the message object, so we use our framing only if the peer
+                // has advertised it
+                byte[] bytesToWrite = null;
+                if (supportsCapability(Capabilities.MESSAGE_CODECS)) {
+                    byte[] messageAsBytes = MessageSerializer.serialize(message);
+                    // log.trace("Write object data size: " + messageAsBytes.length);
+                    if (useCompression) {
+                        bytesToWrite = Utils.compress(messageAsBytes);
+                        //log.trace("Write object compressed data size: " + bytesToWrite.length);
+                    } else {
+                        bytesToWrite = messageAsBytes;
+                    }
+                } else if (useCompression) {
+                    bytesToWrite = Utils.compress(message);
                 }
                 if (!stopped) {
                     synchronized (objectOutputStream) {
-                        objectOutputStream.writeObject(objectToWrite);
+                        if (bytesToWrite != null) {
+                            // We write unshared to not keep a reference to each sent byte array in the stream's handle table
+                            objectOutputStream.writeUnshared(bytesToWrite);
+                        } else {
+                            objectOutputStream.writeObject(message);
+                        }
                         objectOutputStream.flush();
                     }
                     sharedSpace.updateLastActivityDate();
@@ -209,6 +226,14 @@ public class Connection implements MessageListener {
         return isAuthenticated;
     }
 
+    public int getPeerCapabilities() {
+        return peerCapabilities;
+    }
+
+    public boolean supportsCapability(int capability) {
+        return Capabilities.contains(peerCapabilities, capability);
+    }
+
     public String getUid() {
         return uid;
     }
@@ -340,6 +365,7 @@ public class Connection implements MessageListener {
                 ", sharedSpace=" + sharedSpace.toString() +
                 ", peerAddress=" + peerAddressOptional +
                 ", isAuthenticated=" + isAuthenticated +
+                ", peerCapabilities=" + peerCapabilities +
                 ", stopped=" + stopped +
                 ", stopped=" + stopped +
                 ", connectionType=" + connectionPriority +
@@ -516,42 +542,43 @@ public class Connection implements MessageListener {
                                 "New data arrived at inputHandler.\nReceived object={}"
                                 + "\n<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<\n", rawInputObject);
 
-                        int size = ByteArrayUtils.objectToByteArray(rawInputObject).length;
-                        if (size > getMaxMsgSize()) {
-                            sharedSpace.reportIllegalRequest(IllegalRequest.MaxSizeExceeded);
-                            return;
-                        }
-
-                        Serializable serializable = null;
-                        if (useCompression) {
-                            if (rawInputObject instanceof byte[]) {
-                                byte[] compressedObjectAsBytes = (byte[]) rawInputObject;
-                                size = compressedObjectAsBytes.length;
-                                //log.trace("Read object compressed data size: " + size);
-                                serializable = Utils.decompress(compressedObjectAsBytes);
-                            } else {
-                                sharedSpace.reportIllegalRequest(IllegalRequest.InvalidDataType);
+                        Message message;
+                        if (rawInputObject instanceof byte[]) {
+                            byte[] messageAsBytes = (byte[]) rawInputObject;
+                            if (messageAsBytes.length > getMaxMsgSize()) {
+                                sharedSpace.reportIllegalRequest(IllegalRequest.MaxSizeExceeded);
+                                return;
                             }
-                        } else {
-                            if (rawInputObject instanceof Serializable) {
-                                serializable = (Serializable) rawInputObject;
-                            } else {
-                                sharedSpace.reportIllegalRequest(IllegalRequest.InvalidDataType);
+
+                            if (useCompression) {
+                                //log.trace("Read object compressed data size: " + messageAsBytes.length);
+                                messageAsBytes = Utils.decompress(messageAsBytes, 0, messageAsBytes.length);
+                                // compressed size might be bigger theoretically so we check again after decompression
+                                if (messageAsBytes.length > getMaxMsgSize()) {
+                                    sharedSpace.reportIllegalRequest(IllegalRequest.MaxSizeExceeded);
+                                    return;
+                                }
                             }
-                        }
-                        //log.trace("Read object decompressed data size: " + ByteArrayUtils.objectToByteArray(serializable).length);
 
-                        // compressed size might be bigger theoretically so we check again after decompression
-                        if (size > getMaxMsgSize()) {
-                            sharedSpace.reportIllegalRequest(IllegalRequest.MaxSizeExceeded);
-                            return;
-                        }
-                        if (!(serializable instanceof Message)) {
+                            // Messages decoded by a codec carry our networkId, so we check the header before decoding
+                            if (!MessageSerializer.isJavaSerialization(messageAsBytes)
+                                    && MessageSerializer.getNetworkId(messageAsBytes) != Version.getNetworkId()) {
+                                sharedSpace.reportIllegalRequest(IllegalRequest.WrongNetworkId);
+                                return;
+                            }
+                            message = MessageSerializer.deserialize(messageAsBytes);
+                        } else if (rawInputObject instanceof Message) {
+                            // Peers with an older version write the message object directly
+                            if (ByteArrayUtils.objectToByteArray(rawInputObject).length > getMaxMsgSize()) {
+                                sharedSpace.reportIllegalRequest(IllegalRequest.MaxSizeExceeded);
+                                return;
+                            }
+                            message = (Message) rawInputObject;
+                        } else {
                             sharedSpace.reportIllegalRequest(IllegalRequest.InvalidDataType);
                             return;
                         }
 
-                        Message message = (Message) serializable;
                         if (message.networkId() != Version.getNetworkId()) {
                             sharedSpace.reportIllegalRequest(IllegalRequest.WrongNetworkId);
                             return;
@@ -15,11 +15,11 @@ import java.io.IOException;
 import java.net.ConnectException;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.HashSet;
-import java.util.Optional;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -32,7 +32,12 @@ public abstract class NetworkNode implements MessageListener, ConnectionListener
     protected final int servicePort;
 
     private final CopyOnWriteArraySet<Connection> inBoundConnections = new CopyOnWriteArraySet<>();
-    private final CopyOnWriteArraySet<MessageListener> messageListeners = new CopyOnWriteArraySet<>();
+    // Listeners registered per message class. A listener registered for a super class or interface (e.g. Message)
+    // receives all messages of its sub types.
+    private final Map<Class<? extends Message>, CopyOnWriteArraySet<MessageListener>> messageListenersByClass = new ConcurrentHashMap<>();
+    // Resolved listeners per concrete message class. Gets cleared whenever a listener is added or removed.
+    private final Map<Class<? extends Message>, List<MessageListener>> dispatchTable = new ConcurrentHashMap<>();
+    private final Map<Class<? extends Message>, AtomicLong> messageCounters = new ConcurrentHashMap<>();
     private final CopyOnWriteArraySet<ConnectionListener> connectionListeners = new CopyOnWriteArraySet<>();
     protected final CopyOnWriteArraySet<SetupListener> setupListeners = new CopyOnWriteArraySet<>();
     protected ListeningExecutorService executorService;
@@ -249,7 +254,22 @@ public abstract class NetworkNode implements MessageListener, ConnectionListener
 
     @Override
     public void onMessage(Message message, Connection connection) {
-        messageListeners.stream().forEach(e -> e.onMessage(message, connection));
+        Class<? extends Message> messageClass = message.getClass();
+        AtomicLong counter = messageCounters.get(messageClass);
+        if (counter == null)
+            counter = messageCounters.computeIfAbsent(messageClass, k -> new AtomicLong());
+        counter.incrementAndGet();
+
+        List<MessageListener> listeners = dispatchTable.get(messageClass);
+        if (listeners == null)
+            listeners = resolveMessageListeners(messageClass);
+
+        if (listeners.isEmpty())
+            log.debug("No messageListener registered for {}", messageClass.getSimpleName());
+
+        for (MessageListener listener : listeners) {
+            listener.onMessage(message, connection);
+        }
     }
 
 
@@ -274,19 +294,46 @@ public abstract class NetworkNode implements MessageListener, ConnectionListener
                     "That might happen because of async behaviour of CopyOnWriteArraySet");
     }
 
+    // Receives all messages
     public void addMessageListener(MessageListener messageListener) {
-        Log.traceCall();
-        boolean isNewEntry = messageListeners.add(messageListener);
+        addMessageListener(Message.class, messageListener);
+    }
+
+    // Receives messages of messageClass and its sub types
+    public synchronized void addMessageListener(Class<? extends Message> messageClass, MessageListener messageListener) {
+        Log.traceCall(messageClass.getSimpleName());
+        boolean isNewEntry = messageListenersByClass.computeIfAbsent(messageClass, k -> new CopyOnWriteArraySet<>())
+                .add(messageListener);
         if (!isNewEntry)
             log.warn("Try to add a messageListener which was already added.");
+        dispatchTable.clear();
     }
 
-    public void removeMessageListener(MessageListener messageListener) {
+    // Removes the messageListener from all message classes it was registered for
+    public synchronized void removeMessageListener(MessageListener messageListener) {
         Log.traceCall();
-        boolean contained = messageListeners.remove(messageListener);
+        boolean contained = false;
+        for (CopyOnWriteArraySet<MessageListener> listeners : messageListenersByClass.values()) {
+            contained |= listeners.remove(messageListener);
+        }
         if (!contained)
             log.debug("Try to remove a messageListener which was never added. " +
                     "That might happen because of async behaviour of CopyOnWriteArraySet");
+        dispatchTable.clear();
+    }
+
+    /**
+     * @return Number of received messages per message class since start.
+     */
+    public Map<Class<? extends Message>, Long> getMessageCounters() {
+        Map<Class<? extends Message>, Long> result = new HashMap<>();
+        messageCounters.entrySet().stream().forEach(e -> result.put(e.getKey(), e.getValue().get()));
+        return result;
+    }
+
+    public long getMessageCounter(Class<? extends Message> messageClass) {
+        AtomicLong counter = messageCounters.get(messageClass);
+        return counter != null ? counter.get() : 0;
     }
 
 
@@ -329,6 +376,17 @@ public abstract class NetworkNode implements MessageListener, ConnectionListener
         executorService.submit(server);
     }
 
+    // Synchronized with add/remove so we never put an outdated entry to the dispatchTable
+    private synchronized List<MessageListener> resolveMessageListeners(Class<? extends Message> messageClass) {
+        Set<MessageListener> listeners = new LinkedHashSet<>();
+        messageListenersByClass.entrySet().stream()
+                .filter(e -> e.getKey().isAssignableFrom(messageClass))
+                .forEach(e -> listeners.addAll(e.getValue()));
+        List<MessageListener> result = new ArrayList<>(listeners);
+        dispatchTable.put(messageClass, result);
+        return result;
+    }
+
     private Optional<Connection> lookupOutboundConnection(NodeAddress peerNodeAddress) {
         // Log.traceCall("search for " + peerAddress.toString() + " / outBoundConnections " + outBoundConnections);
         return outBoundConnections.stream()
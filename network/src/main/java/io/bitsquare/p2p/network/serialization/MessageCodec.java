@@ -0,0 +1,16 @@
+package io.bitsquare.p2p.network.serialization;
+
+import io.bitsquare.p2p.Message;
+
+import java.io.IOException;
+
+/**
+ * Hand written encoding of a message type. The networkId and the type id are written by the MessageSerializer, so a
+ * codec only writes the fields of the message.
+ * Field order must not be changed once released, new fields can only be added with a new type id.
+ */
+public interface MessageCodec<T extends Message> {
+    void encode(T message, MessageOutput out) throws IOException;
+
+    T decode(MessageInput in) throws IOException, ClassNotFoundException;
+}
@@ -0,0 +1,482 @@
+package io.bitsquare.p2p.network.serialization;
+
+import io.bitsquare.common.crypto.SealedAndSigned;
+import io.bitsquare.crypto.SealedAndSignedMessage;
+import io.bitsquare.p2p.NodeAddress;
+import io.bitsquare.p2p.network.messages.CloseConnectionMessage;
+import io.bitsquare.p2p.peers.ReportedPeer;
+import io.bitsquare.p2p.peers.messages.auth.AuthenticationChallenge;
+import io.bitsquare.p2p.peers.messages.auth.AuthenticationFinalResponse;
+import io.bitsquare.p2p.peers.messages.auth.AuthenticationRejection;
+import io.bitsquare.p2p.peers.messages.auth.AuthenticationRequest;
+import io.bitsquare.p2p.peers.messages.data.DataRequest;
+import io.bitsquare.p2p.peers.messages.data.DataResponse;
+import io.bitsquare.p2p.peers.messages.peers.GetPeersRequest;
+import io.bitsquare.p2p.peers.messages.peers.GetPeersResponse;
+import io.bitsquare.p2p.storage.data.ExpirableMailboxPayload;
+import io.bitsquare.p2p.storage.data.ExpirablePayload;
+import io.bitsquare.p2p.storage.data.ProtectedData;
+import io.bitsquare.p2p.storage.data.ProtectedMailboxData;
+import io.bitsquare.p2p.storage.messages.AddDataMessage;
+import io.bitsquare.p2p.storage.messages.BatchedDataMessage;
+import io.bitsquare.p2p.storage.messages.DataBroadcastMessage;
+import io.bitsquare.p2p.storage.messages.MissingDataRequest;
+import io.bitsquare.p2p.storage.messages.RefreshTTLMessage;
+import io.bitsquare.p2p.storage.messages.RemoveDataMessage;
+import io.bitsquare.p2p.storage.messages.RemoveMailboxDataMessage;
+
+import java.io.IOException;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+
+/**
+ * Codecs for the high volume p2p messages (peer management, data broadcast and mail).
+ * Payloads of the data storage are still written with Java serialisation except ExpirableMailboxPayload which is part
+ * of the network module.
+ */
+public final class MessageCodecs {
+    private static final byte PROTECTED_DATA = 0;
+    private static final byte PROTECTED_MAILBOX_DATA = 1;
+    private static final byte PROTECTED_DATA_SERIALIZED = 2;
+
+    private static final byte PAYLOAD_SERIALIZED = 0;
+    private static final byte PAYLOAD_MAILBOX = 1;
+
+    private static final byte ENTRY_ADD_DATA = 0;
+    private static final byte ENTRY_REMOVE_DATA = 1;
+    private static final byte ENTRY_REMOVE_MAILBOX_DATA = 2;
+    private static final byte ENTRY_REFRESH_TTL = 3;
+
+    private MessageCodecs() {
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Connection
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public static final MessageCodec<CloseConnectionMessage> CLOSE_CONNECTION_MESSAGE = new MessageCodec<CloseConnectionMessage>() {
+        @Override
+        public void encode(CloseConnectionMessage message, MessageOutput out) throws IOException {
+            writeNodeAddress(message.peerNodeAddress, out);
+        }
+
+        @Override
+        public CloseConnectionMessage decode(MessageInput in) throws IOException {
+            CloseConnectionMessage message = new CloseConnectionMessage();
+            message.peerNodeAddress = readNodeAddress(in);
+            return message;
+        }
+    };
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Authentication
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public static final MessageCodec<AuthenticationRequest> AUTHENTICATION_REQUEST = new MessageCodec<AuthenticationRequest>() {
+        @Override
+        public void encode(AuthenticationRequest message, MessageOutput out) throws IOException {
+            writeNodeAddress(message.senderNodeAddress, out);
+            out.writeLong(message.requesterNonce);
+            out.writeInt(message.capabilities);
+        }
+
+        @Override
+        public AuthenticationRequest decode(MessageInput in) throws IOException {
+            return new AuthenticationRequest(readNodeAddress(in), in.readLong(), in.readInt());
+        }
+    };
+
+    public static final MessageCodec<AuthenticationChallenge> AUTHENTICATION_CHALLENGE = new MessageCodec<AuthenticationChallenge>() {
+        @Override
+        public void encode(AuthenticationChallenge message, MessageOutput out) throws IOException {
+            writeNodeAddress(message.senderNodeAddress, out);
+            out.writeLong(message.requesterNonce);
+            out.writeLong(message.responderNonce);
+            writeReportedPeers(message.reportedPeers, out);
+            out.writeInt(message.capabilities);
+        }
+
+        @Override
+        public AuthenticationChallenge decode(MessageInput in) throws IOException {
+            return new AuthenticationChallenge(readNodeAddress(in), in.readLong(), in.readLong(), readReportedPeers(in),
+                    in.readInt());
+        }
+    };
+
+    public static final MessageCodec<AuthenticationFinalResponse> AUTHENTICATION_FINAL_RESPONSE = new MessageCodec<AuthenticationFinalResponse>() {
+        @Override
+        public void encode(AuthenticationFinalResponse message, MessageOutput out) throws IOException {
+            writeNodeAddress(message.senderNodeAddress, out);
+            out.writeLong(message.responderNonce);
+            writeReportedPeers(message.reportedPeers, out);
+        }
+
+        @Override
+        public AuthenticationFinalResponse decode(MessageInput in) throws IOException {
+            return new AuthenticationFinalResponse(readNodeAddress(in), in.readLong(), readReportedPeers(in));
+        }
+    };
+
+    public static final MessageCodec<AuthenticationRejection> AUTHENTICATION_REJECTION = new MessageCodec<AuthenticationRejection>() {
+        @Override
+        public void encode(AuthenticationRejection message, MessageOutput out) throws IOException {
+            writeNodeAddress(message.senderNodeAddress, out);
+        }
+
+        @Override
+        public AuthenticationRejection decode(MessageInput in) throws IOException {
+            return new AuthenticationRejection(readNodeAddress(in));
+        }
+    };
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Peer exchange
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public static final MessageCodec<GetPeersRequest> GET_PEERS_REQUEST = new MessageCodec<GetPeersRequest>() {
+        @Override
+        public void encode(GetPeersRequest message, MessageOutput out) throws IOException {
+            writeNodeAddress(message.senderNodeAddress, out);
+            writeReportedPeers(message.reportedPeers, out);
+        }
+
+        @Override
+        public GetPeersRequest decode(MessageInput in) throws IOException {
+            return new GetPeersRequest(readNodeAddress(in), readReportedPeers(in));
+        }
+    };
+
+    public static final MessageCodec<GetPeersResponse> GET_PEERS_RESPONSE = new MessageCodec<GetPeersResponse>() {
+        @Override
+        public void encode(GetPeersResponse message, MessageOutput out) throws IOException {
+            writeReportedPeers(message.reportedPeers, out);
+        }
+
+        @Override
+        public GetPeersResponse decode(MessageInput in) throws IOException {
+            return new GetPeersResponse(readReportedPeers(in));
+        }
+    };
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Data
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public static final MessageCodec<DataRequest> DATA_REQUEST = new MessageCodec<DataRequest>() {
+        @Override
+        public void encode(DataRequest message, MessageOutput out) {
+        }
+
+        @Override
+        public DataRequest decode(MessageInput in) {
+            return new DataRequest();
+        }
+    };
+
+    public static final MessageCodec<DataResponse> DATA_RESPONSE = new MessageCodec<DataResponse>() {
+        @Override
+        public void encode(DataResponse message, MessageOutput out) throws IOException {
+            out.writeCount(message.set);
+            if (message.set != null) {
+                for (ProtectedData protectedData : message.set) {
+                    writeProtectedData(protectedData, out);
+                }
+            }
+        }
+
+        @Override
+        public DataResponse decode(MessageInput in) throws IOException, ClassNotFoundException {
+            int count = in.readCount();
+            if (count == MessageOutput.NULL_LENGTH)
+                return new DataResponse(null);
+
+            HashSet<ProtectedData> set = new HashSet<>();
+            for (int i = 0; i < count; i++) {
+                set.add(readProtectedData(in));
+            }
+            return new DataResponse(set);
+        }
+    };
+
+    public static final MessageCodec<AddDataMessage> ADD_DATA_MESSAGE = new MessageCodec<AddDataMessage>() {
+        @Override
+        public void encode(AddDataMessage message, MessageOutput out) throws IOException {
+            writeProtectedData(message.data, out);
+        }
+
+        @Override
+        public AddDataMessage decode(MessageInput in) throws IOException, ClassNotFoundException {
+            return new AddDataMessage(readProtectedData(in));
+        }
+    };
+
+    public static final MessageCodec<RemoveDataMessage> REMOVE_DATA_MESSAGE = new MessageCodec<RemoveDataMessage>() {
+        @Override
+        public void encode(RemoveDataMessage message, MessageOutput out) throws IOException {
+            writeProtectedData(message.data, out);
+        }
+
+        @Override
+        public RemoveDataMessage decode(MessageInput in) throws IOException, ClassNotFoundException {
+            return new RemoveDataMessage(readProtectedData(in));
+        }
+    };
+
+    public static final MessageCodec<RemoveMailboxDataMessage> REMOVE_MAILBOX_DATA_MESSAGE = new MessageCodec<RemoveMailboxDataMessage>() {
+        @Override
+        public void encode(RemoveMailboxDataMessage message, MessageOutput out) throws IOException {
+            writeProtectedData(message.data, out);
+        }
+
+        @Override
+        public RemoveMailboxDataMessage decode(MessageInput in) throws IOException, ClassNotFoundException {
+            ProtectedData data = readProtectedData(in);
+            if (data != null && !(data instanceof ProtectedMailboxData))
+                throw new IOException("RemoveMailboxDataMessage requires ProtectedMailboxData");
+            return new RemoveMailboxDataMessage((ProtectedMailboxData) data);
+        }
+    };
+
+    public static final MessageCodec<RefreshTTLMessage> REFRESH_TTL_MESSAGE = new MessageCodec<RefreshTTLMessage>() {
+        @Override
+        public void encode(RefreshTTLMessage message, MessageOutput out) throws IOException {
+            out.writeByteArray(message.hashOfPayload);
+            out.writeInt(message.sequenceNumber);
+            out.writeByteArray(message.signature);
+        }
+
+        @Override
+        public RefreshTTLMessage decode(MessageInput in) throws IOException {
+            return new RefreshTTLMessage(in.readByteArray(), in.readInt(), in.readByteArray());
+        }
+    };
+
+    public static final MessageCodec<MissingDataRequest> MISSING_DATA_REQUEST = new MessageCodec<MissingDataRequest>() {
+        @Override
+        public void encode(MissingDataRequest message, MessageOutput out) throws IOException {
+            out.writeByteArray(message.hashOfPayload);
+        }
+
+        @Override
+        public MissingDataRequest decode(MessageInput in) throws IOException {
+            return new MissingDataRequest(in.readByteArray());
+        }
+    };
+
+    public static final MessageCodec<BatchedDataMessage> BATCHED_DATA_MESSAGE = new MessageCodec<BatchedDataMessage>() {
+        @Override
+        public void encode(BatchedDataMessage message, MessageOutput out) throws IOException {
+            out.writeCount(message.entries);
+            for (DataBroadcastMessage entry : message.entries) {
+                if (entry instanceof AddDataMessage) {
+                    out.writeByte(ENTRY_ADD_DATA);
+                    ADD_DATA_MESSAGE.encode((AddDataMessage) entry, out);
+                } else if (entry instanceof RemoveDataMessage) {
+                    out.writeByte(ENTRY_REMOVE_DATA);
+                    REMOVE_DATA_MESSAGE.encode((RemoveDataMessage) entry, out);
+                } else if (entry instanceof RemoveMailboxDataMessage) {
+                    out.writeByte(ENTRY_REMOVE_MAILBOX_DATA);
+                    REMOVE_MAILBOX_DATA_MESSAGE.encode((RemoveMailboxDataMessage) entry, out);
+                } else if (entry instanceof RefreshTTLMessage) {
+                    out.writeByte(ENTRY_REFRESH_TTL);
+                    REFRESH_TTL_MESSAGE.encode((RefreshTTLMessage) entry, out);
+                } else {
+                    throw new IOException("Unsupported entry in BatchedDataMessage: " + entry);
+                }
+            }
+        }
+
+        @Override
+        public BatchedDataMessage decode(MessageInput in) throws IOException, ClassNotFoundException {
+            int count = in.readCount();
+            if (count < 0 || count > BatchedDataMessage.MAX_ENTRIES)
+                throw new IOException("Invalid number of entries in BatchedDataMessage: " + count);
+
+            ArrayList<DataBroadcastMessage> entries = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                byte kind = in.readByte();
+                switch (kind) {
+                    case ENTRY_ADD_DATA:
+                        entries.add(ADD_DATA_MESSAGE.decode(in));
+                        break;
+                    case ENTRY_REMOVE_DATA:
+                        entries.add(REMOVE_DATA_MESSAGE.decode(in));
+                        break;
+                    case ENTRY_REMOVE_MAILBOX_DATA:
+                        entries.add(REMOVE_MAILBOX_DATA_MESSAGE.decode(in));
+                        break;
+                    case ENTRY_REFRESH_TTL:
+                        entries.add(REFRESH_TTL_MESSAGE.decode(in));
+                        break;
+                    default:
+                        throw new IOException("Unknown entry kind " + kind);
+                }
+            }
+            return new BatchedDataMessage(entries);
+        }
+    };
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Mail
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public static final MessageCodec<SealedAndSignedMessage> SEALED_AND_SIGNED_MESSAGE = new MessageCodec<SealedAndSignedMessage>() {
+        @Override
+        public void encode(SealedAndSignedMessage message, MessageOutput out) throws IOException {
+            writeSealedAndSignedMessage(message, out);
+        }
+
+        @Override
+        public SealedAndSignedMessage decode(MessageInput in) throws IOException {
+            return readSealedAndSignedMessage(in);
+        }
+    };
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Fields
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private static void writeNodeAddress(NodeAddress nodeAddress, MessageOutput out) throws IOException {
+        out.writeBoolean(nodeAddress != null);
+        if (nodeAddress != null) {
+            out.writeString(nodeAddress.hostName);
+            out.writeInt(nodeAddress.port);
+        }
+    }
+
+    private static NodeAddress readNodeAddress(MessageInput in) throws IOException {
+        return in.readBoolean() ? new NodeAddress(in.readString(), in.readInt()) : null;
+    }
+
+    private static void writeReportedPeers(HashSet<ReportedPeer> reportedPeers, MessageOutput out) throws IOException {
+        out.writeCount(reportedPeers);
+        if (reportedPeers != null) {
+            for (ReportedPeer reportedPeer : reportedPeers) {
+                writeNodeAddress(reportedPeer.nodeAddress, out);
+                out.writeLong(reportedPeer.lastActivityDate != null ? reportedPeer.lastActivityDate.getTime() : MessageOutput.NULL_LENGTH);
+            }
+        }
+    }
+
+    private static HashSet<ReportedPeer> readReportedPeers(MessageInput in) throws IOException {
+        int count = in.readCount();
+        if (count == MessageOutput.NULL_LENGTH)
+            return null;
+
+        HashSet<ReportedPeer> reportedPeers = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            NodeAddress nodeAddress = readNodeAddress(in);
+            long lastActivityDate = in.readLong();
+            reportedPeers.add(new ReportedPeer(nodeAddress, lastActivityDate != MessageOutput.NULL_LENGTH ? new Date(lastActivityDate) : null));
+        }
+        return reportedPeers;
+    }
+
+    // ttl and date are transient and get set on the receiving side like in ProtectedData.readObject
+    private static void writeProtectedData(ProtectedData protectedData, MessageOutput out) throws IOException {
+        if (protectedData == null) {
+            out.writeByte(PROTECTED_DATA_SERIALIZED);
+            out.writeSerializable(null);
+        } else if (protectedData.getClass() == ProtectedData.class) {
+            out.writeByte(PROTECTED_DATA);
+            writeProtectedDataFields(protectedData, out);
+        } else if (protectedData.getClass() == ProtectedMailboxData.class) {
+            out.writeByte(PROTECTED_MAILBOX_DATA);
+            writeProtectedDataFields(protectedData, out);
+            out.writePublicKey(((ProtectedMailboxData) protectedData).receiversPubKey);
+        } else {
+            out.writeByte(PROTECTED_DATA_SERIALIZED);
+            out.writeSerializable(protectedData);
+        }
+    }
+
+    private static void writeProtectedDataFields(ProtectedData protectedData, MessageOutput out) throws IOException {
+        writePayload(protectedData.expirablePayload, out);
+        out.writePublicKey(protectedData.ownerStoragePubKey);
+        out.writeInt(protectedData.sequenceNumber);
+        out.writeByteArray(protectedData.signature);
+    }
+
+    private static ProtectedData readProtectedData(MessageInput in) throws IOException, ClassNotFoundException {
+        byte kind = in.readByte();
+        switch (kind) {
+            case PROTECTED_DATA:
+            case PROTECTED_MAILBOX_DATA:
+                ExpirablePayload payload = readPayload(in);
+                if (payload == null)
+                    throw new IOException("ProtectedData without payload");
+                PublicKey ownerStoragePubKey = in.readPublicKey();
+                int sequenceNumber = in.readInt();
+                byte[] signature = in.readByteArray();
+                if (kind == PROTECTED_DATA)
+                    return new ProtectedData(payload, payload.getTTL(), ownerStoragePubKey, sequenceNumber, signature);
+
+                if (!(payload instanceof ExpirableMailboxPayload))
+                    throw new IOException("ProtectedMailboxData requires ExpirableMailboxPayload");
+                return new ProtectedMailboxData((ExpirableMailboxPayload) payload, payload.getTTL(), ownerStoragePubKey,
+                        sequenceNumber, signature, in.readPublicKey());
+            case PROTECTED_DATA_SERIALIZED:
+                return in.readSerializable(ProtectedData.class);
+            default:
+                throw new IOException("Unknown ProtectedData kind " + kind);
+        }
+    }
+
+    private static void writePayload(ExpirablePayload payload, MessageOutput out) throws IOException {
+        if (payload instanceof ExpirableMailboxPayload) {
+            ExpirableMailboxPayload mailboxPayload = (ExpirableMailboxPayload) payload;
+            out.writeByte(PAYLOAD_MAILBOX);
+            writeSealedAndSignedMessage(mailboxPayload.sealedAndSignedMessage, out);
+            out.writePublicKey(mailboxPayload.senderStoragePublicKey);
+            out.writePublicKey(mailboxPayload.receiverStoragePublicKey);
+        } else {
+            out.writeByte(PAYLOAD_SERIALIZED);
+            out.writeSerializable(payload);
+        }
+    }
+
+    private static ExpirablePayload readPayload(MessageInput in) throws IOException, ClassNotFoundException {
+        byte kind = in.readByte();
+        switch (kind) {
+            case PAYLOAD_MAILBOX:
+                return new ExpirableMailboxPayload(readSealedAndSignedMessage(in), in.readPublicKey(), in.readPublicKey());
+            case PAYLOAD_SERIALIZED:
+                return in.readSerializable(ExpirablePayload.class);
+            default:
+                throw new IOException("Unknown payload kind " + kind);
+        }
+    }
+
+    private static void writeSealedAndSignedMessage(SealedAndSignedMessage message, MessageOutput out) throws IOException {
+        out.writeBoolean(message != null);
+        if (message != null) {
+            SealedAndSigned sealedAndSigned = message.sealedAndSigned;
+            out.writeBoolean(sealedAndSigned != null);
+            if (sealedAndSigned != null) {
+                out.writeByteArray(sealedAndSigned.encryptedSecretKey);
+                out.writeByteArray(sealedAndSigned.encryptedPayloadWithHmac);
+                out.writeByteArray(sealedAndSigned.signature);
+                out.writePublicKey(sealedAndSigned.sigPublicKey);
+            }
+            out.writeByteArray(message.addressPrefixHash);
+        }
+    }
+
+    private static SealedAndSignedMessage readSealedAndSignedMessage(MessageInput in) throws IOException {
+        if (!in.readBoolean())
+            return null;
+
+        SealedAndSigned sealedAndSigned = null;
+        if (in.readBoolean())
+            sealedAndSigned = new SealedAndSigned(in.readByteArray(), in.readByteArray(), in.readByteArray(), in.readPublicKey());
+        return new SealedAndSignedMessage(sealedAndSigned, in.readByteArray());
+    }
+}
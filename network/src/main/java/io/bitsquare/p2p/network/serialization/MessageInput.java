@@ -0,0 +1,106 @@
+package io.bitsquare.p2p.network.serialization;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Counterpart of MessageOutput. Reads from a byte array, so all length fields are checked against the remaining data
+ * before anything gets allocated.
+ */
+public class MessageInput extends DataInputStream {
+    private final ByteArrayInputStream source;
+    private final List<PublicKey> readKeys = new ArrayList<>();
+    private ObjectInputStream objectInputStream;
+
+    public MessageInput(byte[] data, int offset) {
+        this(new ByteArrayInputStream(data, offset, data.length - offset));
+    }
+
+    private MessageInput(ByteArrayInputStream source) {
+        super(source);
+        this.source = source;
+    }
+
+    public byte[] readByteArray() throws IOException {
+        int length = readInt();
+        if (length == MessageOutput.NULL_LENGTH)
+            return null;
+
+        checkLength(length);
+        byte[] bytes = new byte[length];
+        readFully(bytes);
+        return bytes;
+    }
+
+    public String readString() throws IOException {
+        byte[] bytes = readByteArray();
+        return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+    }
+
+    public PublicKey readPublicKey() throws IOException {
+        byte tag = readByte();
+        switch (tag) {
+            case MessageOutput.KEY_NULL:
+                return null;
+            case MessageOutput.KEY_REFERENCE:
+                int index = readInt();
+                if (index < 0 || index >= readKeys.size())
+                    throw new StreamCorruptedException("Invalid key reference " + index);
+                return readKeys.get(index);
+            case MessageOutput.KEY_NEW:
+                String algorithm = readString();
+                byte[] encoded = readByteArray();
+                PublicKey publicKey;
+                try {
+                    publicKey = KeyFactory.getInstance(algorithm, "BC").generatePublic(new X509EncodedKeySpec(encoded));
+                } catch (Throwable t) {
+                    throw new IOException("Could not decode public key with algorithm " + algorithm, t);
+                }
+                readKeys.add(publicKey);
+                return publicKey;
+            default:
+                throw new StreamCorruptedException("Unknown key tag " + tag);
+        }
+    }
+
+    // See MessageOutput.writeSerializable. From the first object on all data is read through the ObjectInputStream.
+    public <T extends Serializable> T readSerializable(Class<T> type) throws IOException, ClassNotFoundException {
+        if (objectInputStream == null) {
+            objectInputStream = new ObjectInputStream(source);
+            in = objectInputStream;
+        }
+
+        Object object = objectInputStream.readObject();
+        if (object != null && !type.isInstance(object))
+            throw new InvalidObjectException("Expected " + type.getSimpleName() + " but got " + object.getClass().getSimpleName());
+        return type.cast(object);
+    }
+
+    /**
+     * Reads the element count of a collection. As each element takes at least one byte we reject counts larger than
+     * the remaining data.
+     */
+    public int readCount() throws IOException {
+        int count = readInt();
+        if (count != MessageOutput.NULL_LENGTH)
+            checkLength(count);
+        return count;
+    }
+
+    /**
+     * @return Upper bound of the bytes left to read.
+     */
+    public int remaining() throws IOException {
+        return source.available() + (objectInputStream != null ? objectInputStream.available() : 0);
+    }
+
+    private void checkLength(int length) throws IOException {
+        if (length < 0 || length > remaining())
+            throw new EOFException("Invalid length " + length + ". Remaining data: " + remaining());
+    }
+}
@@ -0,0 +1,78 @@
+package io.bitsquare.p2p.network.serialization;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.PublicKey;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * DataOutputStream with the field types used by the message codecs. Variable length fields are length prefixed and
+ * null is written as length -1.
+ * <p>
+ * Public keys are written like Java serialisation does with shared objects: a key instance which was already written
+ * is written as back reference. The payloads are signed over their Java serialized form, so the receiver needs to get
+ * the same object graph back, otherwise the hash and the signature check would fail.
+ * <p>
+ * Objects without codec are written with Java serialisation. At the first such object the stream switches to an
+ * ObjectOutputStream and writes all remaining fields through it, so all objects of a message share class descriptors
+ * and back references like they would with plain Java serialisation.
+ */
+public class MessageOutput extends DataOutputStream {
+    static final int NULL_LENGTH = -1;
+
+    static final byte KEY_NULL = 0;
+    static final byte KEY_NEW = 1;
+    static final byte KEY_REFERENCE = 2;
+
+    private final Map<PublicKey, Integer> writtenKeys = new IdentityHashMap<>();
+    private ObjectOutputStream objectOutputStream;
+
+    public MessageOutput(OutputStream out) {
+        super(out);
+    }
+
+    public void writeByteArray(byte[] bytes) throws IOException {
+        if (bytes != null) {
+            writeInt(bytes.length);
+            write(bytes);
+        } else {
+            writeInt(NULL_LENGTH);
+        }
+    }
+
+    public void writeString(String string) throws IOException {
+        writeByteArray(string != null ? string.getBytes(StandardCharsets.UTF_8) : null);
+    }
+
+    public void writeCount(Collection<?> collection) throws IOException {
+        writeInt(collection != null ? collection.size() : NULL_LENGTH);
+    }
+
+    public void writePublicKey(PublicKey publicKey) throws IOException {
+        if (publicKey == null) {
+            writeByte(KEY_NULL);
+        } else if (writtenKeys.containsKey(publicKey)) {
+            writeByte(KEY_REFERENCE);
+            writeInt(writtenKeys.get(publicKey));
+        } else {
+            writeByte(KEY_NEW);
+            writeString(publicKey.getAlgorithm());
+            writeByteArray(publicKey.getEncoded());
+            writtenKeys.put(publicKey, writtenKeys.size());
+        }
+    }
+
+    /**
+     * Fallback for objects without a codec. The object is written with Java serialisation.
+     */
+    public void writeSerializable(Serializable object) throws IOException {
+        if (objectOutputStream == null) {
+            flush();
+            objectOutputStream = new ObjectOutputStream(out);
+            out = objectOutputStream;
+        }
+        objectOutputStream.writeObject(object);
+    }
+}
@@ -0,0 +1,113 @@
+package io.bitsquare.p2p.network.serialization;
+
+import io.bitsquare.crypto.SealedAndSignedMessage;
+import io.bitsquare.p2p.Message;
+import io.bitsquare.p2p.network.messages.CloseConnectionMessage;
+import io.bitsquare.p2p.peers.messages.auth.AuthenticationChallenge;
+import io.bitsquare.p2p.peers.messages.auth.AuthenticationFinalResponse;
+import io.bitsquare.p2p.peers.messages.auth.AuthenticationRejection;
+import io.bitsquare.p2p.peers.messages.auth.AuthenticationRequest;
+import io.bitsquare.p2p.peers.messages.data.DataRequest;
+import io.bitsquare.p2p.peers.messages.data.DataResponse;
+import io.bitsquare.p2p.peers.messages.peers.GetPeersRequest;
+import io.bitsquare.p2p.peers.messages.peers.GetPeersResponse;
+import io.bitsquare.p2p.storage.messages.AddDataMessage;
+import io.bitsquare.p2p.storage.messages.BatchedDataMessage;
+import io.bitsquare.p2p.storage.messages.MissingDataRequest;
+import io.bitsquare.p2p.storage.messages.RefreshTTLMessage;
+import io.bitsquare.p2p.storage.messages.RemoveDataMessage;
+import io.bitsquare.p2p.storage.messages.RemoveMailboxDataMessage;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Maps message classes to stable type ids and their codecs.
+ * Messages without a registered codec are sent with type id JAVA_SERIALIZATION.
+ * <p>
+ * Type ids are part of the wire format. Never reuse or change an id, only add new ones.
+ * Ids 1-999 are reserved for the network module, other modules can register their messages with higher ids.
+ */
+public class MessageRegistry {
+    public static final int JAVA_SERIALIZATION = 0;
+
+    private static final Map<Integer, Entry<?>> entriesByTypeId = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, Entry<?>> entriesByClass = new ConcurrentHashMap<>();
+
+    static {
+        register(1, CloseConnectionMessage.class, MessageCodecs.CLOSE_CONNECTION_MESSAGE);
+
+        register(10, AuthenticationRequest.class, MessageCodecs.AUTHENTICATION_REQUEST);
+        register(11, AuthenticationChallenge.class, MessageCodecs.AUTHENTICATION_CHALLENGE);
+        register(12, AuthenticationFinalResponse.class, MessageCodecs.AUTHENTICATION_FINAL_RESPONSE);
+        register(13, AuthenticationRejection.class, MessageCodecs.AUTHENTICATION_REJECTION);
+
+        register(20, GetPeersRequest.class, MessageCodecs.GET_PEERS_REQUEST);
+        register(21, GetPeersResponse.class, MessageCodecs.GET_PEERS_RESPONSE);
+
+        register(30, DataRequest.class, MessageCodecs.DATA_REQUEST);
+        register(31, DataResponse.class, MessageCodecs.DATA_RESPONSE);
+        register(32, AddDataMessage.class, MessageCodecs.ADD_DATA_MESSAGE);
+        register(33, RemoveDataMessage.class, MessageCodecs.REMOVE_DATA_MESSAGE);
+        register(34, RemoveMailboxDataMessage.class, MessageCodecs.REMOVE_MAILBOX_DATA_MESSAGE);
+        register(35, RefreshTTLMessage.class, MessageCodecs.REFRESH_TTL_MESSAGE);
+        register(36, BatchedDataMessage.class, MessageCodecs.BATCHED_DATA_MESSAGE);
+        register(37, MissingDataRequest.class, MessageCodecs.MISSING_DATA_REQUEST);
+
+        register(40, SealedAndSignedMessage.class, MessageCodecs.SEALED_AND_SIGNED_MESSAGE);
+    }
+
+    public static synchronized <T extends Message> void register(int typeId, Class<T> messageClass, MessageCodec<T> codec) {
+        checkArgument(typeId > JAVA_SERIALIZATION && typeId <= Short.MAX_VALUE, "Invalid typeId " + typeId);
+        checkArgument(!entriesByTypeId.containsKey(typeId), "typeId " + typeId + " is already registered");
+        checkArgument(!entriesByClass.containsKey(messageClass), messageClass.getSimpleName() + " is already registered");
+
+        Entry<T> entry = new Entry<>(typeId, messageClass, codec);
+        entriesByTypeId.put(typeId, entry);
+        entriesByClass.put(messageClass, entry);
+    }
+
+    // We look up the exact class. Subclasses are not covered by the codec of their super class.
+    @Nullable
+    public static Entry<?> getEntry(Class<?> messageClass) {
+        return entriesByClass.get(messageClass);
+    }
+
+    @Nullable
+    public static Entry<?> getEntry(int typeId) {
+        return entriesByTypeId.get(typeId);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Entry
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    public static final class Entry<T extends Message> {
+        public final int typeId;
+        public final Class<T> messageClass;
+        public final MessageCodec<T> codec;
+
+        private Entry(int typeId, Class<T> messageClass, MessageCodec<T> codec) {
+            this.typeId = typeId;
+            this.messageClass = messageClass;
+            this.codec = codec;
+        }
+
+        public void encode(Message message, MessageOutput out) throws IOException {
+            codec.encode(messageClass.cast(message), out);
+        }
+
+        @Override
+        public String toString() {
+            return "Entry{" +
+                    "typeId=" + typeId +
+                    ", messageClass=" + messageClass.getSimpleName() +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package io.bitsquare.p2p.network.serialization;
+
+import io.bitsquare.app.Version;
+import io.bitsquare.common.util.SerializationBuffers;
+import io.bitsquare.p2p.Message;
+
+import java.io.*;
+
+/**
+ * Serializes messages with the codec registered at the MessageRegistry or with Java serialisation if there is none.
+ * <p>
+ * Format: FORMAT_VERSION (byte), typeId (short), networkId (int), body.
+ * Java serialisation streams start with STREAM_MAGIC (0xACED), so data of peers which still send plain Java
+ * serialized messages is detected and read as before.
+ */
+public class MessageSerializer {
+    public static final byte FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 7;
+    private static final int NETWORK_ID_OFFSET = 3;
+
+    public static byte[] serialize(Message message) throws IOException {
+        Class<? extends Message> messageClass = message.getClass();
+        MessageRegistry.Entry<?> entry = MessageRegistry.getEntry(messageClass);
+        SerializationBuffers.PooledByteArrayOutputStream bos = SerializationBuffers.getOutputStream(messageClass);
+        try {
+            MessageOutput out = new MessageOutput(bos);
+            out.writeByte(FORMAT_VERSION);
+            out.writeShort(entry != null ? entry.typeId : MessageRegistry.JAVA_SERIALIZATION);
+            out.writeInt(message.networkId());
+            if (entry != null)
+                entry.encode(message, out);
+            else
+                out.writeSerializable(message);
+            out.flush();
+            byte[] result = bos.toByteArray();
+            SerializationBuffers.setSizeHint(messageClass, result.length);
+            return result;
+        } finally {
+            bos.release();
+        }
+    }
+
+    public static Message deserialize(byte[] data) throws IOException, ClassNotFoundException {
+        if (isJavaSerialization(data))
+            return readJavaSerialized(data);
+
+        checkHeader(data);
+        MessageInput in = new MessageInput(data, 1);
+        int typeId = in.readShort();
+        int networkId = in.readInt();
+        if (networkId != Version.getNetworkId())
+            throw new InvalidObjectException("Message has wrong networkId " + networkId);
+
+        if (typeId == MessageRegistry.JAVA_SERIALIZATION) {
+            Message message = in.readSerializable(Message.class);
+            if (message == null)
+                throw new InvalidObjectException("Message is null");
+            return message;
+        }
+
+        MessageRegistry.Entry<?> entry = MessageRegistry.getEntry(typeId);
+        if (entry == null)
+            throw new InvalidClassException("Unknown message typeId " + typeId);
+
+        Message message = entry.codec.decode(in);
+        if (in.remaining() > 0)
+            throw new StreamCorruptedException(in.remaining() + " bytes left after decoding " + entry);
+        return message;
+    }
+
+    /**
+     * Reads the networkId from the header without decoding the message.
+     * Not applicable for data sent with Java serialisation, there the networkId of the message has to be used.
+     */
+    public static int getNetworkId(byte[] data) throws IOException {
+        checkHeader(data);
+        return new DataInputStream(new ByteArrayInputStream(data, NETWORK_ID_OFFSET, 4)).readInt();
+    }
+
+    public static boolean isJavaSerialization(byte[] data) {
+        return data.length >= 2
+                && data[0] == (byte) (ObjectStreamConstants.STREAM_MAGIC >> 8)
+                && data[1] == (byte) ObjectStreamConstants.STREAM_MAGIC;
+    }
+
+    private static void checkHeader(byte[] data) throws IOException {
+        if (data.length < HEADER_SIZE)
+            throw new EOFException("Data too short for header. length=" + data.length);
+        if (data[0] != FORMAT_VERSION)
+            throw new StreamCorruptedException("Unknown format version " + data[0]);
+    }
+
+    private static Message readJavaSerialized(byte[] data) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream objectInputStream = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            Object object = objectInputStream.readObject();
+            if (!(object instanceof Message))
+                throw new InvalidObjectException("Received object is not a Message. object=" + object);
+            return (Message) object;
+        }
+    }
+}
@@ -28,6 +28,8 @@ import java.util.function.Supplier;
 // client: authentication to seedNode done if nonce verification is ok
 // client: AuthenticationFinalResponse to seedNode
 // seedNode: authentication to client done if nonce verification is ok
+// AuthenticationRequest and AuthenticationChallenge carry the capabilities of the sender, they are set at the
+// connections to the peer (see Capabilities).
 
 public class AuthenticationHandshake implements MessageListener {
     private static final Logger log = LoggerFactory.getLogger(AuthenticationHandshake.class);
@@ -40,6 +42,7 @@ public class AuthenticationHandshake implements MessageListener {
 
     private final long startAuthTs;
     private long nonce = 0;
+    private int peerCapabilities;
     private boolean stopped;
     private Optional<SettableFuture<Connection>> resultFutureOptional = Optional.empty();
     private Timer timeoutTimer, shutDownTimer;
@@ -62,7 +65,7 @@ public class AuthenticationHandshake implements MessageListener {
         this.peerNodeAddress = peerNodeAddress;
 
         startAuthTs = System.currentTimeMillis();
-        networkNode.addMessageListener(this);
+        networkNode.addMessageListener(AuthenticationMessage.class, this);
     }
 
 
@@ -93,6 +96,8 @@ public class AuthenticationHandshake implements MessageListener {
                         connection.setPeerAddress(authenticationChallenge.senderNodeAddress);
                         // We use the active connectionType if we started the authentication request to another peer
                         connection.setConnectionPriority(ConnectionPriority.ACTIVE);
+                        peerCapabilities = authenticationChallenge.capabilities;
+                        connection.setPeerCapabilities(peerCapabilities);
                         log.trace("Received authenticationChallenge from " + peerNodeAddress);
                         boolean verified = nonce != 0 && nonce == authenticationChallenge.requesterNonce;
                         if (verified) {
@@ -234,6 +239,7 @@ public class AuthenticationHandshake implements MessageListener {
         }
 
         resultFutureOptional = Optional.of(SettableFuture.create());
+        peerCapabilities = authenticationRequest.capabilities;
 
         log.info("We shut down inbound connection from peer {} to establish a new " +
                 "connection with his reported address to verify if his address is correct.", peerNodeAddress);
@@ -262,6 +268,7 @@ public class AuthenticationHandshake implements MessageListener {
                             // We use passive connectionType for connections created from received authentication 
                             // requests from other peers 
                             connection.setConnectionPriority(ConnectionPriority.PASSIVE);
+                            connection.setPeerCapabilities(peerCapabilities);
                         }
 
                         @Override
@@ -336,6 +343,7 @@ public class AuthenticationHandshake implements MessageListener {
     private void completed(Connection connection) {
         Log.traceCall();
         shutDown();
+        connection.setPeerCapabilities(peerCapabilities);
         if (resultFutureOptional.isPresent())
             resultFutureOptional.get().set(connection);
         else
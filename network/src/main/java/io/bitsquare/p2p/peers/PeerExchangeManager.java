@@ -55,7 +55,7 @@ public class PeerExchangeManager implements MessageListener {
         this.removePeerConsumer = removePeerConsumer;
         this.addReportedPeersConsumer = addReportedPeersConsumer;
 
-        networkNode.addMessageListener(this);
+        networkNode.addMessageListener(PeerExchangeMessage.class, this);
 
         executor = Utilities.getScheduledThreadPoolExecutor("PeerExchangeManager", 1, 10, 5);
         long delay = new Random().nextInt(60) + 60 * 6; // 6-7 min.
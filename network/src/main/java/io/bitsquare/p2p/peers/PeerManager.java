@@ -25,6 +25,7 @@ import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
+import java.util.function.IntFunction;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -98,7 +99,7 @@ public class PeerManager implements MessageListener, ConnectionListener {
     }
 
     private void init() {
-        networkNode.addMessageListener(this);
+        networkNode.addMessageListener(AuthenticationRequest.class, this);
         networkNode.addConnectionListener(this);
 
         initPersistedPeers();
@@ -164,28 +165,39 @@ public class PeerManager implements MessageListener, ConnectionListener {
     ///////////////////////////////////////////////////////////////////////////////////////////
 
     public void broadcast(DataBroadcastMessage message, @Nullable NodeAddress sender) {
-        Log.traceCall("Sender " + sender + ". Message " + message.toString());
+        broadcast(capabilities -> Collections.singletonList(message), sender);
+    }
+
+    /**
+     * Sends each peer the messages returned for its capabilities, so peers with an older version get messages they
+     * understand.
+     */
+    public void broadcast(IntFunction<List<DataBroadcastMessage>> messagesForCapabilities, @Nullable NodeAddress sender) {
+        Log.traceCall("Sender " + sender);
         if (authenticatedPeers.values().size() > 0) {
-            log.info("Broadcast message to {} peers. Message: {}", authenticatedPeers.values().size(), message);
+            log.info("Broadcast messages to {} peers. Messages: {}", authenticatedPeers.values().size(),
+                    messagesForCapabilities.apply(Capabilities.SUPPORTED));
             authenticatedPeers.values().stream()
                     .filter(e -> !e.nodeAddress.equals(sender))
                     .forEach(peer -> {
                         if (authenticatedPeers.containsValue(peer)) {
                             final NodeAddress nodeAddress = peer.nodeAddress;
                             log.trace("Broadcast message from " + getMyAddress() + " to " + nodeAddress + ".");
-                            SettableFuture<Connection> future = networkNode.sendMessage(nodeAddress, message);
-                            Futures.addCallback(future, new FutureCallback<Connection>() {
-                                @Override
-                                public void onSuccess(Connection connection) {
-                                    log.trace("Broadcast from " + getMyAddress() + " to " + nodeAddress + " succeeded.");
-                                }
-
-                                @Override
-                                public void onFailure(@NotNull Throwable throwable) {
-                                    log.info("Broadcast failed. " + throwable.getMessage());
-                                    UserThread.execute(() -> removePeer(nodeAddress));
-                                }
-                            });
+                            for (DataBroadcastMessage message : messagesForCapabilities.apply(peer.connection.getPeerCapabilities())) {
+                                SettableFuture<Connection> future = networkNode.sendMessage(nodeAddress, message);
+                                Futures.addCallback(future, new FutureCallback<Connection>() {
+                                    @Override
+                                    public void onSuccess(Connection connection) {
+                                        log.trace("Broadcast from " + getMyAddress() + " to " + nodeAddress + " succeeded.");
+                                    }
+
+                                    @Override
+                                    public void onFailure(@NotNull Throwable throwable) {
+                                        log.info("Broadcast failed. " + throwable.getMessage());
+                                        UserThread.execute(() -> removePeer(nodeAddress));
+                                    }
+                                });
+                            }
                         } else {
                             log.debug("Peer is not in our authenticated list anymore. " +
                                     "That can happen as we use a stream loop for the broadcast. " +
@@ -194,7 +206,7 @@ public class PeerManager implements MessageListener, ConnectionListener {
                     });
         } else {
             log.info("Message not broadcasted because we have no authenticated peers yet. " +
-                    "message = {}", message);
+                    "messages = {}", messagesForCapabilities.apply(Capabilities.SUPPORTED));
         }
     }
 
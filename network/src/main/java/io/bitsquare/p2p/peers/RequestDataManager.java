@@ -66,7 +66,8 @@ public class RequestDataManager implements MessageListener, AuthenticationListen
         this.dataStorage = dataStorage;
         this.peerManager = peerManager;
 
-        networkNode.addMessageListener(this);
+        networkNode.addMessageListener(DataRequest.class, this);
+        networkNode.addMessageListener(DataResponse.class, this);
     }
 
     public void shutDown() {
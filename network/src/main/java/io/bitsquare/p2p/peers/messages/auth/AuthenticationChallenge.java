@@ -2,6 +2,7 @@ package io.bitsquare.p2p.peers.messages.auth;
 
 import io.bitsquare.app.Version;
 import io.bitsquare.p2p.NodeAddress;
+import io.bitsquare.p2p.network.Capabilities;
 import io.bitsquare.p2p.peers.ReportedPeer;
 
 import java.util.HashSet;
@@ -13,12 +14,20 @@ public final class AuthenticationChallenge extends AuthenticationMessage {
     public final long requesterNonce;
     public final long responderNonce;
     public final HashSet<ReportedPeer> reportedPeers;
+    // Added after the first release. It is 0 if the message was sent by a peer with an older version.
+    public final int capabilities;
 
     public AuthenticationChallenge(NodeAddress senderNodeAddress, long requesterNonce, long responderNonce, HashSet<ReportedPeer> reportedPeers) {
+        this(senderNodeAddress, requesterNonce, responderNonce, reportedPeers, Capabilities.SUPPORTED);
+    }
+
+    public AuthenticationChallenge(NodeAddress senderNodeAddress, long requesterNonce, long responderNonce,
+                                   HashSet<ReportedPeer> reportedPeers, int capabilities) {
         super(senderNodeAddress);
         this.requesterNonce = requesterNonce;
         this.responderNonce = responderNonce;
         this.reportedPeers = reportedPeers;
+        this.capabilities = capabilities;
     }
 
     @Override
@@ -27,6 +36,7 @@ public final class AuthenticationChallenge extends AuthenticationMessage {
                 ", requesterNonce=" + requesterNonce +
                 ", responderNonce=" + responderNonce +
                 ", reportedPeers=" + reportedPeers +
+                ", capabilities=" + capabilities +
                 super.toString() + "} ";
     }
 }
@@ -2,16 +2,24 @@ package io.bitsquare.p2p.peers.messages.auth;
 
 import io.bitsquare.app.Version;
 import io.bitsquare.p2p.NodeAddress;
+import io.bitsquare.p2p.network.Capabilities;
 
 public final class AuthenticationRequest extends AuthenticationMessage {
     // That object is sent over the wire, so we need to take care of version compatibility.
     private static final long serialVersionUID = Version.NETWORK_PROTOCOL_VERSION;
 
     public final long requesterNonce;
+    // Added after the first release. It is 0 if the message was sent by a peer with an older version.
+    public final int capabilities;
 
     public AuthenticationRequest(NodeAddress senderNodeAddress, long requesterNonce) {
+        this(senderNodeAddress, requesterNonce, Capabilities.SUPPORTED);
+    }
+
+    public AuthenticationRequest(NodeAddress senderNodeAddress, long requesterNonce, int capabilities) {
         super(senderNodeAddress);
         this.requesterNonce = requesterNonce;
+        this.capabilities = capabilities;
     }
 
     @Override
@@ -19,6 +27,7 @@ public final class AuthenticationRequest extends AuthenticationMessage {
         return "AuthenticationRequest{" +
                 "senderAddress=" + senderNodeAddress +
                 ", requesterNonce=" + requesterNonce +
+                ", capabilities=" + capabilities +
                 super.toString() + "} ";
     }
 }
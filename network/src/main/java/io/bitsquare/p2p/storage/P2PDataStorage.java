@@ -5,12 +5,13 @@ import com.google.common.util.concurrent.MoreExecutors;
 import io.bitsquare.app.Log;
 import io.bitsquare.common.ByteArray;
 import io.bitsquare.common.UserThread;
+import io.bitsquare.common.crypto.CanonicalEncodable;
 import io.bitsquare.common.crypto.CryptoException;
-import io.bitsquare.common.crypto.Hash;
 import io.bitsquare.common.crypto.Sig;
 import io.bitsquare.common.util.Utilities;
 import io.bitsquare.p2p.Message;
 import io.bitsquare.p2p.NodeAddress;
+import io.bitsquare.p2p.network.Capabilities;
 import io.bitsquare.p2p.network.Connection;
 import io.bitsquare.p2p.network.IllegalRequest;
 import io.bitsquare.p2p.network.MessageListener;
@@ -18,7 +19,10 @@ import io.bitsquare.p2p.network.NetworkNode;
 import io.bitsquare.p2p.peers.PeerManager;
 import io.bitsquare.p2p.storage.data.*;
 import io.bitsquare.p2p.storage.messages.AddDataMessage;
+import io.bitsquare.p2p.storage.messages.BatchedDataMessage;
 import io.bitsquare.p2p.storage.messages.DataBroadcastMessage;
+import io.bitsquare.p2p.storage.messages.MissingDataRequest;
+import io.bitsquare.p2p.storage.messages.RefreshTTLMessage;
 import io.bitsquare.p2p.storage.messages.RemoveDataMessage;
 import io.bitsquare.p2p.storage.messages.RemoveMailboxDataMessage;
 import io.bitsquare.storage.Storage;
@@ -42,6 +46,7 @@ public class P2PDataStorage implements MessageListener {
     public static int CHECK_TTL_INTERVAL = new Random().nextInt(1000) + 10 * 60 * 1000; // 10-11 min.
 
     private final PeerManager peerManager;
+    private final NetworkNode networkNode;
     private final Map<ByteArray, ProtectedData> map = new HashMap<>();
     private final CopyOnWriteArraySet<HashMapChangedListener> hashMapChangedListeners = new CopyOnWriteArraySet<>();
     private HashMap<ByteArray, Integer> sequenceNumberMap = new HashMap<>();
@@ -55,8 +60,10 @@ public class P2PDataStorage implements MessageListener {
     public P2PDataStorage(PeerManager peerManager, NetworkNode networkNode, File storageDir) {
         Log.traceCall();
         this.peerManager = peerManager;
+        this.networkNode = networkNode;
 
-        networkNode.addMessageListener(this);
+        networkNode.addMessageListener(DataBroadcastMessage.class, this);
+        networkNode.addMessageListener(MissingDataRequest.class, this);
 
         storage = new Storage<>(storageDir);
         removeExpiredEntriesExecutor = Utilities.getScheduledThreadPoolExecutor("removeExpiredEntries", 1, 10, 5);
@@ -114,13 +121,31 @@ public class P2PDataStorage implements MessageListener {
                         remove(((RemoveDataMessage) message).data, peerAddress);
                     } else if (message instanceof RemoveMailboxDataMessage) {
                         removeMailboxData(((RemoveMailboxDataMessage) message).data, peerAddress);
+                    } else if (message instanceof RefreshTTLMessage) {
+                        refreshTTL((RefreshTTLMessage) message, peerAddress);
+                    } else if (message instanceof BatchedDataMessage) {
+                        processBatch((BatchedDataMessage) message, peerAddress);
                     }
                 });
+                requestMissingData((DataBroadcastMessage) message, connection);
             } else {
                 log.warn("Connection is not authenticated yet. " +
                         "We don't accept storage operations from non-authenticated nodes. connection=", connection);
                 connection.reportIllegalRequest(IllegalRequest.NotAuthenticated);
             }
+        } else if (message instanceof MissingDataRequest) {
+            Log.traceCall(message.toString());
+            if (connection.isAuthenticated()) {
+                ProtectedData storedData = map.get(new ByteArray(((MissingDataRequest) message).hashOfPayload));
+                if (storedData != null)
+                    networkNode.sendMessage(connection, new AddDataMessage(storedData));
+                else
+                    log.debug("MissingDataRequest ignored as we don't have an entry for that data.");
+            } else {
+                log.warn("Connection is not authenticated yet. " +
+                        "We don't respond to MissingDataRequests from non-authenticated nodes. connection=", connection);
+                connection.reportIllegalRequest(IllegalRequest.NotAuthenticated);
+            }
         }
     }
 
@@ -136,15 +161,149 @@ public class P2PDataStorage implements MessageListener {
 
     public boolean add(ProtectedData protectedData, @Nullable NodeAddress sender) {
         Log.traceCall();
-        return doAdd(protectedData, sender, false);
+        List<DataBroadcastMessage> toBroadcast = new ArrayList<>();
+        boolean result = doAdd(protectedData, false, toBroadcast);
+        if (result)
+            logDataSet("Data set after addProtectedExpirableData:");
+        broadcast(toBroadcast, sender);
+        return result;
     }
 
     public boolean rePublish(ProtectedData protectedData, @Nullable NodeAddress sender) {
         Log.traceCall();
-        return doAdd(protectedData, sender, true);
+        List<DataBroadcastMessage> toBroadcast = new ArrayList<>();
+        boolean result = doAdd(protectedData, true, toBroadcast);
+        if (result)
+            logDataSet("Data set after addProtectedExpirableData:");
+        broadcast(toBroadcast, sender);
+        return result;
+    }
+
+    /**
+     * Extends the TTL of data we have stored already. We can only verify the refresh if we hold the payload, so
+     * refresh messages for unknown data are not applied and not forwarded. If we received such a refresh from a peer
+     * we request the data from it with a MissingDataRequest.
+     */
+    public boolean refreshTTL(RefreshTTLMessage refreshTTLMessage, @Nullable NodeAddress sender) {
+        Log.traceCall();
+        List<DataBroadcastMessage> toBroadcast = new ArrayList<>();
+        boolean result = doRefreshTTL(refreshTTLMessage, toBroadcast);
+        broadcast(toBroadcast, sender);
+        return result;
+    }
+
+    public boolean remove(ProtectedData protectedData, @Nullable NodeAddress sender) {
+        Log.traceCall();
+        List<DataBroadcastMessage> toBroadcast = new ArrayList<>();
+        boolean result = doRemove(protectedData, toBroadcast);
+        if (result)
+            logDataSet("Data set after removeProtectedExpirableData:");
+        broadcast(toBroadcast, sender);
+        return result;
+    }
+
+    public boolean removeMailboxData(ProtectedMailboxData protectedMailboxData, @Nullable NodeAddress sender) {
+        Log.traceCall();
+        List<DataBroadcastMessage> toBroadcast = new ArrayList<>();
+        boolean result = doRemoveMailboxData(protectedMailboxData, toBroadcast);
+        if (result)
+            logDataSet("Data set after removeProtectedExpirableData:");
+        broadcast(toBroadcast, sender);
+        return result;
+    }
+
+    /**
+     * Applies the entries of the batch one by one with the same checks as for single messages. Invalid entries are
+     * dropped, the accepted ones are broadcast together in one message.
+     *
+     * @return The accepted entries.
+     */
+    public List<DataBroadcastMessage> processBatch(BatchedDataMessage batchedDataMessage, @Nullable NodeAddress sender) {
+        Log.traceCall();
+        List<DataBroadcastMessage> accepted = new ArrayList<>();
+        if (batchedDataMessage.entries.size() > BatchedDataMessage.MAX_ENTRIES) {
+            log.warn("Batch exceeds the max. number of entries. We ignore it. size=" + batchedDataMessage.entries.size());
+            return accepted;
+        }
+
+        List<DataBroadcastMessage> toBroadcast = new ArrayList<>();
+        for (DataBroadcastMessage entry : batchedDataMessage.entries) {
+            if (processEntry(entry, toBroadcast))
+                accepted.add(entry);
+        }
+        if (accepted.size() < batchedDataMessage.entries.size())
+            log.info("{} of {} entries of the batch got accepted.", accepted.size(), batchedDataMessage.entries.size());
+        if (!accepted.isEmpty())
+            logDataSet("Data set after processBatch:");
+
+        broadcast(toBroadcast, sender);
+        return accepted;
+    }
+
+    public boolean contains(ExpirablePayload payload) {
+        return map.containsKey(getHashAsByteArray(payload));
+    }
+
+    public Map<ByteArray, ProtectedData> getMap() {
+        return map;
+    }
+
+    public ProtectedData getDataWithSignedSeqNr(ExpirablePayload payload, KeyPair ownerStoragePubKey)
+            throws CryptoException {
+        Log.traceCall();
+        int sequenceNumber = getNextSequenceNumber(payload);
+        byte[] hashOfDataAndSeqNr = PayloadEncoding.getHashOfDataAndSeqNr(payload, sequenceNumber);
+        byte[] signature = Sig.sign(ownerStoragePubKey.getPrivate(), hashOfDataAndSeqNr);
+        return new ProtectedData(payload, payload.getTTL(), ownerStoragePubKey.getPublic(), sequenceNumber, signature);
     }
 
-    private boolean doAdd(ProtectedData protectedData, @Nullable NodeAddress sender, boolean rePublish) {
+    public RefreshTTLMessage getRefreshTTLMessage(ExpirablePayload payload, KeyPair ownerStoragePubKey)
+            throws CryptoException {
+        Log.traceCall();
+        int sequenceNumber = getNextSequenceNumber(payload);
+        byte[] hashOfDataAndSeqNr = PayloadEncoding.getHashOfDataAndSeqNr(payload, sequenceNumber);
+        byte[] signature = Sig.sign(ownerStoragePubKey.getPrivate(), hashOfDataAndSeqNr);
+        return new RefreshTTLMessage(PayloadEncoding.getHash(payload), sequenceNumber, signature);
+    }
+
+    public ProtectedMailboxData getMailboxDataWithSignedSeqNr(ExpirableMailboxPayload expirableMailboxPayload,
+                                                              KeyPair storageSignaturePubKey, PublicKey receiversPublicKey)
+            throws CryptoException {
+        Log.traceCall();
+        int sequenceNumber = getNextSequenceNumber(expirableMailboxPayload);
+        byte[] hashOfDataAndSeqNr = PayloadEncoding.getHashOfDataAndSeqNr(expirableMailboxPayload, sequenceNumber);
+        byte[] signature = Sig.sign(storageSignaturePubKey.getPrivate(), hashOfDataAndSeqNr);
+        return new ProtectedMailboxData(expirableMailboxPayload, expirableMailboxPayload.getTTL(),
+                storageSignaturePubKey.getPublic(), sequenceNumber, signature, receiversPublicKey);
+    }
+
+    public void addHashMapChangedListener(HashMapChangedListener hashMapChangedListener) {
+        Log.traceCall();
+        hashMapChangedListeners.add(hashMapChangedListener);
+    }
+
+
+    ///////////////////////////////////////////////////////////////////////////////////////////
+    // Private
+    ///////////////////////////////////////////////////////////////////////////////////////////
+
+    private boolean processEntry(DataBroadcastMessage entry, List<DataBroadcastMessage> toBroadcast) {
+        if (entry instanceof AddDataMessage) {
+            return doAdd(((AddDataMessage) entry).data, false, toBroadcast);
+        } else if (entry instanceof RemoveDataMessage) {
+            return doRemove(((RemoveDataMessage) entry).data, toBroadcast);
+        } else if (entry instanceof RemoveMailboxDataMessage) {
+            return doRemoveMailboxData(((RemoveMailboxDataMessage) entry).data, toBroadcast);
+        } else if (entry instanceof RefreshTTLMessage) {
+            return doRefreshTTL((RefreshTTLMessage) entry, toBroadcast);
+        } else {
+            log.warn("Unsupported entry in batch. entry=" + entry);
+            return false;
+        }
+    }
+
+    // The do* methods apply the change to our map and add the message to be broadcast to toBroadcast
+    private boolean doAdd(ProtectedData protectedData, boolean rePublish, List<DataBroadcastMessage> toBroadcast) {
         Log.traceCall();
         ByteArray hashOfPayload = getHashAsByteArray(protectedData.expirablePayload);
         boolean result = checkPublicKeys(protectedData, true)
@@ -160,22 +319,14 @@ public class P2PDataStorage implements MessageListener {
 
             // Republished data have a larger sequence number. We set the rePublish flag to enable broadcasting 
             // even we had the data with the old seq nr. already
-            if (sequenceNumberMap.containsKey(hashOfPayload) &&
-                    protectedData.sequenceNumber > sequenceNumberMap.get(hashOfPayload))
+            Integer storedSequenceNumber = getStoredSequenceNumber(protectedData.expirablePayload, hashOfPayload);
+            if (storedSequenceNumber != null && protectedData.sequenceNumber > storedSequenceNumber)
                 rePublish = true;
 
-            sequenceNumberMap.put(hashOfPayload, protectedData.sequenceNumber);
-            storage.queueUpForSave(sequenceNumberMap, 5000);
-
-            StringBuilder sb = new StringBuilder("\n\n------------------------------------------------------------\n");
-            sb.append("Data set after addProtectedExpirableData:");
-            map.values().stream().forEach(e -> sb.append("\n").append(e.toString()).append("\n"));
-            sb.append("\n------------------------------------------------------------\n");
-            log.info(sb.toString());
+            putSequenceNumber(protectedData.expirablePayload, hashOfPayload, protectedData.sequenceNumber);
 
             if (rePublish || !containsKey)
-                broadcast(new AddDataMessage(protectedData), sender);
-
+                toBroadcast.add(new AddDataMessage(protectedData));
 
             hashMapChangedListeners.stream().forEach(e -> e.onAdded(protectedData));
         } else {
@@ -184,7 +335,40 @@ public class P2PDataStorage implements MessageListener {
         return result;
     }
 
-    public boolean remove(ProtectedData protectedData, @Nullable NodeAddress sender) {
+    private boolean doRefreshTTL(RefreshTTLMessage refreshTTLMessage, List<DataBroadcastMessage> toBroadcast) {
+        Log.traceCall();
+        ByteArray hashOfPayload = new ByteArray(refreshTTLMessage.hashOfPayload);
+        ProtectedData storedData = map.get(hashOfPayload);
+        if (storedData == null) {
+            log.debug("Refresh TTL ignored as we don't have an entry for that data.");
+            return false;
+        }
+        // Mailbox data have the sender as owner but get removed by the receiver, we don't support refreshing them.
+        if (storedData.getClass() != ProtectedData.class) {
+            log.warn("Refresh TTL is only supported for ProtectedData. storedData=" + storedData);
+            return false;
+        }
+
+        // The refreshed data have the same fields as a republished ProtectedData, so we can use the same checks.
+        // Unlike at add we don't accept an equal sequence number as we would broadcast the same refresh again.
+        ProtectedData refreshedData = new ProtectedData(storedData.expirablePayload, storedData.ttl,
+                storedData.ownerStoragePubKey, refreshTTLMessage.sequenceNumber, refreshTTLMessage.signature);
+        Integer storedSequenceNumber = getStoredSequenceNumber(storedData.expirablePayload, hashOfPayload);
+        boolean result = (storedSequenceNumber == null || refreshTTLMessage.sequenceNumber > storedSequenceNumber)
+                && checkSignature(refreshedData);
+
+        if (result) {
+            map.put(hashOfPayload, refreshedData);
+            putSequenceNumber(refreshedData.expirablePayload, hashOfPayload, refreshedData.sequenceNumber);
+
+            toBroadcast.add(refreshTTLMessage);
+        } else {
+            log.trace("refreshTTL failed");
+        }
+        return result;
+    }
+
+    private boolean doRemove(ProtectedData protectedData, List<DataBroadcastMessage> toBroadcast) {
         Log.traceCall();
         ByteArray hashOfPayload = getHashAsByteArray(protectedData.expirablePayload);
         boolean containsKey = map.containsKey(hashOfPayload);
@@ -199,17 +383,16 @@ public class P2PDataStorage implements MessageListener {
         if (result) {
             doRemoveProtectedExpirableData(protectedData, hashOfPayload);
 
-            broadcast(new RemoveDataMessage(protectedData), sender);
+            toBroadcast.add(new RemoveDataMessage(protectedData));
 
-            sequenceNumberMap.put(hashOfPayload, protectedData.sequenceNumber);
-            storage.queueUpForSave(sequenceNumberMap, 5000);
+            putSequenceNumber(protectedData.expirablePayload, hashOfPayload, protectedData.sequenceNumber);
         } else {
             log.debug("remove failed");
         }
         return result;
     }
 
-    public boolean removeMailboxData(ProtectedMailboxData protectedMailboxData, @Nullable NodeAddress sender) {
+    private boolean doRemoveMailboxData(ProtectedMailboxData protectedMailboxData, List<DataBroadcastMessage> toBroadcast) {
         Log.traceCall();
         ByteArray hashOfData = getHashAsByteArray(protectedMailboxData.expirablePayload);
         boolean containsKey = map.containsKey(hashOfData);
@@ -224,70 +407,25 @@ public class P2PDataStorage implements MessageListener {
         if (result) {
             doRemoveProtectedExpirableData(protectedMailboxData, hashOfData);
 
-            broadcast(new RemoveMailboxDataMessage(protectedMailboxData), sender);
+            toBroadcast.add(new RemoveMailboxDataMessage(protectedMailboxData));
 
-            sequenceNumberMap.put(hashOfData, protectedMailboxData.sequenceNumber);
-            storage.queueUpForSave(sequenceNumberMap, 5000);
+            putSequenceNumber(protectedMailboxData.expirablePayload, hashOfData, protectedMailboxData.sequenceNumber);
         } else {
             log.debug("removeMailboxData failed");
         }
         return result;
     }
 
-    public Map<ByteArray, ProtectedData> getMap() {
-        return map;
-    }
-
-    public ProtectedData getDataWithSignedSeqNr(ExpirablePayload payload, KeyPair ownerStoragePubKey)
-            throws CryptoException {
-        Log.traceCall();
-        ByteArray hashOfData = getHashAsByteArray(payload);
-        int sequenceNumber;
-        if (sequenceNumberMap.containsKey(hashOfData))
-            sequenceNumber = sequenceNumberMap.get(hashOfData) + 1;
-        else
-            sequenceNumber = 0;
-
-        byte[] hashOfDataAndSeqNr = Hash.getHash(new DataAndSeqNr(payload, sequenceNumber));
-        byte[] signature = Sig.sign(ownerStoragePubKey.getPrivate(), hashOfDataAndSeqNr);
-        return new ProtectedData(payload, payload.getTTL(), ownerStoragePubKey.getPublic(), sequenceNumber, signature);
-    }
-
-    public ProtectedMailboxData getMailboxDataWithSignedSeqNr(ExpirableMailboxPayload expirableMailboxPayload,
-                                                              KeyPair storageSignaturePubKey, PublicKey receiversPublicKey)
-            throws CryptoException {
-        Log.traceCall();
-        ByteArray hashOfData = getHashAsByteArray(expirableMailboxPayload);
-        int sequenceNumber;
-        if (sequenceNumberMap.containsKey(hashOfData))
-            sequenceNumber = sequenceNumberMap.get(hashOfData) + 1;
-        else
-            sequenceNumber = 0;
-
-        byte[] hashOfDataAndSeqNr = Hash.getHash(new DataAndSeqNr(expirableMailboxPayload, sequenceNumber));
-        byte[] signature = Sig.sign(storageSignaturePubKey.getPrivate(), hashOfDataAndSeqNr);
-        return new ProtectedMailboxData(expirableMailboxPayload, expirableMailboxPayload.getTTL(),
-                storageSignaturePubKey.getPublic(), sequenceNumber, signature, receiversPublicKey);
-    }
-
-    public void addHashMapChangedListener(HashMapChangedListener hashMapChangedListener) {
-        Log.traceCall();
-        hashMapChangedListeners.add(hashMapChangedListener);
-    }
-
-
-    ///////////////////////////////////////////////////////////////////////////////////////////
-    // Private
-    ///////////////////////////////////////////////////////////////////////////////////////////
-
     private void doRemoveProtectedExpirableData(ProtectedData protectedData, ByteArray hashOfPayload) {
         Log.traceCall();
         map.remove(hashOfPayload);
         log.trace("Data removed from our map. We broadcast the message to our peers.");
         hashMapChangedListeners.stream().forEach(e -> e.onRemoved(protectedData));
+    }
 
-        StringBuilder sb = new StringBuilder("\n\n------------------------------------------------------------\n" +
-                "Data set after removeProtectedExpirableData:");
+    private void logDataSet(String title) {
+        StringBuilder sb = new StringBuilder("\n\n------------------------------------------------------------\n");
+        sb.append(title);
         map.values().stream().forEach(e -> sb.append("\n").append(e.toString()));
         sb.append("\n------------------------------------------------------------\n");
         log.info(sb.toString());
@@ -296,8 +434,8 @@ public class P2PDataStorage implements MessageListener {
     private boolean isSequenceNrValid(ProtectedData data, ByteArray hashOfData) {
         Log.traceCall();
         int newSequenceNumber = data.sequenceNumber;
-        Integer storedSequenceNumber = sequenceNumberMap.get(hashOfData);
-        if (sequenceNumberMap.containsKey(hashOfData) && newSequenceNumber < storedSequenceNumber) {
+        Integer storedSequenceNumber = getStoredSequenceNumber(data.expirablePayload, hashOfData);
+        if (storedSequenceNumber != null && newSequenceNumber < storedSequenceNumber) {
             log.trace("Sequence number is invalid. newSequenceNumber="
                     + newSequenceNumber + " / storedSequenceNumber=" + storedSequenceNumber);
             return false;
@@ -308,9 +446,16 @@ public class P2PDataStorage implements MessageListener {
 
     private boolean checkSignature(ProtectedData data) {
         Log.traceCall();
-        byte[] hashOfDataAndSeqNr = Hash.getHash(new DataAndSeqNr(data.expirablePayload, data.sequenceNumber));
         try {
-            boolean result = Sig.verify(data.ownerStoragePubKey, hashOfDataAndSeqNr, data.signature);
+            boolean result = false;
+            // Peers might have signed with another payload encoding version than we use
+            for (byte version : PayloadEncoding.getVerificationVersions(data.expirablePayload)) {
+                byte[] hashOfDataAndSeqNr = PayloadEncoding.getHashOfDataAndSeqNr(data.expirablePayload,
+                        data.sequenceNumber, version);
+                result = Sig.verify(data.ownerStoragePubKey, hashOfDataAndSeqNr, data.signature);
+                if (result)
+                    break;
+            }
             if (!result)
                 log.error("Signature verification failed at checkSignature. " +
                         "That should not happen. Consider it might be an attempt of fraud.");
@@ -368,13 +513,94 @@ public class P2PDataStorage implements MessageListener {
         }
     }
 
-    private void broadcast(DataBroadcastMessage message, @Nullable NodeAddress sender) {
-        Log.traceCall(message.toString());
-        peerManager.broadcast(message, sender);
+    // The messages are created per capabilities of the peers, peers with the same capabilities share them
+    private void broadcast(List<DataBroadcastMessage> messages, @Nullable NodeAddress sender) {
+        if (messages.isEmpty())
+            return;
+
+        Log.traceCall(messages.toString());
+        Map<Integer, List<DataBroadcastMessage>> messagesByCapabilities = new HashMap<>();
+        peerManager.broadcast(capabilities -> messagesByCapabilities.computeIfAbsent(capabilities,
+                key -> getMessagesForCapabilities(messages, key)), sender);
+    }
+
+    // Peers which have not advertised REFRESH_TTL get the refreshed data as AddDataMessage as at a republish.
+    // Several messages are sent as one batch to peers which have advertised BATCHED_DATA, one by one to the others.
+    private List<DataBroadcastMessage> getMessagesForCapabilities(List<DataBroadcastMessage> messages, int capabilities) {
+        List<DataBroadcastMessage> result = new ArrayList<>();
+        for (DataBroadcastMessage message : messages) {
+            if (message instanceof RefreshTTLMessage && !Capabilities.contains(capabilities, Capabilities.REFRESH_TTL)) {
+                ProtectedData refreshedData = map.get(new ByteArray(((RefreshTTLMessage) message).hashOfPayload));
+                if (refreshedData != null)
+                    result.add(new AddDataMessage(refreshedData));
+            } else {
+                result.add(message);
+            }
+        }
+
+        if (result.size() > 1 && Capabilities.contains(capabilities, Capabilities.BATCHED_DATA))
+            return Collections.singletonList(new BatchedDataMessage(result));
+        else
+            return result;
+    }
+
+    // A refresh for data we don't hold can't be verified, so we request the data from the peer which sent it
+    private void requestMissingData(DataBroadcastMessage message, Connection connection) {
+        if (!connection.supportsCapability(Capabilities.REFRESH_TTL))
+            return;
+
+        List<DataBroadcastMessage> entries = message instanceof BatchedDataMessage ?
+                ((BatchedDataMessage) message).entries : Collections.singletonList(message);
+        entries.stream()
+                .filter(entry -> entry instanceof RefreshTTLMessage)
+                .map(entry -> (RefreshTTLMessage) entry)
+                .filter(this::isRefreshOfMissingData)
+                .forEach(refreshTTLMessage -> {
+                    log.debug("We received a refresh for data we don't hold. We request the data from the peer.");
+                    networkNode.sendMessage(connection, new MissingDataRequest(refreshTTLMessage.hashOfPayload));
+                });
+    }
+
+    // Data which got removed have a sequence number at least as large as the refresh, we don't request those again.
+    // Without the payload we cannot look up a sequence number stored with the legacy hash. The requested data is
+    // checked against it at add.
+    private boolean isRefreshOfMissingData(RefreshTTLMessage refreshTTLMessage) {
+        ByteArray hashOfPayload = new ByteArray(refreshTTLMessage.hashOfPayload);
+        Integer storedSequenceNumber = sequenceNumberMap.get(hashOfPayload);
+        return !map.containsKey(hashOfPayload)
+                && (storedSequenceNumber == null || refreshTTLMessage.sequenceNumber > storedSequenceNumber);
+    }
+
+    // Peers still know the sequence numbers stored with the legacy hash, so we must not start again at 0
+    private int getNextSequenceNumber(ExpirablePayload payload) {
+        Integer storedSequenceNumber = getStoredSequenceNumber(payload, getHashAsByteArray(payload));
+        return storedSequenceNumber != null ? storedSequenceNumber + 1 : 0;
+    }
+
+    // Sequence numbers persisted before we used the canonical encoding are stored with the legacy hash of the payload.
+    // They get moved to the canonical hash with the next change, so we look up the legacy hash only if we don't have
+    // the canonical one.
+    @Nullable
+    private Integer getStoredSequenceNumber(ExpirablePayload payload, ByteArray hashOfPayload) {
+        Integer sequenceNumber = sequenceNumberMap.get(hashOfPayload);
+        if (sequenceNumber == null && payload instanceof CanonicalEncodable)
+            sequenceNumber = sequenceNumberMap.get(getLegacyHashAsByteArray(payload));
+        return sequenceNumber;
+    }
+
+    private void putSequenceNumber(ExpirablePayload payload, ByteArray hashOfPayload, int sequenceNumber) {
+        if (payload instanceof CanonicalEncodable)
+            sequenceNumberMap.remove(getLegacyHashAsByteArray(payload));
+        sequenceNumberMap.put(hashOfPayload, sequenceNumber);
+        storage.queueUpForSave(sequenceNumberMap, 5000);
     }
 
     private ByteArray getHashAsByteArray(ExpirablePayload payload) {
-        return new ByteArray(Hash.getHash(payload));
+        return new ByteArray(PayloadEncoding.getHash(payload));
+    }
+
+    private ByteArray getLegacyHashAsByteArray(ExpirablePayload payload) {
+        return new ByteArray(PayloadEncoding.getHash(payload, PayloadEncoding.LEGACY));
     }
 
 }
@@ -1,11 +1,13 @@
 package io.bitsquare.p2p.storage.data;
 
 import io.bitsquare.app.Version;
+import io.bitsquare.common.crypto.CanonicalEncodable;
+import io.bitsquare.common.crypto.CanonicalEncoder;
 import io.bitsquare.crypto.SealedAndSignedMessage;
 
 import java.security.PublicKey;
 
-public final class ExpirableMailboxPayload implements ExpirablePayload {
+public final class ExpirableMailboxPayload implements ExpirablePayload, CanonicalEncodable {
     // That object is sent over the wire, so we need to take care of version compatibility.
     private static final long serialVersionUID = Version.NETWORK_PROTOCOL_VERSION;
 
@@ -26,6 +28,13 @@ public final class ExpirableMailboxPayload implements ExpirablePayload {
         return TTL;
     }
 
+    @Override
+    public void encode(CanonicalEncoder encoder) {
+        encoder.write(sealedAndSignedMessage)
+                .writePublicKey(senderStoragePublicKey)
+                .writePublicKey(receiverStoragePublicKey);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,65 @@
+package io.bitsquare.p2p.storage.data;
+
+import io.bitsquare.common.crypto.CanonicalEncodable;
+import io.bitsquare.common.crypto.CanonicalEncoder;
+import io.bitsquare.common.crypto.Hash;
+
+/**
+ * Provides the bytes used for hashing and signing of storage payloads.
+ * <p>
+ * Version 0 (LEGACY) is the Java serialisation of the payload (or of DataAndSeqNr for signatures).
+ * Version 1 (CANONICAL) is the CanonicalEncoder output prefixed with the version byte and the payload class name.
+ * Payloads not implementing CanonicalEncodable always use the legacy encoding.
+ * <p>
+ * The hash of the payload is the key in our maps, we use the canonical encoding there. It is also sent as reference to
+ * the data in RefreshTTLMessage and MissingDataRequest, so it is part of the wire format: the encoding of a version
+ * must never change, a changed encoding needs a new version. A peer with another hash for the same payload treats a
+ * refresh as refresh of data it does not hold and requests the data, so it recovers with the full data.
+ * Signatures need to be verifiable by all peers, so we sign with SIGNING_VERSION and accept all known versions at
+ * verification. Once the network is updated SIGNING_VERSION can be raised to CANONICAL.
+ */
+public class PayloadEncoding {
+    public static final byte LEGACY = 0;
+    public static final byte CANONICAL = 1;
+
+    // Version used when we sign our own data
+    public static final byte SIGNING_VERSION = LEGACY;
+
+    public static byte[] getHash(ExpirablePayload payload) {
+        return getHash(payload, CANONICAL);
+    }
+
+    public static byte[] getHash(ExpirablePayload payload, byte version) {
+        if (version == CANONICAL && payload instanceof CanonicalEncodable)
+            return Hash.getHash(getEncoder(payload).toByteArray());
+        else
+            return Hash.getHash(payload);
+    }
+
+    public static byte[] getHashOfDataAndSeqNr(ExpirablePayload payload, int sequenceNumber) {
+        return getHashOfDataAndSeqNr(payload, sequenceNumber, SIGNING_VERSION);
+    }
+
+    public static byte[] getHashOfDataAndSeqNr(ExpirablePayload payload, int sequenceNumber, byte version) {
+        if (version == CANONICAL && payload instanceof CanonicalEncodable)
+            return Hash.getHash(getEncoder(payload).writeInt(sequenceNumber).toByteArray());
+        else
+            return Hash.getHash(new DataAndSeqNr(payload, sequenceNumber));
+    }
+
+    // The versions to try at signature verification. The signing version first as that is the expected case.
+    public static byte[] getVerificationVersions(ExpirablePayload payload) {
+        if (payload instanceof CanonicalEncodable)
+            return SIGNING_VERSION == CANONICAL ? new byte[]{CANONICAL, LEGACY} : new byte[]{LEGACY, CANONICAL};
+        else
+            return new byte[]{LEGACY};
+    }
+
+    private static CanonicalEncoder getEncoder(ExpirablePayload payload) {
+        CanonicalEncoder encoder = new CanonicalEncoder()
+                .writeByte(CANONICAL)
+                .writeString(payload.getClass().getName());
+        ((CanonicalEncodable) payload).encode(encoder);
+        return encoder;
+    }
+}
@@ -0,0 +1,49 @@
+package io.bitsquare.p2p.storage.messages;
+
+import io.bitsquare.app.Version;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Carries many add, remove and refresh entries in one broadcast, e.g. when a market maker publishes or withdraws
+ * all offers at once. Each entry is validated on its own, peers apply and forward only the valid ones.
+ * Batches must not be nested.
+ * <p>
+ * Only sent to peers which have advertised Capabilities.BATCHED_DATA, older peers get the entries as single messages.
+ */
+public final class BatchedDataMessage extends DataBroadcastMessage {
+    // That object is sent over the wire, so we need to take care of version compatibility.
+    private static final long serialVersionUID = Version.NETWORK_PROTOCOL_VERSION;
+
+    // 500 offers are about 1.3 MB, so we stay well below the max. message size of a connection
+    public static final int MAX_ENTRIES = 500;
+
+    public final ArrayList<DataBroadcastMessage> entries;
+
+    public BatchedDataMessage(List<DataBroadcastMessage> entries) {
+        this.entries = new ArrayList<>(entries);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof BatchedDataMessage)) return false;
+
+        BatchedDataMessage that = (BatchedDataMessage) o;
+
+        return !(entries != null ? !entries.equals(that.entries) : that.entries != null);
+    }
+
+    @Override
+    public int hashCode() {
+        return entries != null ? entries.hashCode() : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchedDataMessage{" +
+                "entries.size=" + (entries != null ? entries.size() : 0) +
+                "} " + super.toString();
+    }
+}
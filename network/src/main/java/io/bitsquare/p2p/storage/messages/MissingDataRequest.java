@@ -0,0 +1,51 @@
+package io.bitsquare.p2p.storage.messages;
+
+import io.bitsquare.app.Version;
+import io.bitsquare.p2p.Message;
+
+import java.util.Arrays;
+
+/**
+ * Sent back to the peer which forwarded us a RefreshTTLMessage for data we don't hold (e.g. we missed the add).
+ * The peer responds with an AddDataMessage of its stored data, so we don't have to wait for the next full republish.
+ */
+public final class MissingDataRequest implements Message {
+    // That object is sent over the wire, so we need to take care of version compatibility.
+    private static final long serialVersionUID = Version.NETWORK_PROTOCOL_VERSION;
+
+    private final int networkId = Version.getNetworkId();
+
+    public final byte[] hashOfPayload;
+
+    public MissingDataRequest(byte[] hashOfPayload) {
+        this.hashOfPayload = hashOfPayload;
+    }
+
+    @Override
+    public int networkId() {
+        return networkId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof MissingDataRequest)) return false;
+
+        MissingDataRequest that = (MissingDataRequest) o;
+
+        return Arrays.equals(hashOfPayload, that.hashOfPayload);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashOfPayload != null ? Arrays.hashCode(hashOfPayload) : 0;
+    }
+
+    @Override
+    public String toString() {
+        return "MissingDataRequest{" +
+                "hashOfPayload.length=" + (hashOfPayload != null ? hashOfPayload.length : 0) +
+                ", networkId=" + networkId +
+                '}';
+    }
+}
@@ -0,0 +1,56 @@
+package io.bitsquare.p2p.storage.messages;
+
+import io.bitsquare.app.Version;
+
+import java.util.Arrays;
+
+/**
+ * Extends the TTL of data the peers have already stored, instead of broadcasting the whole ProtectedData again.
+ * The signature is the same the owner would use for a ProtectedData with that sequence number, so peers holding the
+ * payload can verify it with the stored owner key and replace their entry with the refreshed one.
+ * <p>
+ * Only sent to peers which have advertised Capabilities.REFRESH_TTL, older peers get the refreshed data as
+ * AddDataMessage. The hash is the canonical hash of the payload (see PayloadEncoding).
+ */
+public final class RefreshTTLMessage extends DataBroadcastMessage {
+    // That object is sent over the wire, so we need to take care of version compatibility.
+    private static final long serialVersionUID = Version.NETWORK_PROTOCOL_VERSION;
+
+    public final byte[] hashOfPayload;
+    public final int sequenceNumber;
+    public final byte[] signature;
+
+    public RefreshTTLMessage(byte[] hashOfPayload, int sequenceNumber, byte[] signature) {
+        this.hashOfPayload = hashOfPayload;
+        this.sequenceNumber = sequenceNumber;
+        this.signature = signature;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RefreshTTLMessage)) return false;
+
+        RefreshTTLMessage that = (RefreshTTLMessage) o;
+
+        if (sequenceNumber != that.sequenceNumber) return false;
+        if (!Arrays.equals(hashOfPayload, that.hashOfPayload)) return false;
+        return Arrays.equals(signature, that.signature);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = hashOfPayload != null ? Arrays.hashCode(hashOfPayload) : 0;
+        result = 31 * result + sequenceNumber;
+        result = 31 * result + (signature != null ? Arrays.hashCode(signature) : 0);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "RefreshTTLMessage{" +
+                "hashOfPayload.length=" + (hashOfPayload != null ? hashOfPayload.length : 0) +
+                ", sequenceNumber=" + sequenceNumber +
+                "} " + super.toString();
+    }
+}
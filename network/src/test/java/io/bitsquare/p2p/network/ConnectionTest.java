@@ -0,0 +1,88 @@
+package io.bitsquare.p2p.network;
+
+import io.bitsquare.p2p.Message;
+import io.bitsquare.p2p.mocks.MockMessage;
+import io.bitsquare.p2p.network.serialization.MessageSerializer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+// The peer side is a plain socket which reads and writes objects as peers with an older version do
+public class ConnectionTest {
+    private ServerSocket serverSocket;
+    private Socket peerSocket;
+    private ObjectOutputStream peerOutputStream;
+    private ObjectInputStream peerInputStream;
+    private Connection connection;
+    private final BlockingQueue<Message> receivedMessages = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setup() throws Exception {
+        serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        // The connection blocks until it has read the stream header of the peer
+        Future<Connection> connectionFuture = executor.submit(() -> new Connection(serverSocket.accept(),
+                (message, connection) -> receivedMessages.add(message),
+                new ConnectionListener() {
+                    @Override
+                    public void onConnection(Connection connection) {
+                    }
+
+                    @Override
+                    public void onDisconnect(Reason reason, Connection connection) {
+                    }
+
+                    @Override
+                    public void onError(Throwable throwable) {
+                    }
+                }));
+        peerSocket = new Socket(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort());
+        peerOutputStream = new ObjectOutputStream(peerSocket.getOutputStream());
+        peerOutputStream.flush();
+        peerInputStream = new ObjectInputStream(peerSocket.getInputStream());
+        connection = connectionFuture.get(5, TimeUnit.SECONDS);
+        executor.shutdown();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        peerSocket.close();
+        serverSocket.close();
+    }
+
+    @Test
+    public void testSendsMessageObjectIfPeerHasNotAdvertisedCodecs() throws Exception {
+        connection.sendMessage(new MockMessage("msg"));
+
+        assertEquals(new MockMessage("msg"), peerInputStream.readObject());
+    }
+
+    @Test
+    public void testSendsCodecFramingIfPeerHasAdvertisedIt() throws Exception {
+        connection.setPeerCapabilities(Capabilities.MESSAGE_CODECS);
+        connection.sendMessage(new MockMessage("msg"));
+
+        Object received = peerInputStream.readObject();
+        assertTrue(received instanceof byte[]);
+        assertEquals(new MockMessage("msg"), MessageSerializer.deserialize((byte[]) received));
+    }
+
+    @Test
+    public void testReceivesBothFormats() throws Exception {
+        peerOutputStream.writeObject(new MockMessage("old"));
+        peerOutputStream.writeObject(MessageSerializer.serialize(new MockMessage("new")));
+        peerOutputStream.flush();
+
+        assertEquals(new MockMessage("old"), receivedMessages.poll(5, TimeUnit.SECONDS));
+        assertEquals(new MockMessage("new"), receivedMessages.poll(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,71 @@
+package io.bitsquare.p2p.network;
+
+import io.bitsquare.p2p.Message;
+import io.bitsquare.p2p.NodeAddress;
+import io.bitsquare.p2p.mocks.MockMessage;
+import io.bitsquare.p2p.peers.messages.auth.AuthenticationMessage;
+import io.bitsquare.p2p.peers.messages.auth.AuthenticationRejection;
+import io.bitsquare.p2p.peers.messages.auth.AuthenticationRequest;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class NetworkNodeTest {
+    private NetworkNode networkNode;
+    private NodeAddress nodeAddress;
+
+    @Before
+    public void setup() {
+        networkNode = new LocalhostNetworkNode(9001);
+        nodeAddress = new NodeAddress("localhost", 9002);
+    }
+
+    @Test
+    public void testDispatchByMessageClass() {
+        List<Message> allMessages = new ArrayList<>();
+        List<Message> authMessages = new ArrayList<>();
+        List<Message> authRequests = new ArrayList<>();
+        networkNode.addMessageListener((message, connection) -> allMessages.add(message));
+        networkNode.addMessageListener(AuthenticationMessage.class, (message, connection) -> authMessages.add(message));
+        networkNode.addMessageListener(AuthenticationRequest.class, (message, connection) -> authRequests.add(message));
+
+        networkNode.onMessage(new MockMessage("msg"), null);
+        networkNode.onMessage(new AuthenticationRequest(nodeAddress, 1), null);
+        networkNode.onMessage(new AuthenticationRejection(nodeAddress), null);
+
+        assertEquals(3, allMessages.size());
+        assertEquals(2, authMessages.size());
+        assertEquals(1, authRequests.size());
+    }
+
+    @Test
+    public void testListenerRegisteredForSeveralClassesIsCalledOnce() {
+        List<Message> messages = new ArrayList<>();
+        MessageListener listener = (message, connection) -> messages.add(message);
+        networkNode.addMessageListener(AuthenticationMessage.class, listener);
+        networkNode.addMessageListener(AuthenticationRequest.class, listener);
+
+        networkNode.onMessage(new AuthenticationRequest(nodeAddress, 1), null);
+        assertEquals(1, messages.size());
+
+        networkNode.removeMessageListener(listener);
+        networkNode.onMessage(new AuthenticationRequest(nodeAddress, 1), null);
+        assertEquals(1, messages.size());
+    }
+
+    @Test
+    public void testMessageCounters() {
+        networkNode.onMessage(new MockMessage("msg"), null);
+        networkNode.onMessage(new MockMessage("msg"), null);
+        networkNode.onMessage(new AuthenticationRejection(nodeAddress), null);
+
+        assertEquals(2, networkNode.getMessageCounter(MockMessage.class));
+        assertEquals(1, networkNode.getMessageCounter(AuthenticationRejection.class));
+        assertEquals(0, networkNode.getMessageCounter(AuthenticationRequest.class));
+        assertEquals(2, networkNode.getMessageCounters().size());
+    }
+}
@@ -0,0 +1,171 @@
+package io.bitsquare.p2p.network.serialization;
+
+import io.bitsquare.app.Version;
+import io.bitsquare.common.ByteArrayUtils;
+import io.bitsquare.common.crypto.SealedAndSigned;
+import io.bitsquare.common.crypto.Sig;
+import io.bitsquare.crypto.SealedAndSignedMessage;
+import io.bitsquare.p2p.NodeAddress;
+import io.bitsquare.p2p.mocks.MockMessage;
+import io.bitsquare.p2p.network.Capabilities;
+import io.bitsquare.p2p.peers.ReportedPeer;
+import io.bitsquare.p2p.peers.messages.auth.AuthenticationChallenge;
+import io.bitsquare.p2p.peers.messages.auth.AuthenticationRequest;
+import io.bitsquare.p2p.peers.messages.peers.GetPeersResponse;
+import io.bitsquare.p2p.storage.data.ExpirableMailboxPayload;
+import io.bitsquare.p2p.storage.data.PayloadEncoding;
+import io.bitsquare.p2p.storage.data.ProtectedData;
+import io.bitsquare.p2p.storage.data.ProtectedMailboxData;
+import io.bitsquare.p2p.storage.messages.*;
+import io.bitsquare.p2p.storage.mocks.MockData;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.security.KeyPair;
+import java.security.Security;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+public class MessageSerializerTest {
+    private KeyPair senderKeyPair;
+    private KeyPair receiverKeyPair;
+
+    @Before
+    public void setup() {
+        Security.addProvider(new BouncyCastleProvider());
+        senderKeyPair = Sig.generateKeyPair();
+        receiverKeyPair = Sig.generateKeyPair();
+    }
+
+    @Test
+    public void testAddDataMessage() throws Exception {
+        MockData mockData = new MockData("msg", senderKeyPair.getPublic());
+        mockData.ttl = 1000;
+        ProtectedData data = new ProtectedData(mockData, mockData.ttl, senderKeyPair.getPublic(), 3, new byte[]{1, 2});
+
+        byte[] bytes = MessageSerializer.serialize(new AddDataMessage(data));
+        assertEquals(MessageSerializer.FORMAT_VERSION, bytes[0]);
+        AddDataMessage result = (AddDataMessage) MessageSerializer.deserialize(bytes);
+
+        assertEquals(mockData, result.data.expirablePayload);
+        assertEquals(senderKeyPair.getPublic(), result.data.ownerStoragePubKey);
+        assertEquals(3, result.data.sequenceNumber);
+        assertArrayEquals(new byte[]{1, 2}, result.data.signature);
+        assertNotNull(result.data.date);
+    }
+
+    @Test
+    public void testRefreshTTLMessage() throws Exception {
+        MockData mockData = new MockData("msg", senderKeyPair.getPublic());
+        RefreshTTLMessage message = new RefreshTTLMessage(PayloadEncoding.getHash(mockData), 4, new byte[]{1, 2});
+
+        byte[] bytes = MessageSerializer.serialize(message);
+        assertEquals(message, MessageSerializer.deserialize(bytes));
+        assertTrue(bytes.length < MessageSerializer.serialize(new AddDataMessage(
+                new ProtectedData(mockData, 1000, senderKeyPair.getPublic(), 4, new byte[]{1, 2}))).length);
+    }
+
+    @Test
+    public void testBatchedDataMessage() throws Exception {
+        MockData mockData = new MockData("msg", senderKeyPair.getPublic());
+        mockData.ttl = 1000;
+        ProtectedData data = new ProtectedData(mockData, mockData.ttl, senderKeyPair.getPublic(), 3, new byte[]{1, 2});
+        RefreshTTLMessage refreshTTLMessage = new RefreshTTLMessage(PayloadEncoding.getHash(mockData), 4, new byte[]{3});
+
+        BatchedDataMessage result = (BatchedDataMessage) MessageSerializer.deserialize(MessageSerializer.serialize(
+                new BatchedDataMessage(Arrays.asList(new AddDataMessage(data), refreshTTLMessage, new RemoveDataMessage(data)))));
+
+        assertEquals(3, result.entries.size());
+        assertEquals(mockData, ((AddDataMessage) result.entries.get(0)).data.expirablePayload);
+        assertEquals(refreshTTLMessage, result.entries.get(1));
+        assertEquals(3, ((RemoveDataMessage) result.entries.get(2)).data.sequenceNumber);
+    }
+
+    // The payload hash is used for the signature, so decoding must not change its Java serialized form
+    @Test
+    public void testRemoveMailboxDataMessageKeepsPayloadHash() throws Exception {
+        SealedAndSigned sealedAndSigned = new SealedAndSigned(new byte[]{9, 8, 7}, new byte[]{1, 2, 3}, new byte[]{5},
+                senderKeyPair.getPublic());
+        ExpirableMailboxPayload payload = new ExpirableMailboxPayload(new SealedAndSignedMessage(sealedAndSigned, new byte[]{4, 2}),
+                senderKeyPair.getPublic(), receiverKeyPair.getPublic());
+        ProtectedMailboxData data = new ProtectedMailboxData(payload, payload.getTTL(), receiverKeyPair.getPublic(), 1,
+                new byte[]{6}, receiverKeyPair.getPublic());
+
+        RemoveMailboxDataMessage result = (RemoveMailboxDataMessage) MessageSerializer.deserialize(
+                MessageSerializer.serialize(new RemoveMailboxDataMessage(data)));
+
+        ExpirableMailboxPayload resultPayload = (ExpirableMailboxPayload) result.data.expirablePayload;
+        assertEquals(sealedAndSigned, resultPayload.sealedAndSignedMessage.sealedAndSigned);
+        assertArrayEquals(new byte[]{4, 2}, resultPayload.sealedAndSignedMessage.addressPrefixHash);
+        assertEquals(receiverKeyPair.getPublic(), resultPayload.receiverStoragePublicKey);
+        assertEquals(receiverKeyPair.getPublic(), result.data.receiversPubKey);
+        assertEquals(payload.getTTL(), result.data.ttl);
+        assertArrayEquals(PayloadEncoding.getHash(payload, PayloadEncoding.LEGACY),
+                PayloadEncoding.getHash(result.data.expirablePayload, PayloadEncoding.LEGACY));
+    }
+
+    @Test
+    public void testGetPeersResponse() throws Exception {
+        HashSet<ReportedPeer> reportedPeers = new HashSet<>();
+        reportedPeers.add(new ReportedPeer(new NodeAddress("localhost", 1000), new Date(1234)));
+        reportedPeers.add(new ReportedPeer(new NodeAddress("localhost", 1001)));
+
+        GetPeersResponse result = (GetPeersResponse) MessageSerializer.deserialize(
+                MessageSerializer.serialize(new GetPeersResponse(reportedPeers)));
+
+        assertEquals(reportedPeers, result.reportedPeers);
+        for (ReportedPeer reportedPeer : result.reportedPeers) {
+            if (reportedPeer.nodeAddress.port == 1000)
+                assertEquals(new Date(1234), reportedPeer.lastActivityDate);
+            else
+                assertNull(reportedPeer.lastActivityDate);
+        }
+    }
+
+    @Test
+    public void testAuthenticationMessagesCarryCapabilities() throws Exception {
+        NodeAddress nodeAddress = new NodeAddress("localhost", 1000);
+        AuthenticationRequest request = (AuthenticationRequest) MessageSerializer.deserialize(
+                MessageSerializer.serialize(new AuthenticationRequest(nodeAddress, 1)));
+        AuthenticationChallenge challenge = (AuthenticationChallenge) MessageSerializer.deserialize(
+                MessageSerializer.serialize(new AuthenticationChallenge(nodeAddress, 1, 2, new HashSet<>())));
+
+        assertEquals(Capabilities.SUPPORTED, request.capabilities);
+        assertEquals(1, request.requesterNonce);
+        assertEquals(Capabilities.SUPPORTED, challenge.capabilities);
+        assertEquals(2, challenge.responderNonce);
+    }
+
+    @Test
+    public void testUnregisteredMessageUsesJavaSerialization() throws Exception {
+        byte[] bytes = MessageSerializer.serialize(new MockMessage("msg"));
+        assertEquals(MessageSerializer.FORMAT_VERSION, bytes[0]);
+        assertEquals(new MockMessage("msg"), MessageSerializer.deserialize(bytes));
+    }
+
+    @Test
+    public void testReadsPlainJavaSerializedMessage() throws Exception {
+        byte[] bytes = ByteArrayUtils.objectToByteArray(new MockMessage("msg"));
+        assertTrue(MessageSerializer.isJavaSerialization(bytes));
+        assertEquals(new MockMessage("msg"), MessageSerializer.deserialize(bytes));
+    }
+
+    @Test
+    public void testNetworkIdInHeader() throws Exception {
+        byte[] bytes = MessageSerializer.serialize(new GetPeersResponse(new HashSet<>()));
+        assertEquals(Version.getNetworkId(), MessageSerializer.getNetworkId(bytes));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedDataIsRejected() throws Exception {
+        HashSet<ReportedPeer> reportedPeers = new HashSet<>();
+        reportedPeers.add(new ReportedPeer(new NodeAddress("localhost", 1000)));
+        byte[] bytes = MessageSerializer.serialize(new GetPeersResponse(reportedPeers));
+        MessageSerializer.deserialize(Arrays.copyOf(bytes, bytes.length - 2));
+    }
+}
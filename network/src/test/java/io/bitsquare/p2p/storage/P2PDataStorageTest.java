@@ -0,0 +1,138 @@
+package io.bitsquare.p2p.storage;
+
+import io.bitsquare.common.ByteArray;
+import io.bitsquare.common.crypto.Sig;
+import io.bitsquare.p2p.Message;
+import io.bitsquare.p2p.NodeAddress;
+import io.bitsquare.p2p.network.Capabilities;
+import io.bitsquare.p2p.network.Connection;
+import io.bitsquare.p2p.network.NetworkNode;
+import io.bitsquare.p2p.peers.PeerManager;
+import io.bitsquare.p2p.storage.data.PayloadEncoding;
+import io.bitsquare.p2p.storage.data.ProtectedData;
+import io.bitsquare.p2p.storage.messages.*;
+import io.bitsquare.p2p.storage.mocks.MockData;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.security.Security;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.IntFunction;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+// Covers the messages we send to peers depending on their capabilities, the peers are mocked
+public class P2PDataStorageTest {
+    private PeerManager peerManager;
+    private NetworkNode networkNode;
+    private Connection connection;
+    private P2PDataStorage dataStorage;
+    private KeyPair keyPair;
+    private MockData mockData;
+
+    @Before
+    public void setup() throws Exception {
+        Security.addProvider(new BouncyCastleProvider());
+        keyPair = Sig.generateKeyPair();
+        mockData = new MockData("mockData", keyPair.getPublic());
+        mockData.ttl = 60 * 1000;
+
+        peerManager = mock(PeerManager.class);
+        networkNode = mock(NetworkNode.class);
+        connection = mock(Connection.class);
+        when(connection.isAuthenticated()).thenReturn(true);
+        when(connection.getPeerAddressOptional()).thenReturn(Optional.of(new NodeAddress("localhost", 1000)));
+        File storageDir = Files.createTempDirectory("P2PDataStorageTest").toFile();
+        dataStorage = new P2PDataStorage(peerManager, networkNode, storageDir);
+    }
+
+    @After
+    public void tearDown() {
+        dataStorage.shutDown();
+    }
+
+    @Test
+    public void testRefreshIsSentAsAddToOlderPeers() throws Exception {
+        assertTrue(dataStorage.add(dataStorage.getDataWithSignedSeqNr(mockData, keyPair), null));
+        RefreshTTLMessage refreshTTLMessage = dataStorage.getRefreshTTLMessage(mockData, keyPair);
+        assertTrue(dataStorage.refreshTTL(refreshTTLMessage, null));
+
+        IntFunction<List<DataBroadcastMessage>> messagesForCapabilities = getLastBroadcast();
+        assertEquals(Collections.singletonList(refreshTTLMessage), messagesForCapabilities.apply(Capabilities.SUPPORTED));
+
+        List<DataBroadcastMessage> messagesForOlderPeers = messagesForCapabilities.apply(0);
+        assertEquals(1, messagesForOlderPeers.size());
+        ProtectedData refreshedData = ((AddDataMessage) messagesForOlderPeers.get(0)).data;
+        assertEquals(refreshTTLMessage.sequenceNumber, refreshedData.sequenceNumber);
+        assertArrayEquals(refreshTTLMessage.signature, refreshedData.signature);
+    }
+
+    @Test
+    public void testBatchIsSentAsSingleMessagesToOlderPeers() throws Exception {
+        MockData mockData2 = new MockData("mockData2", keyPair.getPublic());
+        mockData2.ttl = mockData.ttl;
+        List<DataBroadcastMessage> entries = Arrays.asList(
+                new AddDataMessage(dataStorage.getDataWithSignedSeqNr(mockData, keyPair)),
+                new AddDataMessage(dataStorage.getDataWithSignedSeqNr(mockData2, keyPair)));
+        assertEquals(2, dataStorage.processBatch(new BatchedDataMessage(entries), null).size());
+
+        IntFunction<List<DataBroadcastMessage>> messagesForCapabilities = getLastBroadcast();
+        assertEquals(Collections.singletonList(new BatchedDataMessage(entries)),
+                messagesForCapabilities.apply(Capabilities.SUPPORTED));
+        assertEquals(entries, messagesForCapabilities.apply(Capabilities.MESSAGE_CODECS | Capabilities.REFRESH_TTL));
+        assertEquals(entries, messagesForCapabilities.apply(0));
+    }
+
+    @Test
+    public void testRefreshOfMissingDataRequestsData() throws Exception {
+        when(connection.supportsCapability(Capabilities.REFRESH_TTL)).thenReturn(true);
+        RefreshTTLMessage refreshTTLMessage = dataStorage.getRefreshTTLMessage(mockData, keyPair);
+
+        dataStorage.onMessage(refreshTTLMessage, connection);
+
+        verify(networkNode).sendMessage(connection, new MissingDataRequest(refreshTTLMessage.hashOfPayload));
+        assertTrue(dataStorage.getMap().isEmpty());
+    }
+
+    @Test
+    public void testRefreshOfKnownDataDoesNotRequestData() throws Exception {
+        when(connection.supportsCapability(Capabilities.REFRESH_TTL)).thenReturn(true);
+        assertTrue(dataStorage.add(dataStorage.getDataWithSignedSeqNr(mockData, keyPair), null));
+
+        dataStorage.onMessage(dataStorage.getRefreshTTLMessage(mockData, keyPair), connection);
+
+        verify(networkNode, never()).sendMessage(any(Connection.class), any(Message.class));
+    }
+
+    @Test
+    public void testMissingDataRequestIsAnsweredWithData() throws Exception {
+        ProtectedData data = dataStorage.getDataWithSignedSeqNr(mockData, keyPair);
+        assertTrue(dataStorage.add(data, null));
+
+        dataStorage.onMessage(new MissingDataRequest(PayloadEncoding.getHash(mockData)), connection);
+
+        ArgumentCaptor<Message> captor = ArgumentCaptor.forClass(Message.class);
+        verify(networkNode).sendMessage(eq(connection), captor.capture());
+        assertEquals(data, ((AddDataMessage) captor.getValue()).data);
+        assertNotNull(dataStorage.getMap().get(new ByteArray(PayloadEncoding.getHash(mockData))));
+    }
+
+    @SuppressWarnings("unchecked")
+    private IntFunction<List<DataBroadcastMessage>> getLastBroadcast() {
+        ArgumentCaptor<IntFunction> captor = ArgumentCaptor.forClass(IntFunction.class);
+        verify(peerManager, atLeastOnce()).broadcast(captor.capture(), any(NodeAddress.class));
+        return captor.getValue();
+    }
+}
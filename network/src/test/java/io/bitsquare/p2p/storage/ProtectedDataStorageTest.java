@@ -1,5 +1,6 @@
 package io.bitsquare.p2p.storage;
 
+import io.bitsquare.common.ByteArray;
 import io.bitsquare.common.UserThread;
 import io.bitsquare.common.crypto.*;
 import io.bitsquare.common.util.Utilities;
@@ -12,8 +13,10 @@ import io.bitsquare.p2p.network.NetworkNode;
 import io.bitsquare.p2p.peers.PeerManager;
 import io.bitsquare.p2p.storage.data.DataAndSeqNr;
 import io.bitsquare.p2p.storage.data.ExpirableMailboxPayload;
+import io.bitsquare.p2p.storage.data.PayloadEncoding;
 import io.bitsquare.p2p.storage.data.ProtectedData;
 import io.bitsquare.p2p.storage.data.ProtectedMailboxData;
+import io.bitsquare.p2p.storage.messages.*;
 import io.bitsquare.p2p.storage.mocks.MockData;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.junit.*;
@@ -24,9 +27,7 @@ import java.io.File;
 import java.io.IOException;
 import java.security.*;
 import java.security.cert.CertificateException;
-import java.util.Date;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.*;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 
@@ -139,6 +140,62 @@ public class ProtectedDataStorageTest {
         Assert.assertEquals(0, dataStorage1.getMap().size());
     }
 
+    @Test
+    public void testRefreshTTL() throws InterruptedException, NoSuchAlgorithmException, CertificateException, KeyStoreException, IOException, CryptoException, SignatureException, InvalidKeyException, NoSuchProviderException {
+        ProtectedData data = dataStorage1.getDataWithSignedSeqNr(mockData, storageSignatureKeyPair1);
+        Assert.assertTrue(dataStorage1.add(data, null));
+        ByteArray hashOfPayload = new ByteArray(PayloadEncoding.getHash(mockData));
+        Date addDate = dataStorage1.getMap().get(hashOfPayload).date;
+        Thread.sleep(5);
+
+        // refresh -> ok, the entry gets the new seq nr. and a new date
+        RefreshTTLMessage refreshTTLMessage = dataStorage1.getRefreshTTLMessage(mockData, storageSignatureKeyPair1);
+        Assert.assertEquals(data.sequenceNumber + 1, refreshTTLMessage.sequenceNumber);
+        Assert.assertTrue(dataStorage1.refreshTTL(refreshTTLMessage, null));
+        ProtectedData refreshedData = dataStorage1.getMap().get(hashOfPayload);
+        Assert.assertEquals(refreshTTLMessage.sequenceNumber, refreshedData.sequenceNumber);
+        Assert.assertTrue(refreshedData.date.after(addDate));
+
+        // same refresh again -> failure
+        Assert.assertFalse(dataStorage1.refreshTTL(refreshTTLMessage, null));
+
+        // signed by another key -> failure
+        int newSequenceNumber = refreshTTLMessage.sequenceNumber + 1;
+        byte[] hashOfDataAndSeqNr = PayloadEncoding.getHashOfDataAndSeqNr(mockData, newSequenceNumber);
+        byte[] signature = Sig.sign(storageSignatureKeyPair2.getPrivate(), hashOfDataAndSeqNr);
+        Assert.assertFalse(dataStorage1.refreshTTL(new RefreshTTLMessage(hashOfPayload.bytes, newSequenceNumber, signature), null));
+
+        // unknown data -> failure
+        MockData otherMockData = new MockData("otherMockData", storageSignatureKeyPair1.getPublic());
+        Assert.assertFalse(dataStorage1.refreshTTL(dataStorage1.getRefreshTTLMessage(otherMockData, storageSignatureKeyPair1), null));
+        Assert.assertEquals(1, dataStorage1.getMap().size());
+    }
+
+    @Test
+    public void testProcessBatch() throws InterruptedException, NoSuchAlgorithmException, CertificateException, KeyStoreException, IOException, CryptoException, SignatureException, InvalidKeyException, NoSuchProviderException {
+        MockData mockData1 = new MockData("msg1", storageSignatureKeyPair1.getPublic());
+        MockData mockData2 = new MockData("msg2", storageSignatureKeyPair1.getPublic());
+        ProtectedData data1 = dataStorage1.getDataWithSignedSeqNr(mockData1, storageSignatureKeyPair1);
+        ProtectedData data2 = dataStorage1.getDataWithSignedSeqNr(mockData2, storageSignatureKeyPair1);
+        // signed with another key than the owner key of the payload -> rejected, the other entries are accepted
+        ProtectedData invalidData = dataStorage1.getDataWithSignedSeqNr(mockData, storageSignatureKeyPair2);
+
+        List<DataBroadcastMessage> entries = Arrays.asList(new AddDataMessage(data1), new AddDataMessage(invalidData),
+                new AddDataMessage(data2));
+        List<DataBroadcastMessage> accepted = dataStorage1.processBatch(new BatchedDataMessage(entries), null);
+        Assert.assertEquals(2, accepted.size());
+        Assert.assertFalse(accepted.contains(entries.get(1)));
+        Assert.assertEquals(2, dataStorage1.getMap().size());
+
+        // refresh, remove and the same refresh again in one batch
+        RefreshTTLMessage refreshTTLMessage = dataStorage1.getRefreshTTLMessage(mockData1, storageSignatureKeyPair1);
+        RemoveDataMessage removeDataMessage = new RemoveDataMessage(dataStorage1.getDataWithSignedSeqNr(mockData2, storageSignatureKeyPair1));
+        accepted = dataStorage1.processBatch(new BatchedDataMessage(Arrays.asList(refreshTTLMessage, removeDataMessage,
+                refreshTTLMessage)), null);
+        Assert.assertEquals(Arrays.asList(refreshTTLMessage, removeDataMessage), accepted);
+        Assert.assertEquals(1, dataStorage1.getMap().size());
+    }
+
     @Test
     public void testMultiAddRemoveProtectedData() throws InterruptedException, NoSuchAlgorithmException, CertificateException, KeyStoreException, IOException, CryptoException, SignatureException, InvalidKeyException, NoSuchProviderException {
         MockData mockData = new MockData("msg1", keyRing1.getSignatureKeyPair().getPublic());
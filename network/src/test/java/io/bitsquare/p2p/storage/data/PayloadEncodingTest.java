@@ -0,0 +1,81 @@
+package io.bitsquare.p2p.storage.data;
+
+import io.bitsquare.common.crypto.CryptoException;
+import io.bitsquare.common.crypto.SealedAndSigned;
+import io.bitsquare.common.crypto.Sig;
+import io.bitsquare.crypto.SealedAndSignedMessage;
+import io.bitsquare.p2p.storage.mocks.MockData;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.security.KeyPair;
+import java.security.Security;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class PayloadEncodingTest {
+    private KeyPair senderKeyPair;
+    private KeyPair receiverKeyPair;
+
+    @Before
+    public void setup() {
+        Security.addProvider(new BouncyCastleProvider());
+        senderKeyPair = Sig.generateKeyPair();
+        receiverKeyPair = Sig.generateKeyPair();
+    }
+
+    @Test
+    public void testCanonicalHashIsDeterministic() {
+        ExpirableMailboxPayload payload1 = createPayload(new byte[]{1, 2, 3});
+        ExpirableMailboxPayload payload2 = createPayload(new byte[]{1, 2, 3});
+        ExpirableMailboxPayload payload3 = createPayload(new byte[]{1, 2, 4});
+
+        assertArrayEquals(PayloadEncoding.getHash(payload1), PayloadEncoding.getHash(payload2));
+        assertFalse(Arrays.equals(PayloadEncoding.getHash(payload1), PayloadEncoding.getHash(payload3)));
+        assertFalse(Arrays.equals(PayloadEncoding.getHash(payload1, PayloadEncoding.CANONICAL),
+                PayloadEncoding.getHash(payload1, PayloadEncoding.LEGACY)));
+    }
+
+    @Test
+    public void testSequenceNumberIsPartOfSignedHash() {
+        ExpirableMailboxPayload payload = createPayload(new byte[]{1, 2, 3});
+        assertFalse(Arrays.equals(
+                PayloadEncoding.getHashOfDataAndSeqNr(payload, 1, PayloadEncoding.CANONICAL),
+                PayloadEncoding.getHashOfDataAndSeqNr(payload, 2, PayloadEncoding.CANONICAL)));
+    }
+
+    @Test
+    public void testNonCanonicalPayloadFallsBackToLegacy() {
+        MockData mockData = new MockData("msg", senderKeyPair.getPublic());
+        assertArrayEquals(PayloadEncoding.getHash(mockData, PayloadEncoding.LEGACY),
+                PayloadEncoding.getHash(mockData, PayloadEncoding.CANONICAL));
+        assertArrayEquals(new byte[]{PayloadEncoding.LEGACY}, PayloadEncoding.getVerificationVersions(mockData));
+    }
+
+    @Test
+    public void testAllVersionsAreVerifiable() throws CryptoException {
+        ExpirableMailboxPayload payload = createPayload(new byte[]{1, 2, 3});
+        byte[] versions = PayloadEncoding.getVerificationVersions(payload);
+        assertEquals(PayloadEncoding.SIGNING_VERSION, versions[0]);
+        assertEquals(2, versions.length);
+
+        for (byte signingVersion : versions) {
+            byte[] signature = Sig.sign(senderKeyPair.getPrivate(),
+                    PayloadEncoding.getHashOfDataAndSeqNr(payload, 1, signingVersion));
+            boolean verified = false;
+            for (byte version : versions)
+                verified |= Sig.verify(senderKeyPair.getPublic(),
+                        PayloadEncoding.getHashOfDataAndSeqNr(payload, 1, version), signature);
+            assertTrue(verified);
+        }
+    }
+
+    private ExpirableMailboxPayload createPayload(byte[] encryptedPayload) {
+        SealedAndSigned sealedAndSigned = new SealedAndSigned(new byte[]{9, 8, 7}, encryptedPayload, new byte[]{5},
+                senderKeyPair.getPublic());
+        return new ExpirableMailboxPayload(new SealedAndSignedMessage(sealedAndSigned, new byte[]{4, 2}),
+                senderKeyPair.getPublic(), receiverKeyPair.getPublic());
+    }
+}